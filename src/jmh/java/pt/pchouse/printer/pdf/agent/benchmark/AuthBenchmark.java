@@ -0,0 +1,65 @@
+package pt.pchouse.printer.pdf.agent.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import pt.pchouse.printer.pdf.agent.auth.Auth;
+import pt.pchouse.printer.pdf.agent.auth.ClientAllowList;
+import pt.pchouse.printer.pdf.agent.auth.IpAllowList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The client authorization of each request against an allow list of 64 store networks and
+ * addresses, as the authorization interceptor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuthBenchmark
+{
+
+    @Param({"10.0.31.200", "192.168.77.3", "fd00:0:0:1f::20", "2001:db8::1"})
+    public String address;
+
+    private IpAllowList allowList;
+
+    private Auth auth;
+
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setup() {
+        List<String> rules = new ArrayList<>();
+        rules.add("localhost");
+        for (int store = 0; store < 32; store++) {
+            rules.add("10.0." + store + ".0/24");
+            rules.add("fd00:0:0:" + Integer.toHexString(store) + "::/64");
+        }
+        rules.add("192.168.1.10");
+        allowList = IpAllowList.compile(rules);
+
+        ClientAllowList clientAllowList = new ClientAllowList();
+        ReflectionTestUtils.setField(clientAllowList, "allowIps", rules.toArray(String[]::new));
+        ReflectionTestUtils.setField(clientAllowList, "file", "");
+        clientAllowList.start();
+
+        auth = new Auth();
+        ReflectionTestUtils.setField(auth, "clientAllowList", clientAllowList);
+
+        request = new MockHttpServletRequest();
+        request.setRemoteAddr(address);
+    }
+
+    @Benchmark
+    public boolean isAllowed() {
+        return allowList.isAllowed(address);
+    }
+
+    @Benchmark
+    public boolean isNotAuthorized() {
+        return auth.isNotAuthorized(request);
+    }
+}
@@ -0,0 +1,164 @@
+package pt.pchouse.printer.pdf.agent.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Run the benchmarks, write the results to target/jmh/results.json and compare them with the
+ * committed baseline (src/jmh/baseline.json) in target/jmh/comparison.md.
+ * <p>
+ * The run fails when the allocation of a benchmark, or the time when the confidence intervals do
+ * not overlap, regresses more than its threshold from the baseline. The allocation is exact and the
+ * time is noisy on shared machines, so their thresholds are apart. The options are system properties:
+ * <ul>
+ *     <li>jmh.include: The benchmarks regular expression, default all</li>
+ *     <li>jmh.forks, jmh.warmup, jmh.iterations and jmh.time (seconds of each iteration)</li>
+ *     <li>jmh.threshold.time: The allowed time regression, default 0.50 (50%)</li>
+ *     <li>jmh.threshold.alloc: The allowed allocation regression, default 0.10 (10%)</li>
+ *     <li>jmh.update: Replace the baseline with the results</li>
+ * </ul>
+ */
+public final class BenchmarkRunner
+{
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private static final Path BASELINE = Path.of("src", "jmh", "baseline.json");
+
+    private static final Path OUTPUT = Path.of("target", "jmh");
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Path   results    = OUTPUT.resolve("results.json");
+        double timeLimit  = Double.parseDouble(System.getProperty("jmh.threshold.time", "0.50"));
+        double allocLimit = Double.parseDouble(System.getProperty("jmh.threshold.alloc", "0.10"));
+        int    time       = Integer.parseInt(System.getProperty("jmh.time", "1"));
+        Files.createDirectories(OUTPUT);
+
+        Options options = new OptionsBuilder()
+                .include(BenchmarkRunner.class.getPackageName() + "." + System.getProperty("jmh.include", ".*"))
+                .forks(Integer.parseInt(System.getProperty("jmh.forks", "1")))
+                .warmupIterations(Integer.parseInt(System.getProperty("jmh.warmup", "3")))
+                .warmupTime(TimeValue.seconds(time))
+                .measurementIterations(Integer.parseInt(System.getProperty("jmh.iterations", "5")))
+                .measurementTime(TimeValue.seconds(time))
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results.toString())
+                .build();
+        new Runner(options).run();
+
+        if (Boolean.getBoolean("jmh.update") || Files.notExists(BASELINE)) {
+            Files.copy(results, BASELINE, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Baseline updated " + BASELINE);
+            return;
+        }
+
+        ObjectMapper       mapper      = new ObjectMapper();
+        Map<String, Score> baseline    = scores(mapper.readTree(BASELINE.toFile()));
+        Map<String, Score> current     = scores(mapper.readTree(results.toFile()));
+        List<String>       regressions = new ArrayList<>();
+        StringBuilder      report      = new StringBuilder()
+                .append("# Benchmark comparison\n\n")
+                .append("Thresholds: time ").append(Math.round(timeLimit * 100))
+                .append("%, allocation ").append(Math.round(allocLimit * 100)).append("%\n\n")
+                .append("A time change above the threshold is within error when the confidence intervals ")
+                .append("overlap, it is not a regression.\n\n")
+                .append("| Benchmark | Baseline | Current | Change | Baseline alloc B/op | Current alloc B/op | Change | |\n")
+                .append("|---|---:|---:|---:|---:|---:|---:|---|\n");
+
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score after  = entry.getValue();
+            if (before == null) {
+                report.append(String.format("| %s | | %.3f ± %.3f %s | | | %.0f | | new |%n",
+                        entry.getKey(), after.score, after.error, after.unit, after.allocation));
+                continue;
+            }
+            double timeChange  = (after.score - before.score) / before.score;
+            double allocChange = allocationChange(before.allocation, after.allocation);
+            // The time regresses only when the confidence intervals do not overlap, the allocation is exact
+            boolean overlap    = after.score - after.error <= before.score + before.error;
+            boolean regression = timeChange > timeLimit && !overlap || allocChange > allocLimit;
+            String  note       = regression ? " regression |" : timeChange > timeLimit ? " within error |" : " |";
+            report.append(String.format("| %s | %.3f ± %.3f %s | %.3f ± %.3f %s | %+.1f%% | %.0f | %.0f | %+.1f%% |%s%n",
+                    entry.getKey(), before.score, before.error, before.unit, after.score, after.error, after.unit,
+                    timeChange * 100, before.allocation, after.allocation, allocChange * 100, note));
+            if (regression) {
+                regressions.add(entry.getKey());
+            }
+        }
+
+        Path comparison = OUTPUT.resolve("comparison.md");
+        Files.writeString(comparison, report);
+        System.out.println(report);
+        System.out.println("Comparison written to " + comparison);
+
+        if (!regressions.isEmpty()) {
+            System.err.println("Regressions above the threshold: " + regressions);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The relative change, differences of a few bytes are ignored as they are measurement noise
+     */
+    private static double allocationChange(double before, double after) {
+        if (Math.abs(after - before) < 16) {
+            return 0;
+        }
+        return before == 0 ? Double.POSITIVE_INFINITY : (after - before) / before;
+    }
+
+    private static Map<String, Score> scores(JsonNode results) {
+        Map<String, Score> scores = new TreeMap<>();
+        for (JsonNode result : results) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace(BenchmarkRunner.class.getPackageName() + ".", ""));
+            List<String> params = new ArrayList<>();
+            result.path("params").fieldNames().forEachRemaining(params::add);
+            Collections.sort(params);
+            for (String param : params) {
+                key.append(' ').append(param).append('=').append(result.path("params").path(param).asText());
+            }
+
+            double allocation = Double.NaN;
+            for (Iterator<Map.Entry<String, JsonNode>> it = result.path("secondaryMetrics").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> metric = it.next();
+                if (metric.getKey().endsWith(ALLOCATION)) {
+                    allocation = metric.getValue().path("score").asDouble();
+                }
+            }
+
+            JsonNode primary = result.path("primaryMetric");
+            double   error   = primary.path("scoreError").asDouble();
+            scores.put(key.toString(), new Score(
+                    primary.path("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error,
+                    primary.path("scoreUnit").asText(),
+                    allocation
+            ));
+        }
+        return scores;
+    }
+
+    private record Score(double score, double error, String unit, double allocation)
+    {
+    }
+}
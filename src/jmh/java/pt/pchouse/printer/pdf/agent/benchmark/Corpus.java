@@ -0,0 +1,123 @@
+package pt.pchouse.printer.pdf.agent.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * The benchmark documents, generated the same way on every run:
+ * <ul>
+ *     <li>receipt: one 80mm page with a logo, 40 item lines and a barcode</li>
+ *     <li>invoice: one A4 page with a logo, a header and a 30 rows table</li>
+ *     <li>report: five A4 pages with a 45 rows table each</li>
+ * </ul>
+ */
+public final class Corpus
+{
+
+    private Corpus() {
+    }
+
+    /**
+     * @param name receipt, invoice or report
+     * @return The pdf bytes
+     */
+    public static byte[] pdf(String name) {
+        try (PDDocument document = new PDDocument()) {
+            switch (name) {
+                case "receipt" -> receipt(document);
+                case "invoice" -> report(document, 1, 30);
+                case "report" -> report(document, 5, 45);
+                default -> throw new IllegalArgumentException("Unknown corpus document " + name);
+            }
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            document.save(stream);
+            return stream.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param name receipt, invoice or report
+     * @return The base64 encoded pdf, as sent in the json requests
+     */
+    public static String base64(String name) {
+        return Base64.getEncoder().encodeToString(pdf(name));
+    }
+
+    private static void receipt(PDDocument document) throws IOException {
+        PDPage page = new PDPage(new PDRectangle(226, 700));
+        document.addPage(page);
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.COURIER);
+        PDType1Font bold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.drawImage(logo(document), 63, 640, 100, 50);
+            text(content, bold, 12, 40, 620, "PCHOUSE STORE 0042");
+            for (int line = 0; line < 40; line++) {
+                text(content, font, 8, 8, 600 - line * 12, String.format(
+                        "%-22s %2d x %6.2f %7.2f", "Item number " + line, line % 3 + 1, 1.25 * line, 1.25 * line * (line % 3 + 1)
+                ));
+            }
+            text(content, bold, 10, 8, 100, "TOTAL                      1234.56");
+            for (int bar = 0; bar < 60; bar++) {
+                content.addRect(20 + bar * 3, 30, bar % 3 == 0 ? 2 : 1, 40);
+            }
+            content.fill();
+        }
+    }
+
+    private static void report(PDDocument document, int pages, int rows) throws IOException {
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        PDType1Font bold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+        PDImageXObject logo = logo(document);
+        for (int number = 0; number < pages; number++) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.drawImage(logo, 40, 770, 120, 50);
+                text(content, bold, 14, 200, 790, "Sales report, page " + (number + 1));
+                for (int row = 0; row < rows; row++) {
+                    float y = 740 - row * 15;
+                    content.addRect(40, y - 4, 515, 15);
+                    text(content, font, 9, 45, y, String.format(
+                            "%05d   Article description %d   %4d   %9.2f   %9.2f", row, row, row * 7, row * 3.5, row * row * 3.5
+                    ));
+                }
+                content.stroke();
+            }
+        }
+    }
+
+    private static void text(PDPageContentStream content, PDType1Font font, float size, float x, float y, String text)
+            throws IOException
+    {
+        content.beginText();
+        content.setFont(font, size);
+        content.newLineAtOffset(x, y);
+        content.showText(text);
+        content.endText();
+    }
+
+    private static PDImageXObject logo(PDDocument document) throws IOException {
+        BufferedImage image = new BufferedImage(200, 80, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int gray = (x * 7 + y * 13) % 256;
+                image.getRaster().setSample(x, y, 0, (x / 20 + y / 20) % 2 == 0 ? gray : 255 - gray);
+            }
+        }
+        return LosslessFactory.createFromImage(document, image);
+    }
+}
@@ -0,0 +1,104 @@
+package pt.pchouse.printer.pdf.agent.benchmark;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.openjdk.jmh.annotations.*;
+import pt.pchouse.printer.pdf.agent.printer.EscPosCommands;
+import pt.pchouse.printer.pdf.agent.printer.EscPosRaster;
+import pt.pchouse.printer.pdf.agent.printer.PrinterException;
+import pt.pchouse.printer.pdf.agent.printer.RasterCommand;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ESC/POS byte assembly: the commands compile, the raster encode of a receipt page and the
+ * job assembly of the init, raster and post operations, as the escpos render mode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EscPosBenchmark
+{
+
+    private static final Map<String, String> DEFINITIONS = Map.of(
+            EscPosCommands.INIT, "27,64",
+            EscPosCommands.FEED, "10",
+            EscPosCommands.CUT, "29,86,65,4",
+            EscPosCommands.CASH_DRAWER, "27,112,1,49,100,120",
+            "feed_cut", "$feed,$feed,$feed,$cut",
+            "logo", "0x1b61,{align},29,40,76,6,0,48,69,{key1},{key2},1,1"
+    );
+
+    private static final Map<String, String> PARAMETERS = Map.of("align", "1", "key1", "32", "key2", "32");
+
+    private EscPosCommands commands;
+
+    private byte[] raster;
+
+    @Setup
+    public void setup() throws IOException, PrinterException {
+        commands = compile();
+        raster   = new Raster(RasterCommand.GS_V_0).encode();
+    }
+
+    @Benchmark
+    public EscPosCommands compile() throws PrinterException {
+        return EscPosCommands.compile(DEFINITIONS, PARAMETERS::get);
+    }
+
+    @Benchmark
+    public byte[] encodeRaster(Raster raster) {
+        return raster.encode();
+    }
+
+    @Benchmark
+    public byte[] assembleJob() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        commands.get(EscPosCommands.INIT).writeTo(bytes);
+        bytes.writeBytes(raster);
+        commands.get(EscPosCommands.CUT_AND_OPEN_CASH_DRAWER).writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The receipt page image and the encoder of each raster command
+     */
+    @State(Scope.Benchmark)
+    public static class Raster
+    {
+
+        @Param({"GS_V_0", "GS_L"})
+        public String command;
+
+        private EscPosRaster encoder;
+
+        private BufferedImage image;
+
+        public Raster() {
+        }
+
+        Raster(RasterCommand command) throws IOException {
+            this.command = command.name();
+            setup();
+        }
+
+        @Setup
+        public void setup() throws IOException {
+            encoder = new EscPosRaster(RasterCommand.parse(command), 128, 576, true);
+            try (PDDocument document = Loader.loadPDF(Corpus.pdf("receipt"))) {
+                float width = document.getPage(0).getCropBox().getWidth();
+                image = new PDFRenderer(document).renderImage(0, 576 / width, ImageType.GRAY);
+            }
+        }
+
+        byte[] encode() {
+            return encoder.encode(image);
+        }
+    }
+}
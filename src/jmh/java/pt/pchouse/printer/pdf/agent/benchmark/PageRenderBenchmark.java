@@ -0,0 +1,68 @@
+package pt.pchouse.printer.pdf.agent.benchmark;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.printing.PDFPageable;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The first page of the document printed by the PDFPageable printable, as the pageable render mode,
+ * to a gray image at 203 dpi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageRenderBenchmark
+{
+
+    @Param({"receipt", "invoice"})
+    public String document;
+
+    private PDDocument loaded;
+
+    private Printable printable;
+
+    private PageFormat pageFormat;
+
+    private BufferedImage image;
+
+    @Setup
+    public void setup() throws IOException {
+        loaded     = Loader.loadPDF(Corpus.pdf(document));
+        PDFPageable pageable = new PDFPageable(loaded);
+        printable  = pageable.getPrintable(0);
+        pageFormat = pageable.getPageFormat(0);
+        double scale = 203 / 72.0;
+        image = new BufferedImage(
+                (int) Math.ceil(pageFormat.getWidth() * scale),
+                (int) Math.ceil(pageFormat.getHeight() * scale),
+                BufferedImage.TYPE_BYTE_GRAY
+        );
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loaded.close();
+    }
+
+    @Benchmark
+    public int printPage() throws PrinterException {
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setBackground(Color.WHITE);
+            graphics.clearRect(0, 0, image.getWidth(), image.getHeight());
+            graphics.scale(203 / 72.0, 203 / 72.0);
+            return printable.print(graphics, pageFormat, 0);
+        } finally {
+            graphics.dispose();
+        }
+    }
+}
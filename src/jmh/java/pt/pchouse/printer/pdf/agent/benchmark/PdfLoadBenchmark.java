@@ -0,0 +1,39 @@
+package pt.pchouse.printer.pdf.agent.benchmark;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+import pt.pchouse.printer.pdf.agent.printer.PdfSource;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The request decode and load of the pdf: base64 decode, as the json requests, and PDFBox load
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PdfLoadBenchmark
+{
+
+    @Param({"receipt", "invoice", "report"})
+    public String document;
+
+    private String base64;
+
+    @Setup
+    public void setup() {
+        base64 = Corpus.base64(document);
+    }
+
+    @Benchmark
+    public int decodeAndLoad() throws IOException {
+        PdfSource pdf = PdfSource.ofBase64(base64);
+        try (PDDocument loaded = Loader.loadPDF(pdf.open())) {
+            return loaded.getNumberOfPages();
+        } finally {
+            pdf.close();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package pt.pchouse.printer.pdf.agent.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.context.WebApplicationContext;
+import pt.pchouse.printer.pdf.agent.Application;
+import pt.pchouse.printer.pdf.agent.printer.PrinterConfig;
+
+import javax.print.*;
+import javax.print.attribute.*;
+import javax.print.event.PrintJobAttributeListener;
+import javax.print.event.PrintJobEvent;
+import javax.print.event.PrintJobListener;
+import javax.print.event.PrintServiceAttributeListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * The request path of /isAlive, /cut and /print through the application context, the interceptors, the
+ * controller and Jackson, without the network and Tomcat. The default printer is a print service registered
+ * in the lookup that discards the data and reports the job finished, so the spool and the print service
+ * discovery are not measured. The print waits for its job with GET /jobs/{id}?wait, so the queued jobs
+ * do not pile up and the job load of the pdf is measured in each operation. The idempotency window is
+ * disabled, the same pdf sent again would be a duplicate of the previous job.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RequestBenchmark
+{
+
+    private static final Pattern JOB_ID = Pattern.compile("\"id\":\"([0-9a-f-]{36})\"");
+
+    private Path journal;
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mvc;
+
+    private byte[] printBody;
+
+    @Setup
+    public void setup() throws IOException {
+        journal = Files.createTempDirectory("printer-agent-jmh-");
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.SERVLET)
+                .run(
+                        "--server.port=0",
+                        "--logging.level.root=off",
+                        "--warmup.enabled=false",
+                        "--print.idempotency.window=0",
+                        "--print.journal.dir=" + journal
+                );
+        PrintServiceLookup.registerService(new NullPrintService(context.getBean(PrinterConfig.class).getName()));
+        mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        printBody = ("{\"pdf\":\"" + Corpus.base64("receipt") + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(journal);
+    }
+
+    @Benchmark
+    public String isAlive() throws Exception {
+        return perform(get("/isAlive"), 200);
+    }
+
+    @Benchmark
+    public String cut() throws Exception {
+        return perform(get("/cut"), 200);
+    }
+
+    @Benchmark
+    public String print() throws Exception {
+        String  queued = perform(post("/print").contentType(MediaType.APPLICATION_JSON).content(printBody), 202);
+        Matcher id     = JOB_ID.matcher(queued);
+        if (!id.find()) {
+            throw new IllegalStateException("No job in the response " + queued);
+        }
+        String finished = perform(get("/jobs/{id}", id.group(1)).param("wait", "10"), 200);
+        if (!finished.contains("\"COMPLETED\"")) {
+            throw new IllegalStateException("The job did not complete " + finished);
+        }
+        return finished;
+    }
+
+    /**
+     * Perform the request and, if the controller answered with a future, its async dispatch.
+     * A rejected or failed request would measure other path, the run fails.
+     */
+    private String perform(MockHttpServletRequestBuilder request, int expected) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mvc.perform(asyncDispatch(result)).andReturn();
+        }
+        String body = result.getResponse().getContentAsString();
+        if (result.getResponse().getStatus() != expected) {
+            throw new IllegalStateException(String.format(
+                    "%s responded %d: %s",
+                    result.getRequest().getRequestURI(),
+                    result.getResponse().getStatus(),
+                    body
+            ));
+        }
+        return body;
+    }
+
+    /**
+     * A printer that accepts the pdf pages and the raw bytes, discards them and reports the job finished
+     */
+    private record NullPrintService(String name) implements PrintService
+    {
+
+        private static final DocFlavor[] FLAVORS = {
+                DocFlavor.SERVICE_FORMATTED.PAGEABLE,
+                DocFlavor.BYTE_ARRAY.AUTOSENSE,
+                DocFlavor.INPUT_STREAM.AUTOSENSE
+        };
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public DocPrintJob createPrintJob() {
+            return new DocPrintJob()
+            {
+                private PrintJobListener listener;
+
+                @Override
+                public PrintService getPrintService() {
+                    return NullPrintService.this;
+                }
+
+                @Override
+                public PrintJobAttributeSet getAttributes() {
+                    return new HashPrintJobAttributeSet();
+                }
+
+                @Override
+                public void addPrintJobListener(PrintJobListener listener) {
+                    this.listener = listener;
+                }
+
+                @Override
+                public void removePrintJobListener(PrintJobListener listener) {
+                    this.listener = null;
+                }
+
+                @Override
+                public void addPrintJobAttributeListener(PrintJobAttributeListener listener, PrintJobAttributeSet attributes) {
+                }
+
+                @Override
+                public void removePrintJobAttributeListener(PrintJobAttributeListener listener) {
+                }
+
+                @Override
+                public void print(Doc doc, PrintRequestAttributeSet attributes) {
+                    if (listener != null) {
+                        listener.printDataTransferCompleted(new PrintJobEvent(this, PrintJobEvent.DATA_TRANSFER_COMPLETE));
+                        listener.printJobNoMoreEvents(new PrintJobEvent(this, PrintJobEvent.NO_MORE_EVENTS));
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void addPrintServiceAttributeListener(PrintServiceAttributeListener listener) {
+        }
+
+        @Override
+        public void removePrintServiceAttributeListener(PrintServiceAttributeListener listener) {
+        }
+
+        @Override
+        public PrintServiceAttributeSet getAttributes() {
+            return new HashPrintServiceAttributeSet();
+        }
+
+        @Override
+        public <T extends PrintServiceAttribute> T getAttribute(Class<T> category) {
+            return null;
+        }
+
+        @Override
+        public DocFlavor[] getSupportedDocFlavors() {
+            return FLAVORS.clone();
+        }
+
+        @Override
+        public boolean isDocFlavorSupported(DocFlavor flavor) {
+            return Arrays.asList(FLAVORS).contains(flavor);
+        }
+
+        @Override
+        public Class<?>[] getSupportedAttributeCategories() {
+            return new Class<?>[0];
+        }
+
+        @Override
+        public boolean isAttributeCategorySupported(Class<? extends Attribute> category) {
+            return false;
+        }
+
+        @Override
+        public Object getDefaultAttributeValue(Class<? extends Attribute> category) {
+            return null;
+        }
+
+        @Override
+        public Object getSupportedAttributeValues(
+                Class<? extends Attribute> category,
+                DocFlavor flavor,
+                AttributeSet attributes
+        )
+        {
+            return null;
+        }
+
+        @Override
+        public boolean isAttributeValueSupported(Attribute attribute, DocFlavor flavor, AttributeSet attributes) {
+            return false;
+        }
+
+        @Override
+        public AttributeSet getUnsupportedAttributes(DocFlavor flavor, AttributeSet attributes) {
+            return null;
+        }
+
+        @Override
+        public ServiceUIFactory getServiceUIFactory() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import pt.pchouse.printer.pdf.agent.request.ContentDecodingAdvice;
+
+/**
+ * Advertise in the Accept-Encoding response header the request content codings decoded by the
+ * {@link ContentDecodingAdvice} (RFC 7694), so the clients know they can compress the print requests.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class AcceptEncodingInterceptor implements HandlerInterceptor
+{
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        response.setHeader(HttpHeaders.ACCEPT_ENCODING, ContentDecodingAdvice.ACCEPT_ENCODING);
+        return true;
+    }
+}
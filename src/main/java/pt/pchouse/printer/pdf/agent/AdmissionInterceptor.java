@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+import pt.pchouse.printer.pdf.agent.printer.AdmissionControl;
+import pt.pchouse.printer.pdf.agent.printer.AdmissionException;
+import pt.pchouse.printer.pdf.agent.response.Response;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Admit the print requests by the {@link AdmissionControl} before the request body is read. The multipart
+ * requests are resolved lazily, spring.servlet.multipart.resolve-lazily, the parts are not read before the
+ * interceptors.
+ * The printer of the request is the query parameter printer or the header X-Printer, the printer sent
+ * in the body is not known and only the global limits apply. The not admitted requests are responded with
+ * the http status 429 and the Retry-After header.
+ * The request is admitted with its Content-Length, zero if sent chunked, the bytes read beyond it and the
+ * inflated bytes of the compressed bodies are charged to the permit by the
+ * {@link pt.pchouse.printer.pdf.agent.request.ContentDecodingAdvice} while the body is read.
+ * The permit is released when the request completes, the controller holds it until the queued jobs finish.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class AdmissionInterceptor implements HandlerInterceptor
+{
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Object handler
+    ) throws IOException
+    {
+        // the asynchronous dispatch of an admitted request
+        if (request.getDispatcherType() == DispatcherType.ASYNC || CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+
+        try {
+            request.setAttribute(
+                    AdmissionControl.PERMIT_ATTRIBUTE,
+                    admissionControl.admit(printer(request), request.getContentLengthLong())
+            );
+            return true;
+        } catch (AdmissionException e) {
+            byte[] body = objectMapper.writeValueAsBytes(new Response(Response.Status.ERROR, e.getMessage()));
+            response.setStatus(429);
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfter()));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            return false;
+        }
+    }
+
+    @Override
+    public void afterCompletion(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Object handler,
+            Exception ex
+    ) {
+        if (request.getAttribute(AdmissionControl.PERMIT_ATTRIBUTE) instanceof AdmissionControl.Permit permit) {
+            request.removeAttribute(AdmissionControl.PERMIT_ATTRIBUTE);
+            permit.close();
+        }
+    }
+
+    /**
+     * The printer of the request known before the body is read. The query string is parsed without
+     * request.getParameter, that reads the form and multipart bodies.
+     *
+     * @param request The request
+     * @return The printer id, null if not sent in the query string or header
+     * @since 1.1.0
+     */
+    private String printer(HttpServletRequest request) {
+        String query = request.getQueryString();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("printer=")) {
+                    return URLDecoder.decode(parameter.substring(8), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return request.getHeader(Controller.PRINTER_HEADER);
+    }
+}
@@ -16,20 +16,48 @@
 
 package pt.pchouse.printer.pdf.agent;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.autoconfigure.observation.web.servlet.WebMvcObservationAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+// the requests are counted by the RequestMetricsInterceptor, without the http.server.requests observation
 @EnableAsync
-@SpringBootApplication
+@SpringBootApplication(exclude = WebMvcObservationAutoConfiguration.class)
 public class Application
 {
 
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The execution mode, platform or virtual
+     *
+     * @since 1.1.0
+     */
+    @Value("${task.executor.mode:platform}")
+    private String taskExecutorMode;
+
     /**
      * @since 1.0.0
      */
@@ -48,16 +76,81 @@ public class Application
     @Value("${task.executor.queue}")
     private int taskExecutorQueue;
 
+    /**
+     * The virtual thread executors of the virtual execution mode, shut down with the application context
+     *
+     * @since 1.1.0
+     */
+    private final List<ExecutorService> virtualExecutors = new CopyOnWriteArrayList<>();
+
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
     }
 
     /**
+     * The execution mode of the requests handling and the print I/O
+     *
+     * @return The execution mode
+     * @throws IllegalStateException If the mode is not valid or not supported by the running Java
+     * @since 1.1.0
+     */
+    @Bean
+    public ExecutionMode executionMode() {
+        ExecutionMode mode;
+        try {
+            mode = ExecutionMode.parse(taskExecutorMode);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(String.format(
+                    "The task.executor.mode '%s' is not one of %s",
+                    taskExecutorMode,
+                    Arrays.toString(ExecutionMode.values()).toLowerCase()
+            ));
+        }
+        if (mode == ExecutionMode.VIRTUAL && !ExecutionMode.isVirtualSupported()) {
+            throw new IllegalStateException(String.format(
+                    "The task.executor.mode virtual requires Java 21, running %s", Runtime.version()
+            ));
+        }
+        logger.info("Execution mode {}", mode.name().toLowerCase());
+        return mode;
+    }
+
+    /**
+     * In the virtual execution mode Tomcat handles each request in a new virtual thread
+     *
+     * @param executionMode The execution mode
+     * @return The Tomcat protocol handler customizer
+     * @since 1.1.0
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer(
+            ExecutionMode executionMode
+    ) {
+        return protocolHandler -> {
+            if (executionMode == ExecutionMode.VIRTUAL) {
+                // Tomcat does not shut down an executor it did not create
+                protocolHandler.setExecutor(newVirtualExecutor("PrinterAgent-http-"));
+            }
+        };
+    }
+
+    /**
+     * In the virtual execution mode each task runs in a new virtual thread, without pool or queue limits,
+     * the print jobs are still serialized by the printer queues.
+     * The tasks rejected by the full pool are counted in executor.rejected, the pool gauges are
+     * bound by the actuator. The inferred close of the virtual executor is disabled, it would wait
+     * without limit for the running tasks, the executor is shut down by shutdownVirtualExecutors.
+     *
+     * @param executionMode The execution mode
+     * @param registry      The metrics registry
      * @return The default Task Executor
      * @since 1.0.0
      */
-    @Bean
-    public Executor taskExecutor() {
+    @Bean(destroyMethod = "")
+    public Executor taskExecutor(ExecutionMode executionMode, MeterRegistry registry) {
+        if (executionMode == ExecutionMode.VIRTUAL) {
+            return newVirtualExecutor("PrinterAgent-task-");
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(taskExecutorCorePoolSize);
         executor.setMaxPoolSize(taskExecutorMaxPoolSize);
@@ -66,8 +159,44 @@ public class Application
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAllowCoreThreadTimeOut(true);
         executor.setKeepAliveSeconds(60 * 5);
+
+        Counter rejected = registry.counter("executor.rejected", "name", "taskExecutor");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejected.increment();
+            new ThreadPoolExecutor.AbortPolicy().rejectedExecution(task, pool);
+        });
         executor.initialize();
         return executor;
     }
 
+    /**
+     * Create a virtual thread per task executor, registered to shut down with the application context
+     *
+     * @param prefix The threads name prefix
+     * @return The executor
+     * @since 1.1.0
+     */
+    private ExecutorService newVirtualExecutor(String prefix) {
+        ExecutorService executor = ExecutionMode.newVirtualThreadPerTaskExecutor(prefix);
+        virtualExecutors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Stop the virtual thread executors and wait for the running tasks, the web server is already stopped
+     *
+     * @throws InterruptedException If interrupted while waiting
+     * @since 1.1.0
+     */
+    @PreDestroy
+    public void shutdownVirtualExecutors() throws InterruptedException {
+        virtualExecutors.forEach(ExecutorService::shutdown);
+        for (ExecutorService executor : virtualExecutors) {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Virtual thread executor did not finish the running tasks, interrupting them");
+                executor.shutdownNow();
+            }
+        }
+    }
+
 }
@@ -16,20 +16,39 @@
 
 package pt.pchouse.printer.pdf.agent;
 
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import pt.pchouse.printer.pdf.agent.auth.IAuth;
-import pt.pchouse.printer.pdf.agent.printer.Printer;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pt.pchouse.printer.pdf.agent.printer.*;
+import pt.pchouse.printer.pdf.agent.request.BatchPrintRequest;
+import pt.pchouse.printer.pdf.agent.request.ContentDecodingAdvice;
+import pt.pchouse.printer.pdf.agent.request.ContentDecodingException;
 import pt.pchouse.printer.pdf.agent.request.PrintRequest;
+import pt.pchouse.printer.pdf.agent.response.AliveResponse;
+import pt.pchouse.printer.pdf.agent.response.BatchResponse;
+import pt.pchouse.printer.pdf.agent.response.JobListResponse;
+import pt.pchouse.printer.pdf.agent.response.JobResponse;
+import pt.pchouse.printer.pdf.agent.response.PrintersResponse;
 import pt.pchouse.printer.pdf.agent.response.Response;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 public class Controller
@@ -40,6 +59,35 @@ public class Controller
      */
     final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    /**
+     * The request header to send the after print operations with the binary pdf requests
+     *
+     * @since 1.1.0
+     */
+    public static final String AFTER_PRINT_OPERATIONS_HEADER = "X-After-Print-Operations";
+
+    /**
+     * The request header to send the printer id with the binary pdf requests
+     *
+     * @since 1.1.0
+     */
+    public static final String PRINTER_HEADER = "X-Printer";
+
+    /**
+     * The request header with the client key of the request, a retry with the same key gets the job of the first
+     * request and is not printed again
+     *
+     * @since 1.1.0
+     */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * The response header sent when the job is of a previous request
+     *
+     * @since 1.1.0
+     */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
     /**
      * @since 1.0.0
      */
@@ -47,10 +95,10 @@ public class Controller
     private String pomVersion;
 
     /**
-     * @since 1.0.0
+     * @since 1.1.0
      */
     @Autowired
-    private ApplicationContext appContext;
+    private Printer printer;
 
     /**
      * @since 1.0.0
@@ -59,205 +107,1017 @@ public class Controller
     private Executor executor;
 
     /**
-     * Handle to printer cut the paper
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintJobScheduler scheduler;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrinterRegistry printerRegistry;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintServiceCache printServiceCache;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private RenderCache renderCache;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private FontCache fontCache;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private ImageCache imageCache;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private ContentDecodingAdvice contentDecoding;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private JobEvents jobEvents;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintMetrics printMetrics;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintJournal printJournal;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private WarmUp warmUp;
+
+    /**
+     * The scrape registry, not created if the prometheus export is disabled
+     *
+     * @since 1.1.0
+     */
+    @Autowired(required = false)
+    private PrometheusMeterRegistry prometheusRegistry;
+
+    /**
+     * The maximum seconds a job long poll can wait
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.jobs.wait.max:60}")
+    private int jobsWaitMax;
+
+    /**
+     * The maximum seconds the cut, cash drawer and command requests wait for the job to finish,
+     * after it the job is responded as queued
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.command.wait:30}")
+    private int commandWait;
+
+    /**
+     * Handle to printer cut the paper.
+     * The response ready is false while the startup warm up runs.
      *
      * @return The response
      * @since 1.0.0
      */
-    @CrossOrigin(origins = "*")
+    @CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ACCEPT_ENCODING)
     @RequestMapping(value = "/isAlive", method = RequestMethod.GET)
     public CompletableFuture<ResponseEntity<Response>> isAlive() {
 
-        Response response = new Response();
-        response.setStatus(Response.Status.OK);
-        response.setMessage("Server OK");
-
-        return CompletableFuture.supplyAsync(() -> ResponseEntity.status(200).body(response), executor);
+        // answered in the request thread, there is nothing to wait for
+        return CompletableFuture.completedFuture(
+                ResponseEntity.status(200).body(new AliveResponse(warmUp.isReady()))
+        );
     }
 
 
     /**
      * Handle to printer cut the paper
      *
+     * @param printRequest   The print request
+     * @param idempotencyKey The client key of the request, can be null
+     * @param request        The http request
      * @return The response
      * @since 1.0.0
      */
-    @CrossOrigin(origins = "*")
+    @CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ACCEPT_ENCODING)
     @RequestMapping(value = "/print", method = RequestMethod.POST)
     @ResponseBody
-    public CompletableFuture<ResponseEntity<Response>> print(@RequestBody PrintRequest printRequest) {
+    public CompletableFuture<ResponseEntity<Response>> print(
+            @RequestBody PrintRequest printRequest,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
 
         logger.debug("New print request");
-
-        IAuth auth = appContext.getBean(IAuth.class);
-        auth.catchRemoteIP();
+        String                  client = request.getRemoteAddr();
+        AdmissionControl.Permit permit = permit(request);
 
         return CompletableFuture.supplyAsync(() -> {
 
-            Response response = appContext.getBean(Response.class);
+            Response response = new Response();
 
             try {
 
-                if (auth.isNotAuthorized()) {
-                    response.setStatus(Response.Status.ERROR);
-                    response.setMessage("Client not authorized");
-                    logger.debug("Client not authorized, respond with http status code 400");
-                    return ResponseEntity.status(400).body(response);
+                if (printRequest.getPdf() == null) {
+                    throw new IllegalArgumentException("The pdf was not sent");
                 }
 
-                Printer printer = appContext.getBean(Printer.class);
+                IdempotencyCache.Result result = queuePdf(
+                        printRequest.getPrinter(),
+                        printRequest.getPdf(),
+                        printRequest.getAfterPrintOperations(),
+                        idempotencyKey,
+                        client,
+                        permit
+                );
+                return queued(result);
+            } catch (Exception e) {
+                if (printRequest.getPdf() != null) {
+                    printRequest.getPdf().close();
+                }
+                logger.error(e.getMessage());
+                response.setStatus(Response.Status.ERROR);
+                response.setMessage(e.getMessage());
+                return notQueued(e).body(response);
+            }
+        }, executor);
+    }
 
-                printer.PrintBase64StringPdf(printRequest.getPdf());
 
-                if ((printRequest.getAfterPrintOperations() & PrintRequest.AFTER_PRINT_CUT_PAPER) != 0) {
-                    printer.cutPaper();
+    /**
+     * Print several documents in order. The documents of the same printer
+     * are queued in one print job and printed in the minimal spool jobs, the response has the result of
+     * each document. The job of each printer is journaled and checked for duplicates as a /print job,
+     * the idempotency key of the request is used for each printer.
+     *
+     * @param batchRequest   The documents
+     * @param idempotencyKey The client key of the request, can be null
+     * @param request        The http request
+     * @return The response
+     * @since 1.1.0
+     */
+    @CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ACCEPT_ENCODING)
+    @RequestMapping(value = "/print/batch", method = RequestMethod.POST)
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Response>> printBatch(
+            @RequestBody BatchPrintRequest batchRequest,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
+
+        logger.debug("New batch print request with {} documents", batchRequest.getDocuments().size());
+        String                  client = request.getRemoteAddr();
+        AdmissionControl.Permit permit = permit(request);
+
+        return CompletableFuture.supplyAsync(() -> {
+
+            List<PrintRequest> documents = batchRequest.getDocuments();
+
+            BatchResponse.DocumentResult[] results = new BatchResponse.DocumentResult[documents.size()];
+
+            // the documents of each printer, in the request order
+            Map<String, List<Integer>> printers = new LinkedHashMap<>();
+            for (int index = 0; index < documents.size(); index++) {
+                PrintRequest document = documents.get(index);
+                String printerId = queueId(
+                        document.getPrinter() == null ? batchRequest.getPrinter() : document.getPrinter()
+                );
+                if (document.getPdf() == null) {
+                    results[index] = new BatchResponse.DocumentResult(
+                            index, printerId, Response.Status.ERROR, "The pdf was not sent", null
+                    );
+                    continue;
                 }
+                printers.computeIfAbsent(printerId, id -> new ArrayList<>()).add(index);
+            }
 
-                if ((printRequest.getAfterPrintOperations() & PrintRequest.AFTER_PRINT_OPEN_CASH_DRAWER) != 0) {
-                    printer.cashDrawer();
+            List<PrintJob> jobs       = new ArrayList<>();
+            int            duplicates = 0;
+
+            for (Map.Entry<String, List<Integer>> entry : printers.entrySet()) {
+                String              printerId = entry.getKey();
+                List<PrintDocument> group     = new ArrayList<>(entry.getValue().size());
+                PrintJob            job       = null;
+                String              error     = "";
+                try {
+                    PrinterConfig config = printerRegistry.get(printerId);
+                    for (int index : entry.getValue()) {
+                        PrintRequest document = documents.get(index);
+                        group.add(new PrintDocument(
+                                document.getPdf(), postOperations(config, document.getAfterPrintOperations())
+                        ));
+                    }
+                    String key = idempotencyKey == null || idempotencyKey.isBlank()
+                            ? null
+                            : idempotencyKey + " " + printerId;
+                    IdempotencyCache.Result result = idempotencyCache.submit(
+                            key,
+                            client,
+                            () -> batchFingerprint(printerId, group),
+                            () -> {
+                                PrintJob printJob = scheduler.submit(
+                                        printerId,
+                                        queued -> printer.printDocuments(config, group, queued::newSpoolListener)
+                                );
+                                printJournal.accepted(printJob, group);
+                                printJob.getFuture().whenComplete(
+                                        (finished, throwable) -> group.forEach(document -> document.pdf().close())
+                                );
+                                if (permit != null) {
+                                    permit.holdUntilFinished(printJob);
+                                }
+                                return printJob;
+                            }
+                    );
+                    job = result.job();
+                    jobs.add(job);
+                    if (result.duplicate()) {
+                        duplicates++;
+                        group.forEach(document -> document.pdf().close());
+                    }
+                } catch (Exception e) {
+                    logger.error(e.getMessage());
+                    error = e.getMessage();
+                    entry.getValue().forEach(index -> closePdf(documents.get(index).getPdf()));
                 }
 
-                response.setStatus(Response.Status.OK);
+                for (int index : entry.getValue()) {
+                    results[index] = new BatchResponse.DocumentResult(
+                            index,
+                            printerId,
+                            job == null ? Response.Status.ERROR : Response.Status.OK,
+                            error,
+                            job == null ? null : job.getId()
+                    );
+                }
+            }
 
-                return ResponseEntity.status(200).body(response);
+            BatchResponse batchResponse = new BatchResponse();
+            batchResponse.setStatus(jobs.isEmpty() ? Response.Status.ERROR : Response.Status.OK);
+            batchResponse.setMessage(String.format("%d print jobs queued", jobs.size()));
+            batchResponse.setJobs(jobs);
+            batchResponse.setDocuments(List.of(results));
+
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(jobs.isEmpty() ? 400 : 202);
+            if (!jobs.isEmpty() && duplicates == jobs.size()) {
+                builder.header(REPLAYED_HEADER, "true");
+            }
+            return builder.body(batchResponse);
+        }, executor);
+    }
+
+    /**
+     * The fingerprint of the batch job of a printer, the after print operations and the pdf hash of each document
+     *
+     * @param printerId The printer queue id
+     * @param group     The documents of the printer
+     * @return The fingerprint
+     * @throws IOException If fails to hash a pdf
+     * @since 1.1.0
+     */
+    private static String batchFingerprint(String printerId, List<PrintDocument> group) throws IOException {
+        StringBuilder fingerprint = new StringBuilder("batch ").append(printerId);
+        for (PrintDocument document : group) {
+            fingerprint.append(' ')
+                       .append(HexFormat.of().formatHex(document.postOperations()))
+                       .append(':')
+                       .append(document.pdf().sha256());
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Print the pdf sent as raw binary request body (Content-Type: application/pdf).
+     * The after print operations can be sent as query parameter or as the header X-After-Print-Operations
+     * and the printer as query parameter or as the header X-Printer
+     *
+     * @param pdf                        The pdf request body
+     * @param afterPrintOperations       The bitwise after print operations from the query string
+     * @param afterPrintOperationsHeader The bitwise after print operations from the header
+     * @param printer                    The printer id from the query string
+     * @param printerHeader              The printer id from the header
+     * @param idempotencyKey             The client key of the request, can be null
+     * @param request                    The http request
+     * @return The response
+     * @since 1.1.0
+     */
+    @CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ACCEPT_ENCODING)
+    @RequestMapping(value = "/print/pdf", method = RequestMethod.POST, consumes = MediaType.APPLICATION_PDF_VALUE)
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Response>> printPdf(
+            InputStream pdf,
+            @RequestParam(value = "afterPrintOperations", required = false) Integer afterPrintOperations,
+            @RequestHeader(value = AFTER_PRINT_OPERATIONS_HEADER, required = false) Integer afterPrintOperationsHeader,
+            @RequestParam(value = "printer", required = false) String printer,
+            @RequestHeader(value = PRINTER_HEADER, required = false) String printerHeader,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
+        logger.debug("New binary pdf print request");
+        return printBinaryPdf(
+                pdf,
+                request.getHeader(HttpHeaders.CONTENT_ENCODING),
+                afterPrintOperations,
+                afterPrintOperationsHeader,
+                printer != null ? printer : printerHeader,
+                idempotencyKey,
+                request.getRemoteAddr(),
+                permit(request)
+        );
+    }
+
+    /**
+     * Print the pdf sent as the multipart/form-data part "pdf".
+     * The after print operations can be sent as query parameter, form field or as the header X-After-Print-Operations
+     * and the printer as query parameter, form field or as the header X-Printer
+     *
+     * @param pdf                        The pdf file part
+     * @param afterPrintOperations       The bitwise after print operations from the query string or form field
+     * @param afterPrintOperationsHeader The bitwise after print operations from the header
+     * @param printer                    The printer id from the query string or form field
+     * @param printerHeader              The printer id from the header
+     * @param idempotencyKey             The client key of the request, can be null
+     * @param request                    The http request
+     * @return The response
+     * @since 1.1.0
+     */
+    @CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ACCEPT_ENCODING)
+    @RequestMapping(value = "/print/pdf", method = RequestMethod.POST, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Response>> printMultipartPdf(
+            @RequestParam("pdf") MultipartFile pdf,
+            @RequestParam(value = "afterPrintOperations", required = false) Integer afterPrintOperations,
+            @RequestHeader(value = AFTER_PRINT_OPERATIONS_HEADER, required = false) Integer afterPrintOperationsHeader,
+            @RequestParam(value = "printer", required = false) String printer,
+            @RequestHeader(value = PRINTER_HEADER, required = false) String printerHeader,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) throws IOException {
+        logger.debug("New multipart pdf print request");
+        return printBinaryPdf(
+                pdf.getInputStream(),
+                null,
+                afterPrintOperations,
+                afterPrintOperationsHeader,
+                printer != null ? printer : printerHeader,
+                idempotencyKey,
+                request.getRemoteAddr(),
+                permit(request)
+        );
+    }
+
+    /**
+     * Print a binary pdf stream. The stream is read in the request thread, because the servlet input stream can not be read
+     * after the request thread is released. The gzip and deflate content codings are inflated while read.
+     *
+     * @param pdf                        The pdf stream
+     * @param encoding                   The Content-Encoding of the stream, null if not encoded
+     * @param afterPrintOperations       The bitwise after print operations from the query string
+     * @param afterPrintOperationsHeader The bitwise after print operations from the header
+     * @param printer                    The printer id, null for the default printer
+     * @param idempotencyKey             The client key of the request, can be null
+     * @param client                     The client address
+     * @param permit                     The admission permit of the request, can be null
+     * @return The response
+     * @since 1.1.0
+     */
+    private CompletableFuture<ResponseEntity<Response>> printBinaryPdf(
+            InputStream pdf,
+            String encoding,
+            Integer afterPrintOperations,
+            Integer afterPrintOperationsHeader,
+            String printer,
+            String idempotencyKey,
+            String client,
+            AdmissionControl.Permit permit
+    ) {
+        Response response = new Response();
+
+        int operations = afterPrintOperations != null
+                ? afterPrintOperations
+                : (afterPrintOperationsHeader != null ? afterPrintOperationsHeader : 0);
+
+        PdfSource source;
+        long      start = System.nanoTime();
+        try (pdf; InputStream decoded = contentDecoding.decode(encoding, pdf, permit)) {
+            source = PdfSource.read(decoded);
+            printMetrics.decoded("/print/pdf", start, source.size());
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+            response.setStatus(Response.Status.ERROR);
+            response.setMessage(e.getMessage());
+            AdmissionException admission = ErrorHandler.cause(e, AdmissionException.class);
+            if (admission != null) {
+                return CompletableFuture.completedFuture(
+                        ResponseEntity.status(429)
+                                      .header(HttpHeaders.RETRY_AFTER, Long.toString(admission.getRetryAfter()))
+                                      .body(response)
+                );
+            }
+            int status = e instanceof ContentDecodingException decoding ? decoding.getStatus().value() : 400;
+            return CompletableFuture.completedFuture(ResponseEntity.status(status).body(response));
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return queued(queuePdf(printer, source, operations, idempotencyKey, client, permit));
             } catch (Exception e) {
+                source.close();
                 logger.error(e.getMessage());
                 response.setStatus(Response.Status.ERROR);
                 response.setMessage(e.getMessage());
-                return ResponseEntity.status(400).body(response);
+                return notQueued(e).body(response);
             }
         }, executor);
     }
 
-
     /**
      * Handle to printer cut the paper
      *
+     * @param printerId      The printer id, the default printer if not defined
+     * @param idempotencyKey The client key of the request, can be null
+     * @param request        The http request
      * @return The response
      * @since 1.0.0
      */
     @CrossOrigin(origins = "*")
     @RequestMapping(value = "/cut", method = RequestMethod.GET)
     @ResponseBody
-    public CompletableFuture<ResponseEntity<Response>> cutPaper() {
+    public CompletableFuture<ResponseEntity<Response>> cutPaper(
+            @RequestParam(value = "printer", required = false) String printerId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
 
         logger.debug("New cut paper request");
-
-        IAuth auth = appContext.getBean(IAuth.class);
-        auth.catchRemoteIP();
+        String client = request.getRemoteAddr();
 
         return CompletableFuture.supplyAsync(() -> {
-
-            Response response = appContext.getBean(Response.class);
-
             try {
-
-                if (auth.isNotAuthorized()) {
-                    response.setStatus(Response.Status.ERROR);
-                    response.setMessage("Client not authorized");
-                    logger.debug("Client not authorized, respond with http status code 400");
-                    return ResponseEntity.status(400).body(response);
-                }
-
-                appContext.getBean(Printer.class).cutPaper();
-
-                response.setStatus(Response.Status.OK);
-
-                return ResponseEntity.status(200).body(response);
+                PrinterConfig config = printerRegistry.get(printerId);
+                return printInQueue(
+                        printerId, "cut", idempotencyKey, client,
+                        job -> printer.cutPaper(config, job.newSpoolListener())
+                );
             } catch (Exception e) {
-                logger.error(e.getMessage());
-                response.setStatus(Response.Status.ERROR);
-                response.setMessage(e.getMessage());
-                return ResponseEntity.status(400).body(response);
+                return CompletableFuture.completedFuture(commandError(e));
             }
-        }, executor);
+        }, executor).thenCompose(response -> response);
     }
 
     /**
      * Handler to printer cut paper and open cash drawer
      *
+     * @param printerId      The printer id, the default printer if not defined
+     * @param idempotencyKey The client key of the request, can be null
+     * @param request        The http request
      * @return The response
      * @since 1.0.0
      */
     @CrossOrigin(origins = "*")
     @RequestMapping(value = "/cutandopen", method = RequestMethod.GET)
     @ResponseBody
-    public CompletableFuture<ResponseEntity<Response>> cutPaperAndOpenCashDrawer() {
+    public CompletableFuture<ResponseEntity<Response>> cutPaperAndOpenCashDrawer(
+            @RequestParam(value = "printer", required = false) String printerId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
 
         logger.debug("New cut paper and open cash drawer request");
-
-        IAuth auth = appContext.getBean(IAuth.class);
-        auth.catchRemoteIP();
+        String client = request.getRemoteAddr();
 
         return CompletableFuture.supplyAsync(() -> {
+            try {
+                PrinterConfig config = printerRegistry.get(printerId);
+                return printInQueue(
+                        printerId, "cutandopen", idempotencyKey, client,
+                        job -> printer.cutAndCashDrawer(config, job.newSpoolListener())
+                );
+            } catch (Exception e) {
+                return CompletableFuture.completedFuture(commandError(e));
+            }
+        }, executor).thenCompose(response -> response);
+    }
 
-            Response response = appContext.getBean(Response.class);
+    /**
+     * Handle to printer open cash drawer
+     *
+     * @param printerId      The printer id, the default printer if not defined
+     * @param idempotencyKey The client key of the request, can be null
+     * @param request        The http request
+     * @return The response
+     * @since 1.0.0
+     */
+    @CrossOrigin(origins = "*")
+    @RequestMapping(value = "/cashdrawer", method = RequestMethod.GET)
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Response>> openCashDrawerPaper(
+            @RequestParam(value = "printer", required = false) String printerId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
 
+        logger.debug("New open cash drawer request");
+        String client = request.getRemoteAddr();
+
+        return CompletableFuture.supplyAsync(() -> {
             try {
+                PrinterConfig config = printerRegistry.get(printerId);
+                return printInQueue(
+                        printerId, "cashdrawer", idempotencyKey, client,
+                        job -> printer.cashDrawer(config, job.newSpoolListener())
+                );
+            } catch (Exception e) {
+                return CompletableFuture.completedFuture(commandError(e));
+            }
+        }, executor).thenCompose(response -> response);
+    }
 
-                if (auth.isNotAuthorized()) {
-                    response.setStatus(Response.Status.ERROR);
-                    response.setMessage("Client not authorized");
-                    logger.debug("Client not authorized, respond with http status code 400");
-                    return ResponseEntity.status(400).body(response);
-                }
+    /**
+     * Send a named ESC/POS command, built-in or defined in the printer properties, to the printer
+     *
+     * @param name           The command name
+     * @param printerId      The printer id, the default printer if not defined
+     * @param idempotencyKey The client key of the request, can be null
+     * @param request        The http request
+     * @return The response
+     * @since 1.1.0
+     */
+    @CrossOrigin(origins = "*")
+    @RequestMapping(value = "/command/{name}", method = RequestMethod.GET)
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Response>> sendCommand(
+            @PathVariable("name") String name,
+            @RequestParam(value = "printer", required = false) String printerId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
 
-                appContext.getBean(Printer.class).cutAndCashDrawer();
+        logger.debug("New ESC/POS command '{}' request", name);
+        String client = request.getRemoteAddr();
 
-                response.setStatus(Response.Status.OK);
-                return ResponseEntity.status(200).body(response);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                PrinterConfig config = printerRegistry.get(printerId);
+                config.getCommands().require(name);
+                return printInQueue(
+                        printerId, "command " + name, idempotencyKey, client,
+                        job -> printer.printCommand(config, name, job.newSpoolListener())
+                );
             } catch (Exception e) {
-                logger.error(e.getMessage());
-                response.setStatus(Response.Status.ERROR);
-                response.setMessage(e.getMessage());
-                return ResponseEntity.status(400).body(response);
+                return CompletableFuture.completedFuture(commandError(e));
             }
-        }, executor);
+        }, executor).thenCompose(response -> response);
     }
 
     /**
-     * Handle to printer open cash drawer
+     * List the configured printers with the print services discovery and the render cache state
      *
      * @return The response
-     * @since 1.0.0
+     * @since 1.1.0
      */
     @CrossOrigin(origins = "*")
-    @RequestMapping(value = "/cashdrawer", method = RequestMethod.GET)
+    @RequestMapping(value = "/printers", method = RequestMethod.GET)
     @ResponseBody
-    public CompletableFuture<ResponseEntity<Response>> openCashDrawerPaper() {
+    public CompletableFuture<ResponseEntity<Response>> getPrinters() {
 
-        logger.debug("New open cash drawer request");
+        logger.debug("List printers");
 
-        IAuth auth = appContext.getBean(IAuth.class);
-        auth.catchRemoteIP();
+        return CompletableFuture.supplyAsync(() -> {
+
+            PrintersResponse printersResponse = new PrintersResponse();
+            printersResponse.setStatus(Response.Status.OK);
+            printersResponse.setPrinters(printerRegistry.getAll().stream()
+                    .map(config -> new PrintersResponse.PrinterStatus(
+                            queueId(config.getId()),
+                            config.getName(),
+                            printServiceCache.isDiscovered(config.getName())
+                    ))
+                    .toList());
+            printersResponse.setDiscovery(printServiceCache.getState());
+            printersResponse.setRenderCache(renderCache.getState());
+            printersResponse.setFontCache(fontCache.getState());
+            printersResponse.setImageCache(imageCache.getState());
+            return ResponseEntity.status(200).body(printersResponse);
+        }, executor);
+    }
+
+    /**
+     * List the queued, printing and recently finished print jobs
+     *
+     * @return The response
+     * @since 1.1.0
+     */
+    @CrossOrigin(origins = "*")
+    @RequestMapping(value = "/jobs", method = RequestMethod.GET)
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Response>> getJobs() {
+
+        logger.debug("List jobs");
 
         return CompletableFuture.supplyAsync(() -> {
 
-            Response response = appContext.getBean(Response.class);
+            JobListResponse jobListResponse = new JobListResponse();
+            jobListResponse.setStatus(Response.Status.OK);
+            jobListResponse.setJobs(scheduler.getJobs());
+            return ResponseEntity.status(200).body(jobListResponse);
+        }, executor);
+    }
 
-            try {
+    /**
+     * Get a print job. With the wait parameter is a long poll, the response is sent
+     * when the job finishes or after the wait seconds
+     *
+     * @param id   The job id
+     * @param wait The maximum seconds to wait for the job to finish, limited to print.jobs.wait.max
+     * @return The response
+     * @since 1.1.0
+     */
+    @CrossOrigin(origins = "*")
+    @RequestMapping(value = "/jobs/{id}", method = RequestMethod.GET)
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Response>> getJob(
+            @PathVariable("id") String id,
+            @RequestParam(value = "wait", required = false, defaultValue = "0") int wait
+    ) {
 
-                if (auth.isNotAuthorized()) {
-                    response.setStatus(Response.Status.ERROR);
-                    response.setMessage("Client not authorized");
-                    logger.debug("Client not authorized, respond with http status code 400");
-                    return ResponseEntity.status(400).body(response);
-                }
+        logger.debug("Get job {}", id);
 
-                appContext.getBean(Printer.class).cashDrawer();
+        Response response = new Response();
 
-                response.setStatus(Response.Status.OK);
+        Optional<PrintJob> job = scheduler.getJob(id);
 
-                return ResponseEntity.status(200).body(response);
-            } catch (Exception e) {
-                logger.error(e.getMessage());
+        if (job.isEmpty()) {
+            response.setStatus(Response.Status.ERROR);
+            response.setMessage("Job not found");
+            return CompletableFuture.completedFuture(ResponseEntity.status(404).body(response));
+        }
+
+        // A copy of the job future, completeOnTimeout must not complete the job future
+        CompletableFuture<PrintJob> finished = job.get().getFuture().thenApply(printJob -> printJob);
+
+        if (wait > 0) {
+            finished.completeOnTimeout(job.get(), Math.min(wait, jobsWaitMax), TimeUnit.SECONDS);
+        } else {
+            finished.complete(job.get());
+        }
+
+        return finished.thenApply(printJob -> {
+            JobResponse jobResponse = new JobResponse();
+            jobResponse.setStatus(Response.Status.OK);
+            jobResponse.setJob(printJob);
+            return ResponseEntity.status(200).body(jobResponse);
+        });
+    }
+
+    /**
+     * Subscribe the status changes of all print jobs as Server-Sent Events,
+     * each event named "job" has the job as json data.
+     * On error one event named "error" is sent with the response and the stream is closed
+     *
+     * @return The event stream
+     * @since 1.1.0
+     */
+    @CrossOrigin(origins = "*")
+    @RequestMapping(value = "/jobs/events", method = RequestMethod.GET)
+    public ResponseEntity<SseEmitter> getJobsEvents() {
+
+        logger.debug("Subscribe jobs events");
+
+        return ResponseEntity.status(200).body(jobEvents.subscribe());
+    }
+
+    /**
+     * Subscribe the status changes of a print job as Server-Sent Events,
+     * each event named "job" has the job as json data. The current status is sent
+     * when subscribed and the stream is closed when the job finishes
+     *
+     * @param id The job id
+     * @return The event stream
+     * @since 1.1.0
+     */
+    @CrossOrigin(origins = "*")
+    @RequestMapping(value = "/jobs/{id}/events", method = RequestMethod.GET)
+    public ResponseEntity<SseEmitter> getJobEvents(@PathVariable("id") String id) {
+
+        logger.debug("Subscribe job {} events", id);
+
+        Response response = new Response();
+
+        Optional<PrintJob> job = scheduler.getJob(id);
+
+        if (job.isEmpty()) {
+            response.setStatus(Response.Status.ERROR);
+            response.setMessage("Job not found");
+            return ResponseEntity.status(404).body(errorEvent(response));
+        }
+
+        return ResponseEntity.status(200).body(jobEvents.subscribe(job.get()));
+    }
+
+    /**
+     * An event stream with only one event named "error" with the response as json data
+     *
+     * @param response The error response
+     * @return The event stream
+     * @since 1.1.0
+     */
+    private SseEmitter errorEvent(Response response) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEmitter.event().name("error").data(response, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Cancel a queued print job, a job that is already printing can not be cancelled
+     *
+     * @param id The job id
+     * @return The response
+     * @since 1.1.0
+     */
+    @CrossOrigin(origins = "*")
+    @RequestMapping(value = "/jobs/{id}", method = RequestMethod.DELETE)
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Response>> cancelJob(@PathVariable("id") String id) {
+
+        logger.debug("Cancel job {}", id);
+
+        return CompletableFuture.supplyAsync(() -> {
+
+            Response response = new Response();
+
+            Optional<PrintJob> job = scheduler.getJob(id);
+
+            if (job.isEmpty()) {
                 response.setStatus(Response.Status.ERROR);
-                response.setMessage(e.getMessage());
-                return ResponseEntity.status(400).body(response);
+                response.setMessage("Job not found");
+                return ResponseEntity.status(404).body(response);
+            }
+
+            JobResponse jobResponse = new JobResponse();
+            jobResponse.setJob(job.get());
+
+            if (!scheduler.cancel(id)) {
+                jobResponse.setStatus(Response.Status.ERROR);
+                jobResponse.setMessage("Job is not queued, can not be cancelled");
+                return ResponseEntity.status(409).body(jobResponse);
             }
+
+            jobResponse.setStatus(Response.Status.OK);
+            jobResponse.setMessage("Job cancelled");
+            return ResponseEntity.status(200).body(jobResponse);
         }, executor);
     }
 
+    /**
+     * Queue the pdf print and the after print operations as one job in the printer queue,
+     * the after print operations are sent in the raw job of the pdf in the ESC/POS render mode
+     * and in one raw print after the pdf job in the other modes.
+     * The job is written to the print journal before the response, the pdf source is closed
+     * when the job finishes, or at once if the request is a duplicate.
+     *
+     * @param printerId            The printer id, null for the default printer
+     * @param pdf                  The pdf
+     * @param afterPrintOperations The bitwise after print operations
+     * @param idempotencyKey       The client key of the request, can be null
+     * @param client               The client address
+     * @param permit               The admission permit of the request, held until the job finishes, can be null
+     * @return The queued job, or the job of the previous request if a duplicate
+     * @throws PrinterException If the printer is not configured or the key was used by other request
+     * @throws IOException      If fails to hash the pdf
+     * @since 1.1.0
+     */
+    private IdempotencyCache.Result queuePdf(
+            String printerId,
+            PdfSource pdf,
+            int afterPrintOperations,
+            String idempotencyKey,
+            String client,
+            AdmissionControl.Permit permit
+    ) throws PrinterException, IOException
+    {
+        PrinterConfig config         = printerRegistry.get(printerId);
+        byte[]        postOperations = postOperations(config, afterPrintOperations);
+        String        queueId        = queueId(printerId);
+
+        IdempotencyCache.Result result = idempotencyCache.submit(
+                idempotencyKey,
+                client,
+                () -> "print " + queueId + " " + afterPrintOperations + " " + pdf.sha256(),
+                () -> {
+                    PrintJob job = scheduler.submit(
+                            queueId,
+                            printJob -> printer.printPdf(config, pdf, postOperations, printJob::newSpoolListener)
+                    );
+                    printJournal.accepted(job, postOperations, pdf);
+                    job.getFuture().whenComplete((printJob, throwable) -> pdf.close());
+                    if (permit != null) {
+                        permit.holdUntilFinished(job);
+                    }
+                    return job;
+                }
+        );
+
+        if (result.duplicate()) {
+            pdf.close();
+        }
+        return result;
+    }
+
+    /**
+     * The response of a queued print job
+     *
+     * @param result The job
+     * @return The response, 202 with the job
+     * @since 1.1.0
+     */
+    private ResponseEntity<Response> queued(IdempotencyCache.Result result) {
+        JobResponse jobResponse = new JobResponse();
+        jobResponse.setStatus(Response.Status.OK);
+        jobResponse.setMessage(result.duplicate() ? "Print job already queued" : "Print job queued");
+        jobResponse.setJob(result.job());
+        return status(202, result).body(jobResponse);
+    }
+
+    /**
+     * The response builder, with the Idempotent-Replayed header if the job is of a previous request
+     *
+     * @param status The http status
+     * @param result The request job
+     * @return The response builder
+     * @since 1.1.0
+     */
+    private ResponseEntity.BodyBuilder status(int status, IdempotencyCache.Result result) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status);
+        if (result.duplicate()) {
+            builder.header(REPLAYED_HEADER, "true");
+        }
+        return builder;
+    }
+
+    /**
+     * The response builder of a print not queued, 429 with Retry-After if the printer queue is full
+     *
+     * @param e The error
+     * @return The response builder
+     * @since 1.1.0
+     */
+    private ResponseEntity.BodyBuilder notQueued(Exception e) {
+        if (e instanceof RejectedExecutionException) {
+            return ResponseEntity.status(429).header(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return ResponseEntity.status(400);
+    }
+
+    /**
+     * @param request The http request
+     * @return The admission permit of the request, null if not admitted by the {@link AdmissionInterceptor}
+     * @since 1.1.0
+     */
+    private AdmissionControl.Permit permit(HttpServletRequest request) {
+        return (AdmissionControl.Permit) request.getAttribute(AdmissionControl.PERMIT_ATTRIBUTE);
+    }
+
+    /**
+     * The ESC/POS bytes of the after print operations
+     *
+     * @param config               The printer configuration
+     * @param afterPrintOperations The bitwise after print operations
+     * @return The bytes, empty if no operations
+     * @since 1.1.0
+     */
+    private byte[] postOperations(PrinterConfig config, int afterPrintOperations) {
+        ByteArrayOutputStream postOperations = new ByteArrayOutputStream();
+        if ((afterPrintOperations & PrintRequest.AFTER_PRINT_CUT_PAPER) != 0) {
+            config.getCommands().get(EscPosCommands.CUT).writeTo(postOperations);
+        }
+        if ((afterPrintOperations & PrintRequest.AFTER_PRINT_OPEN_CASH_DRAWER) != 0) {
+            config.getCommands().get(EscPosCommands.CASH_DRAWER).writeTo(postOperations);
+        }
+        return postOperations.toByteArray();
+    }
+
+    /**
+     * Close the pdf if sent
+     *
+     * @param pdf The pdf, can be null
+     * @since 1.1.0
+     */
+    private void closePdf(PdfSource pdf) {
+        if (pdf != null) {
+            pdf.close();
+        }
+    }
+
+    /**
+     * Run the task in the printer queue, so it never runs concurrently with other jobs of the same printer.
+     * A duplicate request follows the job of the previous one. The response is completed when the job finishes,
+     * or after print.command.wait seconds with the job not finished, no thread waits for it.
+     *
+     * @param printerId      The printer id, null for the default printer
+     * @param operation      The operation, to identify the request without key
+     * @param idempotencyKey The client key of the request, can be null
+     * @param client         The client address
+     * @param task           The task
+     * @return The response, 200 if printed, 202 with the job if not finished after the wait, 400 if the job failed
+     * @throws PrinterException If the key was used by other request
+     * @throws IOException      Not thrown, there is no pdf to hash
+     * @since 1.1.0
+     */
+    private CompletableFuture<ResponseEntity<Response>> printInQueue(
+            String printerId,
+            String operation,
+            String idempotencyKey,
+            String client,
+            PrintTask task
+    ) throws PrinterException, IOException
+    {
+        String queueId = queueId(printerId);
+        IdempotencyCache.Result result = idempotencyCache.submit(
+                idempotencyKey, client, () -> operation + " " + queueId, () -> scheduler.submit(queueId, task)
+        );
+
+        // A copy of the job future, completeOnTimeout must not complete the job future
+        return result.job().getFuture()
+                     .thenApply(printJob -> printJob)
+                     .completeOnTimeout(null, commandWait, TimeUnit.SECONDS)
+                     .thenApply(printJob -> {
+                         if (printJob == null) {
+                             // still printing after print.command.wait, the client follows the job as a queued print
+                             logger.debug("Job {} not finished after {} seconds", result.job().getId(), commandWait);
+                             return queued(result);
+                         }
+                         if (printJob.getStatus() != PrintJob.Status.COMPLETED) {
+                             return commandError(new PrinterException(printJob.getMessage()));
+                         }
+                         Response response = new Response();
+                         response.setStatus(Response.Status.OK);
+                         return status(200, result).body(response);
+                     });
+    }
+
+    /**
+     * The response of a command not printed
+     *
+     * @param e The error
+     * @return The response
+     * @since 1.1.0
+     */
+    private ResponseEntity<Response> commandError(Exception e) {
+        logger.error(e.getMessage());
+        Response response = new Response();
+        response.setStatus(Response.Status.ERROR);
+        response.setMessage(e.getMessage());
+        return ResponseEntity.status(400).body(response);
+    }
+
+    /**
+     * The printer queue id of the requested printer
+     *
+     * @param printerId The printer id, null or empty for the default printer
+     * @return The queue id
+     * @since 1.1.0
+     */
+    private String queueId(String printerId) {
+        return printerId == null || printerId.isBlank() ? PrinterConfig.DEFAULT_ID : printerId;
+    }
+
     /**
      * Get version
      *
@@ -271,22 +1131,12 @@ public class Controller
 
         logger.debug("Get version");
 
-        IAuth auth = appContext.getBean(IAuth.class);
-        auth.catchRemoteIP();
-
         return CompletableFuture.supplyAsync(() -> {
 
-            Response response = appContext.getBean(Response.class);
+            Response response = new Response();
 
             try {
 
-                if (auth.isNotAuthorized()) {
-                    response.setStatus(Response.Status.ERROR);
-                    response.setMessage("Client not authorized");
-                    logger.debug("Client not authorized, respond with http status code 400");
-                    return ResponseEntity.status(400).body(response);
-                }
-
                 response.setMessage(pomVersion);
                 response.setStatus(Response.Status.OK);
                 return ResponseEntity.status(200).body(response);
@@ -299,6 +1149,26 @@ public class Controller
         }, executor);
     }
 
+    /**
+     * The metrics in the prometheus text format, or in the OpenMetrics format if accepted
+     *
+     * @param accept The accepted formats
+     * @return The metrics or 404 if the prometheus export is disabled
+     * @since 1.1.0
+     */
+    @RequestMapping(value = "/metrics", method = RequestMethod.GET)
+    public ResponseEntity<?> getMetrics(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (prometheusRegistry == null) {
+            return ResponseEntity.status(404).body(
+                    new Response(Response.Status.ERROR, "The metrics export is disabled")
+            );
+        }
+        String contentType = TextFormat.chooseContentType(accept);
+        return ResponseEntity.status(200)
+                .header(HttpHeaders.CONTENT_TYPE, contentType)
+                .body(prometheusRegistry.scrape(contentType));
+    }
+
     /**
      * Catch all non-existent action path
      *
@@ -309,7 +1179,7 @@ public class Controller
     public CompletableFuture<ResponseEntity<Response>> catchAllNotFound() {
         return CompletableFuture.supplyAsync(() -> {
             logger.debug("Catch capture a request for a method that not exist");
-            Response reportResponse = appContext.getBean(Response.class);
+            Response reportResponse = new Response();
             reportResponse.setStatus(Response.Status.ERROR);
             reportResponse.setMessage("Action not found");
             return ResponseEntity.status(404).body(reportResponse);
@@ -17,7 +17,7 @@
 package pt.pchouse.printer.pdf.agent;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -27,8 +27,13 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import pt.pchouse.printer.pdf.agent.printer.AdmissionControl;
+import pt.pchouse.printer.pdf.agent.printer.AdmissionException;
+import pt.pchouse.printer.pdf.agent.request.ContentDecodingException;
 import pt.pchouse.printer.pdf.agent.response.Response;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * @since 1.0.0
  */
@@ -37,10 +42,25 @@ public class ErrorHandler
 {
 
     /**
-     * @since 1.0.0
+     * @since 1.1.0
      */
     @Autowired
-    private ApplicationContext appContext;
+    private AdmissionControl admissionControl;
+
+    /**
+     * The request was admitted but the task executor is full, the client should retry
+     *
+     * @param ex The executor rejection
+     * @return The Too Many Requests response with the Retry-After header
+     * @since 1.1.0
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Response> handleRejected(RejectedExecutionException ex) {
+        AdmissionException rejection = admissionControl.executorRejection();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                             .header(HttpHeaders.RETRY_AFTER, Long.toString(rejection.getRetryAfter()))
+                             .body(new Response(Response.Status.ERROR, rejection.getMessage()));
+    }
 
     /**
      * @param ex       The not handled exception
@@ -52,9 +72,24 @@ public class ErrorHandler
      */
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Response> handle(Exception ex, HttpServletRequest request, HttpServletResponse response) {
-        Response reportResponse = appContext.getBean(Response.class);
+        Response reportResponse = new Response();
         reportResponse.setStatus(Response.Status.ERROR);
 
+        AdmissionException admission = cause(ex, AdmissionException.class);
+        if (admission != null) {
+            reportResponse.setMessage(admission.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                 .header(HttpHeaders.RETRY_AFTER, Long.toString(admission.getRetryAfter()))
+                                 .body(reportResponse);
+        }
+
+        ContentDecodingException decoding = cause(ex, ContentDecodingException.class);
+        if (decoding != null) {
+            reportResponse.setMessage(decoding.getMessage());
+            // the Accept-Encoding header is set by the WebConfig interceptor
+            return ResponseEntity.status(decoding.getStatus()).body(reportResponse);
+        }
+
         if (ex instanceof HttpMessageNotReadableException) {
             reportResponse.setMessage("Request body error. Possible empty or json wrong format.");
         } else if (ex instanceof HttpMediaTypeNotSupportedException) {
@@ -66,4 +101,23 @@ public class ErrorHandler
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(reportResponse);
     }
 
+    /**
+     * The request body decode or admission failure that caused the exception, the Jackson and Spring
+     * exceptions of the body read wrap it
+     *
+     * @param ex   The exception
+     * @param type The failure type
+     * @param <T>  The failure type
+     * @return The failure, null if not caused by it
+     * @since 1.1.0
+     */
+    static <T extends Exception> T cause(Throwable ex, Class<T> type) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+        }
+        return null;
+    }
+
 }
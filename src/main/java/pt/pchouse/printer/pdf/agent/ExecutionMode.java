@@ -0,0 +1,157 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The threads that run the requests handling and the blocking print I/O.
+ * The virtual threads require Java 21, they are created by reflection so the API still builds and runs
+ * on Java 17 with the platform threads.
+ *
+ * @since 1.1.0
+ */
+public enum ExecutionMode
+{
+    /**
+     * The bounded task executor pool and the Tomcat thread pool
+     *
+     * @since 1.1.0
+     */
+    PLATFORM,
+
+    /**
+     * One virtual thread for each request and task, the printer workers are virtual threads
+     *
+     * @since 1.1.0
+     */
+    VIRTUAL;
+
+    /**
+     * Parse the execution mode from the configuration, case-insensitive
+     *
+     * @param mode The mode, null or empty for PLATFORM
+     * @return The execution mode
+     * @throws IllegalArgumentException If not a mode
+     * @since 1.1.0
+     */
+    public static ExecutionMode parse(String mode) {
+        if (mode == null || mode.isBlank()) {
+            return PLATFORM;
+        }
+        return valueOf(mode.trim().toUpperCase());
+    }
+
+    /**
+     * If the running Java has virtual threads
+     *
+     * @return True if supported
+     * @since 1.1.0
+     */
+    public static boolean isVirtualSupported() {
+        try {
+            virtualBuilder("PrinterAgent-check-", 0);
+            return true;
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Create the factory of the threads of a long-running worker, the platform threads are daemon
+     *
+     * @param name The thread name
+     * @return The thread factory
+     * @since 1.1.0
+     */
+    public ThreadFactory newThreadFactory(String name) {
+        if (this == PLATFORM) {
+            return runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        return virtualFactory(name, -1);
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task
+     *
+     * @param prefix The threads name prefix, followed by a counter
+     * @return The executor
+     * @throws IllegalStateException If the running Java has no virtual threads
+     * @since 1.1.0
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String prefix) {
+        ThreadFactory factory = virtualFactory(prefix, 0);
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param name  The thread name, or prefix if start is not negative
+     * @param start The counter start, negative for no counter
+     * @return The virtual thread factory
+     * @throws IllegalStateException If the running Java has no virtual threads
+     * @since 1.1.0
+     */
+    private static ThreadFactory virtualFactory(String name, long start) {
+        try {
+            Object builder = virtualBuilder(name, start);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            throw new IllegalStateException(String.format(
+                    "The virtual threads require Java 21, running %s", Runtime.version()
+            ), e);
+        }
+    }
+
+    /**
+     * Thread.ofVirtual().name(name) or Thread.ofVirtual().name(prefix, start)
+     *
+     * @param name  The thread name, or prefix if start is not negative
+     * @param start The counter start, negative for no counter
+     * @return The Thread.Builder.OfVirtual
+     * @throws ReflectiveOperationException If the running Java has no virtual threads
+     * @since 1.1.0
+     */
+    private static Object virtualBuilder(String name, long start) throws ReflectiveOperationException {
+        try {
+            Object   builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> type    = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            return start < 0
+                    ? type.getMethod("name", String.class).invoke(builder, name)
+                    : type.getMethod("name", String.class, long.class).invoke(builder, name, start);
+        } catch (InvocationTargetException e) {
+            // the preview virtual threads of Java 19 and 20 throw when the preview is not enabled
+            if (e.getCause() instanceof UnsupportedOperationException unsupported) {
+                throw unsupported;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pt.pchouse.printer.pdf.agent.printer.JobStatusListener;
+import pt.pchouse.printer.pdf.agent.printer.PrintJob;
+import pt.pchouse.printer.pdf.agent.printer.PrintJobScheduler;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Push the print jobs status changes to the browsers as Server-Sent Events.
+ * The events are sent by one dedicated thread, so the printer workers never wait for
+ * slow clients and each client receives the status changes in order.
+ *
+ * @since 1.1.0
+ */
+@Component
+public class JobEvents implements JobStatusListener
+{
+
+    /**
+     * The event name of a job status change
+     *
+     * @since 1.1.0
+     */
+    public static final String EVENT_NAME = "job";
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The Server-Sent Events connection timeout in milliseconds, the browser EventSource reconnects after it
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.jobs.events.timeout:300000}")
+    private long timeout;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintJobScheduler scheduler;
+
+    /**
+     * The connected clients and the job id they follow, empty string to follow all jobs
+     *
+     * @since 1.1.0
+     */
+    private final Map<SseEmitter, String> emitters = new ConcurrentHashMap<>();
+
+    /**
+     * The thread that sends the events
+     *
+     * @since 1.1.0
+     */
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PrinterAgent-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void register() {
+        scheduler.addListener(this);
+    }
+
+    /**
+     * Subscribe the status changes of all jobs
+     *
+     * @return The emitter
+     * @since 1.1.0
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = newEmitter("");
+        logger.debug("New subscriber of all jobs events");
+        return emitter;
+    }
+
+    /**
+     * Subscribe the status changes of one job, the current status is sent immediately
+     * and the connection is closed when the job finishes
+     *
+     * @param job The job
+     * @return The emitter
+     * @since 1.1.0
+     */
+    public SseEmitter subscribe(PrintJob job) {
+        SseEmitter emitter = newEmitter(job.getId());
+        logger.debug("New subscriber of job {} events", job.getId());
+        PrintJob snapshot = job.snapshot();
+        sender.execute(() -> send(emitter, job.getId(), snapshot));
+        return emitter;
+    }
+
+    /**
+     * @since 1.1.0
+     */
+    @Override
+    public void onStatusChange(PrintJob job) {
+        if (emitters.isEmpty()) {
+            return;
+        }
+        PrintJob snapshot = job.snapshot();
+        sender.execute(() -> emitters.forEach((emitter, filter) -> send(emitter, filter, snapshot)));
+    }
+
+    /**
+     * Send the job to the client if it follows the job
+     *
+     * @param emitter The client
+     * @param filter  The job id the client follows, empty for all
+     * @param job     The job
+     * @since 1.1.0
+     */
+    private void send(SseEmitter emitter, String filter, PrintJob job) {
+        if (!filter.isEmpty() && !filter.equals(job.getId())) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).id(job.getId()).data(job, MediaType.APPLICATION_JSON));
+            if (!filter.isEmpty() && job.getStatus().isFinal()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Job events client disconnected: {}", e.getMessage());
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Create and register a client emitter
+     *
+     * @param filter The job id the client follows, empty for all
+     * @return The emitter
+     * @since 1.1.0
+     */
+    private SseEmitter newEmitter(String filter) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        emitters.put(emitter, filter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(throwable -> emitters.remove(emitter));
+        return emitter;
+    }
+
+    /**
+     * @since 1.1.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.removeListener(this);
+        sender.shutdown();
+        emitters.keySet().forEach(SseEmitter::complete);
+    }
+}
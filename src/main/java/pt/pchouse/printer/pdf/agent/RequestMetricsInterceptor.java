@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.actuate.metrics.http.Outcome;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Count the requests by endpoint and outcome in printer.agent.requests.
+ * Replaces the actuator http.server.requests observation, that allocates a context and a timer
+ * sample in each request, the counters are registered once and the count does not allocate.
+ * The asynchronous requests are counted when completed.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class RequestMetricsInterceptor implements HandlerInterceptor
+{
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String REQUESTS = "printer.agent.requests";
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private MeterRegistry registry;
+
+    /**
+     * The counters of each endpoint, indexed by the outcome ordinal
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, Counter[]> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterCompletion(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Object handler,
+            Exception ex
+    ) {
+        Object  pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String  uri     = pattern == null ? "UNKNOWN" : pattern.toString();
+        Outcome outcome = ex != null && response.getStatus() < 400
+                ? Outcome.SERVER_ERROR
+                : Outcome.forStatus(response.getStatus());
+
+        counters.computeIfAbsent(uri, this::register)[outcome.ordinal()].increment();
+    }
+
+    /**
+     * @param uri The endpoint uri pattern
+     * @return The counter of each outcome
+     * @since 1.1.0
+     */
+    private Counter[] register(String uri) {
+        Counter[] outcomes = new Counter[Outcome.values().length];
+        for (Outcome outcome : Outcome.values()) {
+            outcomes[outcome.ordinal()] = Counter.builder(REQUESTS)
+                    .description("The requests by endpoint and outcome")
+                    .tag("uri", uri)
+                    .tag("outcome", outcome.name())
+                    .register(registry);
+        }
+        return outcomes;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import pt.pchouse.printer.pdf.agent.auth.AuthInterceptor;
+
+/**
+ * The web configuration, all the requests are counted by the {@link RequestMetricsInterceptor},
+ * all but /isAlive are authorized by the {@link AuthInterceptor} and the print requests are
+ * admitted by the {@link AdmissionInterceptor}. The /isAlive and print responses advertise the request
+ * content codings by the {@link AcceptEncodingInterceptor}.
+ *
+ * @since 1.1.0
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer
+{
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private AuthInterceptor authInterceptor;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private RequestMetricsInterceptor requestMetricsInterceptor;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private AdmissionInterceptor admissionInterceptor;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private AcceptEncodingInterceptor acceptEncodingInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(requestMetricsInterceptor);
+        registry.addInterceptor(authInterceptor).addPathPatterns("/**").excludePathPatterns("/isAlive");
+        registry.addInterceptor(admissionInterceptor)
+                .addPathPatterns("/print", "/print/**", "/cut", "/cutandopen", "/cashdrawer", "/command/**");
+        registry.addInterceptor(acceptEncodingInterceptor).addPathPatterns("/isAlive", "/print", "/print/**");
+    }
+}
@@ -32,23 +32,23 @@ package pt.pchouse.printer.pdf.agent.auth;
  * limitations under the License.
  */
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
-import java.util.Arrays;
-import java.util.Objects;
-
 /**
+ * The authorization by the client remote IP, a singleton without request state
+ *
  * @since 1.0.0
  */
 @Component
-@Scope(value = BeanDefinition.SCOPE_PROTOTYPE)
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
 public class Auth implements IAuth
 {
 
@@ -58,19 +58,12 @@ public class Auth implements IAuth
     final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /**
-     * Remote Ip
-     *
-     * @since 1.0.0
-     */
-    private String remoteIp;
-
-    /**
-     * The allowed ip defined in application.properties
+     * The compiled allow list shared by all the requests
      *
-     * @since 1.0.0
+     * @since 1.1.0
      */
-    @Value("${client.allowIps}")
-    private String[] allowIps;
+    @Autowired
+    private ClientAllowList clientAllowList;
 
     /**
      * The authorization implementation
@@ -88,58 +81,40 @@ public class Auth implements IAuth
      * @since 1.0.0
      */
     public String[] getAllowIps() {
-        return allowIps;
+        return clientAllowList.getAllowIps();
     }
 
     /**
-     * Catch the remote IP from the web container
+     * Catch the remote IP from the web container, the remote IP is read from the current request
+     * when needed, nothing is kept
      *
      * @since 1.0.0
      */
     public void catchRemoteIP() {
-        if (remoteIp == null) {
-            remoteIp = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes())
-                    .getRequest()
-                    .getRemoteAddr();
-        }
-        logger.debug("Client remote IP {}", remoteIp);
+        logger.debug("Client remote IP {}", getRemoteIp());
     }
 
     /**
-     * Get the client ip address
+     * Get the client ip address of the current request
      *
      * @return The client remote IP
      * @since 1.0.0
      */
     public String getRemoteIp() {
-        return remoteIp;
+        return ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes())
+                .getRequest()
+                .getRemoteAddr();
     }
 
     /**
-     * Get if the remote ip is authorized to make requests or not
+     * Get if the remote ip is authorized to make requests or not, the ip is checked in the compiled
+     * allow list of addresses and networks
      *
      * @return Check if the client remote IP is allowed
      * @since 1.0.0
      */
     public boolean isRemoteIpAllowed() {
-
-        if (allowIps == null || allowIps.length == 0) {
-            return true;
-        }
-
-        String ip = getRemoteIp();
-
-        if (Arrays.asList(allowIps).contains(ip)) {
-            return true;
-        }
-
-        return Arrays.stream(allowIps).anyMatch(
-                s -> {
-                    boolean local   = s.equals("localhost") || s.equals("127.0.0.1") || s.equals("::1") || s.equals("0:0:0:0:0:0:0:1");
-                    boolean isLocal = ip.equals("127.0.0.1") || ip.equals("::1") || ip.equals("0:0:0:0:0:0:0:1");
-                    return local && isLocal;
-                }
-        );
+        return clientAllowList.isAllowed(getRemoteIp());
     }
 
     /**
@@ -154,18 +129,15 @@ public class Auth implements IAuth
         return !isRemoteIpAllowed();
     }
 
+    /**
+     * Return if the client request is allowed or not, only verify if the remote is in the allow list
+     *
+     * @param request The request
+     * @return Check if client is allowed
+     * @since 1.1.0
+     */
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Auth auth = (Auth) o;
-        return Objects.equals(remoteIp, auth.remoteIp) && Arrays.equals(allowIps, auth.allowIps);
-    }
-
-    @Override
-    public int hashCode() {
-        int result = Objects.hash(remoteIp);
-        result = 31 * result + Arrays.hashCode(allowIps);
-        return result;
+    public boolean isNotAuthorized(HttpServletRequest request) {
+        return !clientAllowList.isAllowed(request.getRemoteAddr());
     }
 }
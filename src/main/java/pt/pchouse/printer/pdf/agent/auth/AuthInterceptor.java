@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.auth;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+import pt.pchouse.printer.pdf.agent.response.Response;
+
+import java.io.IOException;
+
+/**
+ * Reject the requests of the not authorized clients before the request is dispatched,
+ * so the request body is never read. The rejection is the http status code 400 with the error response.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class AuthInterceptor implements HandlerInterceptor
+{
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private IAuth auth;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The not authorized response body, serialized once
+     *
+     * @since 1.1.0
+     */
+    private byte[] notAuthorized;
+
+    /**
+     * @throws JsonProcessingException If the response serialization fails
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void init() throws JsonProcessingException {
+        notAuthorized = objectMapper.writeValueAsBytes(
+                new Response(Response.Status.ERROR, "Client not authorized")
+        );
+    }
+
+    @Override
+    public boolean preHandle(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Object handler
+    ) throws IOException
+    {
+        if (CorsUtils.isPreFlightRequest(request) || !auth.isNotAuthorized(request)) {
+            return true;
+        }
+
+        logger.debug("Client {} not authorized, respond with http status code 400", request.getRemoteAddr());
+        response.setStatus(400);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(notAuthorized.length);
+        response.getOutputStream().write(notAuthorized);
+        return false;
+    }
+}
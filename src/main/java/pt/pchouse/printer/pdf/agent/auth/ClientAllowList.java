@@ -0,0 +1,223 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.auth;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The compiled client allow list shared by all the requests.
+ * The rules are the client.allowIps of the application.properties and, if client.allowIps.file is defined,
+ * the rules of that file, one or more by line separated by a comma, # starts a comment.
+ * The file is checked every client.allowIps.refresh milliseconds, when changed the list is compiled again
+ * and swapped, a file with invalid rules is logged and the previous list is kept.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class ClientAllowList
+{
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The allowed ip and networks defined in application.properties
+     *
+     * @since 1.1.0
+     */
+    @Value("${client.allowIps:}")
+    private String[] allowIps;
+
+    /**
+     * The file with more allowed ip and networks, empty for none
+     *
+     * @since 1.1.0
+     */
+    @Value("${client.allowIps.file:}")
+    private String file;
+
+    /**
+     * The milliseconds between the checks of the file changes
+     *
+     * @since 1.1.0
+     */
+    @Value("${client.allowIps.refresh:5000}")
+    private long refreshInterval;
+
+    /**
+     * The current list, replaced as a whole
+     *
+     * @since 1.1.0
+     */
+    private volatile IpAllowList allowList = IpAllowList.ALLOW_ALL;
+
+    /**
+     * The file last modified time when it was compiled
+     *
+     * @since 1.1.0
+     */
+    private volatile long fileModified = Long.MIN_VALUE;
+
+    /**
+     * The file watcher
+     *
+     * @since 1.1.0
+     */
+    private ScheduledExecutorService watcher;
+
+    /**
+     * Compile the list and start the file watcher
+     *
+     * @throws IllegalStateException If a rule is not valid
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void start() {
+        try {
+            reload();
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalStateException("The client allow list is not valid: " + e.getMessage(), e);
+        }
+
+        if (file.isBlank() || refreshInterval <= 0) {
+            return;
+        }
+
+        watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PrinterAgent-allowIps");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reloadIfChanged, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the file watcher
+     *
+     * @since 1.1.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the allowed ip and networks of the application.properties, without the ones of the file
+     *
+     * @return The allowed ip and networks
+     * @since 1.1.0
+     */
+    public String[] getAllowIps() {
+        return allowIps.clone();
+    }
+
+    /**
+     * Get the current allow list
+     *
+     * @return The allow list
+     * @since 1.1.0
+     */
+    public IpAllowList get() {
+        return allowList;
+    }
+
+    /**
+     * If the address is allowed by the current list
+     *
+     * @param address The client address
+     * @return True if allowed
+     * @since 1.1.0
+     */
+    public boolean isAllowed(String address) {
+        return allowList.isAllowed(address);
+    }
+
+    /**
+     * Compile the list again if the file changed, keep the previous if not valid
+     *
+     * @since 1.1.0
+     */
+    private void reloadIfChanged() {
+        long modified = Long.MIN_VALUE;
+        try {
+            Path path = Path.of(file);
+            modified = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : Long.MIN_VALUE;
+            if (modified != fileModified) {
+                reload();
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            // not reported again until the file changes
+            fileModified = modified;
+            logger.error("The client allow list file '{}' is not valid, keeping the previous: {}", file, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Error checking the client allow list file '{}'", file, e);
+        }
+    }
+
+    /**
+     * Compile the list from the property and the file and swap it
+     *
+     * @throws IOException              If the file read fails
+     * @throws IllegalArgumentException If a rule is not valid
+     * @since 1.1.0
+     */
+    private void reload() throws IOException {
+        List<String> rules    = new ArrayList<>(Arrays.asList(allowIps));
+        long         modified = Long.MIN_VALUE;
+        if (!file.isBlank()) {
+            Path path = Path.of(file);
+            if (Files.exists(path)) {
+                modified = Files.getLastModifiedTime(path).toMillis();
+                for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                    int comment = line.indexOf('#');
+                    rules.addAll(Arrays.asList((comment < 0 ? line : line.substring(0, comment)).split(",")));
+                }
+            } else {
+                logger.warn("The client allow list file '{}' does not exist", file);
+            }
+        }
+
+        IpAllowList compiled = IpAllowList.compile(rules);
+        allowList    = compiled;
+        fileModified = modified;
+        logger.info("Client allow list {} compiled to {} nodes", compiled, compiled.size());
+    }
+}
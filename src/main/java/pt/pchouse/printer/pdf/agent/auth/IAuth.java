@@ -33,15 +33,19 @@ package pt.pchouse.printer.pdf.agent.auth;
  * limitations under the License.
  */
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 /**
+ * The client authorization, shared by all the requests and checked by the {@link AuthInterceptor}
+ * before the request is dispatched
+ *
  * @since 1.0.0
  */
 @Component
-@Scope(value = BeanDefinition.SCOPE_PROTOTYPE)
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
 public interface IAuth
 {
 
@@ -53,6 +57,15 @@ public interface IAuth
      */
     boolean isNotAuthorized();
 
+    /**
+     * Get if the client of the request is authorized or not
+     *
+     * @param request The request
+     * @return If not authorized
+     * @since 1.1.0
+     */
+    boolean isNotAuthorized(HttpServletRequest request);
+
     /**
      * Catch the remote IP from the web container
      *
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.auth;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable allow list of IP addresses and networks, compiled to a binary prefix trie over the 128 bits
+ * of the address. The IPv4 addresses are normalized to IPv4-mapped IPv6 addresses (::ffff:a.b.c.d),
+ * so an IPv4 rule also matches the IPv4-mapped form of the address.
+ * The rules are an address (10.0.0.1, fe80::1), a network (10.20.0.0/16, 2001:db8::/32) or localhost,
+ * that matches the IPv4 loopback network 127.0.0.0/8 and the IPv6 loopback ::1.
+ * The loopback addresses 127.0.0.1 and ::1 are rules as any other address, that only match themselves.
+ * The lookup walks at most 128 nodes and does not allocate.
+ *
+ * @since 1.1.0
+ */
+public final class IpAllowList
+{
+
+    /**
+     * The address bits
+     *
+     * @since 1.1.0
+     */
+    private static final int BITS = 128;
+
+    /**
+     * The IPv4-mapped IPv6 prefix length, the IPv4 bits follow it
+     *
+     * @since 1.1.0
+     */
+    private static final int IPV4_MAPPED_PREFIX = 96;
+
+    /**
+     * The high bits of the lower half of an IPv4-mapped address, ::ffff:0:0
+     *
+     * @since 1.1.0
+     */
+    private static final long IPV4_MAPPED = 0xFFFF_0000_0000L;
+
+    /**
+     * The list without rules, that allows all the clients
+     *
+     * @since 1.1.0
+     */
+    public static final IpAllowList ALLOW_ALL = compile(List.of());
+
+    /**
+     * The child node of each node and bit, at node * 2 + bit, zero if none
+     *
+     * @since 1.1.0
+     */
+    private final int[] children;
+
+    /**
+     * If the network of the node is allowed
+     *
+     * @since 1.1.0
+     */
+    private final boolean[] allowed;
+
+    /**
+     * The rules the list was compiled from
+     *
+     * @since 1.1.0
+     */
+    private final List<String> rules;
+
+    /**
+     * @param children The children of each node
+     * @param allowed  If each node is allowed
+     * @param rules    The rules
+     * @since 1.1.0
+     */
+    private IpAllowList(int[] children, boolean[] allowed, List<String> rules) {
+        this.children = children;
+        this.allowed  = allowed;
+        this.rules    = rules;
+    }
+
+    /**
+     * Compile the rules, the empty rules are ignored and without rules all the clients are allowed
+     *
+     * @param rules The rules
+     * @return The allow list
+     * @throws IllegalArgumentException If a rule is not valid
+     * @since 1.1.0
+     */
+    public static IpAllowList compile(Collection<String> rules) {
+        List<String> valid = rules.stream().map(String::trim).filter(rule -> !rule.isEmpty()).toList();
+
+        int[]     children = new int[2 * (1 + valid.size() * 2 * BITS)];
+        boolean[] allowed  = new boolean[1 + valid.size() * 2 * BITS];
+        int       nodes    = 1;
+
+        if (valid.isEmpty()) {
+            allowed[0] = true;
+        }
+
+        for (String rule : valid) {
+            for (long[] network : parseRule(rule)) {
+                int node = 0;
+                for (int bit = 0; bit < network[2] && !allowed[node]; bit++) {
+                    int child = node * 2 + bit(network[0], network[1], bit);
+                    if (children[child] == 0) {
+                        children[child] = nodes++;
+                    }
+                    node = children[child];
+                }
+                allowed[node] = true;
+            }
+        }
+
+        return new IpAllowList(Arrays.copyOf(children, nodes * 2), Arrays.copyOf(allowed, nodes), valid);
+    }
+
+    /**
+     * Parse a rule to the networks as {high bits, low bits, prefix length}
+     *
+     * @param rule The rule
+     * @return The networks
+     * @throws IllegalArgumentException If not valid
+     * @since 1.1.0
+     */
+    private static long[][] parseRule(String rule) {
+        if (rule.equalsIgnoreCase("localhost")) {
+            return new long[][]{{0, IPV4_MAPPED | 0x7F00_0000L, IPV4_MAPPED_PREFIX + 8}, {0, 1, BITS}};
+        }
+
+        int    slash   = rule.indexOf('/');
+        String address = slash < 0 ? rule : rule.substring(0, slash);
+        long   high    = parse(address, true);
+        long   low     = parse(address, false);
+        int    maximum = address.indexOf(':') < 0 ? BITS - IPV4_MAPPED_PREFIX : BITS;
+        int    prefix  = maximum;
+        if (slash >= 0) {
+            try {
+                prefix = Integer.parseInt(rule.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                prefix = -1;
+            }
+            if (prefix < 0 || prefix > maximum) {
+                throw new IllegalArgumentException(String.format("The rule '%s' has an invalid prefix length", rule));
+            }
+        }
+        return new long[][]{{high, low, prefix + BITS - maximum}};
+    }
+
+    /**
+     * If the address is allowed, an address that is not valid is only allowed by a list without rules
+     *
+     * @param address The IPv4 or IPv6 address
+     * @return True if allowed
+     * @since 1.1.0
+     */
+    public boolean isAllowed(String address) {
+        if (allowed[0]) {
+            return true;
+        }
+        if (address == null) {
+            return false;
+        }
+
+        long high;
+        long low;
+        try {
+            high = parse(address, true);
+            low  = parse(address, false);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        int node = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            node = children[node * 2 + bit(high, low, bit)];
+            if (node == 0) {
+                return false;
+            }
+            if (allowed[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The rules the list was compiled from, empty if all allowed
+     * @since 1.1.0
+     */
+    public List<String> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return The number of trie nodes
+     * @since 1.1.0
+     */
+    public int size() {
+        return allowed.length;
+    }
+
+    /**
+     * @param high The high 64 bits
+     * @param low  The low 64 bits
+     * @param bit  The bit index, 0 is the most significant
+     * @return The bit, 0 or 1
+     * @since 1.1.0
+     */
+    private static int bit(long high, long low, int bit) {
+        return bit < 64 ? (int) (high >>> (63 - bit)) & 1 : (int) (low >>> (127 - bit)) & 1;
+    }
+
+    /**
+     * Parse a half of the address normalized to 128 bits, without allocation.
+     * The IPv6 zone id, after %, is ignored.
+     *
+     * @param address The IPv4 or IPv6 address
+     * @param high    True for the high 64 bits, false for the low
+     * @return The bits
+     * @throws IllegalArgumentException If the address is not valid
+     * @since 1.1.0
+     */
+    static long parse(String address, boolean high) {
+        int end = address.indexOf('%');
+        if (end < 0) {
+            end = address.length();
+        }
+
+        if (address.indexOf(':') < 0) {
+            return high ? 0 : IPV4_MAPPED | parseIpv4(address, 0, end);
+        }
+
+        // the groups in the address, the embedded IPv4 counts as two
+        int     groups     = 0;
+        boolean compressed = address.startsWith("::");
+        int     index      = compressed ? 2 : 0;
+        while (index < end) {
+            int next = nextColon(address, index, end);
+            if (next == index) {
+                throw invalid(address);
+            }
+            groups += next == end && hasDot(address, index, end) ? 2 : 1;
+            if (next == end) {
+                break;
+            }
+            if (next + 1 < end && address.charAt(next + 1) == ':') {
+                if (compressed) {
+                    throw invalid(address);
+                }
+                compressed = true;
+                index      = next + 2;
+            } else if (next + 1 == end) {
+                throw invalid(address);
+            } else {
+                index = next + 1;
+            }
+        }
+        if (groups > 8 || (!compressed && groups != 8) || (compressed && groups == 8)) {
+            throw invalid(address);
+        }
+
+        long bitsHigh = 0;
+        long bitsLow  = 0;
+        int  zeros    = 8 - groups;
+        // the leading zero groups are already in place
+        index = address.startsWith("::") ? 2 : 0;
+        while (index < end) {
+            int next = nextColon(address, index, end);
+            if (next == end && hasDot(address, index, end)) {
+                long ipv4 = parseIpv4(address, index, end);
+                bitsHigh = (bitsHigh << 32) | (bitsLow >>> 32);
+                bitsLow  = (bitsLow << 32) | ipv4;
+                break;
+            }
+            if (next - index > 4) {
+                throw invalid(address);
+            }
+            int group = 0;
+            for (int digit = index; digit < next; digit++) {
+                int value = Character.digit(address.charAt(digit), 16);
+                if (value < 0) {
+                    throw invalid(address);
+                }
+                group = (group << 4) | value;
+            }
+            bitsHigh = (bitsHigh << 16) | (bitsLow >>> 48);
+            bitsLow  = (bitsLow << 16) | group;
+
+            index = next + 1;
+            if (next + 1 < end && address.charAt(next + 1) == ':') {
+                long shiftedHigh = shiftZeros(bitsHigh, bitsLow, zeros, true);
+                bitsLow  = shiftZeros(bitsHigh, bitsLow, zeros, false);
+                bitsHigh = shiftedHigh;
+                index    = next + 2;
+            }
+        }
+
+        return high ? bitsHigh : bitsLow;
+    }
+
+    /**
+     * Shift zero groups into the 128 bits
+     *
+     * @param high  The high 64 bits
+     * @param low   The low 64 bits
+     * @param zeros The number of 16 bits zero groups
+     * @param upper True to return the high bits, false for the low
+     * @return The shifted bits
+     * @since 1.1.0
+     */
+    private static long shiftZeros(long high, long low, int zeros, boolean upper) {
+        for (int zero = 0; zero < zeros; zero++) {
+            high = (high << 16) | (low >>> 48);
+            low  = low << 16;
+        }
+        return upper ? high : low;
+    }
+
+    /**
+     * @param address The address
+     * @param start   The start index
+     * @param end     The end index, exclusive
+     * @return The index of the next colon, or end if none
+     * @since 1.1.0
+     */
+    private static int nextColon(String address, int start, int end) {
+        int next = address.indexOf(':', start);
+        return next < 0 || next > end ? end : next;
+    }
+
+    /**
+     * @param address The address
+     * @param start   The start index
+     * @param end     The end index, exclusive
+     * @return True if there is a dot between start and end
+     * @since 1.1.0
+     */
+    private static boolean hasDot(String address, int start, int end) {
+        for (int index = start; index < end; index++) {
+            if (address.charAt(index) == '.') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse an IPv4 address in dotted decimal notation
+     *
+     * @param address The address
+     * @param start   The start index
+     * @param end     The end index, exclusive
+     * @return The 32 bits
+     * @throws IllegalArgumentException If not valid
+     * @since 1.1.0
+     */
+    private static long parseIpv4(String address, int start, int end) {
+        long bits   = 0;
+        int  octets = 0;
+        int  value  = -1;
+        for (int index = start; index <= end; index++) {
+            char c = index < end ? address.charAt(index) : '.';
+            if (c == '.') {
+                if (value < 0 || ++octets > 4) {
+                    throw invalid(address);
+                }
+                bits  = (bits << 8) | value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = value < 0 ? c - '0' : value * 10 + c - '0';
+                if (value > 255) {
+                    throw invalid(address);
+                }
+            } else {
+                throw invalid(address);
+            }
+        }
+        if (octets != 4) {
+            throw invalid(address);
+        }
+        return bits;
+    }
+
+    /**
+     * @param address The address
+     * @return The exception
+     * @since 1.1.0
+     */
+    private static IllegalArgumentException invalid(String address) {
+        return new IllegalArgumentException(String.format("The address '%s' is not a valid IP address", address));
+    }
+
+    @Override
+    public String toString() {
+        return rules.isEmpty() ? "all" : String.join(",", rules);
+    }
+}
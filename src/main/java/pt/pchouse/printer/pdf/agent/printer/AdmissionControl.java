@@ -0,0 +1,494 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The admission of the print requests before the request body is read. The jobs and the request bytes
+ * in flight are limited globally and by printer, a request over the limits, or that the full task executor
+ * would reject, is not admitted and the client should retry after {@link AdmissionException#getRetryAfter()}
+ * seconds.
+ * A request is admitted with its Content-Length. The bytes read beyond it, the chunked bodies without length
+ * and the inflated bodies, are charged to the permit while the body is read, see {@link Permit#charge(long)}.
+ * The permit of a request is held until the request completes and the jobs queued by it finish.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class AdmissionControl
+{
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String REJECTED = "printer.agent.admission.rejected";
+
+    /**
+     * The request attribute with the {@link Permit} of an admitted request
+     *
+     * @since 1.1.0
+     */
+    public static final String PERMIT_ATTRIBUTE = AdmissionControl.class.getName() + ".permit";
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The maximum requests and jobs in flight, zero for no limit
+     *
+     * @since 1.1.0
+     */
+    @Value("${admission.jobs.max:200}")
+    private int maxJobs;
+
+    /**
+     * The maximum request bytes in flight, zero for no limit
+     *
+     * @since 1.1.0
+     */
+    @Value("${admission.bytes.max:268435456}")
+    private long maxBytes;
+
+    /**
+     * The maximum requests and jobs in flight of each printer, zero for the print.queue.capacity
+     *
+     * @since 1.1.0
+     */
+    @Value("${admission.printer.jobs.max:0}")
+    private int maxPrinterJobs;
+
+    /**
+     * The maximum request bytes in flight of each printer, zero for no limit
+     *
+     * @since 1.1.0
+     */
+    @Value("${admission.printer.bytes.max:67108864}")
+    private long maxPrinterBytes;
+
+    /**
+     * @since 1.1.0
+     */
+    @Value("${print.queue.capacity:100}")
+    private int queueCapacity;
+
+    /**
+     * The maximum seconds of the Retry-After
+     *
+     * @since 1.1.0
+     */
+    @Value("${admission.retry.max:60}")
+    private int maxRetryAfter;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private Executor executor;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrinterRegistry printerRegistry;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private MeterRegistry registry;
+
+    /**
+     * The global usage
+     *
+     * @since 1.1.0
+     */
+    private final Usage global = new Usage();
+
+    /**
+     * The usage of each configured printer
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, Usage> printers = new ConcurrentHashMap<>();
+
+    /**
+     * The average nanoseconds a permit is held, to estimate the Retry-After
+     *
+     * @since 1.1.0
+     */
+    private final AtomicLong averageHold = new AtomicLong();
+
+    /**
+     * The rejections by reason
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, Counter> rejected = new ConcurrentHashMap<>();
+
+    /**
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void init() {
+        if (maxPrinterJobs <= 0) {
+            maxPrinterJobs = queueCapacity;
+        }
+        Gauge.builder("printer.agent.admission.jobs", global.jobs, AtomicInteger::get)
+             .description("The admitted requests and jobs in flight")
+             .register(registry);
+        Gauge.builder("printer.agent.admission.bytes", global.bytes, AtomicLong::get)
+             .description("The admitted request bytes in flight")
+             .baseUnit("bytes")
+             .register(registry);
+    }
+
+    /**
+     * Admit the request if under the limits
+     *
+     * @param printerId The printer id of the request, null if not known before the body is read
+     * @param bytes     The request body size, less than zero if not known
+     * @return The permit, to be closed when the request completes
+     * @throws AdmissionException If the request is over the limits
+     * @since 1.1.0
+     */
+    public Permit admit(String printerId, long bytes) throws AdmissionException {
+        long  size  = Math.max(bytes, 0);
+        Usage usage = usage(printerId);
+
+        if (isExecutorFull()) {
+            throw executorRejection();
+        }
+
+        AdmissionException.Reason reason = global.tryAdd(size, maxJobs, maxBytes);
+        if (reason != null) {
+            throw reject(new AdmissionException(reason, null, retryAfter(global, reason, size, maxBytes)));
+        }
+
+        if (usage != null) {
+            reason = usage.tryAdd(size, maxPrinterJobs, maxPrinterBytes);
+            if (reason != null) {
+                global.remove(size);
+                throw reject(new AdmissionException(
+                        reason, printerId, retryAfter(usage, reason, size, maxPrinterBytes)
+                ));
+            }
+        }
+
+        return new Permit(usage, printerId, size);
+    }
+
+    /**
+     * The rejection of a request not accepted by the full task executor
+     *
+     * @return The rejection
+     * @since 1.1.0
+     */
+    public AdmissionException executorRejection() {
+        return reject(new AdmissionException(AdmissionException.Reason.EXECUTOR, null, 1));
+    }
+
+    /**
+     * @param printerId The printer id
+     * @return The usage of the printer, null if not known or not configured
+     * @since 1.1.0
+     */
+    private Usage usage(String printerId) {
+        if (printerId == null) {
+            return null;
+        }
+        String id    = printerId.isBlank() ? PrinterConfig.DEFAULT_ID : printerId;
+        Usage  usage = printers.get(id);
+        if (usage != null) {
+            return usage;
+        }
+        try {
+            return printers.computeIfAbsent(printerRegistry.get(id).getId(), key -> new Usage());
+        } catch (PrinterException e) {
+            // the request fails when handled, only the global limits apply
+            return null;
+        }
+    }
+
+    /**
+     * @return True if the task executor pool is busy and the queue full, the next task would be rejected
+     * @since 1.1.0
+     */
+    private boolean isExecutorFull() {
+        if (!(executor instanceof ThreadPoolTaskExecutor taskExecutor)) {
+            return false;
+        }
+        ThreadPoolExecutor pool = taskExecutor.getThreadPoolExecutor();
+        return pool.getActiveCount() >= pool.getMaximumPoolSize() && pool.getQueue().remainingCapacity() == 0;
+    }
+
+    /**
+     * Estimate when the capacity will be free, the average hold of a permit multiplied by the
+     * permits that must be released, divided by the permits released in parallel
+     *
+     * @param usage    The usage over the limit
+     * @param reason   The limit
+     * @param bytes    The request bytes
+     * @param maxBytes The bytes limit
+     * @return The seconds, between 1 and admission.retry.max
+     * @since 1.1.0
+     */
+    private long retryAfter(Usage usage, AdmissionException.Reason reason, long bytes, long maxBytes) {
+        int  jobs   = Math.max(usage.jobs.get(), 1);
+        long needed = 1;
+        if (reason == AdmissionException.Reason.BYTES) {
+            long average = Math.max(usage.bytes.get() / jobs, 1);
+            needed = Math.max((usage.bytes.get() + bytes - maxBytes + average - 1) / average, 1);
+        }
+        long nanos = averageHold.get() * Math.min(needed, jobs) / jobs;
+        return Math.max(1, Math.min(maxRetryAfter, TimeUnit.NANOSECONDS.toSeconds(nanos) + 1));
+    }
+
+    /**
+     * @param rejection The rejection
+     * @return The rejection
+     * @since 1.1.0
+     */
+    private AdmissionException reject(AdmissionException rejection) {
+        logger.debug(rejection.getMessage());
+        rejected.computeIfAbsent(
+                rejection.getReason().name().toLowerCase(),
+                reason -> Counter.builder(REJECTED)
+                                 .description("The print requests not admitted")
+                                 .tag("reason", reason)
+                                 .register(registry)
+        ).increment();
+        return rejection;
+    }
+
+    /**
+     * The jobs and bytes in flight
+     *
+     * @since 1.1.0
+     */
+    private static class Usage
+    {
+        /**
+         * @since 1.1.0
+         */
+        private final AtomicInteger jobs = new AtomicInteger();
+
+        /**
+         * @since 1.1.0
+         */
+        private final AtomicLong bytes = new AtomicLong();
+
+        /**
+         * Add the request if under the limits. A request bigger than the bytes limit is admitted
+         * when nothing else is in flight, so it is never rejected forever.
+         *
+         * @param size     The request bytes
+         * @param maxJobs  The jobs limit, zero for no limit
+         * @param maxBytes The bytes limit, zero for no limit
+         * @return The limit reached, null if added
+         * @since 1.1.0
+         */
+        synchronized AdmissionException.Reason tryAdd(long size, int maxJobs, long maxBytes) {
+            int inFlight = jobs.get();
+            if (maxJobs > 0 && inFlight >= maxJobs) {
+                return AdmissionException.Reason.JOBS;
+            }
+            if (maxBytes > 0 && inFlight > 0 && bytes.get() + size > maxBytes) {
+                return AdmissionException.Reason.BYTES;
+            }
+            jobs.incrementAndGet();
+            bytes.addAndGet(size);
+            return null;
+        }
+
+        /**
+         * Add the bytes read by an admitted request if under the limit. The request is already in flight,
+         * the bytes of the only request in flight are always added.
+         *
+         * @param extra    The bytes read beyond the charged
+         * @param maxBytes The bytes limit, zero for no limit
+         * @return The limit reached, null if added
+         * @since 1.1.0
+         */
+        synchronized AdmissionException.Reason tryCharge(long extra, long maxBytes) {
+            if (maxBytes > 0 && jobs.get() > 1 && bytes.get() + extra > maxBytes) {
+                return AdmissionException.Reason.BYTES;
+            }
+            bytes.addAndGet(extra);
+            return null;
+        }
+
+        /**
+         * @param extra The bytes added by {@link #tryCharge(long, long)}
+         * @since 1.1.0
+         */
+        synchronized void uncharge(long extra) {
+            bytes.addAndGet(-extra);
+        }
+
+        /**
+         * @param size The request bytes
+         * @since 1.1.0
+         */
+        synchronized void remove(long size) {
+            jobs.decrementAndGet();
+            bytes.addAndGet(-size);
+        }
+    }
+
+    /**
+     * The admission of a request, released when the request and the jobs that hold it finish
+     *
+     * @since 1.1.0
+     */
+    public class Permit implements AutoCloseable
+    {
+        /**
+         * @since 1.1.0
+         */
+        private final Usage usage;
+
+        /**
+         * @since 1.1.0
+         */
+        private final String printerId;
+
+        /**
+         * The charged bytes, the Content-Length and the bytes read beyond it
+         *
+         * @since 1.1.0
+         */
+        private volatile long size;
+
+        /**
+         * @since 1.1.0
+         */
+        private final long start = System.nanoTime();
+
+        /**
+         * The request and the jobs holding the permit
+         *
+         * @since 1.1.0
+         */
+        private final AtomicInteger holders = new AtomicInteger(1);
+
+        /**
+         * @param usage     The printer usage, null if only global
+         * @param printerId The printer id of the request, null if not known
+         * @param size      The request bytes
+         * @since 1.1.0
+         */
+        private Permit(Usage usage, String printerId, long size) {
+            this.usage = usage;
+            this.printerId = printerId;
+            this.size = size;
+        }
+
+        /**
+         * @return The charged bytes
+         * @since 1.1.0
+         */
+        public long getBytes() {
+            return size;
+        }
+
+        /**
+         * Charge the bytes read of the request body, the bytes beyond the charged are added to the usage.
+         * Called while the body is read, so the bodies without Content-Length and the inflated bodies
+         * are limited by the bytes they really use.
+         *
+         * @param read The bytes read of the body
+         * @throws AdmissionException If the bytes read are over the limits, the read must stop
+         * @since 1.1.0
+         */
+        public synchronized void charge(long read) throws AdmissionException {
+            long extra = read - size;
+            if (extra <= 0) {
+                return;
+            }
+
+            AdmissionException.Reason reason = global.tryCharge(extra, maxBytes);
+            if (reason != null) {
+                throw reject(new AdmissionException(reason, null, retryAfter(global, reason, extra, maxBytes)));
+            }
+
+            if (usage != null) {
+                reason = usage.tryCharge(extra, maxPrinterBytes);
+                if (reason != null) {
+                    global.uncharge(extra);
+                    throw reject(new AdmissionException(
+                            reason, printerId, retryAfter(usage, reason, extra, maxPrinterBytes)
+                    ));
+                }
+            }
+            size = read;
+        }
+
+        /**
+         * Hold the permit until the job finishes
+         *
+         * @param job The job queued by the request
+         * @since 1.1.0
+         */
+        public void holdUntilFinished(PrintJob job) {
+            if (holders.getAndUpdate(count -> count == 0 ? 0 : count + 1) == 0) {
+                return;
+            }
+            job.getFuture().whenComplete((printJob, throwable) -> close());
+        }
+
+        /**
+         * Release the hold, the capacity is freed when the last holder releases
+         *
+         * @since 1.1.0
+         */
+        @Override
+        public void close() {
+            if (holders.getAndUpdate(count -> Math.max(count - 1, 0)) != 1) {
+                return;
+            }
+            global.remove(size);
+            if (usage != null) {
+                usage.remove(size);
+            }
+            long held = System.nanoTime() - start;
+            averageHold.updateAndGet(average -> average == 0 ? held : average + (held - average) / 8);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+/**
+ * A print request not admitted by the {@link AdmissionControl}, the client should retry later
+ *
+ * @since 1.1.0
+ */
+public class AdmissionException extends PrinterException
+{
+
+    /**
+     * The limit that rejected the request
+     *
+     * @since 1.1.0
+     */
+    public enum Reason
+    {
+        /**
+         * Too many requests and jobs in flight
+         *
+         * @since 1.1.0
+         */
+        JOBS,
+
+        /**
+         * Too many request bytes in flight
+         *
+         * @since 1.1.0
+         */
+        BYTES,
+
+        /**
+         * The task executor pool and queue are full
+         *
+         * @since 1.1.0
+         */
+        EXECUTOR
+    }
+
+    /**
+     * @since 1.1.0
+     */
+    private final Reason reason;
+
+    /**
+     * @since 1.1.0
+     */
+    private final String printer;
+
+    /**
+     * @since 1.1.0
+     */
+    private final long retryAfter;
+
+    /**
+     * @param reason     The limit that rejected the request
+     * @param printer    The printer over the limit, null if the global limit
+     * @param retryAfter The seconds the client should wait to retry
+     * @since 1.1.0
+     */
+    public AdmissionException(Reason reason, String printer, long retryAfter) {
+        super(message(reason, printer));
+        this.reason = reason;
+        this.printer = printer;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @param reason  The limit that rejected the request
+     * @param printer The printer over the limit, null if the global limit
+     * @return The message
+     * @since 1.1.0
+     */
+    private static String message(Reason reason, String printer) {
+        String limit = switch (reason) {
+            case JOBS -> "Too many print requests in flight";
+            case BYTES -> "Too many print request bytes in flight";
+            case EXECUTOR -> "The print requests executor is busy";
+        };
+        return printer == null ? limit : String.format("%s for the printer '%s'", limit, printer);
+    }
+
+    /**
+     * @return The limit that rejected the request
+     * @since 1.1.0
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return The printer over the limit, null if the global limit
+     * @since 1.1.0
+     */
+    public String getPrinter() {
+        return printer;
+    }
+
+    /**
+     * @return The seconds the client should wait to retry
+     * @since 1.1.0
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * The exception is a flow control signal, the stack trace is not filled
+     *
+     * @return This exception
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
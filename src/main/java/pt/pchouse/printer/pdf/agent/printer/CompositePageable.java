@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import java.awt.print.PageFormat;
+import java.awt.print.Pageable;
+import java.awt.print.Printable;
+import java.util.List;
+
+/**
+ * The pages of several pageables, in order, to be printed in one job
+ *
+ * @since 1.1.0
+ */
+public class CompositePageable implements Pageable
+{
+
+    /**
+     * @since 1.1.0
+     */
+    private final List<Pageable> pageables;
+
+    /**
+     * The index of the first page of each pageable
+     *
+     * @since 1.1.0
+     */
+    private final int[] offsets;
+
+    /**
+     * @since 1.1.0
+     */
+    private final int pages;
+
+    /**
+     * @param pageables The pageables, with known number of pages
+     * @since 1.1.0
+     */
+    public CompositePageable(List<? extends Pageable> pageables) {
+        this.pageables = List.copyOf(pageables);
+        this.offsets = new int[pageables.size()];
+        int total = 0;
+        for (int index = 0; index < pageables.size(); index++) {
+            offsets[index] = total;
+            total += pageables.get(index).getNumberOfPages();
+        }
+        this.pages = total;
+    }
+
+    @Override
+    public int getNumberOfPages() {
+        return pages;
+    }
+
+    @Override
+    public PageFormat getPageFormat(int pageIndex) throws IndexOutOfBoundsException {
+        int pageable = pageableOf(pageIndex);
+        return pageables.get(pageable).getPageFormat(pageIndex - offsets[pageable]);
+    }
+
+    @Override
+    public Printable getPrintable(int pageIndex) throws IndexOutOfBoundsException {
+        int       pageable  = pageableOf(pageIndex);
+        int       index     = pageIndex - offsets[pageable];
+        Printable printable = pageables.get(pageable).getPrintable(index);
+        // the printables, like the PDFPrintable, select the page by the index received in print
+        return (graphics, pageFormat, printIndex) -> printable.print(graphics, pageFormat, index);
+    }
+
+    /**
+     * The pageable of the page
+     *
+     * @param pageIndex The page index
+     * @return The pageable index
+     * @since 1.1.0
+     */
+    private int pageableOf(int pageIndex) {
+        if (pageIndex < 0 || pageIndex >= pages) {
+            throw new IndexOutOfBoundsException(pageIndex);
+        }
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= pageIndex) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
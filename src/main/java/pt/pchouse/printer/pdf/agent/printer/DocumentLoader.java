@@ -0,0 +1,250 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load the pdf documents. The documents above the large threshold are loaded in the large document mode,
+ * the PDFBox streams are cached in scratch files and the page resources are not cached, so the pages
+ * are released after rendered, and they must reserve their estimated memory in the global budget,
+ * waiting while the other large documents use it. The other documents share the parsed fonts
+ * of the {@link FontCache} and the decoded images of the {@link ImageCache}.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class DocumentLoader
+{
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The budget is reserved in kibibytes to fit the semaphore permits
+     *
+     * @since 1.1.0
+     */
+    private static final int KIB = 1024;
+
+    /**
+     * The pdf size above which the document is loaded in the large document mode
+     *
+     * @since 1.1.0
+     */
+    @Value("${render.large.threshold:8388608}")
+    private long largeThreshold;
+
+    /**
+     * The memory shared by the large documents being printed, zero for half of the maximum heap
+     *
+     * @since 1.1.0
+     */
+    @Value("${render.memory.budget:0}")
+    private long memoryBudget;
+
+    /**
+     * The estimated memory used to print a large document as a multiple of the pdf size
+     *
+     * @since 1.1.0
+     */
+    @Value("${render.memory.factor:4}")
+    private int memoryFactor;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private FontCache fontCache;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private ImageCache imageCache;
+
+    /**
+     * The memory budget in kibibytes
+     *
+     * @since 1.1.0
+     */
+    private Semaphore budget;
+
+    /**
+     * The memory budget in kibibytes
+     *
+     * @since 1.1.0
+     */
+    private int budgetKib;
+
+    /**
+     * Create the memory budget
+     *
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void start() {
+        if (memoryBudget <= 0) {
+            memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+        }
+        budgetKib = (int) Math.min(Integer.MAX_VALUE, memoryBudget / KIB);
+        budget = new Semaphore(budgetKib, true);
+        logger.debug("Large document memory budget of {} KiB", budgetKib);
+    }
+
+    /**
+     * If the pdf is printed in the large document mode
+     *
+     * @param pdf The pdf
+     * @return True if above the large threshold
+     * @since 1.1.0
+     */
+    public boolean isLarge(PdfSource pdf) {
+        return pdf.size() > largeThreshold;
+    }
+
+    /**
+     * Load the document, in the large document mode if above the large threshold
+     *
+     * @param pdf    The pdf
+     * @param source The pdf reader, opened from the pdf
+     * @return The document, must be closed
+     * @throws IOException If load fails
+     * @since 1.1.0
+     */
+    public PDDocument load(PdfSource pdf, RandomAccessRead source) throws IOException {
+        if (!isLarge(pdf)) {
+            PDDocument document = Loader.loadPDF(source);
+            if (fontCache.isEnabled() || imageCache.isEnabled()) {
+                document.setResourceCache(new DocumentResources(fontCache, imageCache));
+            }
+            return document;
+        }
+        PDDocument document = Loader.loadPDF(source, IOUtils.createTempFileOnlyStreamCache());
+        document.setResourceCache(null);
+        return document;
+    }
+
+    /**
+     * Give back the fonts and images of the closed document to the caches
+     *
+     * @param document The closed document
+     * @since 1.1.0
+     */
+    public void release(PDDocument document) {
+        if (document.getResourceCache() instanceof DocumentResources resources) {
+            resources.release();
+        }
+    }
+
+    /**
+     * Reserve the estimated memory to print the pdf, waiting if the budget is in use.
+     * The documents below the large threshold do not reserve, a document estimated above
+     * the budget reserves all the budget.
+     *
+     * @param pdf The pdf
+     * @return The reservation, to be closed when the print ends
+     * @throws InterruptedIOException If interrupted while waiting
+     * @since 1.1.0
+     */
+    public Reservation reserve(PdfSource pdf) throws InterruptedIOException {
+        return reserve(List.of(pdf));
+    }
+
+    /**
+     * Reserve the estimated memory to print the pdfs together, waiting if the budget is in use.
+     * Only the documents above the large threshold reserve, the reserve is limited to the budget.
+     *
+     * @param pdfs The pdfs
+     * @return The reservation, to be closed when the print ends
+     * @throws InterruptedIOException If interrupted while waiting
+     * @since 1.1.0
+     */
+    public Reservation reserve(List<PdfSource> pdfs) throws InterruptedIOException {
+        long bytes = 0;
+        for (PdfSource pdf : pdfs) {
+            if (isLarge(pdf)) {
+                bytes += pdf.size() * memoryFactor;
+            }
+        }
+        if (bytes == 0) {
+            return () -> {
+            };
+        }
+
+        int permits = (int) Math.min(budgetKib, bytes / KIB);
+        try {
+            if (!budget.tryAcquire(permits, 0, TimeUnit.MILLISECONDS)) {
+                logger.debug("Waiting for {} KiB of the large document memory budget", permits);
+                budget.acquire(permits);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the memory budget");
+        }
+        return () -> budget.release(permits);
+    }
+
+    /**
+     * The memory budget available
+     *
+     * @return The available bytes
+     * @since 1.1.0
+     */
+    public long getAvailableBudget() {
+        return (long) budget.availablePermits() * KIB;
+    }
+
+    /**
+     * A reservation of the memory budget
+     *
+     * @since 1.1.0
+     */
+    @FunctionalInterface
+    public interface Reservation extends Closeable
+    {
+        /**
+         * Release the reserved memory
+         *
+         * @since 1.1.0
+         */
+        @Override
+        void close();
+    }
+}
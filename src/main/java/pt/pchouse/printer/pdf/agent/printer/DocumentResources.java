@@ -0,0 +1,212 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The resource cache of one document. The fonts and the images are borrowed from the {@link FontCache}
+ * and the {@link ImageCache} when first used, the fonts parsed by the document are kept, and all are
+ * given back together when the document is closed. The other resources are cached as the PDFBox default.
+ *
+ * @since 1.1.0
+ */
+public class DocumentResources extends DefaultResourceCache
+{
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * @since 1.1.0
+     */
+    private final FontCache fontCache;
+
+    /**
+     * @since 1.1.0
+     */
+    private final ImageCache imageCache;
+
+    /**
+     * The fonts of the document by the indirect object
+     *
+     * @since 1.1.0
+     */
+    private final Map<COSObject, PDFont> fonts = new HashMap<>();
+
+    /**
+     * The key of the fonts not found in the cache, until parsed by the document
+     *
+     * @since 1.1.0
+     */
+    private final Map<COSObject, ResourceKey> pending = new HashMap<>();
+
+    /**
+     * The shared images of the document by the indirect object, null if not shared
+     *
+     * @since 1.1.0
+     */
+    private final Map<COSObject, PDImageXObject> images = new HashMap<>();
+
+    /**
+     * Give back the borrowed and parsed resources
+     *
+     * @since 1.1.0
+     */
+    private final List<Runnable> lent = new ArrayList<>();
+
+    /**
+     * @param fontCache  The shared fonts
+     * @param imageCache The shared images
+     * @since 1.1.0
+     */
+    public DocumentResources(FontCache fontCache, ImageCache imageCache) {
+        this.fontCache = fontCache;
+        this.imageCache = imageCache;
+    }
+
+    /**
+     * Get the font of the indirect object, borrowed from the font cache if an equal font is idle
+     *
+     * @param indirect The font indirect object
+     * @return The font, null to be parsed by the document
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized PDFont getFont(COSObject indirect) {
+        PDFont font = fonts.get(indirect);
+        if (font != null || pending.containsKey(indirect) || !fontCache.isEnabled()) {
+            return font;
+        }
+
+        ResourceKey key;
+        try {
+            key = fontCache.key(indirect.getObject());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Font not shared, fails to read: {}", e.getMessage());
+            key = null;
+        }
+        if (key == null) {
+            pending.put(indirect, null);
+            return null;
+        }
+
+        font = fontCache.borrow(key.hash());
+        if (font == null) {
+            pending.put(indirect, key);
+            return null;
+        }
+        fonts.put(indirect, font);
+        lend(fontCache, key, font, fontCache.weight(key));
+        return font;
+    }
+
+    /**
+     * Keep the font parsed by the document, to be given to the font cache
+     *
+     * @param indirect The font indirect object
+     * @param font     The font
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized void put(COSObject indirect, PDFont font) {
+        fonts.put(indirect, font);
+        ResourceKey key = pending.remove(indirect);
+        if (key != null) {
+            lend(fontCache, key, font, fontCache.weight(key));
+        }
+    }
+
+    /**
+     * Get the XObject of the indirect object, the images are borrowed from the image cache,
+     * or created detached from the document to be shared
+     *
+     * @param indirect The XObject indirect object
+     * @return The XObject, null to be created by the document
+     * @since 1.1.0
+     */
+    @Override
+    public synchronized PDXObject getXObject(COSObject indirect) {
+        if (!imageCache.isEnabled()) {
+            return super.getXObject(indirect);
+        }
+        if (images.containsKey(indirect)) {
+            PDImageXObject image = images.get(indirect);
+            return image != null ? image : super.getXObject(indirect);
+        }
+
+        PDImageXObject image = null;
+        try {
+            ResourceKey key = imageCache.key(indirect.getObject());
+            if (key != null) {
+                image = imageCache.borrow(key.hash());
+                if (image == null) {
+                    image = imageCache.create((COSStream) indirect.getObject());
+                }
+                lend(imageCache, key, image, imageCache.weight(key, image));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Image not shared, fails to read: {}", e.getMessage());
+        }
+        images.put(indirect, image);
+        return image != null ? image : super.getXObject(indirect);
+    }
+
+    /**
+     * Give back the fonts and images to the caches, to be called after the document is closed,
+     * the document must not use its resources after
+     *
+     * @since 1.1.0
+     */
+    public synchronized void release() {
+        fonts.clear();
+        pending.clear();
+        images.clear();
+        lent.forEach(Runnable::run);
+        lent.clear();
+    }
+
+    /**
+     * Keep the resource to be given back when the document is closed
+     *
+     * @param pool     The pool of the resource
+     * @param key      The resource key
+     * @param resource The resource
+     * @param weight   The estimated bytes of the resource
+     * @param <T>      The resource type
+     * @since 1.1.0
+     */
+    private <T> void lend(ResourcePool<T> pool, ResourceKey key, T resource, long weight) {
+        lent.add(() -> pool.giveBack(key.hash(), resource, weight));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import javax.print.Doc;
+import javax.print.DocFlavor;
+import javax.print.SimpleDoc;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A compiled ESC/POS command sequence. The bytes are compiled once at startup and never change,
+ * the print document is created once and sent by every print of the command.
+ *
+ * @since 1.1.0
+ */
+public final class EscPosCommand
+{
+
+    /**
+     * @since 1.1.0
+     */
+    private final String name;
+
+    /**
+     * The compiled bytes, never exposed
+     *
+     * @since 1.1.0
+     */
+    private final byte[] bytes;
+
+    /**
+     * The read only view of the bytes
+     *
+     * @since 1.1.0
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The raw print document of the bytes
+     *
+     * @since 1.1.0
+     */
+    private final Doc doc;
+
+    /**
+     * @param name  The command name
+     * @param bytes The compiled bytes, copied
+     * @since 1.1.0
+     */
+    EscPosCommand(String name, byte[] bytes) {
+        this.name   = name;
+        this.bytes  = bytes.clone();
+        this.buffer = ByteBuffer.wrap(this.bytes).asReadOnlyBuffer();
+        this.doc    = new SimpleDoc(this.bytes, DocFlavor.BYTE_ARRAY.AUTOSENSE, null);
+    }
+
+    /**
+     * @return The command name
+     * @since 1.1.0
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of bytes
+     * @since 1.1.0
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * A read only buffer of the bytes, with its own position and limit
+     *
+     * @return The buffer
+     * @since 1.1.0
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * A copy of the bytes
+     *
+     * @return The bytes
+     * @since 1.1.0
+     */
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    /**
+     * Write the bytes to the stream
+     *
+     * @param stream The stream
+     * @since 1.1.0
+     */
+    public void writeTo(ByteArrayOutputStream stream) {
+        stream.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * The raw print document of the command, the same instance in all the prints
+     *
+     * @return The document
+     * @since 1.1.0
+     */
+    public Doc getDoc() {
+        return doc;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + bytes.length + " bytes)";
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled ESC/POS commands of a printer.
+ * Each command is a comma separated sequence of:
+ * <ul>
+ *     <li>a byte in decimal notation, 0 to 255 (or -128 to -1)</li>
+ *     <li>bytes in hex notation, 0x1B or 0x1D564100</li>
+ *     <li>a parameter, {drawer_pin}, replaced by the parameter value in decimal or hex notation</li>
+ *     <li>another command, $init</li>
+ * </ul>
+ * The commands are validated and compiled once, a reference cycle or an undefined command or parameter
+ * fails the compilation.
+ *
+ * @since 1.1.0
+ */
+public final class EscPosCommands
+{
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String INIT = "init";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String FEED = "feed";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String CUT = "cut";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String CASH_DRAWER = "cash_drawer";
+
+    /**
+     * The init followed by the cut
+     *
+     * @since 1.1.0
+     */
+    public static final String CUT_PAPER = "cut_paper";
+
+    /**
+     * The init followed by the cash drawer
+     *
+     * @since 1.1.0
+     */
+    public static final String OPEN_CASH_DRAWER = "open_cash_drawer";
+
+    /**
+     * The init followed by the cut and the cash drawer
+     *
+     * @since 1.1.0
+     */
+    public static final String CUT_AND_OPEN_CASH_DRAWER = "cut_and_open_cash_drawer";
+
+    /**
+     * The commands every printer has, defined by the printer properties init, feed, cut and cash_drawer
+     *
+     * @since 1.1.0
+     */
+    public static final Set<String> BUILT_IN = Set.of(INIT, FEED, CUT, CASH_DRAWER);
+
+    /**
+     * The compositions every printer has, can be redefined by the printer
+     *
+     * @since 1.1.0
+     */
+    public static final Map<String, String> COMPOSITIONS = Map.of(
+            CUT_PAPER, "$init,$cut",
+            OPEN_CASH_DRAWER, "$init,$cash_drawer",
+            CUT_AND_OPEN_CASH_DRAWER, "$init,$cut,$cash_drawer"
+    );
+
+    /**
+     * The command and parameter names
+     *
+     * @since 1.1.0
+     */
+    public static final Pattern NAME = Pattern.compile("[a-z][a-z0-9_]*");
+
+    /**
+     * The sequence separator
+     *
+     * @since 1.1.0
+     */
+    private static final String SEPARATOR = ",";
+
+    /**
+     * @since 1.1.0
+     */
+    private final Map<String, EscPosCommand> commands;
+
+    /**
+     * @param commands The compiled commands
+     * @since 1.1.0
+     */
+    private EscPosCommands(Map<String, EscPosCommand> commands) {
+        this.commands = Collections.unmodifiableMap(commands);
+    }
+
+    /**
+     * Compile the commands, the compositions not defined are added
+     *
+     * @param definitions The sequence of each command by name
+     * @param parameters  Get the value of a parameter by name, null if not defined
+     * @return The compiled commands
+     * @throws PrinterException If a command is not valid
+     * @since 1.1.0
+     */
+    public static EscPosCommands compile(
+            Map<String, String> definitions,
+            Function<String, String> parameters
+    ) throws PrinterException
+    {
+        Map<String, String> sequences = new LinkedHashMap<>(definitions);
+        COMPOSITIONS.forEach(sequences::putIfAbsent);
+
+        Map<String, byte[]> compiled = new HashMap<>();
+        for (String name : sequences.keySet()) {
+            if (!NAME.matcher(name).matches()) {
+                throw new PrinterException(String.format(
+                        "ESC/POS command name '%s' is not valid, use lowercase letters, digits and _", name
+                ));
+            }
+            compile(name, sequences, parameters, compiled, new ArrayDeque<>());
+        }
+
+        Map<String, EscPosCommand> commands = new TreeMap<>();
+        compiled.forEach((name, bytes) -> commands.put(name, new EscPosCommand(name, bytes)));
+        return new EscPosCommands(commands);
+    }
+
+    /**
+     * Compile the command and the commands it references
+     *
+     * @param name       The command name
+     * @param sequences  The sequences by name
+     * @param parameters Get the value of a parameter
+     * @param compiled   The already compiled commands
+     * @param path       The commands being compiled, to detect cycles
+     * @return The command bytes
+     * @throws PrinterException If the command is not valid
+     * @since 1.1.0
+     */
+    private static byte[] compile(
+            String name,
+            Map<String, String> sequences,
+            Function<String, String> parameters,
+            Map<String, byte[]> compiled,
+            Deque<String> path
+    ) throws PrinterException
+    {
+        byte[] bytes = compiled.get(name);
+        if (bytes != null) {
+            return bytes;
+        }
+        if (path.contains(name)) {
+            throw new PrinterException(String.format(
+                    "ESC/POS command '%s' references itself through %s", name, String.join(" > ", path)
+            ));
+        }
+
+        String sequence = sequences.get(name);
+        if (sequence == null) {
+            throw new PrinterException(String.format(
+                    "ESC/POS command '%s' is not defined%s",
+                    name,
+                    path.isEmpty() ? "" : ", referenced by '" + path.peekLast() + "'"
+            ));
+        }
+
+        path.addLast(name);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        if (!sequence.isBlank()) {
+            for (String token : sequence.split(SEPARATOR, -1)) {
+                token = token.trim();
+                if (token.startsWith("$")) {
+                    stream.writeBytes(compile(token.substring(1), sequences, parameters, compiled, path));
+                } else if (token.startsWith("{") && token.endsWith("}")) {
+                    String parameter = token.substring(1, token.length() - 1).trim();
+                    String value     = NAME.matcher(parameter).matches() ? parameters.apply(parameter) : null;
+                    if (value == null) {
+                        throw new PrinterException(String.format(
+                                "ESC/POS command '%s' parameter '%s' is not defined", name, parameter
+                        ));
+                    }
+                    writeLiteral(name, value.trim(), stream);
+                } else {
+                    writeLiteral(name, token, stream);
+                }
+            }
+        }
+        path.removeLast();
+
+        bytes = stream.toByteArray();
+        compiled.put(name, bytes);
+        return bytes;
+    }
+
+    /**
+     * Write a byte in decimal notation or bytes in hex notation
+     *
+     * @param name    The command name, for the error message
+     * @param literal The literal
+     * @param stream  The stream
+     * @throws PrinterException If the literal is not valid
+     * @since 1.1.0
+     */
+    private static void writeLiteral(String name, String literal, ByteArrayOutputStream stream) throws
+            PrinterException
+    {
+        try {
+            if (literal.startsWith("0x") || literal.startsWith("0X")) {
+                String hex = literal.substring(2);
+                if (hex.isEmpty() || hex.length() % 2 != 0) {
+                    throw new NumberFormatException();
+                }
+                stream.writeBytes(HexFormat.of().parseHex(hex));
+                return;
+            }
+            int value = Integer.parseInt(literal);
+            if (value < Byte.MIN_VALUE || value > 0xFF) {
+                throw new NumberFormatException();
+            }
+            stream.write(value);
+        } catch (IllegalArgumentException e) {
+            throw new PrinterException(String.format(
+                    "ESC/POS command '%s' has the invalid byte '%s', use 0 to 255 or hex as 0x1B", name, literal
+            ));
+        }
+    }
+
+    /**
+     * Get a command
+     *
+     * @param name The command name
+     * @return The command, null if not defined
+     * @since 1.1.0
+     */
+    public EscPosCommand get(String name) {
+        return commands.get(name);
+    }
+
+    /**
+     * Get a command that must be defined
+     *
+     * @param name The command name
+     * @return The command
+     * @throws PrinterException If the command is not defined
+     * @since 1.1.0
+     */
+    public EscPosCommand require(String name) throws PrinterException {
+        EscPosCommand command = commands.get(name);
+        if (command == null) {
+            throw new PrinterException(String.format("ESC/POS command '%s' is not defined", name));
+        }
+        return command;
+    }
+
+    /**
+     * @return The commands names, sorted
+     * @since 1.1.0
+     */
+    public Set<String> getNames() {
+        return commands.keySet();
+    }
+}
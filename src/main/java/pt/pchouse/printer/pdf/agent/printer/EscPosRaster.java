@@ -0,0 +1,203 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Encode gray images as ESC/POS raster commands, one bit per dot where the dots
+ * darker than the threshold are printed
+ *
+ * @since 1.1.0
+ */
+public class EscPosRaster
+{
+
+    /**
+     * The maximum rows of each raster command, the printers have a limited receive buffer
+     *
+     * @since 1.1.0
+     */
+    public static final int BAND_ROWS = 256;
+
+    /**
+     * The maximum parameters length of GS ( L
+     *
+     * @since 1.1.0
+     */
+    private static final int GS_L_MAX_LENGTH = 0xFFFF;
+
+    /**
+     * The GS ( L store raster graphics header length, without the data
+     *
+     * @since 1.1.0
+     */
+    private static final int GS_L_HEADER_LENGTH = 10;
+
+    /**
+     * The command to use
+     *
+     * @since 1.1.0
+     */
+    private final RasterCommand command;
+
+    /**
+     * The gray level, 0 to 255, below which the dot is printed
+     *
+     * @since 1.1.0
+     */
+    private final int threshold;
+
+    /**
+     * The maximum dots of each row, the printer printable width
+     *
+     * @since 1.1.0
+     */
+    private final int width;
+
+    /**
+     * Remove the blank rows at the bottom of each page
+     *
+     * @since 1.1.0
+     */
+    private final boolean trim;
+
+    /**
+     * @param command   The command to use
+     * @param threshold The gray level, 0 to 255, below which the dot is printed
+     * @param width     The maximum dots of each row
+     * @param trim      Remove the blank rows at the bottom of each page
+     * @since 1.1.0
+     */
+    public EscPosRaster(RasterCommand command, int threshold, int width, boolean trim) {
+        this.command = command;
+        this.threshold = threshold;
+        this.width = width;
+        this.trim = trim;
+    }
+
+    /**
+     * Encode one page image, can be called by several threads at the same time
+     *
+     * @param image The gray page image
+     * @return The page commands
+     * @since 1.1.0
+     */
+    public byte[] encode(BufferedImage image) {
+        Raster raster      = image.getRaster();
+        int    dots        = Math.min(image.getWidth(), width);
+        int    bytesPerRow = (dots + 7) / 8;
+        int[]  samples     = new int[dots];
+
+        byte[] bits = new byte[bytesPerRow * image.getHeight()];
+        int    rows = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            raster.getSamples(0, y, dots, 1, 0, samples);
+            int offset = y * bytesPerRow;
+            boolean blank = true;
+            for (int x = 0; x < dots; x++) {
+                if (samples[x] < threshold) {
+                    bits[offset + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+                    blank = false;
+                }
+            }
+            if (!blank || !trim) {
+                rows = y + 1;
+            }
+        }
+
+        int bandRows = command == RasterCommand.GS_L
+                ? Math.min(BAND_ROWS, (GS_L_MAX_LENGTH - GS_L_HEADER_LENGTH) / bytesPerRow)
+                : BAND_ROWS;
+
+        ByteArrayOutputStream page = new ByteArrayOutputStream(rows * bytesPerRow + 64);
+        for (int row = 0; row < rows; row += bandRows) {
+            int band = Math.min(bandRows, rows - row);
+            if (command == RasterCommand.GS_L) {
+                gsL(page, bits, row * bytesPerRow, bytesPerRow, dots, band);
+            } else {
+                gsV0(page, bits, row * bytesPerRow, bytesPerRow, band);
+            }
+        }
+        return page.toByteArray();
+    }
+
+    /**
+     * GS v 0 m xL xH yL yH d1...dk
+     *
+     * @param out         The page commands
+     * @param bits        The page bits
+     * @param offset      The band offset in the page bits
+     * @param bytesPerRow The bytes of each row
+     * @param rows        The band rows
+     * @since 1.1.0
+     */
+    private void gsV0(ByteArrayOutputStream out, byte[] bits, int offset, int bytesPerRow, int rows) {
+        out.write(0x1D);
+        out.write('v');
+        out.write('0');
+        out.write(0);
+        out.write(bytesPerRow & 0xFF);
+        out.write(bytesPerRow >> 8);
+        out.write(rows & 0xFF);
+        out.write(rows >> 8);
+        out.write(bits, offset, bytesPerRow * rows);
+    }
+
+    /**
+     * GS ( L pL pH m fn a bx by c xL xH yL yH d1...dk, to store the band graphics,
+     * followed by GS ( L pL pH m fn to print it
+     *
+     * @param out         The page commands
+     * @param bits        The page bits
+     * @param offset      The band offset in the page bits
+     * @param bytesPerRow The bytes of each row
+     * @param dots        The dots of each row
+     * @param rows        The band rows
+     * @since 1.1.0
+     */
+    private void gsL(ByteArrayOutputStream out, byte[] bits, int offset, int bytesPerRow, int dots, int rows) {
+        int length = GS_L_HEADER_LENGTH + bytesPerRow * rows;
+        out.write(0x1D);
+        out.write('(');
+        out.write('L');
+        out.write(length & 0xFF);
+        out.write(length >> 8);
+        out.write(48);
+        out.write(112);
+        out.write(48);
+        out.write(1);
+        out.write(1);
+        out.write(49);
+        out.write(dots & 0xFF);
+        out.write(dots >> 8);
+        out.write(rows & 0xFF);
+        out.write(rows >> 8);
+        out.write(bits, offset, bytesPerRow * rows);
+
+        out.write(0x1D);
+        out.write('(');
+        out.write('L');
+        out.write(2);
+        out.write(0);
+        out.write(48);
+        out.write(50);
+    }
+}
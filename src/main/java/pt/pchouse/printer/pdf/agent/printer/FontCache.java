@@ -0,0 +1,110 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * The parsed fonts shared between the documents, so the fonts embedded in every receipt are parsed once.
+ * The key is the SHA-256 of the font dictionary with its descriptor, encoding, widths and embedded font
+ * streams, so only fonts with the same content are shared. A font is lent to one document at a time,
+ * PDFBox fonts are not thread safe, and returns to the cache when the document is closed.
+ * The least recently used fonts are evicted when the estimated bytes of the idle fonts exceed the limit.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class FontCache extends ResourcePool<PDFont>
+{
+
+    /**
+     * The estimated memory of a parsed font as a multiple of the embedded font streams size
+     *
+     * @since 1.1.0
+     */
+    private static final int WEIGHT_FACTOR = 3;
+
+    /**
+     * The estimated memory of a parsed font besides the embedded font streams
+     *
+     * @since 1.1.0
+     */
+    private static final int WEIGHT_OVERHEAD = 4096;
+
+    /**
+     * The maximum estimated bytes of the idle fonts, zero disables the cache
+     *
+     * @since 1.1.0
+     */
+    @Value("${render.font.cache.max.bytes:33554432}")
+    private long maxBytes;
+
+    /**
+     * @since 1.1.0
+     */
+    @Override
+    protected long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @since 1.1.0
+     */
+    @Override
+    protected String getName() {
+        return "font";
+    }
+
+    /**
+     * The key of the font. The Type3 fonts are not shared, their glyphs are content streams
+     * with resources of the document.
+     *
+     * @param font The font dictionary
+     * @return The key, null if not shared
+     * @throws IOException If fails to read the font streams
+     * @since 1.1.0
+     */
+    public ResourceKey key(COSBase font) throws IOException {
+        if (!(font instanceof COSDictionary dictionary)
+                || COSName.TYPE3.equals(dictionary.getCOSName(COSName.SUBTYPE))) {
+            return null;
+        }
+        return ResourceKey.of(dictionary);
+    }
+
+    /**
+     * The estimated memory of the parsed font
+     *
+     * @param key The font key
+     * @return The bytes
+     * @since 1.1.0
+     */
+    public long weight(ResourceKey key) {
+        return key.streamBytes() * WEIGHT_FACTOR + WEIGHT_OVERHEAD;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The jobs of the recent requests by idempotency key, so a retried request gets the job of the first one
+ * and is never printed again.
+ * The key sent by the client is kept print.idempotency.ttl milliseconds and must be used with the same
+ * request. Without a key, the request fingerprint (operation, printer, parameters and pdf hash) of the same
+ * client is the key, kept print.idempotency.window milliseconds.
+ * The failed and cancelled jobs are not kept, their retry is printed. The map is bounded by
+ * print.idempotency.max entries, the closest to expire are evicted first.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class IdempotencyCache
+{
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The milliseconds the keys sent by the clients are kept
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.idempotency.ttl:600000}")
+    private long ttl;
+
+    /**
+     * The milliseconds the fingerprint of a request without key is kept, zero disables the derived keys
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.idempotency.window:10000}")
+    private long window;
+
+    /**
+     * The maximum keys kept
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.idempotency.max:1000}")
+    private int maxEntries;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintMetrics printMetrics;
+
+    /**
+     * The entries by client and key
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The entries of the keys sent by the clients in insertion order, that is the expiration order
+     * as all live print.idempotency.ttl milliseconds
+     *
+     * @since 1.1.0
+     */
+    private final Queue<Entry> keys = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The entries of the request fingerprints in insertion order, that is the expiration order
+     * as all live print.idempotency.window milliseconds
+     *
+     * @since 1.1.0
+     */
+    private final Queue<Entry> fingerprints = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The request fingerprint, only computed if needed
+     *
+     * @since 1.1.0
+     */
+    @FunctionalInterface
+    public interface Fingerprint
+    {
+        /**
+         * @return The fingerprint, the operation first
+         * @throws IOException If fails to hash the pdf
+         * @since 1.1.0
+         */
+        String get() throws IOException;
+    }
+
+    /**
+     * The job of the request
+     *
+     * @param job       The job
+     * @param duplicate True if the job is of a previous request
+     * @since 1.1.0
+     */
+    public record Result(PrintJob job, boolean duplicate)
+    {
+    }
+
+    /**
+     * A kept key
+     *
+     * @param id          The client and key
+     * @param fingerprint The request fingerprint
+     * @param job         The job, completed when the first request submits it
+     * @param deadline    The expiration, from System.nanoTime()
+     * @since 1.1.0
+     */
+    private record Entry(String id, String fingerprint, CompletableFuture<PrintJob> job, long deadline)
+    {
+        /**
+         * @param now The current System.nanoTime()
+         * @return True if the key is expired, the submit failed or the job can be printed again
+         * @since 1.1.0
+         */
+        boolean isStale(long now) {
+            if (!job.isDone()) {
+                return false;
+            }
+            if (job.isCompletedExceptionally()) {
+                return true;
+            }
+            PrintJob.Status status = job.join().getStatus();
+            return now - deadline >= 0 || status == PrintJob.Status.FAILED || status == PrintJob.Status.CANCELLED;
+        }
+    }
+
+    /**
+     * Submit the job of the request unless a previous request with the same key has a job.
+     * The first request puts a placeholder of its job in the map and submits the job outside the map lock,
+     * the same requests at the same time wait for the placeholder.
+     *
+     * @param key         The key sent by the client, null or blank to use the fingerprint
+     * @param client      The client address
+     * @param fingerprint The request fingerprint
+     * @param submit      Submit the job, only called if the request is not a duplicate
+     * @return The job and if it is a duplicate
+     * @throws PrinterException If the key was used by a different request
+     * @throws IOException      If fails to compute the fingerprint
+     * @since 1.1.0
+     */
+    public Result submit(String key, String client, Fingerprint fingerprint, Supplier<PrintJob> submit) throws
+            PrinterException,
+            IOException
+    {
+        boolean sent = key != null && !key.isBlank();
+        if (!sent && window <= 0) {
+            return new Result(submit.get(), false);
+        }
+
+        String requestFingerprint = fingerprint.get();
+        String id                 = client + " " + (sent ? key : requestFingerprint);
+        long   now                = System.nanoTime();
+        long   deadline           = now + TimeUnit.MILLISECONDS.toNanos(sent ? ttl : window);
+        Entry  created            = new Entry(id, requestFingerprint, new CompletableFuture<>(), deadline);
+
+        while (true) {
+            Entry existing = entries.putIfAbsent(id, created);
+            if (existing == null) {
+                return new Result(submit(created, submit, sent ? keys : fingerprints, now), false);
+            }
+            if (existing.isStale(now)) {
+                entries.remove(id, existing);
+                continue;
+            }
+            if (!existing.fingerprint().equals(requestFingerprint)) {
+                throw new PrinterException("The idempotency key was used by a different request");
+            }
+            PrintJob job;
+            try {
+                // The first request is submitting its job, the queue submit does not block
+                job = existing.job().join();
+            } catch (CompletionException e) {
+                // The first request failed to submit, it removed its entry, so this request submits again
+                continue;
+            }
+            logger.debug("Duplicate request of job {}", job.getId());
+            printMetrics.duplicate(requestFingerprint.substring(0, requestFingerprint.indexOf(' ')));
+            return new Result(job, true);
+        }
+    }
+
+    /**
+     * Submit the job of a new entry, outside the map lock, and complete the entry with it.
+     * If the submit fails, the entry is removed and its waiting duplicates submit again.
+     *
+     * @param entry  The new entry
+     * @param submit Submit the job
+     * @param queue  The expiration queue of the entry
+     * @param now    The current System.nanoTime()
+     * @return The job
+     * @since 1.1.0
+     */
+    private PrintJob submit(Entry entry, Supplier<PrintJob> submit, Queue<Entry> queue, long now) {
+        PrintJob job;
+        try {
+            job = submit.get();
+        } catch (RuntimeException | Error e) {
+            entries.remove(entry.id(), entry);
+            entry.job().completeExceptionally(e);
+            throw e;
+        }
+        entry.job().complete(job);
+        queue.add(entry);
+        evict(now);
+        return job;
+    }
+
+    /**
+     * Evict the expired entries of both queues, then the closest to expire while above the maximum.
+     * A client key does not hold the expired fingerprints after it, that live less.
+     *
+     * @param now The current System.nanoTime()
+     * @since 1.1.0
+     */
+    private void evict(long now) {
+        expire(keys, now);
+        expire(fingerprints, now);
+        while (entries.size() > maxEntries) {
+            Entry key         = keys.peek();
+            Entry fingerprint = fingerprints.peek();
+            if (key == null && fingerprint == null) {
+                // the entries not queued yet are being submitted
+                return;
+            }
+            if (fingerprint == null || (key != null && key.deadline() - fingerprint.deadline() < 0)) {
+                evict(keys, key);
+            } else {
+                evict(fingerprints, fingerprint);
+            }
+        }
+    }
+
+    /**
+     * Evict the expired entries at the head of the queue
+     *
+     * @param queue The expiration queue
+     * @param now   The current System.nanoTime()
+     * @since 1.1.0
+     */
+    private void expire(Queue<Entry> queue, long now) {
+        Entry oldest;
+        while ((oldest = queue.peek()) != null && now - oldest.deadline() >= 0) {
+            evict(queue, oldest);
+        }
+    }
+
+    /**
+     * Remove the entry from its queue and from the map, if not removed by other thread
+     *
+     * @param queue The expiration queue
+     * @param entry The entry
+     * @since 1.1.0
+     */
+    private void evict(Queue<Entry> queue, Entry entry) {
+        if (queue.remove(entry)) {
+            entries.remove(entry.id(), entry);
+        }
+    }
+}
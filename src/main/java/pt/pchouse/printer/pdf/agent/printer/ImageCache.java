@@ -0,0 +1,171 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The image XObjects shared between the documents, so the logos and the artwork printed in every
+ * document are decoded once. The key is the SHA-256 of the image stream with its dictionary, soft mask
+ * and color space. The shared image is a copy of the image stream detached from the document, that keeps
+ * the decoded image, and is lent to one document at a time, PDFBox images are not thread safe.
+ * The least recently used images are evicted when the estimated bytes of the idle images exceed the limit.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class ImageCache extends ResourcePool<PDImageXObject>
+{
+
+    /**
+     * The estimated bytes of each decoded pixel
+     *
+     * @since 1.1.0
+     */
+    private static final int PIXEL_BYTES = 4;
+
+    /**
+     * The maximum estimated bytes of the idle images, zero disables the cache
+     *
+     * @since 1.1.0
+     */
+    @Value("${render.image.cache.max.bytes:67108864}")
+    private long maxBytes;
+
+    /**
+     * @since 1.1.0
+     */
+    @Override
+    protected long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @since 1.1.0
+     */
+    @Override
+    protected String getName() {
+        return "image";
+    }
+
+    /**
+     * The key of the image XObject. The form XObjects and the stencil masks are not shared,
+     * they are drawn with the document resources and colors.
+     *
+     * @param xObject The XObject stream
+     * @return The key, null if not shared
+     * @throws IOException If fails to read the image streams
+     * @since 1.1.0
+     */
+    public ResourceKey key(COSBase xObject) throws IOException {
+        if (!(xObject instanceof COSStream stream)
+                || !COSName.IMAGE.equals(stream.getCOSName(COSName.SUBTYPE))
+                || stream.getBoolean(COSName.IMAGE_MASK, false)) {
+            return null;
+        }
+        return ResourceKey.of(stream);
+    }
+
+    /**
+     * Create the image from a copy of the stream, detached from the document. The color space is
+     * resolved without the document resources, an image that needs them is not shared.
+     *
+     * @param stream The image stream
+     * @return The image
+     * @throws IOException If fails to copy the stream or to resolve the color space
+     * @since 1.1.0
+     */
+    public PDImageXObject create(COSStream stream) throws IOException {
+        PDImageXObject image = new PDImageXObject(
+                new PDStream((COSStream) detach(stream, new IdentityHashMap<>())), null
+        );
+        image.getColorSpace();
+        return image;
+    }
+
+    /**
+     * The estimated memory of the image with the decoded pixels
+     *
+     * @param key   The image key
+     * @param image The image
+     * @return The bytes
+     * @since 1.1.0
+     */
+    public long weight(ResourceKey key, PDImageXObject image) {
+        return key.streamBytes() + (long) image.getWidth() * image.getHeight() * PIXEL_BYTES;
+    }
+
+    /**
+     * Copy the object and the objects it references, resolving the indirect objects
+     *
+     * @param object The object
+     * @param copies The objects already copied
+     * @return The copy
+     * @throws IOException If fails to copy a stream
+     * @since 1.1.0
+     */
+    private static COSBase detach(COSBase object, Map<COSBase, COSBase> copies) throws IOException {
+        if (object instanceof COSObject indirect) {
+            object = indirect.getObject();
+        }
+        if (!(object instanceof COSArray || object instanceof COSDictionary)) {
+            // the names, numbers, strings and booleans are not changed by the render
+            return object == null ? COSNull.NULL : object;
+        }
+        COSBase copy = copies.get(object);
+        if (copy != null) {
+            return copy;
+        }
+
+        if (object instanceof COSArray array) {
+            COSArray arrayCopy = new COSArray();
+            copies.put(array, arrayCopy);
+            for (COSBase item : array) {
+                arrayCopy.add(detach(item, copies));
+            }
+            return arrayCopy;
+        }
+
+        COSDictionary dictionary     = (COSDictionary) object;
+        COSDictionary dictionaryCopy = dictionary instanceof COSStream ? new COSStream() : new COSDictionary();
+        copies.put(dictionary, dictionaryCopy);
+        for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+            dictionaryCopy.setItem(entry.getKey(), detach(entry.getValue(), copies));
+        }
+        if (dictionary instanceof COSStream stream) {
+            try (InputStream in = stream.createRawInputStream();
+                 OutputStream out = ((COSStream) dictionaryCopy).createRawOutputStream()) {
+                in.transferTo(out);
+            }
+        }
+        return dictionaryCopy;
+    }
+}
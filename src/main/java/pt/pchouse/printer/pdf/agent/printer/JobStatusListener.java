@@ -0,0 +1,35 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+/**
+ * Listener of the print jobs status changes
+ *
+ * @since 1.1.0
+ */
+@FunctionalInterface
+public interface JobStatusListener
+{
+
+    /**
+     * Called in the thread that changed the status, must not block
+     *
+     * @param job The job with the new status
+     * @since 1.1.0
+     */
+    void onStatusChange(PrintJob job);
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.Pageable;
+import java.awt.print.Paper;
+import java.awt.print.Printable;
+import java.io.IOException;
+
+/**
+ * The pdf pages rendered to images only when printed, keeping only the image of the page being printed,
+ * used by the image render mode for the large documents
+ *
+ * @since 1.1.0
+ */
+public class PageByPageImages implements Pageable
+{
+
+    /**
+     * The points per inch of the pdf and java.awt.print coordinates
+     *
+     * @since 1.1.0
+     */
+    private static final float POINTS_PER_INCH = 72f;
+
+    /**
+     * @since 1.1.0
+     */
+    private final PDDocument document;
+
+    /**
+     * @since 1.1.0
+     */
+    private final PDFRenderer renderer;
+
+    /**
+     * The resolution of the images
+     *
+     * @since 1.1.0
+     */
+    private final float dpi;
+
+    /**
+     * The index of the rendered page, -1 if none
+     *
+     * @since 1.1.0
+     */
+    private int renderedIndex = -1;
+
+    /**
+     * The image of the rendered page, a page can be printed in several calls
+     *
+     * @since 1.1.0
+     */
+    private BufferedImage rendered;
+
+    /**
+     * @param document The document, not closed
+     * @param dpi      The resolution of the images
+     * @since 1.1.0
+     */
+    public PageByPageImages(PDDocument document, float dpi) {
+        this.document = document;
+        this.renderer = new PDFRenderer(document);
+        this.dpi = dpi;
+    }
+
+    @Override
+    public int getNumberOfPages() {
+        return document.getNumberOfPages();
+    }
+
+    @Override
+    public PageFormat getPageFormat(int pageIndex) throws IndexOutOfBoundsException {
+        PDPage      page    = document.getPage(pageIndex);
+        PDRectangle cropBox = page.getCropBox();
+        boolean     rotated = page.getRotation() % 180 != 0;
+        double      width   = rotated ? cropBox.getHeight() : cropBox.getWidth();
+        double      height  = rotated ? cropBox.getWidth() : cropBox.getHeight();
+
+        Paper paper = new Paper();
+        paper.setSize(width, height);
+        paper.setImageableArea(0, 0, width, height);
+
+        PageFormat pageFormat = new PageFormat();
+        pageFormat.setPaper(paper);
+        return pageFormat;
+    }
+
+    @Override
+    public Printable getPrintable(int pageIndex) throws IndexOutOfBoundsException {
+        return (graphics, pageFormat, index) -> {
+            BufferedImage image;
+            try {
+                image = render(pageIndex);
+            } catch (IOException e) {
+                throw new java.awt.print.PrinterException(e.getMessage());
+            }
+            ((Graphics2D) graphics).drawImage(
+                    image,
+                    (int) Math.round(pageFormat.getImageableX()),
+                    (int) Math.round(pageFormat.getImageableY()),
+                    (int) Math.round(pageFormat.getImageableWidth()),
+                    (int) Math.round(pageFormat.getImageableHeight()),
+                    null
+            );
+            return Printable.PAGE_EXISTS;
+        };
+    }
+
+    /**
+     * Render the page, releasing the previous page image
+     *
+     * @param pageIndex The page index
+     * @return The page image
+     * @throws IOException If render fails
+     * @since 1.1.0
+     */
+    private synchronized BufferedImage render(int pageIndex) throws IOException {
+        if (pageIndex != renderedIndex) {
+            rendered = null;
+            rendered = renderer.renderImageWithDPI(pageIndex, dpi, ImageType.GRAY);
+            renderedIndex = pageIndex;
+        }
+        return rendered;
+    }
+}
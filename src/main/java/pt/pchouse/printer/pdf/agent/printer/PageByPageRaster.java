@@ -0,0 +1,209 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.Timer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ESC/POS raw job of the documents with the pdf pages rendered to raster commands only when the spool
+ * reads them, keeping only the raster of the page being read, used by the ESC/POS render mode
+ * for the large documents. The stream is the init, then the raster of each page of each document
+ * followed by the document post operations.
+ *
+ * @since 1.1.0
+ */
+public class PageByPageRaster extends InputStream
+{
+
+    /**
+     * @since 1.1.0
+     */
+    private final List<PDDocument> documents;
+
+    /**
+     * The post operations of each document
+     *
+     * @since 1.1.0
+     */
+    private final List<byte[]> postOperations;
+
+    /**
+     * @since 1.1.0
+     */
+    private final EscPosRaster encoder;
+
+    /**
+     * The maximum dots of each row, the page width is scaled to it
+     *
+     * @since 1.1.0
+     */
+    private final int rasterWidth;
+
+    /**
+     * The timer of each page render
+     *
+     * @since 1.1.0
+     */
+    private final Timer render;
+
+    /**
+     * The renderer of the current document
+     *
+     * @since 1.1.0
+     */
+    private PDFRenderer renderer;
+
+    /**
+     * The index of the current document
+     *
+     * @since 1.1.0
+     */
+    private int document = 0;
+
+    /**
+     * The index of the next page of the current document to render
+     *
+     * @since 1.1.0
+     */
+    private int page = 0;
+
+    /**
+     * The bytes being read, the init, a page raster or post operations
+     *
+     * @since 1.1.0
+     */
+    private byte[] chunk;
+
+    /**
+     * The position in the chunk
+     *
+     * @since 1.1.0
+     */
+    private int position = 0;
+
+    /**
+     * @param init           The ESC/POS init sent first
+     * @param documents      The documents, not closed
+     * @param postOperations The post operations of each document, empty for none
+     * @param encoder        The raster encoder
+     * @param rasterWidth    The maximum dots of each row
+     * @param render         The timer of each page render
+     * @since 1.1.0
+     */
+    public PageByPageRaster(
+            byte[] init,
+            List<PDDocument> documents,
+            List<byte[]> postOperations,
+            EscPosRaster encoder,
+            int rasterWidth,
+            Timer render
+    )
+    {
+        this.documents = documents;
+        this.postOperations = postOperations;
+        this.encoder = encoder;
+        this.rasterWidth = rasterWidth;
+        this.render = render;
+        this.chunk = init;
+    }
+
+    /**
+     * The scale of the page to the raster width, the rotated pages are scaled by their height
+     *
+     * @param page        The page
+     * @param rasterWidth The maximum dots of each row
+     * @return The scale
+     * @since 1.1.0
+     */
+    public static float scale(PDPage page, int rasterWidth) {
+        PDRectangle cropBox = page.getCropBox();
+        return rasterWidth / (page.getRotation() % 180 == 0 ? cropBox.getWidth() : cropBox.getHeight());
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!next()) {
+            return -1;
+        }
+        return chunk[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!next()) {
+            return -1;
+        }
+        int read = Math.min(length, chunk.length - position);
+        System.arraycopy(chunk, position, bytes, offset, read);
+        position += read;
+        return read;
+    }
+
+    /**
+     * Make the next bytes available, rendering the next page when the current chunk is read
+     *
+     * @return False at the end of the job
+     * @throws IOException If render fails
+     * @since 1.1.0
+     */
+    private boolean next() throws IOException {
+        while (chunk == null || position == chunk.length) {
+            // the read chunk is released before the next page is rendered
+            chunk = null;
+            position = 0;
+            if (document == documents.size()) {
+                return false;
+            }
+
+            PDDocument current = documents.get(document);
+            if (page < current.getNumberOfPages()) {
+                if (renderer == null) {
+                    renderer = new PDFRenderer(current);
+                }
+                long start = System.nanoTime();
+                chunk = encoder.encode(renderer.renderImage(
+                        page,
+                        scale(current.getPage(page), rasterWidth),
+                        ImageType.GRAY
+                ));
+                render.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                page++;
+                continue;
+            }
+
+            chunk = postOperations.get(document);
+            renderer = null;
+            page = 0;
+            document++;
+        }
+        return true;
+    }
+}
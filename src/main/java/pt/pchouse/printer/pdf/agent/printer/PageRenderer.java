@@ -0,0 +1,619 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Render the pdf pages in parallel in a dedicated pool and deliver them in the page order.
+ * A PDDocument is not thread safe, so each render thread of the job uses its own document
+ * loaded from the same pdf source, the documents are reused by the pages of the job.
+ * At most render.window pages are rendered ahead of the page being delivered, so the memory
+ * retained by the rendered pages is bounded.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class PageRenderer
+{
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The render threads, zero for the number of processors
+     *
+     * @since 1.1.0
+     */
+    @Value("${render.parallelism:0}")
+    private int parallelism;
+
+    /**
+     * The maximum pages rendered and not yet delivered of each job
+     *
+     * @since 1.1.0
+     */
+    @Value("${render.window:8}")
+    private int window;
+
+    /**
+     * The render pool
+     *
+     * @since 1.1.0
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private DocumentLoader documentLoader;
+
+    /**
+     * Render one page
+     *
+     * @param <T> The rendered page type
+     * @since 1.1.0
+     */
+    @FunctionalInterface
+    public interface PageRender<T>
+    {
+        /**
+         * @param document The document, only used by the current thread during the call
+         * @param renderer The document renderer
+         * @param index    The page index
+         * @return The rendered page
+         * @throws IOException If fails
+         * @since 1.1.0
+         */
+        T render(PDDocument document, PDFRenderer renderer, int index) throws IOException;
+    }
+
+    /**
+     * Receive the rendered pages in the page order
+     *
+     * @param <T> The rendered page type
+     * @since 1.1.0
+     */
+    @FunctionalInterface
+    public interface PageConsumer<T>
+    {
+        /**
+         * @param index The page index
+         * @param page  The rendered page
+         * @throws IOException If fails
+         * @since 1.1.0
+         */
+        void accept(int index, T page) throws IOException;
+    }
+
+    /**
+     * Receive the rendered pages of several documents in the documents and page order
+     *
+     * @param <T> The rendered page type
+     * @since 1.1.0
+     */
+    @FunctionalInterface
+    public interface DocumentPageConsumer<T>
+    {
+        /**
+         * @param document The document index
+         * @param index    The page index
+         * @param page     The rendered page
+         * @throws IOException If fails
+         * @since 1.1.0
+         */
+        void accept(int document, int index, T page) throws IOException;
+    }
+
+    /**
+     * Create the render pool
+     *
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void start() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        window = Math.max(window, 1);
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("PrinterAgent-render-" + thread.getPoolIndex());
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        }, null, false);
+        logger.debug("Page render pool with {} threads and window of {} pages", parallelism, window);
+    }
+
+    /**
+     * Shutdown the render pool
+     *
+     * @since 1.1.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Render all the pages of the pdf, delivering them in the page order in the calling thread.
+     * Documents with one page, large documents or without parallelism are rendered in the calling thread,
+     * one page at a time.
+     *
+     * @param pdf      The pdf source
+     * @param parse    The timer of each document load
+     * @param render   The page render
+     * @param consumer The rendered pages consumer
+     * @param <T>      The rendered page type
+     * @throws IOException If load or render the pdf fails
+     * @since 1.1.0
+     */
+    public <T> void render(PdfSource pdf, Timer parse, PageRender<T> render, PageConsumer<T> consumer) throws
+            IOException
+    {
+        renderAll(List.of(pdf), parse, render, (document, index, page) -> consumer.accept(index, page));
+    }
+
+    /**
+     * Render all the pages of all the pdfs, delivering them in the documents and page order in the calling
+     * thread. The documents are loaded at the same time and the pages of all the documents are rendered
+     * in parallel. If any of the documents is large or without parallelism all are loaded and rendered
+     * in the calling thread, one page at a time.
+     *
+     * @param pdfs     The pdf sources
+     * @param parse    The timer of each document load
+     * @param render   The page render
+     * @param consumer The rendered pages consumer
+     * @param <T>      The rendered page type
+     * @throws IOException If load or render a pdf fails
+     * @since 1.1.0
+     */
+    public <T> void renderAll(
+            List<PdfSource> pdfs,
+            Timer parse,
+            PageRender<T> render,
+            DocumentPageConsumer<T> consumer
+    ) throws IOException
+    {
+        List<Documents> documents  = pdfs.stream().map(pdf -> new Documents(pdf, documentLoader, parse)).toList();
+        boolean         sequential = parallelism <= 1 || pdfs.stream().anyMatch(documentLoader::isLarge);
+        try {
+            if (sequential) {
+                for (int document = 0; document < documents.size(); document++) {
+                    Documents.Entry entry = documents.get(document).borrow();
+                    for (int index = 0; index < entry.document().getNumberOfPages(); index++) {
+                        consumer.accept(document, index, render.render(entry.document(), entry.renderer(), index));
+                    }
+                    // release the document before the next one
+                    documents.get(document).close();
+                }
+                return;
+            }
+
+            List<Documents.Entry> loaded = loadEntries(documents);
+            int[] pages = new int[documents.size()];
+            for (int document = 0; document < documents.size(); document++) {
+                pages[document] = loaded.get(document).document().getNumberOfPages();
+                documents.get(document).giveBack(loaded.get(document));
+            }
+            renderParallel(documents, pages, render, consumer);
+        } finally {
+            close(documents);
+        }
+    }
+
+    /**
+     * Load all the pdfs at the same time in the pool
+     *
+     * @param pdfs  The pdf sources
+     * @param parse The timer of each document load
+     * @return The loaded documents, must be closed
+     * @throws IOException If load a pdf fails
+     * @since 1.1.0
+     */
+    public LoadedDocuments loadAll(List<PdfSource> pdfs, Timer parse) throws IOException {
+        List<Documents> documents = pdfs.stream().map(pdf -> new Documents(pdf, documentLoader, parse)).toList();
+        try {
+            return new LoadedDocuments(
+                    documents,
+                    loadEntries(documents).stream().map(Documents.Entry::document).toList()
+            );
+        } catch (IOException | RuntimeException e) {
+            close(documents);
+            throw e;
+        }
+    }
+
+    /**
+     * Load one document of each pdf at the same time in the pool
+     *
+     * @param documents The job documents
+     * @return The loaded document of each pdf, in the same order
+     * @throws IOException If load fails
+     * @since 1.1.0
+     */
+    private List<Documents.Entry> loadEntries(List<Documents> documents) throws IOException {
+        if (documents.size() == 1) {
+            return List.of(documents.get(0).borrow());
+        }
+
+        List<Future<Documents.Entry>> futures = new ArrayList<>(documents.size());
+        for (Documents document : documents) {
+            futures.add(pool.submit(() -> {
+                try {
+                    return document.borrow();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        List<Documents.Entry> loaded = new ArrayList<>(documents.size());
+        try {
+            for (Future<Documents.Entry> future : futures) {
+                loaded.add(future.get());
+            }
+            return loaded;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Document load interrupted", e);
+        } finally {
+            // the documents are closed after, so wait for the documents still being loaded
+            awaitAll(futures);
+        }
+    }
+
+    /**
+     * Render the pages in the pool, keeping at most window pages in flight
+     *
+     * @param documents The job documents
+     * @param pages     The number of pages of each document
+     * @param render    The page render
+     * @param consumer  The rendered pages consumer
+     * @param <T>       The rendered page type
+     * @throws IOException If render fails
+     * @since 1.1.0
+     */
+    private <T> void renderParallel(
+            List<Documents> documents,
+            int[] pages,
+            PageRender<T> render,
+            DocumentPageConsumer<T> consumer
+    ) throws IOException
+    {
+        int total = Arrays.stream(pages).sum();
+        int[] documentOf = new int[total];
+        int[] pageOf = new int[total];
+        for (int document = 0, position = 0; document < pages.length; document++) {
+            for (int index = 0; index < pages[document]; index++, position++) {
+                documentOf[position] = document;
+                pageOf[position] = index;
+            }
+        }
+
+        AtomicBoolean   aborted = new AtomicBoolean(false);
+        List<Future<T>> futures = new ArrayList<>(total);
+        try {
+            for (int position = 0; position < total; position++) {
+                while (futures.size() < total && futures.size() < position + window) {
+                    Documents document = documents.get(documentOf[futures.size()]);
+                    int       page     = pageOf[futures.size()];
+                    futures.add(pool.submit(() -> renderPage(document, render, page, aborted)));
+                }
+
+                T rendered = futures.get(position).get();
+                futures.set(position, null);
+                consumer.accept(documentOf[position], pageOf[position], rendered);
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Page render interrupted", e);
+        } finally {
+            // the documents are closed after, so the pages not started are skipped
+            // and the pages still being rendered are waited for
+            aborted.set(true);
+            awaitAll(futures);
+        }
+    }
+
+    /**
+     * Render one page with a document of the job
+     *
+     * @param documents The pdf documents
+     * @param render    The page render
+     * @param index     The page index
+     * @param aborted   If the job ended
+     * @param <T>       The rendered page type
+     * @return The rendered page, null if the job ended
+     * @since 1.1.0
+     */
+    private <T> T renderPage(Documents documents, PageRender<T> render, int index, AtomicBoolean aborted) {
+        if (aborted.get()) {
+            return null;
+        }
+        try {
+            Documents.Entry entry = documents.borrow();
+            try {
+                return render.render(entry.document(), entry.renderer(), index);
+            } finally {
+                documents.giveBack(entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Wait for all the futures, ignoring the results
+     *
+     * @param futures The futures, can contain null
+     * @since 1.1.0
+     */
+    private static void awaitAll(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            if (future != null) {
+                try {
+                    future.get();
+                } catch (Exception ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * The IOException of the failed task
+     *
+     * @param e The task exception
+     * @return The IOException
+     * @since 1.1.0
+     */
+    private static IOException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof UncheckedIOException unchecked) {
+            return unchecked.getCause();
+        }
+        return new IOException(e.getCause());
+    }
+
+    /**
+     * Close the documents of all the pdfs
+     *
+     * @param documents The job documents
+     * @throws IOException If close fails
+     * @since 1.1.0
+     */
+    private static void close(List<Documents> documents) throws IOException {
+        IOException exception = null;
+        for (Documents document : documents) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * The documents loaded by loadAll, closed together
+     *
+     * @since 1.1.0
+     */
+    public static class LoadedDocuments implements Closeable
+    {
+
+        /**
+         * @since 1.1.0
+         */
+        private final List<Documents> sources;
+
+        /**
+         * @since 1.1.0
+         */
+        private final List<PDDocument> documents;
+
+        /**
+         * @param sources   The documents of each pdf
+         * @param documents The loaded document of each pdf
+         * @since 1.1.0
+         */
+        private LoadedDocuments(List<Documents> sources, List<PDDocument> documents) {
+            this.sources = sources;
+            this.documents = documents;
+        }
+
+        /**
+         * The loaded documents, in the pdfs order
+         *
+         * @return The documents
+         * @since 1.1.0
+         */
+        public List<PDDocument> getDocuments() {
+            return documents;
+        }
+
+        /**
+         * Close all the documents
+         *
+         * @throws IOException If close fails
+         * @since 1.1.0
+         */
+        @Override
+        public void close() throws IOException {
+            PageRenderer.close(sources);
+        }
+    }
+
+    /**
+     * The documents of one render job, loaded on demand, one for each thread rendering at the same time
+     *
+     * @since 1.1.0
+     */
+    private static class Documents
+    {
+
+        /**
+         * A loaded document with its renderer
+         *
+         * @param source   The document source
+         * @param document The document
+         * @param renderer The renderer
+         * @since 1.1.0
+         */
+        record Entry(RandomAccessRead source, PDDocument document, PDFRenderer renderer)
+        {
+        }
+
+        /**
+         * @since 1.1.0
+         */
+        private final PdfSource pdf;
+
+        /**
+         * @since 1.1.0
+         */
+        private final DocumentLoader loader;
+
+        /**
+         * The timer of each document load
+         *
+         * @since 1.1.0
+         */
+        private final Timer parse;
+
+        /**
+         * The documents not in use
+         *
+         * @since 1.1.0
+         */
+        private final ConcurrentLinkedQueue<Entry> idle = new ConcurrentLinkedQueue<>();
+
+        /**
+         * All the loaded documents
+         *
+         * @since 1.1.0
+         */
+        private final ConcurrentLinkedQueue<Entry> all = new ConcurrentLinkedQueue<>();
+
+        /**
+         * @param pdf    The pdf source
+         * @param loader The documents loader
+         * @param parse  The timer of each document load
+         * @since 1.1.0
+         */
+        Documents(PdfSource pdf, DocumentLoader loader, Timer parse) {
+            this.pdf = pdf;
+            this.loader = loader;
+            this.parse = parse;
+        }
+
+        /**
+         * Get an idle document or load a new one
+         *
+         * @return The document
+         * @throws IOException If load fails
+         * @since 1.1.0
+         */
+        Entry borrow() throws IOException {
+            Entry entry = idle.poll();
+            if (entry != null) {
+                return entry;
+            }
+
+            long             start  = System.nanoTime();
+            RandomAccessRead source = pdf.open();
+            try {
+                PDDocument document = loader.load(pdf, source);
+                parse.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                entry = new Entry(source, document, new PDFRenderer(document));
+            } catch (IOException e) {
+                source.close();
+                throw e;
+            }
+            all.add(entry);
+            return entry;
+        }
+
+        /**
+         * Return the document to be used by other page
+         *
+         * @param entry The document
+         * @since 1.1.0
+         */
+        void giveBack(Entry entry) {
+            idle.add(entry);
+        }
+
+        /**
+         * Close all the loaded documents and give back their shared resources, can be called more than once
+         *
+         * @throws IOException If close fails
+         * @since 1.1.0
+         */
+        void close() throws IOException {
+            IOException exception = null;
+            idle.clear();
+            Entry entry;
+            while ((entry = all.poll()) != null) {
+                try (RandomAccessRead ignore = entry.source(); PDDocument ignored = entry.document()) {
+                    // closed by the try
+                } catch (IOException e) {
+                    exception = e;
+                }
+                loader.release(entry.document());
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+}
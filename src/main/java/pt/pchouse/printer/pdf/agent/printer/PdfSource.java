@@ -0,0 +1,328 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+
+import java.io.*;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * The pdf to be printed. Small documents are kept in memory, the big ones
+ * in a scratch file that is memory mapped when opened and deleted when closed.
+ *
+ * @since 1.1.0
+ */
+public class PdfSource implements Closeable
+{
+
+    /**
+     * The size until the pdf is kept in memory, above it is written to a scratch file
+     *
+     * @since 1.1.0
+     */
+    public static final int MEMORY_THRESHOLD = 1024 * 1024;
+
+    /**
+     * The read buffer size of the scratch file digest
+     *
+     * @since 1.1.0
+     */
+    private static final int HASH_BUFFER_SIZE = 65536;
+
+    /**
+     * Deletes the scratch files of the sources that were never closed
+     *
+     * @since 1.1.0
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * The directory of the scratch files, null for the system temporary directory
+     *
+     * @since 1.1.0
+     */
+    private static volatile Path scratchDirectory;
+
+    /**
+     * The in memory pdf, null if in scratch file
+     *
+     * @since 1.1.0
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The scratch file, null if in memory
+     *
+     * @since 1.1.0
+     */
+    private final Path file;
+
+    /**
+     * The pdf size in bytes
+     *
+     * @since 1.1.0
+     */
+    private final long size;
+
+    /**
+     * The scratch file delete action
+     *
+     * @since 1.1.0
+     */
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * The SHA-256 of the pdf, null until calculated
+     *
+     * @since 1.1.0
+     */
+    private volatile String sha256;
+
+    /**
+     * @param buffer The in memory pdf
+     * @param file   The scratch file
+     * @param size   The pdf size in bytes
+     * @since 1.1.0
+     */
+    PdfSource(ByteBuffer buffer, Path file, long size) {
+        this.buffer = buffer;
+        this.file = file;
+        this.size = size;
+        this.cleanable = file == null ? null : CLEANER.register(this, new DeleteFile(file));
+    }
+
+    /**
+     * Get the directory where the scratch files are created
+     *
+     * @return The directory, null for the system temporary directory
+     * @since 1.1.0
+     */
+    public static Path getScratchDirectory() {
+        return scratchDirectory;
+    }
+
+    /**
+     * Set the directory where the next scratch files are created, the existing ones are not moved
+     *
+     * @param directory The directory, null for the system temporary directory
+     * @since 1.1.0
+     */
+    public static void setScratchDirectory(Path directory) {
+        scratchDirectory = directory;
+    }
+
+    /**
+     * Create an in memory source from the pdf bytes, the array is not copied
+     *
+     * @param pdf The pdf bytes
+     * @return The source
+     * @since 1.1.0
+     */
+    public static PdfSource of(byte[] pdf) {
+        return new PdfSource(ByteBuffer.wrap(pdf), null, pdf.length);
+    }
+
+    /**
+     * Create the source from a base64 encoded pdf
+     *
+     * @param base64Pdf The base64 encoded pdf
+     * @return The source
+     * @since 1.1.0
+     */
+    public static PdfSource ofBase64(String base64Pdf) {
+        return of(Base64.getDecoder().decode(base64Pdf));
+    }
+
+    /**
+     * Read the pdf from the stream in chunks, spilling to a scratch file if bigger than
+     * {@link #MEMORY_THRESHOLD}. The stream is not closed.
+     *
+     * @param inputStream The pdf stream
+     * @return The source
+     * @throws IOException If fails to read or write the scratch file
+     * @since 1.1.0
+     */
+    public static PdfSource read(InputStream inputStream) throws IOException {
+        ScratchOutputStream out = new ScratchOutputStream();
+        try {
+            inputStream.transferTo(out);
+            return out.toPdfSource();
+        } catch (IOException | RuntimeException e) {
+            out.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a new reader to the pdf, each call returns an independent reader
+     * that must be closed by the caller.
+     *
+     * @return The reader
+     * @throws IOException If fails to map the scratch file
+     * @since 1.1.0
+     */
+    public RandomAccessRead open() throws IOException {
+        if (file == null) {
+            // RandomAccessReadBuffer uses the buffer capacity as length, the slice capacity is the pdf size
+            return new RandomAccessReadBuffer(buffer.slice());
+        }
+        return new RandomAccessReadMemoryMappedFile(file.toFile());
+    }
+
+    /**
+     * Open an input stream to the pdf bytes
+     *
+     * @return The stream
+     * @throws IOException If fails to open the scratch file
+     * @since 1.1.0
+     */
+    public InputStream openStream() throws IOException {
+        if (file == null) {
+            ByteBuffer duplicate = buffer.duplicate();
+            return new ByteArrayInputStream(
+                    duplicate.array(), duplicate.arrayOffset() + duplicate.position(), duplicate.remaining()
+            );
+        }
+        return new BufferedInputStream(Files.newInputStream(file));
+    }
+
+    /**
+     * Copy the pdf bytes to the buffer position, the in memory pdf without intermediate copy
+     * and the scratch file read directly by the channel
+     *
+     * @param target The buffer, with at least {@link #size()} remaining
+     * @throws IOException If fails to read the scratch file
+     * @since 1.1.0
+     */
+    public void copyTo(ByteBuffer target) throws IOException {
+        if (file == null) {
+            target.put(buffer.slice());
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                int read = channel.read(target, position);
+                if (read < 0) {
+                    throw new EOFException("The pdf scratch file is truncated");
+                }
+                position += read;
+            }
+        }
+    }
+
+    /**
+     * The SHA-256 of the pdf bytes as hexadecimal, calculated once.
+     * The in memory pdf is digested without copy and the scratch file is read in chunks.
+     *
+     * @return The digest
+     * @throws IOException If fails to read the scratch file
+     * @since 1.1.0
+     */
+    public String sha256() throws IOException {
+        String digest = sha256;
+        if (digest != null) {
+            return digest;
+        }
+
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        if (file == null) {
+            messageDigest.update(buffer.slice());
+        } else {
+            // read, not mapped, a mapped file can not be deleted in Windows until the mapping is collected
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer chunk = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+                while (channel.read(chunk) >= 0) {
+                    chunk.flip();
+                    messageDigest.update(chunk);
+                    chunk.clear();
+                }
+            }
+        }
+
+        digest = HexFormat.of().formatHex(messageDigest.digest());
+        sha256 = digest;
+        return digest;
+    }
+
+    /**
+     * The pdf size in bytes
+     *
+     * @return The size
+     * @since 1.1.0
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * If the pdf is in a scratch file
+     *
+     * @return True if in scratch file
+     * @since 1.1.0
+     */
+    public boolean isScratchFile() {
+        return file != null;
+    }
+
+    /**
+     * Delete the scratch file if exists
+     *
+     * @since 1.1.0
+     */
+    @Override
+    public void close() {
+        if (cleanable != null) {
+            cleanable.clean();
+        }
+    }
+
+    /**
+     * Scratch file delete action, must not reference the source
+     *
+     * @since 1.1.0
+     */
+    private record DeleteFile(Path file) implements Runnable
+    {
+        @Override
+        public void run() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignore) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import javax.print.event.PrintJobAdapter;
+import javax.print.event.PrintJobEvent;
+import javax.print.event.PrintJobListener;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A job in a printer queue
+ *
+ * @since 1.1.0
+ */
+public class PrintJob
+{
+
+    /**
+     * The job status enumeration
+     *
+     * @since 1.1.0
+     */
+    public enum Status
+    {
+        QUEUED,
+        PRINTING,
+        SPOOLED,
+        COMPLETED,
+        FAILED,
+        CANCELLED;
+
+        /**
+         * If the job reached a final state
+         *
+         * @return True if final
+         * @since 1.1.0
+         */
+        public boolean isFinal() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /**
+     * The job id
+     *
+     * @since 1.1.0
+     */
+    private final String id;
+
+    /**
+     * The printer where the job is queued
+     *
+     * @since 1.1.0
+     */
+    private final String printer;
+
+    /**
+     * The job work
+     *
+     * @since 1.1.0
+     */
+    private final PrintTask task;
+
+    /**
+     * Completed when the job reaches a final state
+     *
+     * @since 1.1.0
+     */
+    private final CompletableFuture<PrintJob> future = new CompletableFuture<>();
+
+    /**
+     * The job status
+     *
+     * @since 1.1.0
+     */
+    private volatile Status status = Status.QUEUED;
+
+    /**
+     * The error message if failed
+     *
+     * @since 1.1.0
+     */
+    private volatile String message = "";
+
+    /**
+     * When the job was queued
+     *
+     * @since 1.1.0
+     */
+    private final Instant createdAt;
+
+    /**
+     * Notified on each status change
+     *
+     * @since 1.1.0
+     */
+    private final Consumer<PrintJob> onChange;
+
+    /**
+     * The number of spool jobs sent to the print service
+     *
+     * @since 1.1.0
+     */
+    private int spoolJobs = 0;
+
+    /**
+     * The number of spool jobs the print service reported as finished
+     *
+     * @since 1.1.0
+     */
+    private int spoolJobsFinished = 0;
+
+    /**
+     * The spool jobs listeners already finished
+     *
+     * @since 1.1.0
+     */
+    private final Set<PrintJobAdapter> finishedListeners = new HashSet<>();
+
+    /**
+     * If the task already sent all the spool jobs
+     *
+     * @since 1.1.0
+     */
+    private boolean taskFinished = false;
+
+    /**
+     * When the job reached a final state
+     *
+     * @since 1.1.0
+     */
+    private volatile Instant finishedAt;
+
+    /**
+     * @param printer  The printer where the job is queued
+     * @param task     The job work
+     * @param onChange Notified on each status change
+     * @since 1.1.0
+     */
+    PrintJob(String printer, PrintTask task, Consumer<PrintJob> onChange) {
+        this.id = UUID.randomUUID().toString();
+        this.createdAt = Instant.now();
+        this.printer = printer;
+        this.task = task;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Used to deserialize the job in the clients
+     *
+     * @since 1.1.0
+     */
+    private PrintJob() {
+        this(null, null, job -> {
+        });
+    }
+
+    /**
+     * Copy the job state
+     *
+     * @param job The job to copy
+     * @since 1.1.0
+     */
+    private PrintJob(PrintJob job) {
+        this.id = job.id;
+        this.createdAt = job.createdAt;
+        this.printer = job.printer;
+        this.task = null;
+        this.onChange = printJob -> {
+        };
+        synchronized (job) {
+            this.status = job.status;
+            this.message = job.message;
+            this.finishedAt = job.finishedAt;
+        }
+    }
+
+    /**
+     * An immutable copy of the current job state, without the task
+     *
+     * @return The copy
+     * @since 1.1.0
+     */
+    public PrintJob snapshot() {
+        return new PrintJob(this);
+    }
+
+    /**
+     * Get the job id
+     *
+     * @return The id
+     * @since 1.1.0
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the printer where the job is queued
+     *
+     * @return The printer
+     * @since 1.1.0
+     */
+    public String getPrinter() {
+        return printer;
+    }
+
+    /**
+     * Get the job status
+     *
+     * @return The status
+     * @since 1.1.0
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the error message
+     *
+     * @return The message
+     * @since 1.1.0
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * When the job was queued
+     *
+     * @return The instant
+     * @since 1.1.0
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * When the job reached a final state
+     *
+     * @return The instant or null if not finished
+     * @since 1.1.0
+     */
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Completed when the job reaches a final state, never completed exceptionally
+     *
+     * @return The future
+     * @since 1.1.0
+     */
+    @JsonIgnore
+    public CompletableFuture<PrintJob> getFuture() {
+        return future;
+    }
+
+    /**
+     * @return The job work
+     * @since 1.1.0
+     */
+    PrintTask getTask() {
+        return task;
+    }
+
+    /**
+     * Create a listener to register in each spool job (javax.print.DocPrintJob) sent
+     * to the print service, so the job status follows the print service events.
+     * The job is spooled when the task sent all the spool jobs and is completed when
+     * the print service reported all of them as finished.
+     *
+     * @return The listener
+     * @since 1.1.0
+     */
+    public PrintJobListener newSpoolListener() {
+        synchronized (this) {
+            spoolJobs++;
+        }
+        return new PrintJobAdapter()
+        {
+            @Override
+            public void printJobCompleted(PrintJobEvent event) {
+                spoolJobFinished(this);
+            }
+
+            @Override
+            public void printJobNoMoreEvents(PrintJobEvent event) {
+                spoolJobFinished(this);
+            }
+
+            @Override
+            public void printJobFailed(PrintJobEvent event) {
+                transition(null, Status.FAILED, "The printer reported the job as failed");
+            }
+
+            @Override
+            public void printJobCanceled(PrintJobEvent event) {
+                transition(null, Status.CANCELLED, "The job was cancelled in the printer");
+            }
+
+            @Override
+            public void printJobRequiresAttention(PrintJobEvent event) {
+                message = "The printer requires attention";
+                onChange.accept(PrintJob.this);
+            }
+        };
+    }
+
+    /**
+     * A spool job finished, the completed and no more events can be both reported for the same spool job
+     *
+     * @param listener The spool job listener
+     * @since 1.1.0
+     */
+    private void spoolJobFinished(PrintJobListener listener) {
+        synchronized (this) {
+            if (listener instanceof PrintJobAdapter adapter && finishedListeners.add(adapter)) {
+                spoolJobsFinished++;
+            }
+            if (!taskFinished || spoolJobsFinished < spoolJobs) {
+                return;
+            }
+        }
+        transition(Status.SPOOLED, Status.COMPLETED, null);
+    }
+
+    /**
+     * The task finished to send all the spool jobs, the job is spooled,
+     * and completed if the print service already reported all as finished
+     * or if does not report events
+     *
+     * @since 1.1.0
+     */
+    void taskFinished() {
+        boolean completed;
+        synchronized (this) {
+            if (status.isFinal()) {
+                return;
+            }
+            taskFinished = true;
+            completed = spoolJobsFinished >= spoolJobs;
+        }
+        transition(Status.PRINTING, Status.SPOOLED, null);
+        if (completed) {
+            transition(Status.SPOOLED, Status.COMPLETED, null);
+        }
+    }
+
+    /**
+     * Change the status if the current is not final
+     *
+     * @param from    The expected current status, null for any not final
+     * @param to      The new status
+     * @param message The message
+     * @return True if changed
+     * @since 1.1.0
+     */
+    boolean transition(Status from, Status to, String message) {
+        synchronized (this) {
+            if (status.isFinal() || (from != null && status != from)) {
+                return false;
+            }
+            status = to;
+            if (message != null) {
+                this.message = message;
+            }
+            if (to.isFinal()) {
+                finishedAt = Instant.now();
+            }
+        }
+        // Notified outside the lock, the listeners and the future callbacks run in this thread
+        onChange.accept(this);
+        if (to.isFinal()) {
+            future.complete(this);
+        }
+        return true;
+    }
+}
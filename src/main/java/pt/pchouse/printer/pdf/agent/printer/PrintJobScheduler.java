@@ -0,0 +1,288 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import pt.pchouse.printer.pdf.agent.ExecutionMode;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/**
+ * Print job scheduler, each printer has one ordered queue and one worker thread,
+ * so the jobs of the same printer never run concurrently.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class PrintJobScheduler
+{
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The maximum of jobs waiting in each printer queue
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.queue.capacity:100}")
+    private int queueCapacity;
+
+    /**
+     * The number of finished jobs kept to be queried
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.jobs.history:200}")
+    private int jobsHistory;
+
+    /**
+     * The printer workers are virtual threads in the virtual execution mode
+     *
+     * @since 1.1.0
+     */
+    @Autowired
+    private ExecutionMode executionMode;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintMetrics printMetrics;
+
+    /**
+     * The worker of each printer
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, ThreadPoolExecutor> workers = new ConcurrentHashMap<>();
+
+    /**
+     * All the known jobs, queued, printing and the finished kept in history
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, PrintJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * The finished jobs id by finish order, to evict from the history
+     *
+     * @since 1.1.0
+     */
+    private final Queue<String> finished = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The job status change listeners
+     *
+     * @since 1.1.0
+     */
+    private final List<JobStatusListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add a listener to be notified on each job status change
+     *
+     * @param listener The listener
+     * @since 1.1.0
+     */
+    public void addListener(JobStatusListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a job status change listener
+     *
+     * @param listener The listener
+     * @since 1.1.0
+     */
+    public void removeListener(JobStatusListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queue a job in the printer queue
+     *
+     * @param printer The printer name
+     * @param task    The job work
+     * @return The queued job
+     * @throws RejectedExecutionException If the printer queue is full
+     * @since 1.1.0
+     */
+    public PrintJob submit(String printer, PrintTask task) {
+        PrintJob job = new PrintJob(printer, task, this::notifyListeners);
+        jobs.put(job.getId(), job);
+        job.getFuture().thenAccept(this::onFinished);
+        notifyListeners(job);
+        try {
+            getWorker(printer).execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            printMetrics.rejected(printer);
+            job.transition(null, PrintJob.Status.FAILED, "The printer queue is full");
+            throw e;
+        }
+        logger.debug("Job {} queued in printer '{}'", job.getId(), printer);
+        return job;
+    }
+
+    /**
+     * Get a job
+     *
+     * @param id The job id
+     * @return The job
+     * @since 1.1.0
+     */
+    public Optional<PrintJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Get all the known jobs ordered by creation
+     *
+     * @return The jobs
+     * @since 1.1.0
+     */
+    public List<PrintJob> getJobs() {
+        List<PrintJob> list = new ArrayList<>(jobs.values());
+        list.sort(Comparator.comparing(PrintJob::getCreatedAt));
+        return list;
+    }
+
+    /**
+     * Cancel a queued job, a job already printing can not be cancelled
+     *
+     * @param id The job id
+     * @return True if cancelled
+     * @since 1.1.0
+     */
+    public boolean cancel(String id) {
+        PrintJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        boolean cancelled = job.transition(PrintJob.Status.QUEUED, PrintJob.Status.CANCELLED, "Cancelled");
+        if (cancelled) {
+            logger.debug("Job {} cancelled", id);
+        }
+        return cancelled;
+    }
+
+    /**
+     * Execute the job in the printer worker thread
+     *
+     * @param job The job
+     * @since 1.1.0
+     */
+    private void run(PrintJob job) {
+        if (!job.transition(PrintJob.Status.QUEUED, PrintJob.Status.PRINTING, null)) {
+            return;
+        }
+        printMetrics.stage(job.getPrinter(), PrintMetrics.Stage.QUEUE)
+                .record(Duration.between(job.getCreatedAt(), Instant.now()));
+        try {
+            job.getTask().print(job);
+            job.taskFinished();
+        } catch (Exception e) {
+            logger.error("Job {} failed: {}", job.getId(), e.getMessage());
+            job.transition(null, PrintJob.Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Notify the listeners of a job status change
+     *
+     * @param job The job
+     * @since 1.1.0
+     */
+    private void notifyListeners(PrintJob job) {
+        for (JobStatusListener listener : listeners) {
+            try {
+                listener.onStatusChange(job);
+            } catch (RuntimeException e) {
+                logger.error("Job status listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Keep the finished job in the history, evicting the oldest
+     *
+     * @param job The finished job
+     * @since 1.1.0
+     */
+    private void onFinished(PrintJob job) {
+        printMetrics.finished(job);
+        finished.add(job.getId());
+        while (finished.size() > jobsHistory) {
+            String id = finished.poll();
+            if (id != null) {
+                jobs.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Get or create the printer worker
+     *
+     * @param printer The printer name
+     * @return The worker
+     * @since 1.1.0
+     */
+    private ThreadPoolExecutor getWorker(String printer) {
+        return workers.computeIfAbsent(printer, name -> {
+            logger.debug("Create worker for printer '{}'", name);
+            ThreadPoolExecutor worker = new ThreadPoolExecutor(
+                    1, 1,
+                    0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    executionMode.newThreadFactory("PrinterAgent-" + name)
+            );
+            printMetrics.monitor(name, worker);
+            return worker;
+        });
+    }
+
+    /**
+     * Stop accepting jobs and wait for the queued ones
+     *
+     * @since 1.1.0
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.values().forEach(ThreadPoolExecutor::shutdown);
+        for (ThreadPoolExecutor worker : workers.values()) {
+            if (!worker.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Printer worker did not finish the queued jobs");
+            }
+        }
+    }
+}
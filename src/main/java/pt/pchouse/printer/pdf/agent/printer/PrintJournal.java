@@ -0,0 +1,833 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The journal of the accepted pdf print jobs, so the jobs not spooled when the agent stops are printed
+ * when it starts again.
+ * The journal is an append only log of memory mapped segment files of print.journal.segment.size bytes in
+ * the print.journal.dir directory, by default the journal folder of the app.home, each record is the length,
+ * the CRC32C and the record type followed by the payload. The accepted record has the job id, printer, after
+ * print operations and the pdf, the batch record has the job id, printer and the after print operations and
+ * pdf of each document. The finished record is written when the job is spooled or finishes. The segments are
+ * deleted oldest first when without not finished jobs, because a finished record can be in a later segment
+ * than its accepted record.
+ * A record is in the operating system page cache when written, it survives an agent crash, and is forced to
+ * the disk in group by the journal thread every print.journal.flush.interval milliseconds, or at once
+ * waiting for it if print.journal.sync is true.
+ * At start the not finished jobs are copied to a new segment, the old segments deleted and the jobs queued
+ * again. The journal is disabled if print.journal.dir is empty.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class PrintJournal
+{
+
+    /**
+     * The record header, the payload length and the CRC32C
+     *
+     * @since 1.1.0
+     */
+    private static final int HEADER = 8;
+
+    /**
+     * The accepted job record type
+     *
+     * @since 1.1.0
+     */
+    private static final byte ACCEPTED = 1;
+
+    /**
+     * The finished job record type
+     *
+     * @since 1.1.0
+     */
+    private static final byte FINISHED = 2;
+
+    /**
+     * The accepted batch job record type, the documents of a printer printed in one job
+     *
+     * @since 1.1.0
+     */
+    private static final byte BATCH = 3;
+
+    /**
+     * @since 1.1.0
+     */
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    /**
+     * @since 1.1.0
+     */
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The journal directory, empty to disable the journal
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.journal.dir:${app.home:.}/journal}")
+    private String dir;
+
+    /**
+     * The segment size, a record bigger than it has its own segment
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.journal.segment.size:16777216}")
+    private int segmentSize;
+
+    /**
+     * The milliseconds between the forces of the written records to the disk
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.journal.flush.interval:10}")
+    private long flushInterval;
+
+    /**
+     * Wait for the records to be forced to the disk before the request response
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.journal.sync:false}")
+    private boolean sync;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintJobScheduler scheduler;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrinterRegistry printerRegistry;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private Printer printer;
+
+    /**
+     * The journal directory, null if disabled
+     *
+     * @since 1.1.0
+     */
+    private Path directory;
+
+    /**
+     * The not finished journaled jobs by job id
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the segments, the writes and the flush state
+     *
+     * @since 1.1.0
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signals the journal thread that there are records to force
+     *
+     * @since 1.1.0
+     */
+    private final Condition written = lock.newCondition();
+
+    /**
+     * Signals the waiting writers that the records were forced
+     *
+     * @since 1.1.0
+     */
+    private final Condition flushed = lock.newCondition();
+
+    /**
+     * The segments written since the last force
+     *
+     * @since 1.1.0
+     */
+    private final Set<Segment> dirty = new LinkedHashSet<>();
+
+    /**
+     * The segments not deleted, in write order, the last is the active
+     *
+     * @since 1.1.0
+     */
+    private final Deque<Segment> live = new ArrayDeque<>();
+
+    /**
+     * The segment being written
+     *
+     * @since 1.1.0
+     */
+    private Segment active;
+
+    /**
+     * The sequence of the next segment
+     *
+     * @since 1.1.0
+     */
+    private long nextSegment;
+
+    /**
+     * The number of records written
+     *
+     * @since 1.1.0
+     */
+    private long writtenCount;
+
+    /**
+     * The number of records forced to the disk
+     *
+     * @since 1.1.0
+     */
+    private long flushedCount;
+
+    /**
+     * @since 1.1.0
+     */
+    private volatile boolean running;
+
+    /**
+     * The record payload writer
+     *
+     * @since 1.1.0
+     */
+    @FunctionalInterface
+    private interface Payload
+    {
+        /**
+         * @param buffer The buffer, positioned after the record type
+         * @throws IOException If fails to read the pdf
+         * @since 1.1.0
+         */
+        void write(ByteBuffer buffer) throws IOException;
+    }
+
+    /**
+     * A memory mapped segment file
+     *
+     * @since 1.1.0
+     */
+    private static class Segment
+    {
+        /**
+         * @since 1.1.0
+         */
+        private final Path file;
+
+        /**
+         * @since 1.1.0
+         */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * The accepted records of the segment not finished
+         *
+         * @since 1.1.0
+         */
+        private int pending;
+
+        /**
+         * @param file   The segment file
+         * @param buffer The mapped file
+         * @since 1.1.0
+         */
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * A document of an accepted record to write
+     *
+     * @param postOperations The after print operations
+     * @param pdfSize        The pdf size
+     * @param pdf            The pdf writer
+     * @since 1.1.0
+     */
+    private record Document(byte[] postOperations, int pdfSize, Payload pdf)
+    {
+    }
+
+    /**
+     * A not finished journaled job
+     *
+     * @param id      The journal id, the id of the job when first accepted
+     * @param segment The segment of the accepted record
+     * @since 1.1.0
+     */
+    private record Entry(UUID id, Segment segment)
+    {
+    }
+
+    /**
+     * A document of an accepted job read from the journal
+     *
+     * @param postOperations The after print operations
+     * @param pdf            The pdf bytes
+     * @since 1.1.0
+     */
+    private record Journaled(byte[] postOperations, ByteBuffer pdf)
+    {
+    }
+
+    /**
+     * An accepted job read from the journal at start
+     *
+     * @param id        The journal id
+     * @param type      The record type, {@link #ACCEPTED} or {@link #BATCH}
+     * @param printer   The printer id
+     * @param documents The documents
+     * @since 1.1.0
+     */
+    private record Accepted(UUID id, byte type, String printer, List<Journaled> documents)
+    {
+    }
+
+    /**
+     * Open the journal and print again the not finished jobs
+     *
+     * @throws IOException If fails to read or write the journal
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (dir == null || dir.isBlank()) {
+            logger.info("Print journal disabled");
+            return;
+        }
+
+        directory = Path.of(dir).toAbsolutePath();
+        Files.createDirectories(directory);
+
+        List<Path>          old      = segments();
+        Map<UUID, Accepted> accepted = new LinkedHashMap<>();
+        for (Path file : old) {
+            read(file, accepted);
+            nextSegment = Math.max(nextSegment, sequence(file) + 1);
+        }
+
+        // the not finished jobs are copied before the old segments are deleted
+        List<Entry> replay = new ArrayList<>(accepted.size());
+        for (Accepted job : accepted.values()) {
+            List<Document> documents = new ArrayList<>(job.documents().size());
+            for (Journaled document : job.documents()) {
+                documents.add(new Document(
+                        document.postOperations(),
+                        document.pdf().remaining(),
+                        buffer -> buffer.put(document.pdf().duplicate())
+                ));
+            }
+            replay.add(write(job.id(), job.type(), job.printer(), documents));
+        }
+        flush();
+        for (Path file : old) {
+            delete(file);
+        }
+
+        running = true;
+        Thread thread = new Thread(this::flushLoop, "PrinterAgent-journal");
+        thread.setDaemon(true);
+        thread.start();
+        scheduler.addListener(this::onStatusChange);
+
+        int index = 0;
+        for (Accepted job : accepted.values()) {
+            replay(job, replay.get(index++));
+        }
+        logger.info("Print journal in {}, {} not finished jobs queued again", directory, accepted.size());
+    }
+
+    /**
+     * Write the accepted job to the journal, the pdf must not be closed before the method returns
+     *
+     * @param job            The queued job
+     * @param postOperations The after print operations
+     * @param pdf            The pdf
+     * @since 1.1.0
+     */
+    public void accepted(PrintJob job, byte[] postOperations, PdfSource pdf) {
+        accepted(job, ACCEPTED, List.of(new Document(postOperations, (int) pdf.size(), pdf::copyTo)));
+    }
+
+    /**
+     * Write the accepted batch job of the documents of a printer to the journal, the pdfs must not be closed
+     * before the method returns
+     *
+     * @param job       The queued job
+     * @param documents The documents of the job
+     * @since 1.1.0
+     */
+    public void accepted(PrintJob job, List<PrintDocument> documents) {
+        List<Document> records = new ArrayList<>(documents.size());
+        for (PrintDocument document : documents) {
+            records.add(new Document(document.postOperations(), (int) document.pdf().size(), document.pdf()::copyTo));
+        }
+        accepted(job, BATCH, records);
+    }
+
+    /**
+     * @param job       The queued job
+     * @param type      The record type
+     * @param documents The documents of the job
+     * @since 1.1.0
+     */
+    private void accepted(PrintJob job, byte type, List<Document> documents) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            track(job, write(UUID.fromString(job.getId()), type, job.getPrinter(), documents));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Fail to journal the job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Force the written records before stop
+     *
+     * @since 1.1.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (directory == null) {
+            return;
+        }
+        running = false;
+        flush();
+        lock.lock();
+        try {
+            written.signalAll();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Print again a job read from the journal
+     *
+     * @param accepted The accepted record
+     * @param entry    The copy of the record in the new segment
+     * @since 1.1.0
+     */
+    private void replay(Accepted accepted, Entry entry) {
+        PrinterConfig       config;
+        List<PrintDocument> documents = new ArrayList<>(accepted.documents().size());
+        try {
+            config = printerRegistry.get(accepted.printer());
+            for (Journaled document : accepted.documents()) {
+                ByteBuffer bytes = document.pdf();
+                documents.add(new PrintDocument(
+                        PdfSource.read(new ByteArrayInputStream(
+                                bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()
+                        )),
+                        document.postOperations()
+                ));
+            }
+        } catch (PrinterException | IOException e) {
+            logger.warn("The journaled job {} is not printed: {}", accepted.id(), e.getMessage());
+            documents.forEach(document -> document.pdf().close());
+            finished(entry);
+            return;
+        }
+
+        PrintJob job = scheduler.submit(accepted.printer(), printJob -> {
+            if (accepted.type() == BATCH) {
+                printer.printDocuments(config, documents, printJob::newSpoolListener);
+            } else {
+                PrintDocument document = documents.get(0);
+                printer.printPdf(config, document.pdf(), document.postOperations(), printJob::newSpoolListener);
+            }
+        });
+        job.getFuture().whenComplete((printJob, throwable) -> documents.forEach(document -> document.pdf().close()));
+        logger.info("The journaled job {} queued again as job {}", accepted.id(), job.getId());
+        track(job, entry);
+    }
+
+    /**
+     * Track the job until spooled or finished, the job may already be
+     *
+     * @param job   The job
+     * @param entry The journal entry
+     * @since 1.1.0
+     */
+    private void track(PrintJob job, Entry entry) {
+        entries.put(job.getId(), entry);
+        onStatusChange(job);
+    }
+
+    /**
+     * Write the finished record when the job is spooled, the spooler keeps it if the agent stops,
+     * or finishes
+     *
+     * @param job The job
+     * @since 1.1.0
+     */
+    private void onStatusChange(PrintJob job) {
+        if (job.getStatus() != PrintJob.Status.SPOOLED && !job.getStatus().isFinal()) {
+            return;
+        }
+        Entry entry = entries.remove(job.getId());
+        if (entry != null) {
+            finished(entry);
+        }
+    }
+
+    /**
+     * Write the finished record and delete the oldest segments without not finished jobs
+     *
+     * @param entry The journal entry
+     * @since 1.1.0
+     */
+    private void finished(Entry entry) {
+        try {
+            append(FINISHED, 16, buffer -> buffer
+                    .putLong(entry.id().getMostSignificantBits())
+                    .putLong(entry.id().getLeastSignificantBits())
+            );
+        } catch (IOException e) {
+            logger.error("Fail to journal the finished job {}: {}", entry.id(), e.getMessage());
+        }
+
+        lock.lock();
+        try {
+            entry.segment().pending--;
+            deleteFinished();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write an accepted or batch record, the batch record has the number of documents before them
+     *
+     * @param id        The journal id
+     * @param type      The record type, {@link #ACCEPTED} with one document or {@link #BATCH}
+     * @param printerId The printer id
+     * @param documents The documents
+     * @return The entry
+     * @throws IOException If fails to map a new segment or to read the pdf
+     * @since 1.1.0
+     */
+    private Entry write(UUID id, byte type, String printerId, List<Document> documents) throws IOException {
+        byte[] printerBytes = printerId.getBytes(StandardCharsets.UTF_8);
+        int    length       = 16 + 2 + printerBytes.length + (type == BATCH ? 4 : 0);
+        for (Document document : documents) {
+            length += 4 + document.postOperations().length + 4 + document.pdfSize();
+        }
+
+        Segment segment = append(type, length, buffer -> {
+            buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+            buffer.putShort((short) printerBytes.length).put(printerBytes);
+            if (type == BATCH) {
+                buffer.putInt(documents.size());
+            }
+            for (Document document : documents) {
+                buffer.putInt(document.postOperations().length).put(document.postOperations());
+                buffer.putInt(document.pdfSize());
+                document.pdf().write(buffer);
+            }
+        });
+        return new Entry(id, segment);
+    }
+
+    /**
+     * Append a record to the active segment, rolling to a new one if it does not fit.
+     * The length is written last, a record is only read in the replay when complete.
+     *
+     * @param type    The record type
+     * @param length  The payload length
+     * @param payload The payload writer
+     * @return The segment of the record
+     * @throws IOException If fails to map a new segment or to write the payload
+     * @since 1.1.0
+     */
+    private Segment append(byte type, int length, Payload payload) throws IOException {
+        long    sequence;
+        Segment segment;
+        lock.lock();
+        try {
+            int size = HEADER + 1 + length;
+            if (active == null || active.buffer.remaining() < size) {
+                roll(size);
+            }
+            segment = active;
+
+            ByteBuffer buffer = segment.buffer;
+            int        start  = buffer.position();
+            ByteBuffer record = buffer.slice(start + HEADER, 1 + length);
+            record.put(type);
+            payload.write(record);
+
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(start + HEADER, 1 + length));
+            buffer.putInt(start + 4, (int) crc.getValue());
+            buffer.putInt(start, 1 + length);
+            buffer.position(start + size);
+
+            if (type == ACCEPTED || type == BATCH) {
+                segment.pending++;
+            }
+            dirty.add(segment);
+            sequence = ++writtenCount;
+            if (sync) {
+                written.signal();
+                while (flushedCount < sequence && running) {
+                    flushed.awaitUninterruptibly();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return segment;
+    }
+
+    /**
+     * Map a new segment as the active one and delete the oldest segments without not finished jobs.
+     * Must be called with the lock.
+     *
+     * @param size The record size that must fit
+     * @throws IOException If fails to create or map the segment file
+     * @since 1.1.0
+     */
+    private void roll(int size) throws IOException {
+        Path file = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE
+        )) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, size + 4));
+        }
+
+        active = new Segment(file, buffer);
+        live.addLast(active);
+        deleteFinished();
+    }
+
+    /**
+     * Delete the oldest segments while without not finished jobs. A segment is only deleted after
+     * the older ones, the finished records of the jobs accepted in an older segment that is not deleted
+     * are kept. Must be called with the lock.
+     *
+     * @since 1.1.0
+     */
+    private void deleteFinished() {
+        Segment oldest;
+        while ((oldest = live.peekFirst()) != null && oldest != active && oldest.pending == 0) {
+            live.removeFirst();
+            dirty.remove(oldest);
+            delete(oldest.file);
+        }
+    }
+
+    /**
+     * The journal thread, force the written records to the disk
+     *
+     * @since 1.1.0
+     */
+    private void flushLoop() {
+        while (running) {
+            lock.lock();
+            try {
+                if (flushedCount == writtenCount) {
+                    written.awaitNanos(TimeUnit.MILLISECONDS.toNanos(flushInterval));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Force all the records written since the last force to the disk in one go and signal the
+     * writers waiting for it. The force is outside the lock, the writes continue meanwhile.
+     *
+     * @since 1.1.0
+     */
+    private void flush() {
+        Segment[] segments;
+        long      target;
+        lock.lock();
+        try {
+            if (flushedCount == writtenCount) {
+                return;
+            }
+            segments = dirty.toArray(new Segment[0]);
+            target = writtenCount;
+            dirty.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+
+        lock.lock();
+        try {
+            flushedCount = Math.max(flushedCount, target);
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read the records of a segment, a record with a wrong length or checksum is the end of the
+     * written records
+     *
+     * @param file     The segment file
+     * @param accepted The accepted not finished jobs, updated with the segment records
+     * @throws IOException If fails to read the file
+     * @since 1.1.0
+     */
+    private void read(Path file, Map<UUID, Accepted> accepted) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32C     crc    = new CRC32C();
+
+        while (buffer.remaining() >= HEADER) {
+            int start  = buffer.position();
+            int length = buffer.getInt();
+            int sum    = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                if (length != 0) {
+                    logger.warn("Journal segment {} truncated at {}", file.getFileName(), start);
+                }
+                return;
+            }
+
+            crc.reset();
+            crc.update(buffer.slice(start + HEADER, length));
+            if ((int) crc.getValue() != sum) {
+                logger.warn("Journal segment {} corrupted at {}", file.getFileName(), start);
+                return;
+            }
+
+            byte type = buffer.get();
+            UUID id   = new UUID(buffer.getLong(), buffer.getLong());
+            if (type == ACCEPTED || type == BATCH) {
+                byte[] printerBytes = new byte[buffer.getShort()];
+                buffer.get(printerBytes);
+                int             count     = type == BATCH ? buffer.getInt() : 1;
+                List<Journaled> documents = new ArrayList<>(count);
+                for (int index = 0; index < count; index++) {
+                    byte[] postOperations = new byte[buffer.getInt()];
+                    buffer.get(postOperations);
+                    int pdfSize = buffer.getInt();
+                    documents.add(new Journaled(postOperations, buffer.slice(buffer.position(), pdfSize)));
+                    buffer.position(buffer.position() + pdfSize);
+                }
+                accepted.put(id, new Accepted(
+                        id, type, new String(printerBytes, StandardCharsets.UTF_8), documents
+                ));
+            } else if (type == FINISHED) {
+                accepted.remove(id);
+            }
+            buffer.position(start + HEADER + length);
+        }
+    }
+
+    /**
+     * @return The segment files in write order
+     * @throws IOException If fails to list the directory
+     * @since 1.1.0
+     */
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    /**
+     * @param file The segment file
+     * @return The segment sequence
+     * @since 1.1.0
+     */
+    private long sequence(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Delete a segment file. A mapped file can not be deleted in Windows until unmapped by the
+     * garbage collector, it is deleted in the next start.
+     *
+     * @param file The segment file
+     * @since 1.1.0
+     */
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("Journal segment {} not deleted: {}", file.getFileName(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The print pipeline metrics: the time of each stage by printer, the decode time and the pdf size
+ * by endpoint, the printer queues and the jobs outcome.
+ * The meters are registered once and kept, recording a value does not allocate.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class PrintMetrics
+{
+
+    /**
+     * The stages of a print after the request is decoded
+     *
+     * @since 1.1.0
+     */
+    public enum Stage
+    {
+        /**
+         * The wait in the printer queue
+         *
+         * @since 1.1.0
+         */
+        QUEUE,
+
+        /**
+         * The pdf load by PDFBox
+         *
+         * @since 1.1.0
+         */
+        PARSE,
+
+        /**
+         * The render of one page by the agent, in the pageable mode the pages are rendered while spooled
+         *
+         * @since 1.1.0
+         */
+        RENDER,
+
+        /**
+         * The submission of one job to the spooler
+         *
+         * @since 1.1.0
+         */
+        SPOOL
+    }
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String STAGE = "printer.agent.stage";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String DECODE = "printer.agent.decode";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String PAYLOAD = "printer.agent.payload";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String QUEUE_SIZE = "printer.agent.queue.size";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String QUEUE_REJECTED = "printer.agent.queue.rejected";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String JOBS = "printer.agent.jobs";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String DUPLICATES = "printer.agent.duplicates";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String WARM_UP = "printer.agent.warmup";
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private MeterRegistry registry;
+
+    /**
+     * The stage timers of each printer, indexed by the stage ordinal
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, Timer[]> stages = new ConcurrentHashMap<>();
+
+    /**
+     * The decode timers of each endpoint
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, Timer> decodes = new ConcurrentHashMap<>();
+
+    /**
+     * The pdf size of each endpoint
+     *
+     * @since 1.1.0
+     */
+    private final ConcurrentHashMap<String, DistributionSummary> payloads = new ConcurrentHashMap<>();
+
+    /**
+     * Get the timer of a printer stage
+     *
+     * @param printer The printer id, null for the default printer
+     * @param stage   The stage
+     * @return The timer
+     * @since 1.1.0
+     */
+    public Timer stage(String printer, Stage stage) {
+        return stages.computeIfAbsent(Objects.requireNonNullElse(printer, PrinterConfig.DEFAULT_ID), id -> {
+            Timer[] timers = new Timer[Stage.values().length];
+            for (Stage value : Stage.values()) {
+                timers[value.ordinal()] = Timer.builder(STAGE)
+                        .description("The time of each print stage")
+                        .tag("printer", id)
+                        .tag("stage", value.name().toLowerCase())
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofMinutes(1))
+                        .register(registry);
+            }
+            return timers;
+        })[stage.ordinal()];
+    }
+
+    /**
+     * Record the time since the start in the printer stage
+     *
+     * @param printer The printer id
+     * @param stage   The stage
+     * @param start   The start, from System.nanoTime()
+     * @since 1.1.0
+     */
+    public void record(String printer, Stage stage, long start) {
+        stage(printer, stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record a request decode, the time to read and decode the request pdfs and their size
+     *
+     * @param endpoint The endpoint uri
+     * @param start    The decode start, from System.nanoTime()
+     * @param bytes    The pdf bytes
+     * @since 1.1.0
+     */
+    public void decoded(String endpoint, long start, long bytes) {
+        long elapsed = System.nanoTime() - start;
+        decodes.computeIfAbsent(endpoint, uri -> Timer.builder(DECODE)
+                .description("The time to read and decode the request pdfs")
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(1))
+                .register(registry)
+        ).record(elapsed, TimeUnit.NANOSECONDS);
+        payloads.computeIfAbsent(endpoint, uri -> DistributionSummary.builder(PAYLOAD)
+                .description("The size of the request pdfs")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1024.0)
+                .maximumExpectedValue(64.0 * 1024 * 1024)
+                .register(registry)
+        ).record(bytes);
+    }
+
+    /**
+     * Monitor the printer queue, the jobs waiting and the job printing
+     *
+     * @param printer The printer id
+     * @param worker  The printer worker
+     * @since 1.1.0
+     */
+    public void monitor(String printer, ThreadPoolExecutor worker) {
+        Gauge.builder(QUEUE_SIZE, worker, executor -> executor.getQueue().size() + executor.getActiveCount())
+                .description("The printer jobs queued and printing")
+                .tag("printer", printer)
+                .register(registry);
+    }
+
+    /**
+     * Count a job rejected by a full printer queue
+     *
+     * @param printer The printer id
+     * @since 1.1.0
+     */
+    public void rejected(String printer) {
+        registry.counter(QUEUE_REJECTED, "printer", printer).increment();
+    }
+
+    /**
+     * Count a finished job by its outcome
+     *
+     * @param job The finished job
+     * @since 1.1.0
+     */
+    public void finished(PrintJob job) {
+        registry.counter(JOBS, "printer", job.getPrinter(), "status", job.getStatus().name().toLowerCase()).increment();
+    }
+
+    /**
+     * Count a duplicate request answered with the job of the first one
+     *
+     * @param operation The request operation
+     * @since 1.1.0
+     */
+    public void duplicate(String operation) {
+        registry.counter(DUPLICATES, "operation", operation).increment();
+    }
+
+    /**
+     * Get the timer of a warm up step
+     *
+     * @param step The warm up step
+     * @return The timer
+     * @since 1.1.0
+     */
+    public Timer warmUp(String step) {
+        return Timer.builder(WARM_UP)
+                .description("The time of each startup warm up step")
+                .tag("step", step)
+                .register(registry);
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import javax.print.PrintService;
+import javax.print.PrintServiceLookup;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The print services discovered in the system by printer name.
+ * The lookup of all the print services can take seconds, so it is done in background at startup and
+ * refreshed periodically, the prints only read the last discovered services.
+ * A print service that fails is invalidated and discovered again, a printer that was removed and added
+ * again is found without restart the agent. A printer not discovered is looked up again at most once in
+ * print.services.miss.refresh milliseconds, a mistyped or unplugged printer does not pay the lookup in
+ * each request.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class PrintServiceCache
+{
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The milliseconds between background refreshes, zero or less disable the background refresh
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.services.refresh:60000}")
+    private long refreshInterval;
+
+    /**
+     * The minimum milliseconds since the last refresh to discover the services again on a miss
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.services.miss.refresh:5000}")
+    private long missRefreshInterval;
+
+    /**
+     * The discovered print services by name, replaced as a whole in each refresh
+     *
+     * @since 1.1.0
+     */
+    private volatile Map<String, PrintService> services = Collections.emptyMap();
+
+    /**
+     * When the last refresh finished
+     *
+     * @since 1.1.0
+     */
+    private volatile Instant refreshedAt;
+
+    /**
+     * The System.nanoTime when the last refresh started
+     *
+     * @since 1.1.0
+     */
+    private volatile long refreshStartedNanos;
+
+    /**
+     * The System.nanoTime when the last refresh finished
+     *
+     * @since 1.1.0
+     */
+    private volatile long refreshedNanos;
+
+    /**
+     * The milliseconds of the last refresh lookup
+     *
+     * @since 1.1.0
+     */
+    private volatile long refreshMillis;
+
+    /**
+     * @since 1.1.0
+     */
+    private final Object refreshLock = new Object();
+
+    /**
+     * @since 1.1.0
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * @since 1.1.0
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @since 1.1.0
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @since 1.1.0
+     */
+    private final AtomicLong refreshes = new AtomicLong();
+
+    /**
+     * The background refresher
+     *
+     * @since 1.1.0
+     */
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Start the background discovery
+     *
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void start() {
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PrinterAgent-discovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (refreshInterval > 0) {
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshInterval, TimeUnit.MILLISECONDS);
+        } else {
+            refresher.execute(this::refreshQuietly);
+        }
+    }
+
+    /**
+     * Stop the background discovery
+     *
+     * @since 1.1.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the print service of the printer name.
+     * If the printer is not in the discovered services, that can happen before the first discovery ends,
+     * the services are discovered again before fail, unless discovered in the last
+     * print.services.miss.refresh milliseconds.
+     *
+     * @param name The printer name
+     * @return The print service
+     * @throws PrinterException If the printer does not exist
+     * @since 1.1.0
+     */
+    public PrintService get(String name) throws PrinterException {
+        PrintService printService = services.get(name);
+        if (printService != null) {
+            hits.incrementAndGet();
+            return printService;
+        }
+
+        misses.incrementAndGet();
+        if (!isRefreshedRecently()) {
+            synchronized (refreshLock) {
+                // the misses waiting for a refresh in progress use its result
+                if (!isRefreshedRecently()) {
+                    refresh();
+                }
+            }
+        }
+
+        printService = services.get(name);
+        if (printService == null) {
+            String msg = String.format("Printer with name '%s' not exist", name);
+            logger.error(msg);
+            throw new PrinterException(msg);
+        }
+        return printService;
+    }
+
+    /**
+     * Invalidate the print service that failed and discover the services again
+     *
+     * @param name  The printer name
+     * @param stale The print service that failed
+     * @return The print service discovered with the same name, null if not exists anymore
+     * @since 1.1.0
+     */
+    public PrintService invalidate(String name, PrintService stale) {
+        invalidations.incrementAndGet();
+        logger.debug("Print service '{}' invalidated", name);
+        synchronized (refreshLock) {
+            if (services.get(name) == stale) {
+                Map<String, PrintService> map = new LinkedHashMap<>(services);
+                map.remove(name);
+                services = Collections.unmodifiableMap(map);
+            }
+        }
+        refresh();
+        return services.get(name);
+    }
+
+    /**
+     * Discover all the print services. The concurrent calls share the same lookup, a call only
+     * does a new lookup if no lookup was started after it was called.
+     *
+     * @since 1.1.0
+     */
+    public void refresh() {
+        long requested = System.nanoTime();
+        synchronized (refreshLock) {
+            if (refreshes.get() > 0 && refreshStartedNanos - requested >= 0) {
+                return;
+            }
+            refreshStartedNanos = System.nanoTime();
+
+            Map<String, PrintService> map = new LinkedHashMap<>();
+            for (PrintService printService : PrintServiceLookup.lookupPrintServices(null, null)) {
+                map.putIfAbsent(printService.getName(), printService);
+            }
+
+            services       = Collections.unmodifiableMap(map);
+            refreshMillis  = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - refreshStartedNanos);
+            refreshedAt    = Instant.now();
+            refreshedNanos = System.nanoTime();
+            refreshes.incrementAndGet();
+            logger.debug("Discovered {} print services in {} ms", map.size(), refreshMillis);
+        }
+    }
+
+    /**
+     * If the services were discovered in the last print.services.miss.refresh milliseconds
+     *
+     * @return False if never discovered
+     * @since 1.1.0
+     */
+    private boolean isRefreshedRecently() {
+        return refreshes.get() > 0
+                && System.nanoTime() - refreshedNanos < TimeUnit.MILLISECONDS.toNanos(missRefreshInterval);
+    }
+
+    /**
+     * The background refresh, the errors are logged and the previous services are kept
+     *
+     * @since 1.1.0
+     */
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.error("Print services discovery failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Get the cache state
+     *
+     * @return The state
+     * @since 1.1.0
+     */
+    public State getState() {
+        State state = new State();
+        state.services      = new ArrayList<>(services.keySet());
+        state.refreshedAt   = refreshedAt;
+        state.refreshMillis = refreshMillis;
+        state.refreshes     = refreshes.get();
+        state.hits          = hits.get();
+        state.misses        = misses.get();
+        state.invalidations = invalidations.get();
+        return state;
+    }
+
+    /**
+     * Check if the printer name is in the discovered services, without lookup
+     *
+     * @param name The printer name
+     * @return True if discovered
+     * @since 1.1.0
+     */
+    public boolean isDiscovered(String name) {
+        return services.containsKey(name);
+    }
+
+    /**
+     * The print service cache state
+     *
+     * @since 1.1.0
+     */
+    public static class State
+    {
+
+        /**
+         * @since 1.1.0
+         */
+        private List<String> services = List.of();
+
+        /**
+         * @since 1.1.0
+         */
+        private Instant refreshedAt;
+
+        /**
+         * @since 1.1.0
+         */
+        private long refreshMillis;
+
+        /**
+         * @since 1.1.0
+         */
+        private long refreshes;
+
+        /**
+         * @since 1.1.0
+         */
+        private long hits;
+
+        /**
+         * @since 1.1.0
+         */
+        private long misses;
+
+        /**
+         * @since 1.1.0
+         */
+        private long invalidations;
+
+        /**
+         * @return The discovered print services names
+         * @since 1.1.0
+         */
+        public List<String> getServices() {
+            return services;
+        }
+
+        /**
+         * @return When the last discovery finished, null if never finished
+         * @since 1.1.0
+         */
+        public Instant getRefreshedAt() {
+            return refreshedAt;
+        }
+
+        /**
+         * @return The milliseconds of the last discovery
+         * @since 1.1.0
+         */
+        public long getRefreshMillis() {
+            return refreshMillis;
+        }
+
+        /**
+         * @return The number of discoveries
+         * @since 1.1.0
+         */
+        public long getRefreshes() {
+            return refreshes;
+        }
+
+        /**
+         * @return The number of print services found without lookup
+         * @since 1.1.0
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return The number of print services not found that required a lookup
+         * @since 1.1.0
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return The number of print services invalidated after a print error
+         * @since 1.1.0
+         */
+        public long getInvalidations() {
+            return invalidations;
+        }
+    }
+}
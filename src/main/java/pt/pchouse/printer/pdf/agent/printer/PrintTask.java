@@ -0,0 +1,36 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+/**
+ * The work of a print job, executed by the printer queue worker
+ *
+ * @since 1.1.0
+ */
+@FunctionalInterface
+public interface PrintTask
+{
+
+    /**
+     * Send the job to the printer
+     *
+     * @param job The job being printed
+     * @throws Exception If print fails
+     * @since 1.1.0
+     */
+    void print(PrintJob job) throws Exception;
+}
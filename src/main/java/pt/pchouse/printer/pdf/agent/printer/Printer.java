@@ -16,23 +16,36 @@
 
 package pt.pchouse.printer.pdf.agent.printer;
 
-import org.apache.pdfbox.Loader;
+import io.micrometer.core.instrument.Timer;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.printing.PDFPageable;
+import org.apache.pdfbox.rendering.ImageType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import javax.print.*;
+import javax.print.event.PrintJobAdapter;
+import javax.print.event.PrintJobEvent;
+import javax.print.event.PrintJobListener;
+import java.awt.image.BufferedImage;
+import java.awt.print.Pageable;
 import java.awt.print.PrinterJob;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Base64;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * @since 1.0.0
@@ -60,36 +73,104 @@ public class Printer
     private PrinterConfig printerConfig;
 
     /**
-     * @since 1.0.0
+     * @since 1.1.0
      */
-    private static PrintService printService;
+    @Autowired
+    private PrintServiceCache printServiceCache;
 
     /**
-     * @return The printer service
+     * @since 1.1.0
+     */
+    @Autowired
+    private RenderCache renderCache;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PageRenderer pageRenderer;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private DocumentLoader documentLoader;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintMetrics printMetrics;
+
+    /**
+     * The maximum milliseconds to wait the document spool data transfer before send its post operations
+     *
+     * @since 1.1.0
+     */
+    @Value("${print.post.operations.wait:30000}")
+    private long postOperationsWait;
+
+    /**
+     * @return The default printer service
      * @throws PrinterException If error
      * @since 1.0.0
      */
     public PrintService getPrintService() throws PrinterException {
-        if (printService == null) {
+        return getPrintService(printerConfig);
+    }
 
-            Optional<PrintService> optional = Arrays.stream(PrintServiceLookup
-                            .lookupPrintServices(null, null))
-                    .filter(prtService -> prtService.getName().equals(printerConfig.getName()))
-                    .findFirst();
+    /**
+     * @param config The printer configuration
+     * @return The printer service
+     * @throws PrinterException If error
+     * @since 1.1.0
+     */
+    public PrintService getPrintService(PrinterConfig config) throws PrinterException {
+        return printServiceCache.get(config.getName());
+    }
 
-            if (optional.isEmpty()) {
-                String msg = String.format(
-                        "Printer with name '%s' not exist, if exists please restart the API Print agent service",
-                        printerConfig.getName()
-                );
-                logger.error(msg);
-                throw new PrinterException(msg);
+    /**
+     * Print in the printer print service. If the print fails the print service is invalidated and,
+     * if the discovery returns a different print service for the printer, the print is done once more.
+     * The spool events of the failed attempt are discarded.
+     *
+     * @param config   The printer configuration
+     * @param listener The spool job listener, can be null
+     * @param print    The print to the print service
+     * @throws PrintException   If fails
+     * @throws PrinterException If fails
+     * @since 1.1.0
+     */
+    private void print(PrinterConfig config, PrintJobListener listener, ServicePrint print) throws
+            PrintException,
+            PrinterException
+    {
+        long         start        = System.nanoTime();
+        PrintService printService = getPrintService(config);
+        SpoolAttempt attempt      = new SpoolAttempt(listener);
+        try {
+            print.print(printService, attempt);
+            attempt.printed();
+            printMetrics.record(config.getId(), PrintMetrics.Stage.SPOOL, start);
+            return;
+        } catch (PrintException e) {
+            attempt.discard();
+            PrintService refreshed = printServiceCache.invalidate(config.getName(), printService);
+            if (refreshed == null || refreshed == printService) {
+                throw e;
             }
-            logger.debug("Printer service set to printer name '{}'", printerConfig.getName());
-            printService = optional.get();
+            logger.warn(
+                    "Print service of printer '{}' failed with '{}', printing with the discovered one",
+                    config.getName(),
+                    e.getMessage()
+            );
+            printService = refreshed;
         }
 
-        return printService;
+        SpoolAttempt retry = new SpoolAttempt(listener);
+        print.print(printService, retry);
+        retry.printed();
+        printMetrics.record(config.getId(), PrintMetrics.Stage.SPOOL, start);
     }
 
     /**
@@ -100,14 +181,20 @@ public class Printer
      * @since 1.0.0
      */
     public void cutPaper() throws PrintException, PrinterException {
-        String esc = new String(printerConfig.getInitBytes());
-        esc += new String(printerConfig.getCutBytes());
-        Doc doc = new SimpleDoc(
-                esc.getBytes(),
-                DocFlavor.BYTE_ARRAY.AUTOSENSE,
-                null
-        );
-        getPrintService().createPrintJob().print(doc, null);
+        cutPaper(printerConfig, null);
+    }
+
+    /**
+     * Cut the paper
+     *
+     * @param config   The printer configuration
+     * @param listener The spool job listener, can be null
+     * @throws PrintException   If fails
+     * @throws PrinterException If fails
+     * @since 1.1.0
+     */
+    public void cutPaper(PrinterConfig config, PrintJobListener listener) throws PrintException, PrinterException {
+        printCommand(config, config.getCommands().get(EscPosCommands.CUT_PAPER), listener);
     }
 
     /**
@@ -118,14 +205,20 @@ public class Printer
      * @since 1.0.0
      */
     public void cashDrawer() throws PrintException, PrinterException {
-        String esc = new String(printerConfig.getInitBytes());
-        esc += new String(printerConfig.getCashDrawerBytes());
-        Doc doc = new SimpleDoc(
-                esc.getBytes(),
-                DocFlavor.BYTE_ARRAY.AUTOSENSE,
-                null
-        );
-        getPrintService().createPrintJob().print(doc, null);
+        cashDrawer(printerConfig, null);
+    }
+
+    /**
+     * Open the cash drawer
+     *
+     * @param config   The printer configuration
+     * @param listener The spool job listener, can be null
+     * @throws PrintException   If fails
+     * @throws PrinterException If fails
+     * @since 1.1.0
+     */
+    public void cashDrawer(PrinterConfig config, PrintJobListener listener) throws PrintException, PrinterException {
+        printCommand(config, config.getCommands().get(EscPosCommands.OPEN_CASH_DRAWER), listener);
     }
 
     /**
@@ -136,36 +229,789 @@ public class Printer
      * @since 1.0.0
      */
     public void cutAndCashDrawer() throws PrintException, PrinterException {
-        String esc = new String(printerConfig.getInitBytes());
-        esc += new String(printerConfig.getCutBytes());
-        esc += new String(printerConfig.getCashDrawerBytes());
-        Doc doc = new SimpleDoc(
-                esc.getBytes(),
-                DocFlavor.BYTE_ARRAY.AUTOSENSE,
-                null
-        );
-        getPrintService().createPrintJob().print(doc, null);
+        cutAndCashDrawer(printerConfig, null);
+    }
+
+    /**
+     * Cut the paper and open cash drawer
+     *
+     * @param config   The printer configuration
+     * @param listener The spool job listener, can be null
+     * @throws PrintException   If fails
+     * @throws PrinterException If fails
+     * @since 1.1.0
+     */
+    public void cutAndCashDrawer(PrinterConfig config, PrintJobListener listener) throws
+            PrintException,
+            PrinterException
+    {
+        printCommand(config, config.getCommands().get(EscPosCommands.CUT_AND_OPEN_CASH_DRAWER), listener);
+    }
+
+    /**
+     * Send a named ESC/POS command to the printer
+     *
+     * @param config   The printer configuration
+     * @param name     The command name
+     * @param listener The spool job listener, can be null
+     * @throws PrintException   If fails
+     * @throws PrinterException If the command is not defined or fails
+     * @since 1.1.0
+     */
+    public void printCommand(PrinterConfig config, String name, PrintJobListener listener) throws
+            PrintException,
+            PrinterException
+    {
+        printCommand(config, config.getCommands().require(name), listener);
+    }
+
+    /**
+     * Send a compiled ESC/POS command to the printer, the command print document is sent without any copy
+     *
+     * @param config   The printer configuration
+     * @param command  The command
+     * @param listener The spool job listener, can be null
+     * @throws PrintException   If fails
+     * @throws PrinterException If fails
+     * @since 1.1.0
+     */
+    private void printCommand(PrinterConfig config, EscPosCommand command, PrintJobListener listener) throws
+            PrintException,
+            PrinterException
+    {
+        printDoc(config, command.getDoc(), listener);
+    }
+
+    /**
+     * Send raw bytes to the printer
+     *
+     * @param config   The printer configuration
+     * @param bytes    The bytes
+     * @param listener The spool job listener, can be null
+     * @throws PrintException   If fails
+     * @throws PrinterException If fails
+     * @since 1.1.0
+     */
+    private void printBytes(PrinterConfig config, byte[] bytes, PrintJobListener listener) throws
+            PrintException,
+            PrinterException
+    {
+        printDoc(config, new SimpleDoc(bytes, DocFlavor.BYTE_ARRAY.AUTOSENSE, null), listener);
+    }
+
+    /**
+     * Send a raw print document to the printer
+     *
+     * @param config   The printer configuration
+     * @param doc      The print document
+     * @param listener The spool job listener, can be null
+     * @throws PrintException   If fails
+     * @throws PrinterException If fails
+     * @since 1.1.0
+     */
+    private void printDoc(PrinterConfig config, Doc doc, PrintJobListener listener) throws
+            PrintException,
+            PrinterException
+    {
+        print(config, listener, (printService, spoolAttempt) -> {
+            DocPrintJob printJob = printService.createPrintJob();
+            printJob.addPrintJobListener(spoolAttempt);
+            printJob.print(doc, null);
+        });
     }
 
     /**
      * @param base64Pdf The pdf tp print as base64 encode
-     * @throws PrinterException                If print fails
-     * @throws java.awt.print.PrinterException If print fails
-     * @throws IOException                     If load pdf fails
+     * @throws PrinterException If print fails
+     * @throws PrintException   If print fails
+     * @throws IOException      If load pdf fails
      * @since 1.0.0
      */
     public void PrintBase64StringPdf(String base64Pdf) throws
             PrinterException,
-            java.awt.print.PrinterException,
+            PrintException,
+            IOException
+    {
+        printPdf(printerConfig, PdfSource.ofBase64(base64Pdf), null);
+    }
+
+    /**
+     * Print the pdf, the in memory pdf is read without any copy and the scratch file pdf is memory mapped.
+     * The source is not closed.
+     *
+     * @param config   The printer configuration
+     * @param pdf      The pdf source
+     * @param listener The spool job listener, can be null
+     * @throws PrinterException If print fails
+     * @throws PrintException   If print fails
+     * @throws IOException      If load pdf fails
+     * @since 1.1.0
+     */
+    public void printPdf(PrinterConfig config, PdfSource pdf, PrintJobListener listener) throws
+            PrinterException,
+            PrintException,
+            IOException
+    {
+        printPdf(config, pdf, new byte[0], () -> listener);
+    }
+
+    /**
+     * Print the pdf followed by the ESC/POS post operations, like cut the paper
+     *
+     * @param config         The printer configuration
+     * @param pdf            The pdf source
+     * @param postOperations The ESC/POS post operations, empty for none
+     * @param spoolListeners Creates the listener of each spool job, the listener can be null
+     * @throws PrinterException If print fails
+     * @throws PrintException   If print fails
+     * @throws IOException      If load pdf fails
+     * @since 1.1.0
+     */
+    public void printPdf(
+            PrinterConfig config,
+            PdfSource pdf,
+            byte[] postOperations,
+            Supplier<PrintJobListener> spoolListeners
+    ) throws
+            PrinterException,
+            PrintException,
             IOException
     {
+        printDocuments(config, List.of(new PrintDocument(pdf, postOperations)), spoolListeners);
+    }
+
+    /**
+     * Render the pdf as the printer render mode does, without print and without the render cache,
+     * to load the render classes and the fonts before the first print.
+     * The pages sent to the driver are rendered at the printer resolution.
+     *
+     * @param config The printer configuration
+     * @param pdf    The pdf source
+     * @param parse  The timer of the document load
+     * @param render The timer of each page render
+     * @throws IOException If load or render the pdf fails
+     * @since 1.1.0
+     */
+    public void warmUp(PrinterConfig config, PdfSource pdf, Timer parse, Timer render) throws IOException {
+        EscPosRaster encoder = config.getRenderMode() != RenderMode.ESCPOS ? null : new EscPosRaster(
+                RasterCommand.parse(config.getRasterCommand()),
+                config.getRasterThreshold(),
+                config.getRasterWidth(),
+                config.isRasterTrim()
+        );
+        pageRenderer.render(pdf, parse, (document, renderer, index) -> {
+            long start = System.nanoTime();
+            if (encoder == null) {
+                renderer.renderImageWithDPI(index, config.getRenderDpi(), ImageType.GRAY);
+            } else {
+                PDRectangle cropBox = document.getPage(index).getCropBox();
+                encoder.encode(renderer.renderImage(index, config.getRasterWidth() / cropBox.getWidth(), ImageType.GRAY));
+            }
+            render.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return index;
+        }, (index, page) -> {
+        });
+    }
 
-        PrintService printService = this.getPrintService();
-        PDDocument   document     = Loader.loadPDF(Base64.getDecoder().decode(base64Pdf));
-        PrinterJob   job          = PrinterJob.getPrinterJob();
-        job.setPageable(new PDFPageable(document));
-        job.setPrintService(printService);
-        job.print();
+    /**
+     * Print the documents in order, each followed by its ESC/POS post operations, in the minimal spool jobs.
+     * The documents are loaded and rendered at the same time.
+     * In the ESC/POS render mode the init, the raster of the pages and the post operations of all the documents
+     * are sent as one raw job, with the large documents the pages are rendered one at a time while the spool
+     * reads the job and are not cached. In the other modes the consecutive documents without post operations are sent
+     * as one job, and the post operations are chained to the job of the document they follow, sent without
+     * the init when the document data transfer is completed and never sent if the document job fails.
+     * In the image render mode the pages are rendered by the agent and cached, a reprint of the same pdf
+     * is sent to the spool without load the pdf. The large documents are not cached, their pages are rendered
+     * one at a time while printed.
+     * The large documents wait for their estimated memory in the budget before load.
+     * The sources are not closed.
+     *
+     * @param config         The printer configuration
+     * @param documents      The documents
+     * @param spoolListeners Creates the listener of each spool job, the listener can be null
+     * @throws PrinterException If print fails
+     * @throws PrintException   If print fails
+     * @throws IOException      If load pdf fails
+     * @since 1.1.0
+     */
+    public void printDocuments(
+            PrinterConfig config,
+            List<PrintDocument> documents,
+            Supplier<PrintJobListener> spoolListeners
+    ) throws
+            PrinterException,
+            PrintException,
+            IOException
+    {
+        List<PdfSource> pdfs = documents.stream().map(PrintDocument::pdf).toList();
+        RenderMode      mode = config.getRenderMode();
+
+        try (DocumentLoader.Reservation ignore = documentLoader.reserve(pdfs)) {
+
+            if (mode == RenderMode.ESCPOS && pdfs.stream().anyMatch(documentLoader::isLarge)) {
+                printRasterPageByPage(config, documents, spoolListeners.get());
+                return;
+            }
+
+            if (mode == RenderMode.ESCPOS) {
+                List<RenderedRaster>  rasters = renderRasters(config, pdfs);
+                ByteArrayOutputStream bytes   = new ByteArrayOutputStream();
+                config.getCommands().get(EscPosCommands.INIT).writeTo(bytes);
+                for (int index = 0; index < documents.size(); index++) {
+                    bytes.writeBytes(rasters.get(index).getBytes());
+                    bytes.writeBytes(documents.get(index).postOperations());
+                }
+                printBytes(config, bytes.toByteArray(), spoolListeners.get());
+                return;
+            }
+
+            if (mode == RenderMode.IMAGE && pdfs.stream().noneMatch(documentLoader::isLarge)) {
+                printGroups(config, documents, renderPages(config, pdfs), spoolListeners);
+                return;
+            }
+
+            Timer parse = printMetrics.stage(config.getId(), PrintMetrics.Stage.PARSE);
+            try (PageRenderer.LoadedDocuments loaded = pageRenderer.loadAll(pdfs, parse)) {
+                List<Pageable> pageables = new ArrayList<>(documents.size());
+                for (PDDocument document : loaded.getDocuments()) {
+                    pageables.add(mode == RenderMode.IMAGE
+                            ? new PageByPageImages(document, config.getRenderDpi())
+                            : new PDFPageable(document));
+                }
+                printGroups(config, documents, pageables, spoolListeners);
+            }
+        }
+    }
+
+    /**
+     * Print the pageables of the documents, the consecutive documents without post operations in one job
+     * and the post operations chained in one raw job after the document they follow.
+     * A pageable job cannot carry raw bytes, so the document and its post operations are two spool jobs,
+     * not atomic, a job of other application can be printed between them.
+     *
+     * @param config         The printer configuration
+     * @param documents      The documents
+     * @param pageables      The pageable of each document
+     * @param spoolListeners Creates the listener of each spool job, the listener can be null
+     * @throws PrinterException If print fails
+     * @throws PrintException   If print fails
+     * @since 1.1.0
+     */
+    private void printGroups(
+            PrinterConfig config,
+            List<PrintDocument> documents,
+            List<? extends Pageable> pageables,
+            Supplier<PrintJobListener> spoolListeners
+    ) throws PrinterException, PrintException
+    {
+        List<Pageable> group = new ArrayList<>();
+        for (int index = 0; index < documents.size(); index++) {
+            group.add(pageables.get(index));
+
+            byte[] postOperations = documents.get(index).postOperations();
+            if (postOperations.length == 0 && index < documents.size() - 1) {
+                continue;
+            }
+
+            Pageable pageable = group.size() == 1 ? group.get(0) : new CompositePageable(group);
+            group = new ArrayList<>();
+
+            if (postOperations.length == 0) {
+                printPageable(config, pageable, spoolListeners.get());
+                continue;
+            }
+
+            // the init is not sent again, it would discard the document data still in the printer buffer
+            SpoolChain chain = new SpoolChain(spoolListeners.get());
+            printPageable(config, pageable, chain);
+            chain.await(config, postOperationsWait);
+            printBytes(config, postOperations, spoolListeners.get());
+        }
+    }
+
+    /**
+     * Print the documents as one ESC/POS raw job with the pages rendered to raster commands one at a time
+     * while the spool reads the job, only the raster of the page being read is in memory.
+     * A retry in other print service renders the pages again.
+     *
+     * @param config    The printer configuration
+     * @param documents The documents
+     * @param listener  The spool job listener, can be null
+     * @throws PrinterException If print fails
+     * @throws PrintException   If print or render fails
+     * @throws IOException      If load a pdf fails
+     * @since 1.1.0
+     */
+    private void printRasterPageByPage(
+            PrinterConfig config,
+            List<PrintDocument> documents,
+            PrintJobListener listener
+    ) throws
+            PrinterException,
+            PrintException,
+            IOException
+    {
+        EscPosRaster encoder = new EscPosRaster(
+                RasterCommand.parse(config.getRasterCommand()),
+                config.getRasterThreshold(),
+                config.getRasterWidth(),
+                config.isRasterTrim()
+        );
+        byte[]       init    = config.getCommands().get(EscPosCommands.INIT).getBytes();
+        List<byte[]> post    = documents.stream().map(PrintDocument::postOperations).toList();
+
+        Timer parse  = printMetrics.stage(config.getId(), PrintMetrics.Stage.PARSE);
+        Timer render = printMetrics.stage(config.getId(), PrintMetrics.Stage.RENDER);
+        try (PageRenderer.LoadedDocuments loaded = pageRenderer.loadAll(
+                documents.stream().map(PrintDocument::pdf).toList(),
+                parse
+        )) {
+            print(config, listener, (printService, spoolAttempt) -> {
+                PageByPageRaster raster = new PageByPageRaster(
+                        init, loaded.getDocuments(), post, encoder, config.getRasterWidth(), render
+                );
+                DocPrintJob printJob = printService.createPrintJob();
+                printJob.addPrintJobListener(spoolAttempt);
+                printJob.print(new SimpleDoc(raster, DocFlavor.INPUT_STREAM.AUTOSENSE, null), null);
+            });
+        }
+    }
+
+    /**
+     * Render the pdfs pages to ESC/POS raster commands, or get them from the render cache.
+     * Each page width is scaled to the printer raster width.
+     *
+     * @param config The printer configuration
+     * @param pdfs   The pdf sources
+     * @return The rendered raster of each pdf
+     * @throws IOException If load or render a pdf fails
+     * @since 1.1.0
+     */
+    private List<RenderedRaster> renderRasters(PrinterConfig config, List<PdfSource> pdfs) throws IOException {
+        RenderedRaster[] rasters = new RenderedRaster[pdfs.size()];
+        List<Integer>    missing = new ArrayList<>();
+        String[]         keys    = new String[pdfs.size()];
+
+        // the copies of the same pdf in the documents are rendered once
+        Map<String, Integer> firstCopy = new HashMap<>();
+        int[]                copyOf    = new int[pdfs.size()];
+        for (int index = 0; index < pdfs.size(); index++) {
+            copyOf[index] = -1;
+            if (renderCache.isEnabled()) {
+                keys[index] = RenderCache.key(pdfs.get(index), config);
+                Integer first = firstCopy.putIfAbsent(keys[index], index);
+                if (first != null) {
+                    copyOf[index] = first;
+                    continue;
+                }
+                rasters[index] = renderCache.get(keys[index], RenderedRaster.class);
+            }
+            if (rasters[index] == null) {
+                missing.add(index);
+            }
+        }
+        logger.debug("Rendering raster of {} of {} documents", missing.size(), pdfs.size());
+
+        if (!missing.isEmpty()) {
+            EscPosRaster encoder = new EscPosRaster(
+                    RasterCommand.parse(config.getRasterCommand()),
+                    config.getRasterThreshold(),
+                    config.getRasterWidth(),
+                    config.isRasterTrim()
+            );
+
+            List<ByteArrayOutputStream> outputs = new ArrayList<>(missing.size());
+            missing.forEach(index -> outputs.add(new ByteArrayOutputStream()));
+
+            Timer parse  = printMetrics.stage(config.getId(), PrintMetrics.Stage.PARSE);
+            Timer render = printMetrics.stage(config.getId(), PrintMetrics.Stage.RENDER);
+            pageRenderer.renderAll(missing.stream().map(pdfs::get).toList(), parse, (document, renderer, index) -> {
+                long   start  = System.nanoTime();
+                float  scale  = PageByPageRaster.scale(document.getPage(index), config.getRasterWidth());
+                byte[] raster = encoder.encode(renderer.renderImage(index, scale, ImageType.GRAY));
+                render.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return raster;
+            }, (document, index, page) -> outputs.get(document).writeBytes(page));
+
+            for (int document = 0; document < missing.size(); document++) {
+                int index = missing.get(document);
+                rasters[index] = new RenderedRaster(outputs.get(document).toByteArray());
+                if (keys[index] != null) {
+                    renderCache.put(keys[index], rasters[index]);
+                }
+            }
+        }
+
+        for (int index = 0; index < pdfs.size(); index++) {
+            if (copyOf[index] >= 0) {
+                rasters[index] = rasters[copyOf[index]];
+            }
+        }
+
+        return List.of(rasters);
+    }
+
+    /**
+     * Render the pdfs pages to images, or get them from the render cache
+     *
+     * @param config The printer configuration
+     * @param pdfs   The pdf sources
+     * @return The rendered pages of each pdf
+     * @throws IOException If load or render a pdf fails
+     * @since 1.1.0
+     */
+    private List<RenderedPages> renderPages(PrinterConfig config, List<PdfSource> pdfs) throws IOException {
+        RenderedPages[] pages   = new RenderedPages[pdfs.size()];
+        List<Integer>   missing = new ArrayList<>();
+        String[]        keys    = new String[pdfs.size()];
+
+        // the copies of the same pdf in the documents are rendered once
+        Map<String, Integer> firstCopy = new HashMap<>();
+        int[]                copyOf    = new int[pdfs.size()];
+        for (int index = 0; index < pdfs.size(); index++) {
+            copyOf[index] = -1;
+            if (renderCache.isEnabled()) {
+                keys[index] = RenderCache.key(pdfs.get(index), config);
+                Integer first = firstCopy.putIfAbsent(keys[index], index);
+                if (first != null) {
+                    copyOf[index] = first;
+                    continue;
+                }
+                pages[index] = renderCache.get(keys[index], RenderedPages.class);
+            }
+            if (pages[index] == null) {
+                missing.add(index);
+            }
+        }
+        logger.debug("Rendering pages of {} of {} documents", missing.size(), pdfs.size());
+
+        if (!missing.isEmpty()) {
+            List<List<BufferedImage>> images = new ArrayList<>(missing.size());
+            missing.forEach(index -> images.add(new ArrayList<>()));
+
+            Timer parse  = printMetrics.stage(config.getId(), PrintMetrics.Stage.PARSE);
+            Timer render = printMetrics.stage(config.getId(), PrintMetrics.Stage.RENDER);
+            pageRenderer.renderAll(
+                    missing.stream().map(pdfs::get).toList(),
+                    parse,
+                    (document, renderer, index) -> {
+                        long          start = System.nanoTime();
+                        BufferedImage image = renderer.renderImageWithDPI(index, config.getRenderDpi(), ImageType.GRAY);
+                        render.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        return image;
+                    },
+                    (document, index, image) -> images.get(document).add(image)
+            );
+
+            for (int document = 0; document < missing.size(); document++) {
+                int index = missing.get(document);
+                pages[index] = new RenderedPages(images.get(document), config.getRenderDpi());
+                if (keys[index] != null) {
+                    renderCache.put(keys[index], pages[index]);
+                }
+            }
+        }
+
+        for (int index = 0; index < pdfs.size(); index++) {
+            if (copyOf[index] >= 0) {
+                pages[index] = pages[copyOf[index]];
+            }
+        }
+
+        return List.of(pages);
+    }
+
+    /**
+     * Print the pageable. If the print service supports pageable documents is sent as a javax.print job,
+     * that reports the spool events to the listener, otherwise is printed with java.awt.print.PrinterJob
+     * that has no events, the spool job is reported to the listener as finished when the print returns.
+     *
+     * @param config   The printer configuration
+     * @param pageable The pageable
+     * @param listener The spool job listener, can be null
+     * @throws PrinterException If print fails
+     * @throws PrintException   If print fails
+     * @since 1.1.0
+     */
+    private void printPageable(PrinterConfig config, Pageable pageable, PrintJobListener listener) throws
+            PrinterException,
+            PrintException
+    {
+        print(config, listener, (printService, spoolAttempt) -> {
+            if (printService.isDocFlavorSupported(DocFlavor.SERVICE_FORMATTED.PAGEABLE)) {
+                DocPrintJob printJob = printService.createPrintJob();
+                printJob.addPrintJobListener(spoolAttempt);
+                printJob.print(new SimpleDoc(pageable, DocFlavor.SERVICE_FORMATTED.PAGEABLE, null), null);
+                return;
+            }
+
+            try {
+                PrinterJob job = PrinterJob.getPrinterJob();
+                job.setPageable(pageable);
+                job.setPrintService(printService);
+                job.print();
+                spoolAttempt.withoutEvents();
+            } catch (java.awt.print.PrinterException e) {
+                throw new PrintException(e);
+            }
+        });
+    }
+
+    /**
+     * A print to a print service
+     *
+     * @since 1.1.0
+     */
+    @FunctionalInterface
+    private interface ServicePrint
+    {
+        /**
+         * @param printService The print service
+         * @param spoolAttempt The listener to add to the spool job
+         * @throws PrintException If fails
+         * @since 1.1.0
+         */
+        void print(PrintService printService, SpoolAttempt spoolAttempt) throws PrintException;
+    }
+
+    /**
+     * The spool events of a document job with chained post operations, forwarded to the job listener
+     * and awaited before the post operations are sent
+     *
+     * @since 1.1.0
+     */
+    private static class SpoolChain extends PrintJobAdapter
+    {
+
+        /**
+         * @since 1.1.0
+         */
+        private final PrintJobListener listener;
+
+        /**
+         * Released when the data transfer is completed or the job ends
+         *
+         * @since 1.1.0
+         */
+        private final CountDownLatch transferred = new CountDownLatch(1);
+
+        /**
+         * @since 1.1.0
+         */
+        private volatile boolean failed = false;
+
+        /**
+         * @param listener The listener, can be null
+         * @since 1.1.0
+         */
+        SpoolChain(PrintJobListener listener) {
+            this.listener = listener == null ? new PrintJobAdapter() {} : listener;
+        }
+
+        /**
+         * Wait the document data transfer, on timeout the post operations are sent after the document
+         * in the spool queue
+         *
+         * @param config  The printer configuration
+         * @param timeout The maximum milliseconds to wait
+         * @throws PrinterException If the document job failed or was canceled
+         * @since 1.1.0
+         */
+        void await(PrinterConfig config, long timeout) throws PrinterException {
+            try {
+                if (!transferred.await(timeout, TimeUnit.MILLISECONDS)) {
+                    LoggerFactory.getLogger(Printer.class).warn(
+                            "Printer '{}' document data transfer not completed in {} ms, sending the post operations",
+                            config.getName(),
+                            timeout
+                    );
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PrinterException("Interrupted waiting the document data transfer");
+            }
+            if (failed) {
+                throw new PrinterException("The document print job failed, the post operations were not sent");
+            }
+        }
+
+        @Override
+        public void printDataTransferCompleted(PrintJobEvent event) {
+            listener.printDataTransferCompleted(event);
+            transferred.countDown();
+        }
+
+        @Override
+        public void printJobCompleted(PrintJobEvent event) {
+            listener.printJobCompleted(event);
+            transferred.countDown();
+        }
+
+        @Override
+        public void printJobFailed(PrintJobEvent event) {
+            listener.printJobFailed(event);
+            failed = true;
+            transferred.countDown();
+        }
+
+        @Override
+        public void printJobCanceled(PrintJobEvent event) {
+            listener.printJobCanceled(event);
+            failed = true;
+            transferred.countDown();
+        }
+
+        @Override
+        public void printJobNoMoreEvents(PrintJobEvent event) {
+            listener.printJobNoMoreEvents(event);
+            transferred.countDown();
+        }
+
+        @Override
+        public void printJobRequiresAttention(PrintJobEvent event) {
+            listener.printJobRequiresAttention(event);
+        }
+    }
+
+    /**
+     * The spool events of one print attempt. The events are held until the attempt print returns,
+     * then delivered in order to the listener, the events of a discarded attempt are never delivered.
+     *
+     * @since 1.1.0
+     */
+    private static class SpoolAttempt extends PrintJobAdapter
+    {
+
+        /**
+         * @since 1.1.0
+         */
+        private final PrintJobListener listener;
+
+        /**
+         * The held events, null after the print returns
+         *
+         * @since 1.1.0
+         */
+        private List<PrintJobEvent> pending = new ArrayList<>();
+
+        /**
+         * @since 1.1.0
+         */
+        private boolean discarded = false;
+
+        /**
+         * The print has no spool events, the job is finished when the print returns
+         *
+         * @since 1.1.0
+         */
+        private boolean noEvents = false;
+
+        /**
+         * @param listener The listener, can be null
+         * @since 1.1.0
+         */
+        SpoolAttempt(PrintJobListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * The print returned, deliver the held events
+         *
+         * @since 1.1.0
+         */
+        synchronized void printed() {
+            List<PrintJobEvent> events = pending;
+            pending = null;
+            if (events == null || discarded) {
+                return;
+            }
+            events.forEach(this::dispatch);
+            if (noEvents && listener != null) {
+                // there is no print job to be the event source
+                listener.printJobNoMoreEvents(null);
+            }
+        }
+
+        /**
+         * The print has no spool events, the spool job is reported as finished to the listener when
+         * the print returns
+         *
+         * @since 1.1.0
+         */
+        synchronized void withoutEvents() {
+            noEvents = true;
+        }
+
+        /**
+         * The print failed, discard the events
+         *
+         * @since 1.1.0
+         */
+        synchronized void discard() {
+            discarded = true;
+            pending   = null;
+        }
+
+        /**
+         * @param event The event
+         * @since 1.1.0
+         */
+        private synchronized void deliver(PrintJobEvent event) {
+            if (discarded || listener == null) {
+                return;
+            }
+            if (pending != null) {
+                pending.add(event);
+                return;
+            }
+            dispatch(event);
+        }
+
+        /**
+         * @param event The event
+         * @since 1.1.0
+         */
+        private void dispatch(PrintJobEvent event) {
+            switch (event.getPrintEventType()) {
+                case PrintJobEvent.DATA_TRANSFER_COMPLETE -> listener.printDataTransferCompleted(event);
+                case PrintJobEvent.JOB_COMPLETE -> listener.printJobCompleted(event);
+                case PrintJobEvent.JOB_FAILED -> listener.printJobFailed(event);
+                case PrintJobEvent.JOB_CANCELED -> listener.printJobCanceled(event);
+                case PrintJobEvent.NO_MORE_EVENTS -> listener.printJobNoMoreEvents(event);
+                case PrintJobEvent.REQUIRES_ATTENTION -> listener.printJobRequiresAttention(event);
+            }
+        }
+
+        @Override
+        public void printDataTransferCompleted(PrintJobEvent event) {
+            deliver(event);
+        }
+
+        @Override
+        public void printJobCompleted(PrintJobEvent event) {
+            deliver(event);
+        }
+
+        @Override
+        public void printJobFailed(PrintJobEvent event) {
+            deliver(event);
+        }
+
+        @Override
+        public void printJobCanceled(PrintJobEvent event) {
+            deliver(event);
+        }
+
+        @Override
+        public void printJobNoMoreEvents(PrintJobEvent event) {
+            deliver(event);
+        }
+
+        @Override
+        public void printJobRequiresAttention(PrintJobEvent event) {
+            deliver(event);
+        }
     }
 
 }
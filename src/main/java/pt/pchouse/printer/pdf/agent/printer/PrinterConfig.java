@@ -51,6 +51,21 @@ public class PrinterConfig
      */
     public final static String SEPARATOR = ",";
 
+    /**
+     * The id of the printer defined by the properties name, init, feed, cut and cash_drawer,
+     * used when the request does not define the printer
+     *
+     * @since 1.1.0
+     */
+    public final static String DEFAULT_ID = "default";
+
+    /**
+     * The printer id, used by the requests to select the printer
+     *
+     * @since 1.1.0
+     */
+    private String id = DEFAULT_ID;
+
     /**
      * The printer name
      *
@@ -68,13 +83,6 @@ public class PrinterConfig
     @Value("${init}")
     private String init;
 
-    /**
-     * The printer initialization ESC/POS command as byte array
-     *
-     * @since 1.0.0
-     */
-    private static byte[] _init;
-
     /**
      * The ESC/POS command from configuration file
      * To line feed
@@ -85,43 +93,77 @@ public class PrinterConfig
     private String feed;
 
     /**
-     * The line feed ESC/POS command as byte array
+     * The ESC/POS command from configuration file
+     * To cut paper
      *
      * @since 1.0.0
      */
-    private static byte[] _feed;
+    @Value("${cut}")
+    private String cut;
 
     /**
      * The ESC/POS command from configuration file
-     * To cut paper
+     * To cash drawer
      *
      * @since 1.0.0
      */
-    @Value("${cut}")
-    private String cut;
+    @Value("${cash_drawer}")
+    private String cashDrawer;
 
     /**
-     * The cut paper ESC/POS command as byte array
+     * The compiled ESC/POS commands, set at startup by the printer registry
      *
-     * @since 1.0.0
+     * @since 1.1.0
      */
-    private static byte[] _cut;
+    private volatile EscPosCommands commands;
 
     /**
-     * The ESC/POS command from configuration file
-     * To cash drawer
+     * How the pdf is rendered to the printer, pageable or image
      *
-     * @since 1.0.0
+     * @since 1.1.0
      */
-    @Value("${cash_drawer}")
-    private String cashDrawer;
+    @Value("${render:pageable}")
+    private String render;
 
     /**
-     * The cash drawer ESC/POS command as byte array
+     * The resolution of the rendered images
      *
-     * @since 1.0.0
+     * @since 1.1.0
+     */
+    @Value("${render_dpi:203}")
+    private float renderDpi;
+
+    /**
+     * The printable width in dots of the ESC/POS render, the page width is scaled to it
+     *
+     * @since 1.1.0
      */
-    private static byte[] _cashDrawer;
+    @Value("${raster_width:576}")
+    private int rasterWidth;
+
+    /**
+     * The gray level, 0 to 255, below which the dot is printed in the ESC/POS render
+     *
+     * @since 1.1.0
+     */
+    @Value("${raster_threshold:128}")
+    private int rasterThreshold;
+
+    /**
+     * The ESC/POS raster command, gs_v_0 or gs_l
+     *
+     * @since 1.1.0
+     */
+    @Value("${raster_command:gs_v_0}")
+    private String rasterCommand;
+
+    /**
+     * Remove the blank rows at the bottom of each page in the ESC/POS render
+     *
+     * @since 1.1.0
+     */
+    @Value("${raster_trim:true}")
+    private boolean rasterTrim;
 
     /**
      * Printer configuration
@@ -132,6 +174,26 @@ public class PrinterConfig
         logger.debug("New instance of {}", getClass().getName());
     }
 
+    /**
+     * Get the printer id
+     *
+     * @return The printer id
+     * @since 1.1.0
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Set the printer id
+     *
+     * @param id The printer id
+     * @since 1.1.0
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
     /**
      * Get the get printer name
      *
@@ -238,6 +300,176 @@ public class PrinterConfig
         this.cashDrawer = cashDrawer;
     }
 
+    /**
+     * How the pdf is rendered to the printer
+     *
+     * @return The render mode from configuration file
+     * @since 1.1.0
+     */
+    public String getRender() {
+        return render;
+    }
+
+    /**
+     * How the pdf is rendered to the printer
+     *
+     * @param render The render mode, pageable or image
+     * @since 1.1.0
+     */
+    public void setRender(String render) {
+        this.render = render;
+    }
+
+    /**
+     * The render mode
+     *
+     * @return The render mode
+     * @since 1.1.0
+     */
+    public RenderMode getRenderMode() {
+        return RenderMode.parse(render);
+    }
+
+    /**
+     * The resolution of the rendered images
+     *
+     * @return The dots per inch
+     * @since 1.1.0
+     */
+    public float getRenderDpi() {
+        return renderDpi;
+    }
+
+    /**
+     * The resolution of the rendered images
+     *
+     * @param renderDpi The dots per inch
+     * @since 1.1.0
+     */
+    public void setRenderDpi(float renderDpi) {
+        this.renderDpi = renderDpi;
+    }
+
+    /**
+     * The printable width in dots of the ESC/POS render
+     *
+     * @return The width in dots
+     * @since 1.1.0
+     */
+    public int getRasterWidth() {
+        return rasterWidth;
+    }
+
+    /**
+     * The printable width in dots of the ESC/POS render
+     *
+     * @param rasterWidth The width in dots
+     * @since 1.1.0
+     */
+    public void setRasterWidth(int rasterWidth) {
+        this.rasterWidth = rasterWidth;
+    }
+
+    /**
+     * The gray level below which the dot is printed in the ESC/POS render
+     *
+     * @return The gray level, 0 to 255
+     * @since 1.1.0
+     */
+    public int getRasterThreshold() {
+        return rasterThreshold;
+    }
+
+    /**
+     * The gray level below which the dot is printed in the ESC/POS render
+     *
+     * @param rasterThreshold The gray level, 0 to 255
+     * @since 1.1.0
+     */
+    public void setRasterThreshold(int rasterThreshold) {
+        this.rasterThreshold = rasterThreshold;
+    }
+
+    /**
+     * The ESC/POS raster command from configuration file
+     *
+     * @return The command, gs_v_0 or gs_l
+     * @since 1.1.0
+     */
+    public String getRasterCommand() {
+        return rasterCommand;
+    }
+
+    /**
+     * The ESC/POS raster command
+     *
+     * @param rasterCommand The command, gs_v_0 or gs_l
+     * @since 1.1.0
+     */
+    public void setRasterCommand(String rasterCommand) {
+        this.rasterCommand = rasterCommand;
+    }
+
+    /**
+     * If the blank rows at the bottom of each page are removed in the ESC/POS render
+     *
+     * @return True to remove
+     * @since 1.1.0
+     */
+    public boolean isRasterTrim() {
+        return rasterTrim;
+    }
+
+    /**
+     * If the blank rows at the bottom of each page are removed in the ESC/POS render
+     *
+     * @param rasterTrim True to remove
+     * @since 1.1.0
+     */
+    public void setRasterTrim(boolean rasterTrim) {
+        this.rasterTrim = rasterTrim;
+    }
+
+    /**
+     * The render settings that change the rendered output, used in the render cache key
+     *
+     * @return The render settings
+     * @since 1.1.0
+     */
+    public String getRenderKey() {
+        RenderMode mode = getRenderMode();
+        if (mode == RenderMode.ESCPOS) {
+            return mode + "/" + rasterWidth + "/" + rasterThreshold + "/" + RasterCommand.parse(rasterCommand)
+                    + "/" + rasterTrim;
+        }
+        return mode + "/" + renderDpi;
+    }
+
+    /**
+     * The compiled ESC/POS commands
+     *
+     * @return The commands
+     * @throws IllegalStateException If the commands were not compiled
+     * @since 1.1.0
+     */
+    public EscPosCommands getCommands() {
+        EscPosCommands compiled = commands;
+        if (compiled == null) {
+            throw new IllegalStateException(String.format("The ESC/POS commands of printer '%s' are not compiled", id));
+        }
+        return compiled;
+    }
+
+    /**
+     * Set the compiled ESC/POS commands, the init, feed, cut and cash drawer are not compiled again when changed
+     *
+     * @param commands The commands
+     * @since 1.1.0
+     */
+    public void setCommands(EscPosCommands commands) {
+        this.commands = commands;
+    }
+
     /**
      * The printer initialization ESC/POS command as byte array
      *
@@ -245,15 +477,7 @@ public class PrinterConfig
      * @since 1.0.0
      */
     public byte[] getInitBytes() {
-        if (_init == null) {
-            String[] initSplit = init.split(SEPARATOR);
-            _init = new byte[initSplit.length];
-            int index = 0;
-            for (String code : initSplit) {
-                _init[index++] = Byte.parseByte(code);
-            }
-        }
-        return _init;
+        return getCommands().get(EscPosCommands.INIT).getBytes();
     }
 
     /**
@@ -263,15 +487,7 @@ public class PrinterConfig
      * @since 1.0.0
      */
     public byte[] getFeedBytes() {
-        if (_feed == null) {
-            String[] feedSplit = feed.split(SEPARATOR);
-            _feed = new byte[feedSplit.length];
-            int index = 0;
-            for (String code : feedSplit) {
-                _feed[index++] = Byte.parseByte(code);
-            }
-        }
-        return _feed;
+        return getCommands().get(EscPosCommands.FEED).getBytes();
     }
 
     /**
@@ -281,15 +497,7 @@ public class PrinterConfig
      * @since 1.0.0
      */
     public byte[] getCutBytes() {
-        if (_cut == null) {
-            String[] cutSplit = cut.split(SEPARATOR);
-            _cut = new byte[cutSplit.length];
-            int index = 0;
-            for (String code : cutSplit) {
-                _cut[index++] = Byte.parseByte(code);
-            }
-        }
-        return _cut;
+        return getCommands().get(EscPosCommands.CUT).getBytes();
     }
 
     /**
@@ -299,15 +507,7 @@ public class PrinterConfig
      * @since 1.0.0
      */
     public byte[] getCashDrawerBytes() {
-        if (_cashDrawer == null) {
-            String[] cashDrawerSplit = cashDrawer.split(SEPARATOR);
-            _cashDrawer = new byte[cashDrawerSplit.length];
-            int index = 0;
-            for (String code : cashDrawerSplit) {
-                _cashDrawer[index++] = Byte.parseByte(code);
-            }
-        }
-        return _cashDrawer;
+        return getCommands().get(EscPosCommands.CASH_DRAWER).getBytes();
     }
 
 }
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The registry of the configured printers.
+ * Besides the default printer, any number of printers can be defined in the printer.properties:
+ * <pre>
+ * printers=kitchen,laser
+ * printer.kitchen.name=EPSON TM-T20II
+ * printer.kitchen.cut=29,86,65,4
+ * printer.laser.name=HP LaserJet
+ * </pre>
+ * The ESC/POS commands not defined for a printer are the ones of the default printer.
+ * Named ESC/POS commands, with parameters, can be defined for all the printers and redefined by printer:
+ * <pre>
+ * commands=drawer_2,feed_cut
+ * command.drawer_2=0x1B,0x70,1,{drawer_on},{drawer_off}
+ * command.feed_cut=$feed,$feed,$cut
+ * command_param.drawer_on=25
+ * command_param.drawer_off=250
+ * printer.kitchen.command_param.drawer_on=50
+ * </pre>
+ * The commands of each printer are compiled at startup.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class PrinterRegistry
+{
+
+    /**
+     * The prefix of the properties of each printer
+     *
+     * @since 1.1.0
+     */
+    public final static String PREFIX = "printer.";
+
+    /**
+     * The prefix of the named ESC/POS commands properties
+     *
+     * @since 1.1.0
+     */
+    public final static String COMMAND_PREFIX = "command.";
+
+    /**
+     * The prefix of the ESC/POS commands parameters properties
+     *
+     * @since 1.1.0
+     */
+    public final static String COMMAND_PARAM_PREFIX = "command_param.";
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The default printer configuration
+     *
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrinterConfig defaultConfig;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private Environment environment;
+
+    /**
+     * The ids of the printers defined in the printer.properties, besides the default
+     *
+     * @since 1.1.0
+     */
+    @Value("${printers:}")
+    private String[] printerIds;
+
+    /**
+     * The names of the ESC/POS commands defined for all the printers, besides the built-in
+     *
+     * @since 1.1.0
+     */
+    @Value("${commands:}")
+    private String[] commandNames;
+
+    /**
+     * The printers configuration by id, read only after startup
+     *
+     * @since 1.1.0
+     */
+    private Map<String, PrinterConfig> printers = Collections.emptyMap();
+
+    /**
+     * Load the printers configuration
+     *
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void load() {
+        Map<String, PrinterConfig> map = new LinkedHashMap<>();
+        map.put(PrinterConfig.DEFAULT_ID, defaultConfig);
+
+        for (String id : printerIds) {
+            id = id.trim();
+            if (id.isEmpty()) {
+                continue;
+            }
+            if (map.containsKey(id)) {
+                throw new IllegalStateException(String.format("Printer id '%s' is duplicated", id));
+            }
+
+            String name = environment.getProperty(PREFIX + id + ".name");
+            if (name == null || name.isBlank()) {
+                throw new IllegalStateException(
+                        String.format("The printer '%s' has no name, set the property %s%s.name", id, PREFIX, id)
+                );
+            }
+
+            PrinterConfig config = new PrinterConfig();
+            config.setId(id);
+            config.setName(name);
+            config.setInit(environment.getProperty(PREFIX + id + ".init", defaultConfig.getInit()));
+            config.setFeed(environment.getProperty(PREFIX + id + ".feed", defaultConfig.getFeed()));
+            config.setCut(environment.getProperty(PREFIX + id + ".cut", defaultConfig.getCut()));
+            config.setCashDrawer(environment.getProperty(PREFIX + id + ".cash_drawer", defaultConfig.getCashDrawer()));
+            config.setRender(environment.getProperty(PREFIX + id + ".render", defaultConfig.getRender()));
+            config.setRenderDpi(
+                    environment.getProperty(PREFIX + id + ".render_dpi", Float.class, defaultConfig.getRenderDpi())
+            );
+            config.setRasterWidth(
+                    environment.getProperty(PREFIX + id + ".raster_width", Integer.class, defaultConfig.getRasterWidth())
+            );
+            config.setRasterThreshold(environment.getProperty(
+                    PREFIX + id + ".raster_threshold", Integer.class, defaultConfig.getRasterThreshold()
+            ));
+            config.setRasterCommand(
+                    environment.getProperty(PREFIX + id + ".raster_command", defaultConfig.getRasterCommand())
+            );
+            config.setRasterTrim(
+                    environment.getProperty(PREFIX + id + ".raster_trim", Boolean.class, defaultConfig.isRasterTrim())
+            );
+
+            map.put(id, config);
+            logger.debug("Printer '{}' configured with name '{}'", id, name);
+        }
+
+        for (Map.Entry<String, PrinterConfig> entry : map.entrySet()) {
+            try {
+                entry.getValue().getRenderMode();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(String.format(
+                        "The printer '%s' render '%s' is not one of %s",
+                        entry.getKey(),
+                        entry.getValue().getRender(),
+                        Arrays.toString(RenderMode.values()).toLowerCase()
+                ));
+            }
+            try {
+                RasterCommand.parse(entry.getValue().getRasterCommand());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(String.format(
+                        "The printer '%s' raster command '%s' is not one of %s",
+                        entry.getKey(),
+                        entry.getValue().getRasterCommand(),
+                        Arrays.toString(RasterCommand.values()).toLowerCase()
+                ));
+            }
+            try {
+                entry.getValue().setCommands(compileCommands(entry.getValue()));
+            } catch (PrinterException e) {
+                throw new IllegalStateException(
+                        String.format("The printer '%s' %s", entry.getKey(), e.getMessage()), e
+                );
+            }
+        }
+
+        printers = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Compile the printer ESC/POS commands, the built-in, the ones of all the printers and the ones
+     * of the printer. The printer properties take precedence over the ones of all the printers.
+     *
+     * @param config The printer configuration
+     * @return The compiled commands
+     * @throws PrinterException If a command is not valid
+     * @since 1.1.0
+     */
+    private EscPosCommands compileCommands(PrinterConfig config) throws PrinterException {
+        String prefix = PrinterConfig.DEFAULT_ID.equals(config.getId()) ? "" : PREFIX + config.getId() + ".";
+
+        Map<String, String> definitions = new LinkedHashMap<>();
+        definitions.put(EscPosCommands.INIT, Objects.requireNonNullElse(config.getInit(), ""));
+        definitions.put(EscPosCommands.FEED, Objects.requireNonNullElse(config.getFeed(), ""));
+        definitions.put(EscPosCommands.CUT, Objects.requireNonNullElse(config.getCut(), ""));
+        definitions.put(EscPosCommands.CASH_DRAWER, Objects.requireNonNullElse(config.getCashDrawer(), ""));
+
+        Set<String> names = new LinkedHashSet<>(Arrays.asList(commandNames));
+        names.addAll(Arrays.asList(environment.getProperty(prefix + "commands", String[].class, new String[0])));
+        for (String name : names) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (EscPosCommands.BUILT_IN.contains(name)) {
+                throw new PrinterException(String.format(
+                        "ESC/POS command '%s' is built-in, set it in the property %s%s", name, prefix, name
+                ));
+            }
+            String sequence = environment.getProperty(
+                    prefix + COMMAND_PREFIX + name,
+                    environment.getProperty(COMMAND_PREFIX + name)
+            );
+            if (sequence == null) {
+                throw new PrinterException(String.format(
+                        "ESC/POS command '%s' has no sequence, set the property %s%s", name, COMMAND_PREFIX, name
+                ));
+            }
+            definitions.put(name, sequence);
+        }
+
+        EscPosCommands commands = EscPosCommands.compile(
+                definitions,
+                parameter -> environment.getProperty(
+                        prefix + COMMAND_PARAM_PREFIX + parameter,
+                        environment.getProperty(COMMAND_PARAM_PREFIX + parameter)
+                )
+        );
+        logger.debug("Printer '{}' ESC/POS commands {}", config.getId(), commands.getNames());
+        return commands;
+    }
+
+    /**
+     * Get the printer configuration
+     *
+     * @param id The printer id, null or empty for the default printer
+     * @return The printer configuration
+     * @throws PrinterException If the printer is not configured
+     * @since 1.1.0
+     */
+    public PrinterConfig get(String id) throws PrinterException {
+        if (id == null || id.isBlank()) {
+            return printers.get(PrinterConfig.DEFAULT_ID);
+        }
+        PrinterConfig config = printers.get(id);
+        if (config == null) {
+            throw new PrinterException(String.format("Printer '%s' is not configured", id));
+        }
+        return config;
+    }
+
+    /**
+     * Get all the printers configuration
+     *
+     * @return The printers
+     * @since 1.1.0
+     */
+    public Collection<PrinterConfig> getAll() {
+        return printers.values();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+/**
+ * The ESC/POS command used to print the raster images
+ *
+ * @since 1.1.0
+ */
+public enum RasterCommand
+{
+    /**
+     * GS v 0, print raster bit image, supported by most of the thermal printers
+     *
+     * @since 1.1.0
+     */
+    GS_V_0,
+
+    /**
+     * GS ( L, store the graphics data in the print buffer and print it
+     *
+     * @since 1.1.0
+     */
+    GS_L;
+
+    /**
+     * Parse the raster command from the configuration, case-insensitive
+     *
+     * @param command The command, null or empty for GS_V_0
+     * @return The raster command
+     * @since 1.1.0
+     */
+    public static RasterCommand parse(String command) {
+        if (command == null || command.isBlank()) {
+            return GS_V_0;
+        }
+        return valueOf(command.trim().toUpperCase());
+    }
+}
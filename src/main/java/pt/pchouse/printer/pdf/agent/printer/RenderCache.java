@@ -0,0 +1,191 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The rendered output of the printed pdfs, to reprint the same pdf without parse and render it again.
+ * The key is the pdf SHA-256 with the printer render settings, the least recently used outputs
+ * are evicted when the retained bytes exceed the limit.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class RenderCache
+{
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The maximum bytes retained by the cached outputs, zero disables the cache
+     *
+     * @since 1.1.0
+     */
+    @Value("${render.cache.max.bytes:67108864}")
+    private long maxBytes;
+
+    /**
+     * The outputs in access order, the eldest is the least recently used
+     *
+     * @since 1.1.0
+     */
+    private final LinkedHashMap<String, RenderedOutput> outputs = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The bytes retained by the cached outputs
+     *
+     * @since 1.1.0
+     */
+    private long bytes = 0;
+
+    /**
+     * @since 1.1.0
+     */
+    private long hits = 0;
+
+    /**
+     * @since 1.1.0
+     */
+    private long misses = 0;
+
+    /**
+     * @since 1.1.0
+     */
+    private long evictions = 0;
+
+    /**
+     * The cache key of the pdf rendered to the printer
+     *
+     * @param pdf    The pdf
+     * @param config The printer configuration
+     * @return The key
+     * @throws IOException If fails to read the pdf
+     * @since 1.1.0
+     */
+    public static String key(PdfSource pdf, PrinterConfig config) throws IOException {
+        return pdf.sha256() + "/" + config.getRenderKey();
+    }
+
+    /**
+     * If the cache is enabled
+     *
+     * @return False if the bytes limit is zero
+     * @since 1.1.0
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Get the cached output
+     *
+     * @param key  The key
+     * @param type The output type
+     * @param <T>  The output type
+     * @return The output, null if not cached
+     * @since 1.1.0
+     */
+    public synchronized <T extends RenderedOutput> T get(String key, Class<T> type) {
+        RenderedOutput output = outputs.get(key);
+        if (type.isInstance(output)) {
+            hits++;
+            return type.cast(output);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Cache the output, evicting the least recently used outputs above the bytes limit.
+     * An output bigger than the limit is not cached.
+     *
+     * @param key    The key
+     * @param output The output
+     * @since 1.1.0
+     */
+    public synchronized void put(String key, RenderedOutput output) {
+        if (output.size() > maxBytes) {
+            logger.debug("Rendered output of {} bytes not cached, above the limit", output.size());
+            return;
+        }
+
+        RenderedOutput previous = outputs.put(key, output);
+        if (previous != null) {
+            bytes -= previous.size();
+        }
+        bytes += output.size();
+
+        Iterator<Map.Entry<String, RenderedOutput>> iterator = outputs.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, RenderedOutput> eldest = iterator.next();
+            bytes -= eldest.getValue().size();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Remove all the cached outputs
+     *
+     * @since 1.1.0
+     */
+    public synchronized void clear() {
+        outputs.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Get the cache state
+     *
+     * @return The state
+     * @since 1.1.0
+     */
+    public synchronized State getState() {
+        return new State(outputs.size(), bytes, maxBytes, hits, misses, evictions);
+    }
+
+    /**
+     * The render cache state
+     *
+     * @param entries   The cached outputs
+     * @param bytes     The bytes retained by the cached outputs
+     * @param maxBytes  The bytes limit
+     * @param hits      The outputs found in cache
+     * @param misses    The outputs not found in cache
+     * @param evictions The outputs evicted by the bytes limit
+     * @since 1.1.0
+     */
+    public record State(int entries, long bytes, long maxBytes, long hits, long misses, long evictions)
+    {
+    }
+}
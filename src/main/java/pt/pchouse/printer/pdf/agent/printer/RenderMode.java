@@ -0,0 +1,62 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+/**
+ * How the pdf is rendered to the printer
+ *
+ * @since 1.1.0
+ */
+public enum RenderMode
+{
+    /**
+     * The pdf pages are sent to the print service that renders them, nothing is cached
+     *
+     * @since 1.1.0
+     */
+    PAGEABLE,
+
+    /**
+     * The pdf pages are rendered to images by the agent, the images are cached for reprints
+     *
+     * @since 1.1.0
+     */
+    IMAGE,
+
+    /**
+     * The pdf pages are rendered by the agent to 1-bit images at the printer width and sent as
+     * ESC/POS raster commands in one raw job, for thermal receipt printers. The commands are cached for reprints
+     *
+     * @since 1.1.0
+     */
+    ESCPOS;
+
+    /**
+     * Parse the render mode from the configuration, case-insensitive
+     *
+     * @param mode The mode, null or empty for PAGEABLE
+     * @return The render mode
+     * @since 1.1.0
+     */
+    public static RenderMode parse(String mode) {
+        if (mode == null || mode.isBlank()) {
+            return PAGEABLE;
+        }
+        return valueOf(mode.trim().toUpperCase());
+    }
+}
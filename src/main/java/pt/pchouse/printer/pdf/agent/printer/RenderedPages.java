@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.print.PageFormat;
+import java.awt.print.Pageable;
+import java.awt.print.Paper;
+import java.awt.print.Printable;
+import java.util.List;
+
+/**
+ * The pdf pages rendered to images, printed as a pageable with the pdf page sizes
+ *
+ * @since 1.1.0
+ */
+public class RenderedPages implements RenderedOutput, Pageable
+{
+
+    /**
+     * The points per inch of the pdf and java.awt.print coordinates
+     *
+     * @since 1.1.0
+     */
+    private static final float POINTS_PER_INCH = 72f;
+
+    /**
+     * The page images
+     *
+     * @since 1.1.0
+     */
+    private final List<BufferedImage> images;
+
+    /**
+     * The resolution of the images
+     *
+     * @since 1.1.0
+     */
+    private final float dpi;
+
+    /**
+     * The memory retained by the images
+     *
+     * @since 1.1.0
+     */
+    private final long size;
+
+    /**
+     * @param images The page images, must not be changed after
+     * @param dpi    The resolution of the images
+     * @since 1.1.0
+     */
+    public RenderedPages(List<BufferedImage> images, float dpi) {
+        this.images = List.copyOf(images);
+        this.dpi = dpi;
+
+        long bytes = 0;
+        for (BufferedImage image : images) {
+            DataBuffer buffer = image.getRaster().getDataBuffer();
+            bytes += (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        }
+        this.size = bytes;
+    }
+
+    /**
+     * Get the page images
+     *
+     * @return The images
+     * @since 1.1.0
+     */
+    public List<BufferedImage> getImages() {
+        return images;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int getNumberOfPages() {
+        return images.size();
+    }
+
+    @Override
+    public PageFormat getPageFormat(int pageIndex) throws IndexOutOfBoundsException {
+        BufferedImage image = images.get(pageIndex);
+        double width = image.getWidth() * POINTS_PER_INCH / dpi;
+        double height = image.getHeight() * POINTS_PER_INCH / dpi;
+
+        Paper paper = new Paper();
+        paper.setSize(width, height);
+        paper.setImageableArea(0, 0, width, height);
+
+        PageFormat pageFormat = new PageFormat();
+        pageFormat.setPaper(paper);
+        return pageFormat;
+    }
+
+    @Override
+    public Printable getPrintable(int pageIndex) throws IndexOutOfBoundsException {
+        BufferedImage image = images.get(pageIndex);
+        return (graphics, pageFormat, index) -> {
+            ((Graphics2D) graphics).drawImage(
+                    image,
+                    (int) Math.round(pageFormat.getImageableX()),
+                    (int) Math.round(pageFormat.getImageableY()),
+                    (int) Math.round(pageFormat.getImageableWidth()),
+                    (int) Math.round(pageFormat.getImageableHeight()),
+                    null
+            );
+            return Printable.PAGE_EXISTS;
+        };
+    }
+}
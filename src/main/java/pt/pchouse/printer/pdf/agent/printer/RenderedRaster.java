@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+/**
+ * The pdf pages encoded as ESC/POS raster commands, ready to be sent to the printer
+ *
+ * @since 1.1.0
+ */
+public class RenderedRaster implements RenderedOutput
+{
+
+    /**
+     * The raster commands of all the pages
+     *
+     * @since 1.1.0
+     */
+    private final byte[] bytes;
+
+    /**
+     * @param bytes The raster commands, must not be changed after
+     * @since 1.1.0
+     */
+    public RenderedRaster(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * The raster commands, shared by all the prints of the cached output, must not be changed
+     *
+     * @return The ESC/POS bytes
+     * @since 1.1.0
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public long size() {
+        return bytes.length;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.apache.pdfbox.cos.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The content key of a document resource, the SHA-256 of the resource object and all the objects
+ * it references, with the raw bytes of the streams, so equal resources of different documents
+ * have the same key.
+ *
+ * @param hash        The SHA-256 as hexadecimal
+ * @param streamBytes The raw bytes of the streams digested
+ * @since 1.1.0
+ */
+public record ResourceKey(String hash, long streamBytes)
+{
+
+    /**
+     * Digest the resource. The indirect objects are resolved, so the resource does not read
+     * the document after it is closed.
+     *
+     * @param resource The resource object
+     * @return The key
+     * @throws IOException If fails to read a stream
+     * @since 1.1.0
+     */
+    public static ResourceKey of(COSBase resource) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long streamBytes = digest(resource, digest, new IdentityHashMap<>());
+        return new ResourceKey(HexFormat.of().formatHex(digest.digest()), streamBytes);
+    }
+
+    /**
+     * Digest the object and the objects it references, the objects already digested are referenced
+     * by their visit order
+     *
+     * @param object  The object
+     * @param digest  The digest
+     * @param visited The objects already digested with their visit order
+     * @return The bytes of the streams digested
+     * @throws IOException If fails to read a stream
+     * @since 1.1.0
+     */
+    private static long digest(COSBase object, MessageDigest digest, Map<COSBase, Integer> visited)
+            throws IOException
+    {
+        if (object instanceof COSObject indirect) {
+            object = indirect.getObject();
+        }
+        if (object == null || object instanceof COSNull) {
+            digest.update((byte) 'n');
+            return 0;
+        }
+        if (object instanceof COSName name) {
+            digest.update((byte) '/');
+            digest.update(name.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return 0;
+        }
+        if (object instanceof COSInteger integer) {
+            digest.update((byte) 'i');
+            digest.update(Long.toString(integer.longValue()).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) 0);
+            return 0;
+        }
+        if (object instanceof COSFloat number) {
+            digest.update((byte) 'f');
+            digest.update(Float.toString(number.floatValue()).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) 0);
+            return 0;
+        }
+        if (object instanceof COSBoolean bool) {
+            digest.update((byte) (bool.getValue() ? 't' : 'F'));
+            return 0;
+        }
+        if (object instanceof COSString string) {
+            byte[] value = string.getBytes();
+            digest.update((byte) 's');
+            digest.update(Integer.toString(value.length).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) 0);
+            digest.update(value);
+            return 0;
+        }
+        Integer order = visited.putIfAbsent(object, visited.size());
+        if (order != null) {
+            digest.update((byte) 'r');
+            digest.update(Integer.toString(order).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) 0);
+            return 0;
+        }
+
+        long streams = 0;
+        if (object instanceof COSArray array) {
+            digest.update((byte) '[');
+            for (COSBase item : array) {
+                streams += digest(item, digest, visited);
+            }
+            digest.update((byte) ']');
+            return streams;
+        }
+        if (object instanceof COSDictionary dictionary) {
+            digest.update((byte) '<');
+            for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                streams += digest(entry.getKey(), digest, visited);
+                streams += digest(entry.getValue(), digest, visited);
+            }
+            digest.update((byte) '>');
+        }
+        if (object instanceof COSStream stream) {
+            byte[] buffer = new byte[8192];
+            digest.update((byte) 'S');
+            try (InputStream raw = stream.createRawInputStream()) {
+                int read;
+                while ((read = raw.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                    streams += read;
+                }
+            }
+        }
+        return streams;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The parsed resources shared between the documents, by their {@link ResourceKey}. PDFBox resources
+ * are not thread safe, so a resource is borrowed by one document at a time and given back when the
+ * document is closed. The least recently used idle resources are evicted when their estimated bytes
+ * exceed the limit.
+ *
+ * @param <T> The resource type
+ * @since 1.1.0
+ */
+public abstract class ResourcePool<T>
+{
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String REQUESTS = "printer.agent.resource.cache.requests";
+
+    /**
+     * @since 1.1.0
+     */
+    public static final String BYTES = "printer.agent.resource.cache.bytes";
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private MeterRegistry registry;
+
+    /**
+     * The idle resources of each key in access order, the eldest is the least recently used
+     *
+     * @since 1.1.0
+     */
+    private final LinkedHashMap<String, ArrayDeque<Idle<T>>> resources = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The estimated bytes of the idle resources
+     *
+     * @since 1.1.0
+     */
+    private long bytes = 0;
+
+    /**
+     * @since 1.1.0
+     */
+    private int entries = 0;
+
+    /**
+     * @since 1.1.0
+     */
+    private long hits = 0;
+
+    /**
+     * @since 1.1.0
+     */
+    private long misses = 0;
+
+    /**
+     * @since 1.1.0
+     */
+    private long evictions = 0;
+
+    /**
+     * The maximum estimated bytes of the idle resources, zero disables the pool
+     *
+     * @return The bytes limit
+     * @since 1.1.0
+     */
+    protected abstract long getMaxBytes();
+
+    /**
+     * The resource type, the cache tag of the metrics
+     *
+     * @return The name
+     * @since 1.1.0
+     */
+    protected abstract String getName();
+
+    /**
+     * Register the hits, misses and the idle bytes metrics
+     *
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        FunctionCounter.builder(REQUESTS, this, pool -> pool.getState().hits())
+                       .description("The shared resources requested by the documents")
+                       .tags("cache", getName(), "result", "hit")
+                       .register(registry);
+        FunctionCounter.builder(REQUESTS, this, pool -> pool.getState().misses())
+                       .description("The shared resources requested by the documents")
+                       .tags("cache", getName(), "result", "miss")
+                       .register(registry);
+        Gauge.builder(BYTES, this, pool -> pool.getState().bytes())
+             .description("The estimated bytes of the idle shared resources")
+             .tag("cache", getName())
+             .baseUnit("bytes")
+             .register(registry);
+    }
+
+    /**
+     * If the pool is enabled
+     *
+     * @return False if the bytes limit is zero
+     * @since 1.1.0
+     */
+    public boolean isEnabled() {
+        return getMaxBytes() > 0;
+    }
+
+    /**
+     * Borrow an idle resource, to be given back when the document is closed
+     *
+     * @param key The resource key
+     * @return The resource, null if none idle
+     * @since 1.1.0
+     */
+    synchronized T borrow(String key) {
+        ArrayDeque<Idle<T>> idle = resources.get(key);
+        if (idle == null) {
+            misses++;
+            return null;
+        }
+        Idle<T> resource = idle.poll();
+        if (idle.isEmpty()) {
+            resources.remove(key);
+        }
+        bytes -= resource.weight();
+        entries--;
+        hits++;
+        return resource.resource();
+    }
+
+    /**
+     * Give back the resource of a closed document, evicting the least recently used resources above
+     * the bytes limit. A resource bigger than the limit is not kept.
+     *
+     * @param key      The resource key
+     * @param resource The resource
+     * @param weight   The estimated bytes of the resource
+     * @since 1.1.0
+     */
+    synchronized void giveBack(String key, T resource, long weight) {
+        if (weight > getMaxBytes()) {
+            return;
+        }
+        resources.computeIfAbsent(key, k -> new ArrayDeque<>()).add(new Idle<>(resource, weight));
+        bytes += weight;
+        entries++;
+
+        Iterator<Map.Entry<String, ArrayDeque<Idle<T>>>> iterator = resources.entrySet().iterator();
+        while (bytes > getMaxBytes() && iterator.hasNext()) {
+            ArrayDeque<Idle<T>> eldest = iterator.next().getValue();
+            while (bytes > getMaxBytes() && !eldest.isEmpty()) {
+                bytes -= eldest.poll().weight();
+                entries--;
+                evictions++;
+            }
+            if (eldest.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all the idle resources
+     *
+     * @since 1.1.0
+     */
+    public synchronized void clear() {
+        resources.clear();
+        bytes = 0;
+        entries = 0;
+    }
+
+    /**
+     * Get the pool state
+     *
+     * @return The state
+     * @since 1.1.0
+     */
+    public synchronized State getState() {
+        return new State(entries, bytes, getMaxBytes(), hits, misses, evictions);
+    }
+
+    /**
+     * The shared resources state
+     *
+     * @param entries   The idle resources
+     * @param bytes     The estimated bytes of the idle resources
+     * @param maxBytes  The bytes limit
+     * @param hits      The resources borrowed from the pool
+     * @param misses    The resources not found in the pool
+     * @param evictions The resources evicted by the bytes limit
+     * @since 1.1.0
+     */
+    public record State(int entries, long bytes, long maxBytes, long hits, long misses, long evictions)
+    {
+    }
+
+    /**
+     * An idle resource
+     *
+     * @param resource The resource
+     * @param weight   The estimated bytes
+     * @param <T>      The resource type
+     * @since 1.1.0
+     */
+    private record Idle<T>(T resource, long weight)
+    {
+    }
+}
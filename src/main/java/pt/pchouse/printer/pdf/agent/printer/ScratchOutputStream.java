@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Output stream that keeps the written bytes in memory until {@link PdfSource#MEMORY_THRESHOLD}
+ * and then moves them to a scratch file in {@link PdfSource#getScratchDirectory()},
+ * so the pdf is never held twice in heap.
+ *
+ * @since 1.1.0
+ */
+public class ScratchOutputStream extends OutputStream
+{
+
+    /**
+     * The in memory bytes, null after spill to the scratch file
+     *
+     * @since 1.1.0
+     */
+    private byte[] buffer = new byte[8192];
+
+    /**
+     * The number of written bytes
+     *
+     * @since 1.1.0
+     */
+    private long count = 0;
+
+    /**
+     * The scratch file, null while in memory
+     *
+     * @since 1.1.0
+     */
+    private Path file;
+
+    /**
+     * The scratch file stream, null while in memory
+     *
+     * @since 1.1.0
+     */
+    private OutputStream fileStream;
+
+    /**
+     * @since 1.1.0
+     */
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    /**
+     * @since 1.1.0
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (fileStream == null && count + len > PdfSource.MEMORY_THRESHOLD) {
+            Path directory = PdfSource.getScratchDirectory();
+            file = directory == null
+                    ? Files.createTempFile("printer-agent-", ".pdf")
+                    : Files.createTempFile(directory, "printer-agent-", ".pdf");
+            fileStream = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+            fileStream.write(buffer, 0, (int) count);
+            buffer = null;
+        }
+
+        if (fileStream != null) {
+            fileStream.write(b, off, len);
+        } else {
+            if (count + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(
+                        PdfSource.MEMORY_THRESHOLD, Math.max(buffer.length * 2L, count + len)
+                ));
+            }
+            System.arraycopy(b, off, buffer, (int) count, len);
+        }
+        count += len;
+    }
+
+    /**
+     * Close the stream and get the pdf source with the written bytes
+     *
+     * @return The source
+     * @throws IOException If fails to close the scratch file
+     * @since 1.1.0
+     */
+    public PdfSource toPdfSource() throws IOException {
+        if (fileStream != null) {
+            fileStream.close();
+            return new PdfSource(null, file, count);
+        }
+        return new PdfSource(ByteBuffer.wrap(buffer, 0, (int) count), null, count);
+    }
+
+    /**
+     * Close the stream and delete the scratch file if exists
+     *
+     * @since 1.1.0
+     */
+    public void discard() {
+        try {
+            if (fileStream != null) {
+                fileStream.close();
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ignore) {
+            file.toFile().deleteOnExit();
+        }
+        buffer = null;
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.apache.pdfbox.pdmodel.font.FontMappers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm up the agent in background after start, so the first print is not slow. The PDFBox font cache
+ * is built, or loaded if persisted by a previous start, the print services of the printers are resolved
+ * and the bundled sample receipt is rendered for each printer without print.
+ * The agent is ready when the warm up finishes, the print requests are accepted meanwhile.
+ *
+ * @since 1.1.0
+ */
+@Component
+@Scope(value = BeanDefinition.SCOPE_SINGLETON)
+public class WarmUp
+{
+
+    /**
+     * The bundled sample document
+     *
+     * @since 1.1.0
+     */
+    public static final String SAMPLE = "/warmup.pdf";
+
+    /**
+     * @since 1.1.0
+     */
+    final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * @since 1.1.0
+     */
+    @Value("${warmup.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * The directory of the PDFBox font cache, empty for the PDFBox default, the user home
+     *
+     * @since 1.1.0
+     */
+    @Value("${warmup.font.cache.dir:}")
+    private String fontCacheDir;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrinterRegistry printerRegistry;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private Printer printer;
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintMetrics printMetrics;
+
+    /**
+     * @since 1.1.0
+     */
+    private volatile boolean ready;
+
+    /**
+     * Start the warm up thread
+     *
+     * @since 1.1.0
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            ready = true;
+            return;
+        }
+        if (fontCacheDir != null && !fontCacheDir.isBlank() && System.getProperty("pdfbox.fontcache") == null) {
+            System.setProperty("pdfbox.fontcache", fontCacheDir);
+        }
+        Thread thread = new Thread(this::run, "PrinterAgent-warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * If the warm up finished, or is disabled
+     *
+     * @return True if ready
+     * @since 1.1.0
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Run the warm up steps, a failed step is logged and the next ones run
+     *
+     * @since 1.1.0
+     */
+    private void run() {
+        long start = System.nanoTime();
+        try {
+            loadFonts();
+            resolvePrinters();
+            renderSample();
+        } finally {
+            ready = true;
+        }
+        logger.info("Warm up finished in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Build the PDFBox font cache scanning the system fonts, or load it if persisted.
+     * The first font lookup creates the font provider.
+     *
+     * @since 1.1.0
+     */
+    private void loadFonts() {
+        try {
+            if (fontCacheDir != null && !fontCacheDir.isBlank()) {
+                Files.createDirectories(Path.of(fontCacheDir));
+            }
+            printMetrics.warmUp("fonts").record(() -> FontMappers.instance().getTrueTypeFont("Helvetica", null));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Warm up of the fonts failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Resolve the print service of each printer, the discovery is cached
+     *
+     * @since 1.1.0
+     */
+    private void resolvePrinters() {
+        Timer timer = printMetrics.warmUp("printers");
+        for (PrinterConfig config : printerRegistry.getAll()) {
+            long start = System.nanoTime();
+            try {
+                printer.getPrintService(config);
+            } catch (PrinterException | RuntimeException e) {
+                logger.warn("Warm up of the printer '{}' failed: {}", config.getId(), e.getMessage());
+            }
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Render the sample document as each printer render configuration, the printers with the same
+     * configuration are rendered once
+     *
+     * @since 1.1.0
+     */
+    private void renderSample() {
+        PdfSource pdf;
+        try (InputStream stream = getClass().getResourceAsStream(SAMPLE)) {
+            if (stream == null) {
+                logger.warn("Warm up sample {} not found", SAMPLE);
+                return;
+            }
+            pdf = PdfSource.read(stream);
+        } catch (IOException e) {
+            logger.warn("Warm up sample load failed: {}", e.getMessage());
+            return;
+        }
+
+        Timer       parse    = printMetrics.warmUp("parse");
+        Timer       render   = printMetrics.warmUp("render");
+        Set<String> rendered = new HashSet<>();
+        try (pdf) {
+            for (PrinterConfig config : printerRegistry.getAll()) {
+                try {
+                    if (rendered.add(config.getRenderKey())) {
+                        printer.warmUp(config, pdf, parse, render);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Warm up render of printer '{}' failed: {}", config.getId(), e.getMessage());
+                }
+            }
+        }
+    }
+}
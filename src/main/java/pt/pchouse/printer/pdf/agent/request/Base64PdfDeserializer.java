@@ -0,0 +1,64 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.request;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import pt.pchouse.printer.pdf.agent.printer.PdfSource;
+import pt.pchouse.printer.pdf.agent.printer.ScratchOutputStream;
+
+import java.io.IOException;
+
+/**
+ * Deserialize a base64 encoded pdf json string decoding it chunk by chunk
+ * from the parser buffer, the base64 text is never built as a String.
+ *
+ * @since 1.1.0
+ */
+public class Base64PdfDeserializer extends StdDeserializer<PdfSource>
+{
+
+    /**
+     * @since 1.1.0
+     */
+    public Base64PdfDeserializer() {
+        super(PdfSource.class);
+    }
+
+    /**
+     * @since 1.1.0
+     */
+    @Override
+    public PdfSource deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            return (PdfSource) context.handleUnexpectedToken(PdfSource.class, parser);
+        }
+
+        ScratchOutputStream out = new ScratchOutputStream();
+        try {
+            parser.readBinaryValue(context.getBase64Variant(), out);
+            return out.toPdfSource();
+        } catch (IOException | RuntimeException e) {
+            // the invalid base64 characters are thrown as IllegalArgumentException
+            out.discard();
+            throw e;
+        }
+    }
+
+}
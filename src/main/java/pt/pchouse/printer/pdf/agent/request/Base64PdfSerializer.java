@@ -0,0 +1,52 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.request;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import pt.pchouse.printer.pdf.agent.printer.PdfSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Serialize the pdf as a base64 json string streaming from the source
+ *
+ * @since 1.1.0
+ */
+public class Base64PdfSerializer extends StdSerializer<PdfSource>
+{
+
+    /**
+     * @since 1.1.0
+     */
+    public Base64PdfSerializer() {
+        super(PdfSource.class);
+    }
+
+    /**
+     * @since 1.1.0
+     */
+    @Override
+    public void serialize(PdfSource pdf, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        try (InputStream inputStream = pdf.openStream()) {
+            generator.writeBinary(provider.getConfig().getBase64Variant(), inputStream, (int) pdf.size());
+        }
+    }
+
+}
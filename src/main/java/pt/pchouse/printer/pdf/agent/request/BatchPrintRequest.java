@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.request;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The request to print several documents in order, the documents of the same printer
+ * are printed in one print job
+ *
+ * @since 1.1.0
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonFormat(with = JsonFormat.Feature.ACCEPT_CASE_INSENSITIVE_PROPERTIES)
+public class BatchPrintRequest
+{
+
+    /**
+     * The id of the printer of the documents that do not define the printer,
+     * the default printer if not defined
+     *
+     * @since 1.1.0
+     */
+    private String printer;
+
+    /**
+     * The documents, in the print order
+     *
+     * @since 1.1.0
+     */
+    private List<PrintRequest> documents = List.of();
+
+    /**
+     * Get the id of the printer of the documents that do not define the printer
+     *
+     * @return The printer id, null for the default printer
+     * @since 1.1.0
+     */
+    public String getPrinter() {
+        return printer;
+    }
+
+    /**
+     * Set the id of the printer of the documents that do not define the printer
+     *
+     * @param printer The printer id, null for the default printer
+     * @since 1.1.0
+     */
+    public void setPrinter(String printer) {
+        this.printer = printer;
+    }
+
+    /**
+     * Get the documents
+     *
+     * @return The documents in the print order
+     * @since 1.1.0
+     */
+    public List<PrintRequest> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Set the documents
+     *
+     * @param documents The documents in the print order
+     * @since 1.1.0
+     */
+    public void setDocuments(List<PrintRequest> documents) {
+        this.documents = documents == null ? List.of() : documents;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchPrintRequest that = (BatchPrintRequest) o;
+        return Objects.equals(printer, that.printer) && Objects.equals(documents, that.documents);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(printer, documents);
+    }
+}
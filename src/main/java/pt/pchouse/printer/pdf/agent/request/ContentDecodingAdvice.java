@@ -0,0 +1,309 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pt.pchouse.printer.pdf.agent.request;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+import pt.pchouse.printer.pdf.agent.printer.AdmissionControl;
+import pt.pchouse.printer.pdf.agent.printer.AdmissionException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Type;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decode the json print requests sent with Content-Encoding gzip or deflate, the body is inflated
+ * while Jackson reads it, without buffering the compressed or the inflated body. The inflated size is
+ * limited to request.inflate.max.bytes, to reject the compression bombs.
+ * The bytes read, inflated if compressed, are charged to the admission permit of the request, so the
+ * admission limits apply to the bodies sent without Content-Length and to the inflated size.
+ * The advice is the first of the request body advices, the others read the decoded body.
+ *
+ * @since 1.1.0
+ */
+@ControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ContentDecodingAdvice extends RequestBodyAdviceAdapter
+{
+
+    /**
+     * The supported content codings, advertised in the Accept-Encoding response header
+     *
+     * @since 1.1.0
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /**
+     * The inflate buffer size
+     *
+     * @since 1.1.0
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The bytes read between the charges to the admission permit
+     *
+     * @since 1.1.0
+     */
+    private static final int CHARGE_STEP = 65536;
+
+    /**
+     * The maximum size of the inflated request body
+     *
+     * @since 1.1.0
+     */
+    @Value("${request.inflate.max.bytes:134217728}")
+    private long maxBytes;
+
+    @Override
+    public boolean supports(
+            MethodParameter methodParameter,
+            Type targetType,
+            Class<? extends HttpMessageConverter<?>> converterType
+    ) {
+        return targetType == PrintRequest.class || targetType == BatchPrintRequest.class;
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(
+            HttpInputMessage inputMessage,
+            MethodParameter parameter,
+            Type targetType,
+            Class<? extends HttpMessageConverter<?>> converterType
+    ) throws IOException
+    {
+        String                  encoding = inputMessage.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        AdmissionControl.Permit permit   = permit();
+        if (isIdentity(encoding) && permit == null) {
+            return inputMessage;
+        }
+
+        HttpHeaders headers = inputMessage.getHeaders();
+        if (!isIdentity(encoding)) {
+            headers = new HttpHeaders();
+            headers.putAll(inputMessage.getHeaders());
+            headers.remove(HttpHeaders.CONTENT_ENCODING);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+        }
+        return new DecodedInputMessage(decode(encoding, inputMessage.getBody(), permit), headers);
+    }
+
+    /**
+     * Decode the request body as the content coding
+     *
+     * @param encoding The Content-Encoding header, null if not sent
+     * @param body     The request body
+     * @param permit   The admission permit charged with the decoded bytes read, null to not charge
+     * @return The decoded body, limited to request.inflate.max.bytes if compressed
+     * @throws ContentDecodingException If the content coding is not supported
+     * @throws IOException              If fails to read the gzip header
+     * @since 1.1.0
+     */
+    public InputStream decode(String encoding, InputStream body, AdmissionControl.Permit permit) throws
+            IOException
+    {
+        if (isIdentity(encoding)) {
+            return permit == null ? body : new LimitedInputStream(body, Long.MAX_VALUE, permit);
+        }
+        String coding = encoding.trim().toLowerCase();
+        if (coding.equals("gzip") || coding.equals("x-gzip")) {
+            return new LimitedInputStream(new GZIPInputStream(body, BUFFER_SIZE), maxBytes, permit);
+        }
+        if (coding.equals("deflate")) {
+            return new LimitedInputStream(inflate(body), maxBytes, permit);
+        }
+        throw new ContentDecodingException(
+                HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                String.format("Content-Encoding '%s' not supported, use %s", encoding, ACCEPT_ENCODING)
+        );
+    }
+
+    /**
+     * @return The admission permit of the current request, null if not admitted
+     * @since 1.1.0
+     */
+    private static AdmissionControl.Permit permit() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes == null ? null : (AdmissionControl.Permit) attributes.getAttribute(
+                AdmissionControl.PERMIT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST
+        );
+    }
+
+    /**
+     * @param encoding The Content-Encoding header
+     * @return True if not sent or identity
+     * @since 1.1.0
+     */
+    private static boolean isIdentity(String encoding) {
+        return encoding == null || encoding.isBlank() || encoding.trim().equalsIgnoreCase("identity");
+    }
+
+    /**
+     * Inflate the deflate coding. The http deflate is the zlib format, but some clients send
+     * the raw deflate, the zlib header is checked to inflate both.
+     *
+     * @param body The request body
+     * @return The inflated body
+     * @throws IOException If fails to read the header
+     * @since 1.1.0
+     */
+    private static InputStream inflate(InputStream body) throws IOException {
+        PushbackInputStream stream = new PushbackInputStream(body, 2);
+        byte[]              header = stream.readNBytes(2);
+        stream.unread(header);
+        boolean zlib = header.length == 2
+                && (header[0] & 0x0F) == 8
+                && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        return new InflaterInputStream(stream, new Inflater(!zlib), BUFFER_SIZE);
+    }
+
+    /**
+     * The decoded request body with the headers without the content coding
+     *
+     * @param body    The decoded body
+     * @param headers The headers
+     * @since 1.1.0
+     */
+    private record DecodedInputMessage(InputStream body, HttpHeaders headers) implements HttpInputMessage
+    {
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    /**
+     * Fail the read when more than the maximum bytes are read and charge the bytes read to the
+     * admission permit, every {@link #CHARGE_STEP} bytes beyond the charged
+     *
+     * @since 1.1.0
+     */
+    private static class LimitedInputStream extends FilterInputStream
+    {
+
+        /**
+         * @since 1.1.0
+         */
+        private final long maxBytes;
+
+        /**
+         * The admission permit, null to not charge
+         *
+         * @since 1.1.0
+         */
+        private final AdmissionControl.Permit permit;
+
+        /**
+         * The read bytes that trigger the next charge
+         *
+         * @since 1.1.0
+         */
+        private long nextCharge;
+
+        /**
+         * @since 1.1.0
+         */
+        private long read = 0;
+
+        /**
+         * @param in       The decoded stream
+         * @param maxBytes The maximum bytes
+         * @param permit   The admission permit, null to not charge
+         * @since 1.1.0
+         */
+        LimitedInputStream(InputStream in, long maxBytes, AdmissionControl.Permit permit) {
+            super(in);
+            this.maxBytes = maxBytes;
+            this.permit = permit;
+            this.nextCharge = permit == null ? Long.MAX_VALUE : permit.getBytes();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                count(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        /**
+         * @param bytes The bytes read
+         * @throws ContentDecodingException If above the maximum bytes
+         * @throws IOException              Caused by the {@link AdmissionException} if the bytes read are
+         *                                  over the admission limits
+         * @since 1.1.0
+         */
+        private void count(long bytes) throws IOException {
+            read += bytes;
+            if (read > maxBytes) {
+                throw new ContentDecodingException(
+                        HttpStatus.PAYLOAD_TOO_LARGE,
+                        String.format("The inflated request body is above %d bytes", maxBytes)
+                );
+            }
+            if (read > nextCharge) {
+                try {
+                    permit.charge(read);
+                } catch (AdmissionException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                nextCharge = read + CHARGE_STEP;
+            }
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
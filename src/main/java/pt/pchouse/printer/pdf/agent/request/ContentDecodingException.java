@@ -0,0 +1,53 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pt.pchouse.printer.pdf.agent.request;
+
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+
+/**
+ * The compressed request body can not be decoded, the content coding is not supported
+ * or the inflated body is above the limit
+ *
+ * @since 1.1.0
+ */
+public class ContentDecodingException extends IOException
+{
+
+    /**
+     * @since 1.1.0
+     */
+    private final HttpStatus status;
+
+    /**
+     * @param status  The response status, 415 or 413
+     * @param message The message
+     * @since 1.1.0
+     */
+    public ContentDecodingException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return The response status
+     * @since 1.1.0
+     */
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.request;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+import pt.pchouse.printer.pdf.agent.printer.PdfSource;
+import pt.pchouse.printer.pdf.agent.printer.PrintMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Record the decode time and the pdf size of the json print requests, the base64 pdfs are decoded
+ * while the body is read. The advice is the last of the request body advices, the after body read
+ * receives the message returned by the last before body read, the {@link ContentDecodingAdvice}
+ * decoded message must be wrapped by the timed message and not the opposite.
+ *
+ * @since 1.1.0
+ */
+@ControllerAdvice
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class DecodeMetricsAdvice extends RequestBodyAdviceAdapter
+{
+
+    /**
+     * @since 1.1.0
+     */
+    @Autowired
+    private PrintMetrics printMetrics;
+
+    @Override
+    public boolean supports(
+            MethodParameter methodParameter,
+            Type targetType,
+            Class<? extends HttpMessageConverter<?>> converterType
+    ) {
+        return targetType == PrintRequest.class || targetType == BatchPrintRequest.class;
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(
+            HttpInputMessage inputMessage,
+            MethodParameter parameter,
+            Type targetType,
+            Class<? extends HttpMessageConverter<?>> converterType
+    ) {
+        return new TimedInputMessage(inputMessage, System.nanoTime());
+    }
+
+    @Override
+    public Object afterBodyRead(
+            Object body,
+            HttpInputMessage inputMessage,
+            MethodParameter parameter,
+            Type targetType,
+            Class<? extends HttpMessageConverter<?>> converterType
+    ) {
+        if (!(inputMessage instanceof TimedInputMessage timed)) {
+            return body;
+        }
+
+        if (body instanceof PrintRequest request) {
+            printMetrics.decoded("/print", timed.start(), size(request));
+        } else if (body instanceof BatchPrintRequest batch && batch.getDocuments() != null) {
+            long bytes = 0;
+            for (PrintRequest request : batch.getDocuments()) {
+                bytes += size(request);
+            }
+            printMetrics.decoded("/print/batch", timed.start(), bytes);
+        }
+        return body;
+    }
+
+    /**
+     * @param request The request
+     * @return The pdf size, zero if not sent
+     * @since 1.1.0
+     */
+    private static long size(PrintRequest request) {
+        PdfSource pdf = request == null ? null : request.getPdf();
+        return pdf == null ? 0 : pdf.size();
+    }
+
+    /**
+     * The request body with the read start
+     *
+     * @param message The request body
+     * @param start   The read start, from System.nanoTime()
+     * @since 1.1.0
+     */
+    private record TimedInputMessage(HttpInputMessage message, long start) implements HttpInputMessage
+    {
+        @Override
+        public InputStream getBody() throws IOException {
+            return message.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return message.getHeaders();
+        }
+    }
+}
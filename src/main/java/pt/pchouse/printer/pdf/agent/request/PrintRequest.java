@@ -17,19 +17,20 @@
 package pt.pchouse.printer.pdf.agent.request;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
-import org.springframework.web.context.annotation.RequestScope;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import pt.pchouse.printer.pdf.agent.printer.PdfSource;
 
 import java.util.Objects;
 
 /**
+ * The print request, a plain value deserialized from the request body
+ *
  * @since 1.0.0
  */
-@Component
-@RequestScope
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonFormat(with = JsonFormat.Feature.ACCEPT_CASE_INSENSITIVE_PROPERTIES)
 public class PrintRequest
@@ -50,16 +51,11 @@ public class PrintRequest
     public static final int AFTER_PRINT_OPEN_CASH_DRAWER = 2;
 
     /**
-     * @since 1.0.0
-     */
-    final Logger logger = LoggerFactory.getLogger(this.getClass());
-
-    /**
-     * The JasperReports file, the compiled jrxml file (.jasper) as base64 encoded
+     * The pdf, in the json is the base64 encoded pdf
      *
      * @since 1.0.0
      */
-    private String pdf;
+    private PdfSource pdf;
 
     /**
      * Bitwise operations after send the report to the printer
@@ -69,34 +65,54 @@ public class PrintRequest
      */
     private int afterPrintOperations = 0;
 
+    /**
+     * The id of the printer to print, the default printer if not defined
+     *
+     * @since 1.1.0
+     */
+    private String printer;
+
     /**
      * Report request definition
      *
      * @since 1.0.0
      */
     public PrintRequest() {
-        logger.debug("New instance of {}", this.getClass().getName());
     }
 
     /**
-     * The base64 encoded jasper report (jasper file compiled from jrxml file)
+     * The pdf, decoded from the base64 json string while the request body is read
      *
-     * @return The base64 encoded jasper report
+     * @return The pdf
      * @since 1.0.0
      */
-    public String getPdf() {
+    @JsonProperty("pdf")
+    @JsonSerialize(using = Base64PdfSerializer.class)
+    public PdfSource getPdf() {
         return pdf;
     }
 
     /**
-     * The base64 encoded jasper report (jasper file compiled from jrxml file)
+     * The pdf, decoded from the base64 json string while the request body is read
      *
-     * @param pdf The base64 encoded jasper report
+     * @param pdf The pdf
+     * @since 1.1.0
+     */
+    @JsonProperty("pdf")
+    @JsonDeserialize(using = Base64PdfDeserializer.class)
+    public void setPdf(PdfSource pdf) {
+        this.pdf = pdf;
+    }
+
+    /**
+     * The base64 encoded pdf
+     *
+     * @param pdf The base64 encoded pdf
      * @since 1.0.0
      */
+    @JsonIgnore
     public void setPdf(String pdf) {
-        this.pdf = pdf;
-        logger.debug("Report was set");
+        setPdf(pdf == null ? null : PdfSource.ofBase64(pdf));
     }
 
     /**
@@ -119,16 +135,36 @@ public class PrintRequest
         this.afterPrintOperations = afterPrintOperations;
     }
 
+    /**
+     * Get the id of the printer to print
+     *
+     * @return The printer id, null for the default printer
+     * @since 1.1.0
+     */
+    public String getPrinter() {
+        return printer;
+    }
+
+    /**
+     * Set the id of the printer to print
+     *
+     * @param printer The printer id, null for the default printer
+     * @since 1.1.0
+     */
+    public void setPrinter(String printer) {
+        this.printer = printer;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         PrintRequest that = (PrintRequest) o;
-        return afterPrintOperations == that.afterPrintOperations && Objects.equals(logger, that.logger) && Objects.equals(pdf, that.pdf);
+        return afterPrintOperations == that.afterPrintOperations && Objects.equals(pdf, that.pdf) && Objects.equals(printer, that.printer);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(logger, pdf, afterPrintOperations);
+        return Objects.hash(pdf, afterPrintOperations, printer);
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.response;
+
+import java.util.Objects;
+
+/**
+ * The response of the alive check, with the readiness of the agent
+ *
+ * @since 1.1.0
+ */
+public class AliveResponse extends Response
+{
+
+    /**
+     * If the startup warm up finished, the first print is not slowed by it
+     *
+     * @since 1.1.0
+     */
+    protected boolean ready;
+
+    /**
+     * @since 1.1.0
+     */
+    public AliveResponse() {
+    }
+
+    /**
+     * @param ready If the startup warm up finished
+     * @since 1.1.0
+     */
+    public AliveResponse(boolean ready) {
+        super(Status.OK, "Server OK");
+        this.ready = ready;
+    }
+
+    /**
+     * Get if the startup warm up finished
+     *
+     * @return True if ready
+     * @since 1.1.0
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Set if the startup warm up finished
+     *
+     * @param ready True if ready
+     * @since 1.1.0
+     */
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        AliveResponse that = (AliveResponse) o;
+        return ready == that.ready;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), ready);
+    }
+}
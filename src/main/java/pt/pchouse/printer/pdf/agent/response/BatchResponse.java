@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.response;
+
+import pt.pchouse.printer.pdf.agent.printer.PrintJob;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The response of the batch print, with the print job of each printer and the result of each document
+ *
+ * @since 1.1.0
+ */
+public class BatchResponse extends Response
+{
+
+    /**
+     * The queued print jobs, one for each printer
+     *
+     * @since 1.1.0
+     */
+    protected List<PrintJob> jobs = List.of();
+
+    /**
+     * The result of each document, in the request order
+     *
+     * @since 1.1.0
+     */
+    protected List<DocumentResult> documents = List.of();
+
+    /**
+     * Get the queued print jobs
+     *
+     * @return The jobs
+     * @since 1.1.0
+     */
+    public List<PrintJob> getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Set the queued print jobs
+     *
+     * @param jobs The jobs
+     * @since 1.1.0
+     */
+    public void setJobs(List<PrintJob> jobs) {
+        this.jobs = jobs;
+    }
+
+    /**
+     * Get the result of each document
+     *
+     * @return The documents results
+     * @since 1.1.0
+     */
+    public List<DocumentResult> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Set the result of each document
+     *
+     * @param documents The documents results
+     * @since 1.1.0
+     */
+    public void setDocuments(List<DocumentResult> documents) {
+        this.documents = documents;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        BatchResponse that = (BatchResponse) o;
+        return Objects.equals(jobs, that.jobs) && Objects.equals(documents, that.documents);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), jobs, documents);
+    }
+
+    /**
+     * The result of one document
+     *
+     * @param index   The document index in the request
+     * @param printer The printer id
+     * @param status  OK if queued, ERROR if not
+     * @param message The error message, empty if queued
+     * @param job     The id of the print job of the document, null if not queued
+     * @since 1.1.0
+     */
+    public record DocumentResult(int index, String printer, Status status, String message, String job)
+    {
+    }
+}
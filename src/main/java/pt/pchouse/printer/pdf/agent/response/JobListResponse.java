@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.response;
+
+import pt.pchouse.printer.pdf.agent.printer.PrintJob;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The response with the list of print jobs
+ *
+ * @since 1.1.0
+ */
+public class JobListResponse extends Response
+{
+
+    /**
+     * The print jobs
+     *
+     * @since 1.1.0
+     */
+    protected List<PrintJob> jobs = List.of();
+
+    /**
+     * Get the print jobs
+     *
+     * @return The jobs
+     * @since 1.1.0
+     */
+    public List<PrintJob> getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Set the print jobs
+     *
+     * @param jobs The jobs
+     * @since 1.1.0
+     */
+    public void setJobs(List<PrintJob> jobs) {
+        this.jobs = jobs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        JobListResponse that = (JobListResponse) o;
+        return Objects.equals(jobs, that.jobs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), jobs);
+    }
+}
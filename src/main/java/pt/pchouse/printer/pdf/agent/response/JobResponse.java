@@ -0,0 +1,71 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pt.pchouse.printer.pdf.agent.response;
+
+import pt.pchouse.printer.pdf.agent.printer.PrintJob;
+
+import java.util.Objects;
+
+/**
+ * The response of a request that queued or queried a print job
+ *
+ * @since 1.1.0
+ */
+public class JobResponse extends Response
+{
+
+    /**
+     * The print job
+     *
+     * @since 1.1.0
+     */
+    protected PrintJob job;
+
+    /**
+     * Get the print job
+     *
+     * @return The job
+     * @since 1.1.0
+     */
+    public PrintJob getJob() {
+        return job;
+    }
+
+    /**
+     * Set the print job
+     *
+     * @param job The job
+     * @since 1.1.0
+     */
+    public void setJob(PrintJob job) {
+        this.job = job;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        JobResponse that = (JobResponse) o;
+        return Objects.equals(job, that.job);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), job);
+    }
+}
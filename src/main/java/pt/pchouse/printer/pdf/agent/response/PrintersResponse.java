@@ -0,0 +1,197 @@
+/*
+ * Copyright 2023 PChouse - Reflexão, Estudos e Sistemas Informáricos, Lda
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pt.pchouse.printer.pdf.agent.response;
+
+import pt.pchouse.printer.pdf.agent.printer.PrintServiceCache;
+import pt.pchouse.printer.pdf.agent.printer.RenderCache;
+import pt.pchouse.printer.pdf.agent.printer.ResourcePool;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The response with the configured printers, the print services discovery and the render cache state
+ *
+ * @since 1.1.0
+ */
+public class PrintersResponse extends Response
+{
+
+    /**
+     * The configured printers
+     *
+     * @since 1.1.0
+     */
+    protected List<PrinterStatus> printers = List.of();
+
+    /**
+     * The print services discovery state
+     *
+     * @since 1.1.0
+     */
+    protected PrintServiceCache.State discovery;
+
+    /**
+     * The render cache state
+     *
+     * @since 1.1.0
+     */
+    protected RenderCache.State renderCache;
+
+    /**
+     * The font cache state
+     *
+     * @since 1.1.0
+     */
+    protected ResourcePool.State fontCache;
+
+    /**
+     * The image cache state
+     *
+     * @since 1.1.0
+     */
+    protected ResourcePool.State imageCache;
+
+    /**
+     * Get the configured printers
+     *
+     * @return The printers
+     * @since 1.1.0
+     */
+    public List<PrinterStatus> getPrinters() {
+        return printers;
+    }
+
+    /**
+     * Set the configured printers
+     *
+     * @param printers The printers
+     * @since 1.1.0
+     */
+    public void setPrinters(List<PrinterStatus> printers) {
+        this.printers = printers;
+    }
+
+    /**
+     * Get the print services discovery state
+     *
+     * @return The state
+     * @since 1.1.0
+     */
+    public PrintServiceCache.State getDiscovery() {
+        return discovery;
+    }
+
+    /**
+     * Set the print services discovery state
+     *
+     * @param discovery The state
+     * @since 1.1.0
+     */
+    public void setDiscovery(PrintServiceCache.State discovery) {
+        this.discovery = discovery;
+    }
+
+    /**
+     * Get the render cache state
+     *
+     * @return The state
+     * @since 1.1.0
+     */
+    public RenderCache.State getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * Set the render cache state
+     *
+     * @param renderCache The state
+     * @since 1.1.0
+     */
+    public void setRenderCache(RenderCache.State renderCache) {
+        this.renderCache = renderCache;
+    }
+
+    /**
+     * Get the font cache state
+     *
+     * @return The state
+     * @since 1.1.0
+     */
+    public ResourcePool.State getFontCache() {
+        return fontCache;
+    }
+
+    /**
+     * Set the font cache state
+     *
+     * @param fontCache The state
+     * @since 1.1.0
+     */
+    public void setFontCache(ResourcePool.State fontCache) {
+        this.fontCache = fontCache;
+    }
+
+    /**
+     * Get the image cache state
+     *
+     * @return The state
+     * @since 1.1.0
+     */
+    public ResourcePool.State getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * Set the image cache state
+     *
+     * @param imageCache The state
+     * @since 1.1.0
+     */
+    public void setImageCache(ResourcePool.State imageCache) {
+        this.imageCache = imageCache;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        PrintersResponse that = (PrintersResponse) o;
+        return Objects.equals(printers, that.printers) && Objects.equals(discovery, that.discovery)
+                && Objects.equals(renderCache, that.renderCache) && Objects.equals(fontCache, that.fontCache)
+                && Objects.equals(imageCache, that.imageCache);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), printers, discovery, renderCache, fontCache, imageCache);
+    }
+
+    /**
+     * A configured printer
+     *
+     * @param id         The printer id
+     * @param name       The printer name
+     * @param discovered If the print service of the printer name was discovered
+     * @since 1.1.0
+     */
+    public record PrinterStatus(String id, String name, boolean discovered)
+    {
+    }
+}
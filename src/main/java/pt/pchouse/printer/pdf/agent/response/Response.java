@@ -16,24 +16,16 @@
 
 package pt.pchouse.printer.pdf.agent.response;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.context.annotation.Scope;
-import org.springframework.stereotype.Component;
-
 import java.util.Objects;
 
 /**
+ * The response, a plain value serialized to the response body
+ *
  * @since 1.0.0
  */
-@Component
-@Scope(value = BeanDefinition.SCOPE_PROTOTYPE)
 public class Response
 {
 
-    final Logger logger = LoggerFactory.getLogger(this.getClass());
-
     /**
      * The response status enumeration
      *
@@ -65,7 +57,18 @@ public class Response
      * @since 1.0.0
      */
     public Response() {
-        logger.debug("New instance of {}", this.getClass().getName());
+    }
+
+    /**
+     * The request Response
+     *
+     * @param status  The status
+     * @param message The message
+     * @since 1.1.0
+     */
+    public Response(Status status, String message) {
+        this.status  = status;
+        this.message = message;
     }
 
     /**
@@ -86,7 +89,6 @@ public class Response
      */
     public void setStatus(Status status) {
         this.status = status;
-        logger.debug("Response status set to {}", this.status.toString());
     }
 
     /**
@@ -107,7 +109,6 @@ public class Response
      */
     public void setMessage(String message) {
         this.message = message;
-        logger.debug("Message set to {}", this.message);
     }
 
     @Override
@@ -115,13 +116,12 @@ public class Response
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Response response = (Response) o;
-        return Objects.equals(logger, response.logger) &&
-                status == response.status &&
+        return status == response.status &&
                 Objects.equals(message, response.message);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(logger, status, message);
+        return Objects.hash(status, message);
     }
 }
@@ -0,0 +1,80 @@
+package pt.pchouse.printer.pdf.agent;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import pt.pchouse.printer.pdf.agent.auth.Auth;
+import pt.pchouse.printer.pdf.agent.printer.AdmissionControl;
+import pt.pchouse.printer.pdf.agent.printer.PrinterConfig;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"admission.jobs.max=1", "warmup.enabled=false"}
+)
+class AdmissionInterceptorTest
+{
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @MockBean
+    private PrinterConfig printerConfig;
+
+    @MockBean
+    private Auth auth;
+
+    @Test
+    void testRejectedMultipartRequestIsNotRead() throws Exception {
+        // the only admission slot is taken
+        AdmissionControl.Permit permit = admissionControl.admit(null, 0);
+
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(10000);
+            String       boundary = "printer-agent";
+            OutputStream out      = socket.getOutputStream();
+            out.write((
+                    "POST /print/pdf HTTP/1.1\r\n"
+                            + "Host: localhost\r\n"
+                            + "Content-Type: multipart/form-data; boundary=" + boundary + "\r\n"
+                            + "Content-Length: 10000000\r\n"
+                            + "Connection: close\r\n"
+                            + "\r\n"
+                            + "--" + boundary + "\r\n"
+                            + "Content-Disposition: form-data; name=\"pdf\"; filename=\"receipt.pdf\"\r\n"
+                            + "Content-Type: application/pdf\r\n"
+                            + "\r\n"
+                            + "%PDF-1.4\r\n"
+            ).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            // the rest of the body is never sent, a multipart parsed before the interceptors would wait for it
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII)
+            );
+            List<String> headers = new ArrayList<>();
+            for (String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine()) {
+                headers.add(line);
+            }
+
+            assertThat(headers).first().asString().startsWith("HTTP/1.1 429");
+            assertThat(headers).anyMatch(header -> header.regionMatches(true, 0, "Retry-After:", 0, 12));
+        } finally {
+            permit.close();
+        }
+    }
+}
@@ -7,12 +7,15 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import pt.pchouse.printer.pdf.agent.auth.Auth;
 import pt.pchouse.printer.pdf.agent.printer.PrinterConfig;
+import pt.pchouse.printer.pdf.agent.request.ContentDecodingAdvice;
 import pt.pchouse.printer.pdf.agent.request.PrintRequest;
+import pt.pchouse.printer.pdf.agent.response.JobResponse;
 import pt.pchouse.printer.pdf.agent.response.Response;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -50,6 +53,8 @@ class ControllerTest
         Response reportResponse = responseEntity.getBody();
 
         assertThat(responseEntity.getStatusCode().value()).isEqualTo(200);
+        assertThat(responseEntity.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING))
+                .isEqualTo(ContentDecodingAdvice.ACCEPT_ENCODING);
         assert reportResponse != null;
         assertThat(reportResponse.getStatus()).isEqualTo(Response.Status.OK);
     }
@@ -70,16 +75,17 @@ class ControllerTest
                 .accept(MediaType.APPLICATION_JSON)
                 .body(printRequest);
 
-        ResponseEntity<Response> responseEntity = restTemplate.exchange(
+        ResponseEntity<JobResponse> responseEntity = restTemplate.exchange(
                 request,
-                Response.class
+                JobResponse.class
         );
 
-        Response reportResponse = responseEntity.getBody();
+        JobResponse reportResponse = responseEntity.getBody();
 
-        assertThat(responseEntity.getStatusCode().value()).isEqualTo(200);
+        assertThat(responseEntity.getStatusCode().value()).isEqualTo(202);
         assert reportResponse != null;
         assertThat(reportResponse.getStatus()).isEqualTo(Response.Status.OK);
+        assertThat(reportResponse.getJob().getId()).isNotBlank();
     }
 
     //<editor-fold defaultstate="collapsed">
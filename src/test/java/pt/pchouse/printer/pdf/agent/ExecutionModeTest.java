@@ -0,0 +1,79 @@
+package pt.pchouse.printer.pdf.agent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ExecutionModeTest
+{
+
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    @Test
+    void testParse() {
+        assertThat(ExecutionMode.parse(null)).isEqualTo(ExecutionMode.PLATFORM);
+        assertThat(ExecutionMode.parse(" ")).isEqualTo(ExecutionMode.PLATFORM);
+        assertThat(ExecutionMode.parse(" Virtual ")).isEqualTo(ExecutionMode.VIRTUAL);
+        assertThatThrownBy(() -> ExecutionMode.parse("green")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testPlatformThreadFactory() {
+        Thread thread = ExecutionMode.PLATFORM.newThreadFactory("worker").newThread(() -> {
+        });
+
+        assertThat(thread.getName()).isEqualTo("worker");
+        assertThat(thread.isDaemon()).isTrue();
+    }
+
+    @Test
+    void testVirtualThreadsRequireJava21() {
+        assumeFalse(ExecutionMode.isVirtualSupported());
+
+        assertThatThrownBy(() -> ExecutionMode.newVirtualThreadPerTaskExecutor("task-"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("require Java 21");
+        assertThatThrownBy(() -> ExecutionMode.VIRTUAL.newThreadFactory("worker"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testVirtualThreadFactory() throws Exception {
+        assumeTrue(ExecutionMode.isVirtualSupported());
+
+        ThreadFactory factory = ExecutionMode.VIRTUAL.newThreadFactory("worker");
+        Thread        thread  = factory.newThread(() -> {
+        });
+
+        assertThat(thread.getName()).isEqualTo("worker");
+        assertThat(isVirtual(thread)).isTrue();
+    }
+
+    @Test
+    void testVirtualThreadPerTaskExecutor() throws Exception {
+        assumeTrue(ExecutionMode.isVirtualSupported());
+
+        ExecutorService executor = ExecutionMode.newVirtualThreadPerTaskExecutor("task-");
+        try {
+            Future<Thread> first  = executor.submit(Thread::currentThread);
+            Future<Thread> second = executor.submit(Thread::currentThread);
+
+            assertThat(isVirtual(first.get())).isTrue();
+            assertThat(first.get().getName()).startsWith("task-");
+            assertThat(second.get()).isNotSameAs(first.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
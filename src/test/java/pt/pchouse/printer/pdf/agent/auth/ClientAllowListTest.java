@@ -0,0 +1,110 @@
+package pt.pchouse.printer.pdf.agent.auth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClientAllowListTest
+{
+
+    private final ClientAllowList allowList = new ClientAllowList();
+
+    @TempDir
+    private Path directory;
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    /**
+     * Write the file with a new modified time, the file system time resolution can be coarser than the test
+     */
+    private static void write(Path file, String rules, long modified) throws Exception {
+        Files.writeString(file, rules, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+    }
+
+    private void start(Path file) {
+        ReflectionTestUtils.setField(allowList, "allowIps", new String[]{"localhost"});
+        ReflectionTestUtils.setField(allowList, "file", file.toString());
+        ReflectionTestUtils.setField(allowList, "refreshInterval", 10L);
+        allowList.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        allowList.shutdown();
+    }
+
+    @Test
+    void testChangedFileIsAppliedWithoutRestart() throws Exception {
+        Path file = directory.resolve("allow.txt");
+        write(file, "10.20.0.0/16 # office\n", 1000000);
+        start(file);
+
+        assertThat(allowList.isAllowed("10.20.1.1")).isTrue();
+        assertThat(allowList.isAllowed("127.0.0.1")).isTrue();
+        assertThat(allowList.isAllowed("192.168.1.10")).isFalse();
+
+        write(file, "192.168.1.10, 2001:db8::/32\n", 2000000);
+        awaitUntil(() -> allowList.isAllowed("192.168.1.10"));
+        assertThat(allowList.isAllowed("2001:db8::5")).isTrue();
+        assertThat(allowList.isAllowed("10.20.1.1")).isFalse();
+        // the application.properties rules are kept
+        assertThat(allowList.isAllowed("::1")).isTrue();
+        assertThat(allowList.get().getRules()).containsExactly("localhost", "192.168.1.10", "2001:db8::/32");
+    }
+
+    @Test
+    void testInvalidFileKeepsThePreviousList() throws Exception {
+        Path file = directory.resolve("allow.txt");
+        write(file, "10.20.0.0/16\n", 1000000);
+        start(file);
+        IpAllowList previous = allowList.get();
+
+        write(file, "10.30.0.0/16, 300.1.1.1\n", 2000000);
+        // the invalid file is checked several times, none of its rules is applied
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(allowList.get()).isSameAs(previous);
+        assertThat(allowList.isAllowed("10.30.0.1")).isFalse();
+
+        write(file, "10.30.0.0/16\n", 3000000);
+        awaitUntil(() -> allowList.isAllowed("10.30.0.1"));
+        assertThat(allowList.isAllowed("10.20.0.1")).isFalse();
+    }
+
+    @Test
+    void testRemovedFileLeavesThePropertiesRules() throws Exception {
+        Path file = directory.resolve("allow.txt");
+        write(file, "10.20.0.0/16\n", 1000000);
+        start(file);
+
+        Files.delete(file);
+        awaitUntil(() -> !allowList.isAllowed("10.20.0.1"));
+        assertThat(allowList.isAllowed("127.0.0.1")).isTrue();
+    }
+
+    @Test
+    void testInvalidRuleFailsTheStart() throws Exception {
+        Path file = directory.resolve("allow.txt");
+        write(file, "10.20.0.0/40\n", 1000000);
+
+        assertThatThrownBy(() -> start(file)).isInstanceOf(IllegalStateException.class)
+                                             .hasMessageContaining("10.20.0.0/40");
+    }
+}
@@ -0,0 +1,88 @@
+package pt.pchouse.printer.pdf.agent.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IpAllowListTest
+{
+
+    @Test
+    void testWithoutRulesAllowsAll() {
+        IpAllowList allowList = IpAllowList.compile(List.of(" ", ""));
+
+        assertThat(allowList.isAllowed("10.0.0.1")).isTrue();
+        assertThat(allowList.isAllowed("not an address")).isTrue();
+    }
+
+    @Test
+    void testNetworks() {
+        IpAllowList allowList = IpAllowList.compile(List.of("10.20.0.0/16", "192.168.1.10", "2001:db8::/32"));
+
+        assertThat(allowList.isAllowed("10.20.5.6")).isTrue();
+        assertThat(allowList.isAllowed("::ffff:10.20.255.255")).isTrue();
+        assertThat(allowList.isAllowed("10.21.0.1")).isFalse();
+        assertThat(allowList.isAllowed("192.168.1.10")).isTrue();
+        assertThat(allowList.isAllowed("192.168.1.11")).isFalse();
+        assertThat(allowList.isAllowed("2001:db8:1::5")).isTrue();
+        assertThat(allowList.isAllowed("2001:0DB8:0:0:0:0:0:1%eth0")).isTrue();
+        assertThat(allowList.isAllowed("2001:db9::1")).isFalse();
+        assertThat(allowList.isAllowed("::1")).isFalse();
+        assertThat(allowList.isAllowed("garbage")).isFalse();
+        assertThat(allowList.isAllowed(null)).isFalse();
+    }
+
+    @Test
+    void testLocalhost() {
+        IpAllowList allowList = IpAllowList.compile(List.of("localhost"));
+
+        assertThat(allowList.isAllowed("127.0.0.1")).isTrue();
+        assertThat(allowList.isAllowed("::1")).isTrue();
+        assertThat(allowList.isAllowed("0:0:0:0:0:0:0:1")).isTrue();
+        assertThat(allowList.isAllowed("127.1.2.3")).isTrue();
+        assertThat(allowList.isAllowed("10.0.0.1")).isFalse();
+    }
+
+    @Test
+    void testLoopbackAddressesOnlyMatchThemselves() {
+        IpAllowList ipv4 = IpAllowList.compile(List.of("127.0.0.1"));
+
+        assertThat(ipv4.isAllowed("127.0.0.1")).isTrue();
+        assertThat(ipv4.isAllowed("::ffff:127.0.0.1")).isTrue();
+        assertThat(ipv4.isAllowed("127.0.0.2")).isFalse();
+        assertThat(ipv4.isAllowed("127.1.2.3")).isFalse();
+        assertThat(ipv4.isAllowed("::1")).isFalse();
+
+        IpAllowList ipv6 = IpAllowList.compile(List.of("::1"));
+
+        assertThat(ipv6.isAllowed("::1")).isTrue();
+        assertThat(ipv6.isAllowed("0:0:0:0:0:0:0:1")).isTrue();
+        assertThat(ipv6.isAllowed("127.0.0.1")).isFalse();
+        assertThat(ipv6.isAllowed("::2")).isFalse();
+    }
+
+    @Test
+    void testNormalization() {
+        assertThat(IpAllowList.parse("::ffff:1.2.3.4", false)).isEqualTo(IpAllowList.parse("1.2.3.4", false));
+        assertThat(IpAllowList.parse("::ffff:1.2.3.4", true)).isZero();
+        assertThat(IpAllowList.parse("1::", true)).isEqualTo(0x0001_0000_0000_0000L);
+        assertThat(IpAllowList.parse("1::", false)).isZero();
+        assertThat(IpAllowList.parse("::", true)).isZero();
+        assertThat(IpAllowList.parse("1:2:3:4:5:6:7:8", false)).isEqualTo(0x0005_0006_0007_0008L);
+        assertThat(IpAllowList.parse("1:2::7:8", true)).isEqualTo(0x0001_0002_0000_0000L);
+        assertThat(IpAllowList.parse("1:2::7:8", false)).isEqualTo(0x0000_0000_0007_0008L);
+    }
+
+    @Test
+    void testInvalidRules() {
+        for (String rule : new String[]{"10.0.0.0/33", "10.0.0.0/x", "300.1.1.1", "1.2.3", "1:::2", "1::2::3",
+                "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7", "12345::", ":1::", "1:", "abc"}) {
+            assertThatThrownBy(() -> IpAllowList.compile(List.of(rule)))
+                    .as(rule)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionControlTest
+{
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final PrinterRegistry printerRegistry = Mockito.mock(PrinterRegistry.class);
+
+    private AdmissionControl admissionControl;
+
+    private static PrinterConfig config(String id) {
+        PrinterConfig config = new PrinterConfig();
+        config.setId(id);
+        return config;
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Mockito.when(printerRegistry.get("kitchen")).thenReturn(config("kitchen"));
+        Mockito.when(printerRegistry.get("bar")).thenReturn(config("bar"));
+        Mockito.when(printerRegistry.get("missing")).thenThrow(new PrinterException("Printer not configured"));
+
+        admissionControl = new AdmissionControl();
+        ReflectionTestUtils.setField(admissionControl, "maxJobs", 10);
+        ReflectionTestUtils.setField(admissionControl, "maxBytes", 1000L);
+        ReflectionTestUtils.setField(admissionControl, "maxPrinterJobs", 2);
+        ReflectionTestUtils.setField(admissionControl, "maxPrinterBytes", 500L);
+        ReflectionTestUtils.setField(admissionControl, "queueCapacity", 100);
+        ReflectionTestUtils.setField(admissionControl, "maxRetryAfter", 60);
+        ReflectionTestUtils.setField(admissionControl, "executor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(admissionControl, "printerRegistry", printerRegistry);
+        ReflectionTestUtils.setField(admissionControl, "registry", registry);
+        admissionControl.init();
+    }
+
+    private double jobs() {
+        return registry.get("printer.agent.admission.jobs").gauge().value();
+    }
+
+    private double bytes() {
+        return registry.get("printer.agent.admission.bytes").gauge().value();
+    }
+
+    private double rejected(String reason) {
+        return registry.get(AdmissionControl.REJECTED).tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void testGlobalJobsLimit() throws Exception {
+        ReflectionTestUtils.setField(admissionControl, "maxJobs", 3);
+        AdmissionControl.Permit first = admissionControl.admit(null, 10);
+        admissionControl.admit(null, 10);
+        admissionControl.admit(null, 10);
+
+        assertThatThrownBy(() -> admissionControl.admit(null, 10)).isInstanceOfSatisfying(
+                AdmissionException.class,
+                e -> assertThat(e.getReason()).isEqualTo(AdmissionException.Reason.JOBS)
+        );
+        assertThat(rejected("jobs")).isEqualTo(1);
+
+        first.close();
+        assertThat(jobs()).isEqualTo(2);
+        assertThat(bytes()).isEqualTo(20);
+        admissionControl.admit(null, 10);
+    }
+
+    @Test
+    void testGlobalBytesLimitAdmitsABiggerRequestAlone() throws Exception {
+        AdmissionControl.Permit big = admissionControl.admit(null, 5000);
+
+        assertThatThrownBy(() -> admissionControl.admit(null, 1)).isInstanceOfSatisfying(
+                AdmissionException.class,
+                e -> assertThat(e.getReason()).isEqualTo(AdmissionException.Reason.BYTES)
+        );
+
+        big.close();
+        assertThat(bytes()).isZero();
+        admissionControl.admit(null, 600);
+        assertThatThrownBy(() -> admissionControl.admit(null, 401)).isInstanceOf(AdmissionException.class);
+        admissionControl.admit(null, 400);
+    }
+
+    @Test
+    void testPrinterLimits() throws Exception {
+        admissionControl.admit("kitchen", 100);
+        admissionControl.admit("kitchen", 100);
+
+        assertThatThrownBy(() -> admissionControl.admit("kitchen", 100)).isInstanceOfSatisfying(
+                AdmissionException.class,
+                e -> {
+                    assertThat(e.getReason()).isEqualTo(AdmissionException.Reason.JOBS);
+                    assertThat(e.getPrinter()).isEqualTo("kitchen");
+                }
+        );
+        // the global usage of the printer rejection is released
+        assertThat(jobs()).isEqualTo(2);
+        assertThat(bytes()).isEqualTo(200);
+
+        admissionControl.admit("bar", 400);
+        assertThatThrownBy(() -> admissionControl.admit("bar", 200)).isInstanceOfSatisfying(
+                AdmissionException.class,
+                e -> {
+                    assertThat(e.getReason()).isEqualTo(AdmissionException.Reason.BYTES);
+                    assertThat(e.getPrinter()).isEqualTo("bar");
+                }
+        );
+
+        // the printer not configured and the printer not known only have the global limits
+        admissionControl.admit("missing", 100);
+        admissionControl.admit(null, 100);
+        assertThat(jobs()).isEqualTo(5);
+        assertThat(bytes()).isEqualTo(800);
+    }
+
+    @Test
+    void testRetryAfterIsTheAverageHoldBounded() throws Exception {
+        ReflectionTestUtils.setField(admissionControl, "maxJobs", 3);
+        admissionControl.admit(null, 10);
+        admissionControl.admit(null, 10);
+        admissionControl.admit(null, 10);
+
+        assertThatThrownBy(() -> admissionControl.admit(null, 10))
+                .isInstanceOfSatisfying(AdmissionException.class, e -> assertThat(e.getRetryAfter()).isEqualTo(1));
+
+        AtomicLong averageHold = (AtomicLong) ReflectionTestUtils.getField(admissionControl, "averageHold");
+        averageHold.set(TimeUnit.SECONDS.toNanos(9));
+        // one of the three permits must be released, they are released in parallel
+        assertThatThrownBy(() -> admissionControl.admit(null, 10))
+                .isInstanceOfSatisfying(AdmissionException.class, e -> assertThat(e.getRetryAfter()).isEqualTo(4));
+
+        averageHold.set(TimeUnit.HOURS.toNanos(1));
+        assertThatThrownBy(() -> admissionControl.admit(null, 10))
+                .isInstanceOfSatisfying(AdmissionException.class, e -> assertThat(e.getRetryAfter()).isEqualTo(60));
+    }
+
+    @Test
+    void testChargeTheBytesReadBeyondTheContentLength() throws Exception {
+        // a chunked request, admitted with zero bytes
+        AdmissionControl.Permit chunked = admissionControl.admit("kitchen", -1);
+        assertThat(chunked.getBytes()).isZero();
+
+        // alone in flight, it is charged above the limits
+        chunked.charge(2000);
+        assertThat(chunked.getBytes()).isEqualTo(2000);
+        assertThat(bytes()).isEqualTo(2000);
+        chunked.charge(1500);
+        assertThat(chunked.getBytes()).isEqualTo(2000);
+
+        chunked.close();
+        assertThat(bytes()).isZero();
+        assertThat(jobs()).isZero();
+    }
+
+    @Test
+    void testChargeOverTheLimitsIsRejected() throws Exception {
+        AdmissionControl.Permit other   = admissionControl.admit("kitchen", 300);
+        AdmissionControl.Permit chunked = admissionControl.admit("kitchen", 0);
+
+        chunked.charge(150);
+        assertThatThrownBy(() -> chunked.charge(300)).isInstanceOfSatisfying(
+                AdmissionException.class,
+                e -> {
+                    assertThat(e.getReason()).isEqualTo(AdmissionException.Reason.BYTES);
+                    assertThat(e.getPrinter()).isEqualTo("kitchen");
+                }
+        );
+        // the global charge of the printer rejection is released
+        assertThat(bytes()).isEqualTo(450);
+        assertThat(chunked.getBytes()).isEqualTo(150);
+
+        AdmissionControl.Permit third = admissionControl.admit(null, 500);
+        chunked.charge(200);
+        assertThatThrownBy(() -> chunked.charge(250)).isInstanceOfSatisfying(
+                AdmissionException.class,
+                e -> assertThat(e.getPrinter()).isNull()
+        );
+        assertThat(bytes()).isEqualTo(1000);
+        assertThat(rejected("bytes")).isEqualTo(2);
+
+        other.close();
+        chunked.close();
+        third.close();
+        assertThat(bytes()).isZero();
+        assertThat(jobs()).isZero();
+    }
+
+    @Test
+    void testPermitIsHeldUntilTheJobsFinish() throws Exception {
+        AdmissionControl.Permit permit = admissionControl.admit(null, 100);
+        PrintJob                job    = new PrintJob("printer", printJob -> {
+        }, printJob -> {
+        });
+
+        permit.holdUntilFinished(job);
+        permit.close();
+        assertThat(jobs()).isEqualTo(1);
+
+        job.transition(null, PrintJob.Status.COMPLETED, null);
+        assertThat(jobs()).isZero();
+        assertThat(bytes()).isZero();
+
+        // closed again or after the release it is ignored
+        permit.close();
+        assertThat(jobs()).isZero();
+    }
+}
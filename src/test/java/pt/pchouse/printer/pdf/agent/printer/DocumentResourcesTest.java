@@ -0,0 +1,230 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentResourcesTest
+{
+
+    private static final String FONT = "/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf";
+
+    private final FontCache fontCache = new FontCache();
+
+    private final ImageCache imageCache = new ImageCache();
+
+    private final DocumentLoader loader = new DocumentLoader();
+
+    DocumentResourcesTest() {
+        ReflectionTestUtils.setField(fontCache, "maxBytes", 33554432L);
+        ReflectionTestUtils.setField(imageCache, "maxBytes", 67108864L);
+        ReflectionTestUtils.setField(loader, "fontCache", fontCache);
+        ReflectionTestUtils.setField(loader, "imageCache", imageCache);
+        ReflectionTestUtils.setField(loader, "largeThreshold", 8388608L);
+    }
+
+    private static BufferedImage logo(Color color) {
+        BufferedImage logo     = new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB);
+        Graphics2D    graphics = logo.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 40, 20);
+        graphics.setColor(color);
+        graphics.fillOval(5, 2, 30, 16);
+        graphics.dispose();
+        return logo;
+    }
+
+    /**
+     * A receipt with the embedded font and the logo, the blank first page changes the object numbering
+     */
+    private static byte[] receipt(boolean blankFirstPage, Color logoColor) throws IOException {
+        try (PDDocument document = new PDDocument(); InputStream ttf = PDDocument.class.getResourceAsStream(FONT)) {
+            if (blankFirstPage) {
+                document.addPage(new PDPage(new PDRectangle(100, 100)));
+            }
+            PDPage page = new PDPage(new PDRectangle(200, 100));
+            document.addPage(page);
+            PDFont         font = PDType0Font.load(document, ttf, false);
+            PDImageXObject logo = LosslessFactory.createFromImage(document, logo(logoColor));
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.drawImage(logo, 10, 60, 40, 20);
+                content.beginText();
+                content.setFont(font, 14);
+                content.newLineAtOffset(10, 30);
+                content.showText("Receipt 42");
+                content.endText();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static COSObject resource(PDDocument document, int page, COSName type) {
+        COSDictionary resources = document.getPage(page).getResources().getCOSObject().getCOSDictionary(type);
+        return (COSObject) resources.getItem(resources.keySet().iterator().next());
+    }
+
+    private static BufferedImage render(PDDocument document, int page) throws IOException {
+        return new PDFRenderer(document).renderImage(page, 2);
+    }
+
+    private static void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        assertThat(actual.getWidth()).isEqualTo(expected.getWidth());
+        assertThat(actual.getHeight()).isEqualTo(expected.getHeight());
+        int painted = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertThat(actual.getRGB(x, y)).isEqualTo(expected.getRGB(x, y));
+                if (expected.getRGB(x, y) != Color.WHITE.getRGB()) {
+                    painted++;
+                }
+            }
+        }
+        // the text and the logo were rendered
+        assertThat(painted).isGreaterThan(100);
+    }
+
+    @Test
+    void testClosedDocumentLendsItsFontAndImageToTheNext() throws Exception {
+        byte[] first  = receipt(false, Color.RED);
+        byte[] second = receipt(true, Color.RED);
+
+        PDDocument document = loader.load(PdfSource.of(first), new RandomAccessReadBuffer(first));
+        assertThat(document.getResourceCache()).isInstanceOf(DocumentResources.class);
+        render(document, 0);
+        document.close();
+        loader.release(document);
+
+        assertThat(fontCache.getState().misses()).isEqualTo(1);
+        assertThat(fontCache.getState().entries()).isEqualTo(1);
+        assertThat(imageCache.getState().misses()).isEqualTo(1);
+        assertThat(imageCache.getState().entries()).isEqualTo(1);
+
+        // the second document renders with the font and the image parsed by the closed one
+        document = loader.load(PdfSource.of(second), new RandomAccessReadBuffer(second));
+        BufferedImage rendered = render(document, 1);
+        assertThat(fontCache.getState().hits()).isEqualTo(1);
+        assertThat(fontCache.getState().entries()).isZero();
+        assertThat(imageCache.getState().hits()).isEqualTo(1);
+        assertThat(imageCache.getState().entries()).isZero();
+        document.close();
+        loader.release(document);
+
+        try (PDDocument reference = Loader.loadPDF(second)) {
+            reference.setResourceCache(null);
+            assertSamePixels(rendered, render(reference, 1));
+        }
+        assertThat(fontCache.getState().entries()).isEqualTo(1);
+        assertThat(imageCache.getState().entries()).isEqualTo(1);
+    }
+
+    @Test
+    void testDifferentImageIsNotBorrowed() throws Exception {
+        byte[] red  = receipt(false, Color.RED);
+        byte[] blue = receipt(false, Color.BLUE);
+
+        PDDocument document = loader.load(PdfSource.of(red), new RandomAccessReadBuffer(red));
+        render(document, 0);
+        document.close();
+        loader.release(document);
+
+        document = loader.load(PdfSource.of(blue), new RandomAccessReadBuffer(blue));
+        BufferedImage rendered = render(document, 0);
+        document.close();
+        loader.release(document);
+
+        assertThat(fontCache.getState().hits()).isEqualTo(1);
+        assertThat(imageCache.getState().hits()).isZero();
+        assertThat(imageCache.getState().entries()).isEqualTo(2);
+        try (PDDocument reference = Loader.loadPDF(blue)) {
+            reference.setResourceCache(null);
+            assertSamePixels(rendered, render(reference, 0));
+        }
+    }
+
+    @Test
+    void testResourceKeyIsEqualAcrossTheObjectNumbering() throws Exception {
+        try (PDDocument first = Loader.loadPDF(receipt(false, Color.RED));
+             PDDocument second = Loader.loadPDF(receipt(true, Color.RED));
+             PDDocument other = Loader.loadPDF(receipt(false, Color.BLUE))) {
+            COSObject firstFont  = resource(first, 0, COSName.FONT);
+            COSObject secondFont = resource(second, 1, COSName.FONT);
+            COSObject firstLogo  = resource(first, 0, COSName.XOBJECT);
+            COSObject secondLogo = resource(second, 1, COSName.XOBJECT);
+            assertThat(secondFont.getObjectNumber()).isNotEqualTo(firstFont.getObjectNumber());
+            assertThat(secondLogo.getObjectNumber()).isNotEqualTo(firstLogo.getObjectNumber());
+
+            ResourceKey fontKey = ResourceKey.of(firstFont);
+            assertThat(ResourceKey.of(secondFont)).isEqualTo(fontKey);
+            assertThat(fontCache.key(secondFont.getObject())).isEqualTo(fontKey);
+            // the font file is digested
+            assertThat(fontKey.streamBytes()).isGreaterThan(100000);
+
+            ResourceKey logoKey = ResourceKey.of(firstLogo);
+            assertThat(ResourceKey.of(secondLogo)).isEqualTo(logoKey);
+            assertThat(logoKey).isNotEqualTo(fontKey);
+            assertThat(ResourceKey.of(resource(other, 0, COSName.XOBJECT))).isNotEqualTo(logoKey);
+            assertThat(ResourceKey.of(resource(other, 0, COSName.FONT))).isEqualTo(fontKey);
+        }
+    }
+
+    @Test
+    void testType3FontsAndStencilMasksAreNotShared() throws Exception {
+        COSDictionary type3 = new COSDictionary();
+        type3.setItem(COSName.TYPE, COSName.FONT);
+        type3.setItem(COSName.SUBTYPE, COSName.TYPE3);
+        assertThat(fontCache.key(type3)).isNull();
+
+        COSStream mask = new COSStream();
+        mask.setItem(COSName.TYPE, COSName.XOBJECT);
+        mask.setItem(COSName.SUBTYPE, COSName.IMAGE);
+        mask.setInt(COSName.WIDTH, 8);
+        mask.setInt(COSName.HEIGHT, 1);
+        mask.setInt(COSName.BITS_PER_COMPONENT, 1);
+        try (OutputStream out = mask.createRawOutputStream()) {
+            out.write(0x0F);
+        }
+        assertThat(imageCache.key(mask)).isNotNull();
+        // the stencil mask is painted with the fill color of the page that draws it
+        mask.setBoolean(COSName.IMAGE_MASK, true);
+        assertThat(imageCache.key(mask)).isNull();
+
+        DocumentResources resources = new DocumentResources(fontCache, imageCache);
+        COSObject         font      = new COSObject(type3);
+        PDFont            parsed    = Mockito.mock(PDFont.class);
+        assertThat(resources.getFont(font)).isNull();
+        resources.put(font, parsed);
+        // kept by the document, not given to the cache
+        assertThat(resources.getFont(font)).isSameAs(parsed);
+        assertThat(resources.getXObject(new COSObject(mask))).isNull();
+        resources.release();
+
+        assertThat(fontCache.getState().misses()).isZero();
+        assertThat(fontCache.getState().entries()).isZero();
+        assertThat(imageCache.getState().misses()).isZero();
+        assertThat(imageCache.getState().entries()).isZero();
+    }
+}
@@ -0,0 +1,88 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EscPosCommandsTest
+{
+
+    private static Map<String, String> builtIn() {
+        Map<String, String> definitions = new LinkedHashMap<>();
+        definitions.put(EscPosCommands.INIT, "27,64");
+        definitions.put(EscPosCommands.FEED, "10");
+        definitions.put(EscPosCommands.CUT, "0x1D564104");
+        definitions.put(EscPosCommands.CASH_DRAWER, "27,112,{drawer_pin},{drawer_on},250");
+        return definitions;
+    }
+
+    private static String parameter(String name) {
+        return switch (name) {
+            case "drawer_pin" -> "0x01";
+            case "drawer_on" -> "200";
+            default -> null;
+        };
+    }
+
+    @Test
+    void testCompile() throws PrinterException {
+        Map<String, String> definitions = builtIn();
+        definitions.put("feed_cut", "$feed, $feed, $cut");
+
+        EscPosCommands commands = EscPosCommands.compile(definitions, EscPosCommandsTest::parameter);
+
+        assertThat(commands.get(EscPosCommands.CUT).getBytes()).containsExactly(0x1D, 0x56, 0x41, 0x04);
+        assertThat(commands.get(EscPosCommands.CASH_DRAWER).getBytes())
+                .containsExactly(27, 112, 1, 200, 250);
+        assertThat(commands.get("feed_cut").getBytes()).containsExactly(10, 10, 0x1D, 0x56, 0x41, 0x04);
+        assertThat(commands.get(EscPosCommands.CUT_PAPER).getBytes()).containsExactly(27, 64, 0x1D, 0x56, 0x41, 0x04);
+        assertThat(commands.get("not_defined")).isNull();
+    }
+
+    @Test
+    void testCompiledBuffersAreReadOnly() throws PrinterException {
+        EscPosCommand init = EscPosCommands.compile(builtIn(), EscPosCommandsTest::parameter)
+                .get(EscPosCommands.INIT);
+
+        ByteBuffer buffer = init.getBuffer();
+        assertThat(buffer.isReadOnly()).isTrue();
+        buffer.get();
+        assertThat(init.getBuffer().remaining()).isEqualTo(2);
+
+        init.getBytes()[0] = 0;
+        assertThat(init.getBytes()).containsExactly(27, 64);
+        assertThat(init.getDoc()).isSameAs(init.getDoc());
+    }
+
+    @Test
+    void testInvalidCommands() {
+        Map<String, String> cycle = builtIn();
+        cycle.put("a", "$b");
+        cycle.put("b", "1,$a");
+        assertThatThrownBy(() -> EscPosCommands.compile(cycle, EscPosCommandsTest::parameter))
+                .isInstanceOf(PrinterException.class)
+                .hasMessageContaining("references itself");
+
+        Map<String, String> undefined = builtIn();
+        undefined.put("a", "$missing");
+        assertThatThrownBy(() -> EscPosCommands.compile(undefined, EscPosCommandsTest::parameter))
+                .hasMessageContaining("'missing' is not defined");
+
+        Map<String, String> parameter = builtIn();
+        parameter.put("a", "{pulse}");
+        assertThatThrownBy(() -> EscPosCommands.compile(parameter, EscPosCommandsTest::parameter))
+                .hasMessageContaining("parameter 'pulse' is not defined");
+
+        for (String sequence : new String[]{"256", "0x1", "0xZZ", "27,,64", "ESC"}) {
+            Map<String, String> invalid = builtIn();
+            invalid.put("a", sequence);
+            assertThatThrownBy(() -> EscPosCommands.compile(invalid, EscPosCommandsTest::parameter))
+                    .hasMessageContaining("invalid byte");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EscPosRasterTest
+{
+
+    private static final int WHITE = 255;
+
+    private static final int BLACK = 0;
+
+    private static BufferedImage image(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.getRaster().setSample(x, y, 0, WHITE);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int index = 0; index < values.length; index++) {
+            bytes[index] = (byte) values[index];
+        }
+        return bytes;
+    }
+
+    private static BufferedImage sample() {
+        // 10 dots of 2 bytes per row, the last byte padded with blank dots
+        BufferedImage image = image(10, 2);
+        image.getRaster().setSample(0, 0, 0, BLACK);
+        image.getRaster().setSample(8, 0, 0, BLACK);
+        image.getRaster().setSample(9, 0, 0, BLACK);
+        image.getRaster().setSample(7, 1, 0, BLACK);
+        return image;
+    }
+
+    @Test
+    void testGsV0BitOrderAndWidthPadding() {
+        byte[] page = new EscPosRaster(RasterCommand.GS_V_0, 128, 576, true).encode(sample());
+
+        assertThat(page).containsExactly(bytes(
+                0x1D, 'v', '0', 0x00, 0x02, 0x00, 0x02, 0x00,
+                0x80, 0xC0,
+                0x01, 0x00
+        ));
+    }
+
+    @Test
+    void testGsLBitOrderAndWidthPadding() {
+        byte[] page = new EscPosRaster(RasterCommand.GS_L, 128, 576, true).encode(sample());
+
+        assertThat(page).containsExactly(bytes(
+                0x1D, '(', 'L', 0x0E, 0x00, 0x30, 0x70, 0x30, 0x01, 0x01, 0x31, 0x0A, 0x00, 0x02, 0x00,
+                0x80, 0xC0,
+                0x01, 0x00,
+                0x1D, '(', 'L', 0x02, 0x00, 0x30, 0x32
+        ));
+    }
+
+    @Test
+    void testDotsBeyondThePrinterWidthAreCut() {
+        BufferedImage image = sample();
+        BufferedImage wide  = image(20, 2);
+        wide.setData(image.getRaster());
+        wide.getRaster().setSample(12, 0, 0, BLACK);
+
+        byte[] page = new EscPosRaster(RasterCommand.GS_V_0, 128, 10, true).encode(wide);
+
+        assertThat(page).containsExactly(bytes(
+                0x1D, 'v', '0', 0x00, 0x02, 0x00, 0x02, 0x00,
+                0x80, 0xC0,
+                0x01, 0x00
+        ));
+    }
+
+    @Test
+    void testThreshold() {
+        BufferedImage image = image(8, 1);
+        image.getRaster().setSample(0, 0, 0, 127);
+        image.getRaster().setSample(1, 0, 0, 128);
+        image.getRaster().setSample(2, 0, 0, 129);
+        image.getRaster().setSample(3, 0, 0, BLACK);
+
+        assertThat(new EscPosRaster(RasterCommand.GS_V_0, 128, 576, true).encode(image))
+                .containsExactly(bytes(0x1D, 'v', '0', 0x00, 0x01, 0x00, 0x01, 0x00, 0x90));
+        assertThat(new EscPosRaster(RasterCommand.GS_V_0, 130, 576, true).encode(image))
+                .containsExactly(bytes(0x1D, 'v', '0', 0x00, 0x01, 0x00, 0x01, 0x00, 0xF0));
+        assertThat(new EscPosRaster(RasterCommand.GS_V_0, 0, 576, true).encode(image)).isEmpty();
+    }
+
+    @Test
+    void testTrimRemovesTheBottomBlankRowsOnly() {
+        BufferedImage image = image(8, 4);
+        image.getRaster().setSample(0, 1, 0, BLACK);
+
+        assertThat(new EscPosRaster(RasterCommand.GS_V_0, 128, 576, true).encode(image))
+                .containsExactly(bytes(0x1D, 'v', '0', 0x00, 0x01, 0x00, 0x02, 0x00, 0x00, 0x80));
+        assertThat(new EscPosRaster(RasterCommand.GS_V_0, 128, 576, false).encode(image))
+                .containsExactly(bytes(0x1D, 'v', '0', 0x00, 0x01, 0x00, 0x04, 0x00, 0x00, 0x80, 0x00, 0x00));
+        assertThat(new EscPosRaster(RasterCommand.GS_V_0, 128, 576, true).encode(image(8, 4))).isEmpty();
+    }
+
+    @Test
+    void testGsV0SplitsTheHeightInBands() {
+        BufferedImage image = image(8, 300);
+        for (int y = 0; y < 300; y++) {
+            image.getRaster().setSample(0, y, 0, BLACK);
+        }
+
+        byte[] page = new EscPosRaster(RasterCommand.GS_V_0, 128, 576, true).encode(image);
+
+        assertThat(page).hasSize(8 + EscPosRaster.BAND_ROWS + 8 + 44);
+        assertThat(Arrays.copyOfRange(page, 0, 8))
+                .containsExactly(bytes(0x1D, 'v', '0', 0x00, 0x01, 0x00, 0x00, 0x01));
+        assertThat(Arrays.copyOfRange(page, 8 + 256, 8 + 256 + 8))
+                .containsExactly(bytes(0x1D, 'v', '0', 0x00, 0x01, 0x00, 0x2C, 0x00));
+    }
+
+    @Test
+    void testGsLSplitsTheHeightBelowTheMaximumLength() {
+        // 256 bytes per row, the GS ( L data of 256 rows would exceed 0xFFFF
+        BufferedImage image = image(2048, 300);
+        for (int y = 0; y < 300; y++) {
+            image.getRaster().setSample(0, y, 0, BLACK);
+        }
+
+        byte[] page = new EscPosRaster(RasterCommand.GS_L, 128, 2048, true).encode(image);
+
+        int first  = 10 + 256 * 255;
+        int second = 10 + 256 * 45;
+        assertThat(page).hasSize(5 + first + 7 + 5 + second + 7);
+        assertThat(Arrays.copyOfRange(page, 0, 15)).containsExactly(bytes(
+                0x1D, '(', 'L', first & 0xFF, first >> 8, 0x30, 0x70, 0x30, 0x01, 0x01, 0x31, 0x00, 0x08, 0xFF, 0x00
+        ));
+        int next = 5 + first + 7;
+        assertThat(Arrays.copyOfRange(page, next, next + 15)).containsExactly(bytes(
+                0x1D, '(', 'L', second & 0xFF, second >> 8, 0x30, 0x70, 0x30, 0x01, 0x01, 0x31, 0x00, 0x08, 0x2D, 0x00
+        ));
+    }
+}
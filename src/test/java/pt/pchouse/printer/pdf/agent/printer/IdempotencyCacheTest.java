@@ -0,0 +1,219 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyCacheTest
+{
+
+    private static final String CLIENT = "127.0.0.1";
+
+    private final PrintMetrics printMetrics = Mockito.mock(PrintMetrics.class);
+
+    private final AtomicInteger submitted = new AtomicInteger();
+
+    private IdempotencyCache cache(long ttl, long window, int maxEntries) {
+        IdempotencyCache cache = new IdempotencyCache();
+        ReflectionTestUtils.setField(cache, "ttl", ttl);
+        ReflectionTestUtils.setField(cache, "window", window);
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(cache, "printMetrics", printMetrics);
+        return cache;
+    }
+
+    private Supplier<PrintJob> submit() {
+        return () -> {
+            submitted.incrementAndGet();
+            return new PrintJob("printer", job -> {
+            }, job -> {
+            });
+        };
+    }
+
+    @Test
+    void testDuplicateKeyGetsTheFirstJob() throws Exception {
+        IdempotencyCache cache = cache(600000, 10000, 1000);
+
+        IdempotencyCache.Result first  = cache.submit("key", CLIENT, () -> "print default 0 hash", submit());
+        IdempotencyCache.Result second = cache.submit("key", CLIENT, () -> "print default 0 hash", submit());
+
+        assertThat(first.duplicate()).isFalse();
+        assertThat(second.duplicate()).isTrue();
+        assertThat(second.job()).isSameAs(first.job());
+        assertThat(submitted).hasValue(1);
+        Mockito.verify(printMetrics).duplicate("print");
+
+        // The key is of each client
+        assertThat(cache.submit("key", "10.0.0.1", () -> "print default 0 hash", submit()).duplicate()).isFalse();
+        assertThat(submitted).hasValue(2);
+    }
+
+    @Test
+    void testKeyOfDifferentRequestIsRejected() throws Exception {
+        IdempotencyCache cache = cache(600000, 10000, 1000);
+        cache.submit("key", CLIENT, () -> "print default 0 hash", submit());
+
+        assertThatThrownBy(() -> cache.submit("key", CLIENT, () -> "print default 0 other", submit()))
+                .isInstanceOf(PrinterException.class)
+                .hasMessageContaining("different request");
+        assertThat(submitted).hasValue(1);
+    }
+
+    @Test
+    void testFingerprintIsTheKeyInTheWindow() throws Exception {
+        IdempotencyCache cache = cache(600000, 50, 1000);
+
+        cache.submit(null, CLIENT, () -> "cut default", submit());
+        assertThat(cache.submit(" ", CLIENT, () -> "cut default", submit()).duplicate()).isTrue();
+        assertThat(cache.submit(null, CLIENT, () -> "cut other", submit()).duplicate()).isFalse();
+        assertThat(submitted).hasValue(2);
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(cache.submit(null, CLIENT, () -> "cut default", submit()).duplicate()).isFalse();
+        assertThat(submitted).hasValue(3);
+    }
+
+    @Test
+    void testZeroWindowDisablesTheFingerprint() throws Exception {
+        IdempotencyCache cache = cache(600000, 0, 1000);
+
+        cache.submit(null, CLIENT, () -> {
+            throw new AssertionError("The fingerprint is not computed");
+        }, submit());
+        cache.submit(null, CLIENT, () -> "cut default", submit());
+
+        assertThat(submitted).hasValue(2);
+    }
+
+    @Test
+    void testExpiredKeyIsSubmittedAgain() throws Exception {
+        IdempotencyCache cache = cache(50, 10000, 1000);
+
+        PrintJob first = cache.submit("key", CLIENT, () -> "cut default", submit()).job();
+        TimeUnit.MILLISECONDS.sleep(100);
+        IdempotencyCache.Result second = cache.submit("key", CLIENT, () -> "cut default", submit());
+
+        assertThat(second.duplicate()).isFalse();
+        assertThat(second.job()).isNotSameAs(first);
+    }
+
+    @Test
+    void testFailedJobIsSubmittedAgain() throws Exception {
+        IdempotencyCache cache = cache(600000, 10000, 1000);
+
+        PrintJob first = cache.submit("key", CLIENT, () -> "cut default", submit()).job();
+        first.transition(null, PrintJob.Status.FAILED, "Paper out");
+
+        assertThat(cache.submit("key", CLIENT, () -> "cut default", submit()).duplicate()).isFalse();
+        assertThat(submitted).hasValue(2);
+    }
+
+    @Test
+    void testOldestKeysAreEvictedAboveTheMaximum() throws Exception {
+        IdempotencyCache cache = cache(600000, 10000, 2);
+
+        cache.submit("a", CLIENT, () -> "cut default", submit());
+        cache.submit("b", CLIENT, () -> "cut default", submit());
+        cache.submit("c", CLIENT, () -> "cut default", submit());
+
+        assertThat(cache.submit("c", CLIENT, () -> "cut default", submit()).duplicate()).isTrue();
+        assertThat(cache.submit("b", CLIENT, () -> "cut default", submit()).duplicate()).isTrue();
+        assertThat(cache.submit("a", CLIENT, () -> "cut default", submit()).duplicate()).isFalse();
+        assertThat(submitted).hasValue(4);
+    }
+
+    @Test
+    void testClientKeyDoesNotHoldTheExpiredFingerprints() throws Exception {
+        IdempotencyCache cache = cache(600000, 50, 2);
+
+        cache.submit("key", CLIENT, () -> "cut default", submit());
+        cache.submit(null, CLIENT, () -> "cut kitchen", submit());
+        TimeUnit.MILLISECONDS.sleep(100);
+        cache.submit(null, CLIENT, () -> "cut bar", submit());
+
+        // the expired fingerprint behind the client key is evicted, not the client key
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(cache, "entries")).hasSize(2);
+        assertThat(cache.submit("key", CLIENT, () -> "cut default", submit()).duplicate()).isTrue();
+        assertThat(submitted).hasValue(3);
+    }
+
+    @Test
+    void testClosestToExpireIsEvictedAboveTheMaximum() throws Exception {
+        IdempotencyCache cache = cache(600000, 10000, 2);
+
+        cache.submit("key", CLIENT, () -> "cut default", submit());
+        cache.submit(null, CLIENT, () -> "cut kitchen", submit());
+        cache.submit(null, CLIENT, () -> "cut bar", submit());
+
+        assertThat(cache.submit("key", CLIENT, () -> "cut default", submit()).duplicate()).isTrue();
+        assertThat(cache.submit(null, CLIENT, () -> "cut bar", submit()).duplicate()).isTrue();
+        assertThat(cache.submit(null, CLIENT, () -> "cut kitchen", submit()).duplicate()).isFalse();
+    }
+
+    @Test
+    void testFailedSubmitRemovesTheKey() throws Exception {
+        IdempotencyCache cache = cache(600000, 10000, 1000);
+
+        assertThatThrownBy(() -> cache.submit("key", CLIENT, () -> "cut default", () -> {
+            throw new RejectedExecutionException("The queue is full");
+        })).isInstanceOf(RejectedExecutionException.class);
+
+        assertThat(cache.submit("key", CLIENT, () -> "cut default", submit()).duplicate()).isFalse();
+        assertThat(submitted).hasValue(1);
+    }
+
+    @Test
+    void testConcurrentDuplicateWaitsAndOtherKeysDoNot() throws Exception {
+        IdempotencyCache   cache   = cache(600000, 10000, 1000);
+        CountDownLatch     entered = new CountDownLatch(1);
+        CountDownLatch     release = new CountDownLatch(1);
+        ExecutorService    clients = Executors.newFixedThreadPool(2);
+        Supplier<PrintJob> slow    = () -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return submit().get();
+        };
+
+        try {
+            Future<IdempotencyCache.Result> first = clients.submit(() -> cache.submit(
+                    "key", CLIENT, () -> "cut default", slow
+            ));
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<IdempotencyCache.Result> duplicate = clients.submit(() -> cache.submit(
+                    "key", CLIENT, () -> "cut default", submit()
+            ));
+
+            // The submit of the first request does not lock the other keys
+            assertThat(cache.submit("other", CLIENT, () -> "cut default", submit()).duplicate()).isFalse();
+            TimeUnit.MILLISECONDS.sleep(100);
+            assertThat(duplicate).isNotDone();
+
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS).duplicate()).isFalse();
+            assertThat(duplicate.get(5, TimeUnit.SECONDS).duplicate()).isTrue();
+            assertThat(duplicate.get().job()).isSameAs(first.get().job());
+            assertThat(submitted).hasValue(2);
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+        }
+    }
+}
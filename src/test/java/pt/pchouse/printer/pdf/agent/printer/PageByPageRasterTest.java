@@ -0,0 +1,108 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageByPageRasterTest
+{
+
+    private static final int WIDTH = 384;
+
+    private static final byte[] INIT = {0x1B, 0x40};
+
+    private final EscPosRaster encoder = new EscPosRaster(RasterCommand.GS_V_0, 128, WIDTH, true);
+
+    private final Timer render = new SimpleMeterRegistry().timer("render");
+
+    private static PDDocument document(int pages) throws IOException {
+        PDDocument document = new PDDocument();
+        for (int index = 0; index < pages; index++) {
+            PDPage page = new PDPage(new PDRectangle(200, 100 + index * 50));
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.addRect(10 + index * 10, 10, 50, 30);
+                content.fill();
+            }
+        }
+        return document;
+    }
+
+    private byte[] expected(List<PDDocument> documents, List<byte[]> postOperations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.writeBytes(INIT);
+        for (int index = 0; index < documents.size(); index++) {
+            PDDocument  document = documents.get(index);
+            PDFRenderer renderer = new PDFRenderer(document);
+            for (int page = 0; page < document.getNumberOfPages(); page++) {
+                float scale = PageByPageRaster.scale(document.getPage(page), WIDTH);
+                bytes.writeBytes(encoder.encode(renderer.renderImage(page, scale, ImageType.GRAY)));
+            }
+            bytes.writeBytes(postOperations.get(index));
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void testStreamsTheInitThePagesAndThePostOperationsInOrder() throws IOException {
+        try (PDDocument first = document(2); PDDocument second = document(3)) {
+            List<PDDocument> documents      = List.of(first, second);
+            List<byte[]>     postOperations = List.of(new byte[]{0x1D, 0x56, 0x00}, new byte[0]);
+
+            byte[] job;
+            try (PageByPageRaster raster = new PageByPageRaster(
+                    INIT, documents, postOperations, encoder, WIDTH, render
+            )) {
+                job = raster.readAllBytes();
+            }
+
+            assertThat(job).containsExactly(expected(documents, postOperations));
+            assertThat(render.count()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void testReadsByteByByteAndInSmallBuffers() throws IOException {
+        try (PDDocument document = document(2)) {
+            List<PDDocument> documents      = List.of(document);
+            List<byte[]>     postOperations = List.of(new byte[]{0x0A});
+            byte[]           expected       = expected(documents, postOperations);
+
+            ByteArrayOutputStream single = new ByteArrayOutputStream();
+            PageByPageRaster      raster = new PageByPageRaster(INIT, documents, postOperations, encoder, WIDTH, render);
+            for (int value = raster.read(); value != -1; value = raster.read()) {
+                single.write(value);
+            }
+            assertThat(single.toByteArray()).containsExactly(expected);
+            assertThat(raster.read()).isEqualTo(-1);
+
+            ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+            raster = new PageByPageRaster(INIT, documents, postOperations, encoder, WIDTH, render);
+            byte[] buffer = new byte[7];
+            for (int read = raster.read(buffer, 0, 7); read != -1; read = raster.read(buffer, 0, 7)) {
+                buffered.write(buffer, 0, read);
+            }
+            assertThat(buffered.toByteArray()).containsExactly(expected);
+        }
+    }
+
+    @Test
+    void testRotatedPageIsScaledByItsHeight() {
+        PDPage page = new PDPage(new PDRectangle(200, 400));
+        assertThat(PageByPageRaster.scale(page, WIDTH)).isEqualTo(WIDTH / 200f);
+        page.setRotation(90);
+        assertThat(PageByPageRaster.scale(page, WIDTH)).isEqualTo(WIDTH / 400f);
+    }
+}
@@ -0,0 +1,160 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PageRendererTest
+{
+
+    private static final int WINDOW = 3;
+
+    private final DocumentLoader documentLoader = Mockito.mock(DocumentLoader.class);
+
+    private final Timer parse = new SimpleMeterRegistry().timer("parse");
+
+    private final List<PDDocument> loaded = Collections.synchronizedList(new ArrayList<>());
+
+    private PageRenderer pageRenderer;
+
+    private static PdfSource pdf(int pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int index = 0; index < pages; index++) {
+                document.addPage(new PDPage());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return PdfSource.of(out.toByteArray());
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Mockito.when(documentLoader.load(ArgumentMatchers.any(), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            PDDocument document = Loader.loadPDF(invocation.<RandomAccessRead>getArgument(1));
+            loaded.add(document);
+            return document;
+        });
+
+        pageRenderer = new PageRenderer();
+        ReflectionTestUtils.setField(pageRenderer, "parallelism", 4);
+        ReflectionTestUtils.setField(pageRenderer, "window", WINDOW);
+        ReflectionTestUtils.setField(pageRenderer, "documentLoader", documentLoader);
+        pageRenderer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pageRenderer.shutdown();
+    }
+
+    @Test
+    void testPagesArriveInOrderAcrossTheDocumentsInTheWindow() throws Exception {
+        List<PdfSource> pdfs     = List.of(pdf(20), pdf(1), pdf(15));
+        List<String>    received = new ArrayList<>();
+        AtomicInteger   started  = new AtomicInteger();
+        AtomicInteger   consumed = new AtomicInteger();
+        AtomicInteger   maxAhead = new AtomicInteger();
+
+        pageRenderer.renderAll(
+                pdfs,
+                parse,
+                (document, renderer, index) -> {
+                    maxAhead.accumulateAndGet(started.incrementAndGet() - consumed.get(), Math::max);
+                    // the pages finish out of order
+                    sleep(ThreadLocalRandom.current().nextInt(5));
+                    return document.getNumberOfPages() + ":" + index;
+                },
+                (document, index, page) -> {
+                    received.add(document + " " + page);
+                    sleep(1);
+                    consumed.incrementAndGet();
+                }
+        );
+
+        List<String> expected = new ArrayList<>();
+        int[]        pages    = {20, 1, 15};
+        for (int document = 0; document < pages.length; document++) {
+            for (int index = 0; index < pages[document]; index++) {
+                expected.add(document + " " + pages[document] + ":" + index);
+            }
+        }
+        assertThat(received).isEqualTo(expected);
+        // the rendered pages not consumed are bounded by the window
+        assertThat(maxAhead.get()).isBetween(1, WINDOW);
+
+        // the documents of each thread are closed and their resources given back
+        assertThat(loaded).isNotEmpty().allMatch(document -> document.getDocument().isClosed());
+        Mockito.verify(documentLoader, Mockito.times(loaded.size())).release(ArgumentMatchers.any());
+    }
+
+    @Test
+    void testSinglePageDocumentIsDeliveredThroughTheConsumer() throws Exception {
+        List<Integer> received = new ArrayList<>();
+
+        pageRenderer.render(pdf(1), parse, (document, renderer, index) -> index, (index, page) -> received.add(page));
+
+        assertThat(received).containsExactly(0);
+        assertThat(loaded).hasSize(1).allMatch(document -> document.getDocument().isClosed());
+    }
+
+    @Test
+    void testFailingPageEndsTheRenderAfterThePagesInFlight() throws Exception {
+        AtomicInteger rendered    = new AtomicInteger();
+        AtomicBoolean closedInUse = new AtomicBoolean(false);
+
+        assertThatThrownBy(() -> pageRenderer.render(
+                pdf(40),
+                parse,
+                (document, renderer, index) -> {
+                    if (index == 4) {
+                        throw new IOException("The page 4 is broken");
+                    }
+                    sleep(20);
+                    if (document.getDocument().isClosed()) {
+                        closedInUse.set(true);
+                    }
+                    rendered.incrementAndGet();
+                    return index;
+                },
+                (index, page) -> {
+                }
+        )).isInstanceOf(IOException.class).hasMessage("The page 4 is broken");
+
+        // the pages after the window are not rendered, no document was closed while rendering
+        assertThat(rendered.get()).isLessThan(4 + WINDOW);
+        assertThat(closedInUse).isFalse();
+        assertThat(loaded).isNotEmpty().allMatch(document -> document.getDocument().isClosed());
+        Mockito.verify(documentLoader, Mockito.times(loaded.size())).release(ArgumentMatchers.any());
+    }
+}
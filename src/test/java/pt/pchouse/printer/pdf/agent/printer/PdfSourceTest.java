@@ -0,0 +1,104 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static pt.pchouse.printer.pdf.agent.printer.PdfSources.bytes;
+
+class PdfSourceTest
+{
+
+    @TempDir
+    private Path scratch;
+
+    private static byte[] read(RandomAccessRead reader) throws IOException {
+        byte[] bytes = new byte[(int) reader.length()];
+        int    read  = 0;
+        while (read < bytes.length) {
+            read += reader.read(bytes, read, bytes.length - read);
+        }
+        return bytes;
+    }
+
+    @BeforeEach
+    void setUp() {
+        PdfSource.setScratchDirectory(scratch);
+    }
+
+    @AfterEach
+    void tearDown() {
+        PdfSource.setScratchDirectory(null);
+    }
+
+    @Test
+    void testBelowThresholdIsKeptInMemory() throws IOException {
+        byte[]              pdf = bytes(PdfSource.MEMORY_THRESHOLD);
+        ScratchOutputStream out = new ScratchOutputStream();
+        out.write(pdf, 0, 10);
+        out.write(pdf[10]);
+        out.write(pdf, 11, pdf.length - 11);
+
+        try (PdfSource source = out.toPdfSource()) {
+            assertThat(source.isScratchFile()).isFalse();
+            assertThat(source.size()).isEqualTo(pdf.length);
+            assertThat(scratch).isEmptyDirectory();
+            try (InputStream stream = source.openStream(); RandomAccessRead reader = source.open()) {
+                assertThat(stream.readAllBytes()).isEqualTo(pdf);
+                assertThat(read(reader)).isEqualTo(pdf);
+            }
+        }
+    }
+
+    @Test
+    void testAboveThresholdSpillsToScratchFileDeletedOnClose() throws IOException {
+        byte[] pdf = bytes(PdfSource.MEMORY_THRESHOLD + 1);
+
+        PdfSource source = PdfSource.read(new ByteArrayInputStream(pdf));
+        assertThat(source.isScratchFile()).isTrue();
+        assertThat(source.size()).isEqualTo(pdf.length);
+        assertThat(scratch).isDirectoryContaining("glob:**/printer-agent-*.pdf");
+
+        try (InputStream stream = source.openStream(); RandomAccessRead reader = source.open()) {
+            assertThat(stream.readAllBytes()).isEqualTo(pdf);
+            assertThat(read(reader)).isEqualTo(pdf);
+        }
+        ByteBuffer copy = ByteBuffer.allocate(pdf.length);
+        source.copyTo(copy);
+        assertThat(copy.array()).isEqualTo(pdf);
+
+        source.close();
+        source.close();
+        assertThat(scratch).isEmptyDirectory();
+    }
+
+    @Test
+    void testDiscardDeletesScratchFile() throws IOException {
+        ScratchOutputStream out = new ScratchOutputStream();
+        out.write(bytes(PdfSource.MEMORY_THRESHOLD * 2));
+        assertThat(scratch).isDirectoryContaining("glob:**/printer-agent-*.pdf");
+
+        out.discard();
+        assertThat(scratch).isEmptyDirectory();
+    }
+
+    @Test
+    void testSha256IsTheSameInMemoryAndInScratchFile() throws IOException {
+        byte[] pdf = bytes(PdfSource.MEMORY_THRESHOLD + 100);
+        try (PdfSource file = PdfSource.read(new ByteArrayInputStream(pdf));
+             PdfSource memory = PdfSource.of(pdf)) {
+            assertThat(file.isScratchFile()).isTrue();
+            assertThat(memory.isScratchFile()).isFalse();
+            assertThat(file.sha256()).isEqualTo(memory.sha256()).hasSize(64);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import java.util.Random;
+
+/**
+ * The pdf contents of the tests that spill to the scratch files
+ */
+public final class PdfSources
+{
+
+    private PdfSources() {
+    }
+
+    /**
+     * @param size The size
+     * @return Random bytes, the same for the same size
+     */
+    public static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,200 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import pt.pchouse.printer.pdf.agent.ExecutionMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PrintJobSchedulerTest
+{
+
+    private final List<PrintJobScheduler> schedulers = new ArrayList<>();
+
+    private PrintJobScheduler scheduler(int queueCapacity, int jobsHistory) {
+        PrintMetrics printMetrics = new PrintMetrics();
+        ReflectionTestUtils.setField(printMetrics, "registry", new SimpleMeterRegistry());
+
+        PrintJobScheduler scheduler = new PrintJobScheduler();
+        ReflectionTestUtils.setField(scheduler, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(scheduler, "jobsHistory", jobsHistory);
+        ReflectionTestUtils.setField(scheduler, "executionMode", ExecutionMode.PLATFORM);
+        ReflectionTestUtils.setField(scheduler, "printMetrics", printMetrics);
+        schedulers.add(scheduler);
+        return scheduler;
+    }
+
+    private static PrintTask await(CountDownLatch latch) {
+        return job -> {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new PrinterException("The test did not release the job");
+            }
+        };
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (PrintJobScheduler scheduler : schedulers) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void testJobsOfThePrinterRunInOrderOneAtATime() throws Exception {
+        PrintJobScheduler scheduler = scheduler(100, 200);
+        List<Integer>     printed   = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger     running   = new AtomicInteger();
+        AtomicInteger     overlaps  = new AtomicInteger();
+        List<PrintJob>    jobs      = new ArrayList<>();
+
+        for (int index = 0; index < 20; index++) {
+            int order = index;
+            jobs.add(scheduler.submit("kitchen", job -> {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                TimeUnit.MILLISECONDS.sleep(1);
+                printed.add(order);
+                running.decrementAndGet();
+            }));
+        }
+        for (PrintJob job : jobs) {
+            assertThat(job.getFuture().get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+        }
+
+        assertThat(printed).isSortedAccordingTo(Integer::compare).hasSize(20);
+        assertThat(overlaps.get()).isZero();
+        assertThat(scheduler.getJobs()).extracting(PrintJob::getId)
+                                       .containsExactlyElementsOf(jobs.stream().map(PrintJob::getId).toList());
+    }
+
+    @Test
+    void testPrintersDoNotWaitForEachOther() throws Exception {
+        PrintJobScheduler scheduler = scheduler(100, 200);
+        CountDownLatch    release   = new CountDownLatch(1);
+
+        PrintJob kitchen = scheduler.submit("kitchen", await(release));
+        awaitUntil(() -> kitchen.getStatus() == PrintJob.Status.PRINTING);
+        PrintJob bar = scheduler.submit("bar", job -> {
+        });
+
+        assertThat(bar.getFuture().get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+        assertThat(kitchen.getStatus()).isEqualTo(PrintJob.Status.PRINTING);
+        release.countDown();
+        assertThat(kitchen.getFuture().get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+    }
+
+    @Test
+    void testJobOverTheQueueCapacityIsRejected() throws Exception {
+        PrintJobScheduler scheduler = scheduler(2, 200);
+        CountDownLatch    release   = new CountDownLatch(1);
+
+        PrintJob printing = scheduler.submit("kitchen", await(release));
+        awaitUntil(() -> printing.getStatus() == PrintJob.Status.PRINTING);
+        PrintJob first  = scheduler.submit("kitchen", job -> {
+        });
+        PrintJob second = scheduler.submit("kitchen", job -> {
+        });
+
+        assertThatThrownBy(() -> scheduler.submit("kitchen", job -> {
+        })).isInstanceOf(RejectedExecutionException.class);
+        // the rejected job is known as failed
+        assertThat(scheduler.getJobs()).hasSize(4).last().satisfies(job -> {
+            assertThat(job.getStatus()).isEqualTo(PrintJob.Status.FAILED);
+            assertThat(job.getMessage()).isEqualTo("The printer queue is full");
+        });
+        // other printer queue is not full
+        assertThat(scheduler.submit("bar", job -> {
+        }).getFuture().get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+
+        release.countDown();
+        assertThat(first.getFuture().get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+        assertThat(second.getFuture().get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+    }
+
+    @Test
+    void testOnlyQueuedJobIsCancelled() throws Exception {
+        PrintJobScheduler scheduler = scheduler(100, 200);
+        CountDownLatch    release   = new CountDownLatch(1);
+        AtomicInteger     printed   = new AtomicInteger();
+
+        PrintJob printing = scheduler.submit("kitchen", await(release));
+        PrintJob queued   = scheduler.submit("kitchen", job -> printed.incrementAndGet());
+        awaitUntil(() -> printing.getStatus() == PrintJob.Status.PRINTING);
+
+        assertThat(scheduler.cancel(printing.getId())).isFalse();
+        assertThat(scheduler.cancel(queued.getId())).isTrue();
+        assertThat(queued.getStatus()).isEqualTo(PrintJob.Status.CANCELLED);
+        assertThat(queued.getMessage()).isEqualTo("Cancelled");
+        assertThat(queued.getFuture()).isDone();
+        assertThat(scheduler.cancel("unknown")).isFalse();
+
+        release.countDown();
+        assertThat(printing.getFuture().get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+        assertThat(scheduler.cancel(printing.getId())).isFalse();
+        assertThat(printing.getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+
+        // the worker skips the cancelled job
+        scheduler.submit("kitchen", job -> {
+        }).getFuture().get(5, TimeUnit.SECONDS);
+        assertThat(printed.get()).isZero();
+        assertThat(queued.getStatus()).isEqualTo(PrintJob.Status.CANCELLED);
+    }
+
+    @Test
+    void testFailingTaskFailsTheJob() throws Exception {
+        PrintJobScheduler scheduler = scheduler(100, 200);
+
+        PrintJob job = scheduler.submit("kitchen", printJob -> {
+            throw new PrinterException("Paper out");
+        });
+
+        assertThat(job.getFuture().get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PrintJob.Status.FAILED);
+        assertThat(job.getMessage()).isEqualTo("Paper out");
+    }
+
+    @Test
+    void testOldestFinishedJobsAreEvictedFromTheHistory() throws Exception {
+        PrintJobScheduler scheduler = scheduler(100, 3);
+        CountDownLatch    release   = new CountDownLatch(1);
+        List<PrintJob>    jobs      = new ArrayList<>();
+
+        for (int index = 0; index < 5; index++) {
+            jobs.add(scheduler.submit("kitchen", job -> {
+            }));
+        }
+        PrintJob printing = scheduler.submit("kitchen", await(release));
+        awaitUntil(() -> scheduler.getJob(jobs.get(1).getId()).isEmpty());
+
+        assertThat(scheduler.getJob(jobs.get(0).getId())).isEmpty();
+        assertThat(scheduler.getJobs()).extracting(PrintJob::getId).containsExactly(
+                jobs.get(2).getId(), jobs.get(3).getId(), jobs.get(4).getId(), printing.getId()
+        );
+
+        // the job not finished is not evicted
+        release.countDown();
+        printing.getFuture().get(5, TimeUnit.SECONDS);
+        awaitUntil(() -> scheduler.getJob(jobs.get(2).getId()).isEmpty());
+        assertThat(scheduler.getJob(printing.getId())).isPresent();
+    }
+}
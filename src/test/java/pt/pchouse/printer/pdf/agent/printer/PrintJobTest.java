@@ -0,0 +1,95 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.print.DocPrintJob;
+import javax.print.event.PrintJobEvent;
+import javax.print.event.PrintJobListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrintJobTest
+{
+
+    private final List<PrintJob.Status> changes = new ArrayList<>();
+
+    private final PrintJob job = new PrintJob("kitchen", printJob -> {
+    }, printJob -> changes.add(printJob.getStatus()));
+
+    private static PrintJobEvent event(int reason) {
+        return new PrintJobEvent(Mockito.mock(DocPrintJob.class), reason);
+    }
+
+    @Test
+    void testJobWithoutSpoolJobsCompletesWhenTheTaskFinishes() {
+        assertThat(job.transition(PrintJob.Status.QUEUED, PrintJob.Status.PRINTING, null)).isTrue();
+        job.taskFinished();
+
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+        assertThat(job.getFinishedAt()).isNotNull();
+        assertThat(job.getFuture()).isCompletedWithValue(job);
+        assertThat(changes).containsExactly(
+                PrintJob.Status.PRINTING, PrintJob.Status.SPOOLED, PrintJob.Status.COMPLETED
+        );
+    }
+
+    @Test
+    void testJobCompletesWhenAllTheSpoolJobsFinish() {
+        job.transition(PrintJob.Status.QUEUED, PrintJob.Status.PRINTING, null);
+        PrintJobListener first  = job.newSpoolListener();
+        PrintJobListener second = job.newSpoolListener();
+
+        first.printJobCompleted(event(PrintJobEvent.JOB_COMPLETE));
+        job.taskFinished();
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.SPOOLED);
+
+        // the same spool job notified twice counts once
+        first.printJobNoMoreEvents(event(PrintJobEvent.NO_MORE_EVENTS));
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.SPOOLED);
+        assertThat(job.getFuture()).isNotDone();
+
+        second.printJobNoMoreEvents(event(PrintJobEvent.NO_MORE_EVENTS));
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+        assertThat(job.getFuture()).isDone();
+    }
+
+    @Test
+    void testFinalStatusIsNotChanged() {
+        job.transition(PrintJob.Status.QUEUED, PrintJob.Status.PRINTING, null);
+        PrintJobListener spool = job.newSpoolListener();
+
+        spool.printJobFailed(event(PrintJobEvent.JOB_FAILED));
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.FAILED);
+        assertThat(job.getMessage()).isEqualTo("The printer reported the job as failed");
+
+        job.taskFinished();
+        spool.printJobCanceled(event(PrintJobEvent.JOB_CANCELED));
+        assertThat(job.transition(null, PrintJob.Status.COMPLETED, null)).isFalse();
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.FAILED);
+        assertThat(job.getMessage()).isEqualTo("The printer reported the job as failed");
+        assertThat(changes).containsExactly(PrintJob.Status.PRINTING, PrintJob.Status.FAILED);
+    }
+
+    @Test
+    void testTransitionFromOtherStatusIsRefused() {
+        assertThat(job.transition(PrintJob.Status.PRINTING, PrintJob.Status.SPOOLED, null)).isFalse();
+        assertThat(job.transition(PrintJob.Status.QUEUED, PrintJob.Status.CANCELLED, "Cancelled")).isTrue();
+        assertThat(job.transition(PrintJob.Status.QUEUED, PrintJob.Status.PRINTING, null)).isFalse();
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.CANCELLED);
+    }
+
+    @Test
+    void testSnapshotIsNotChangedByTheJob() {
+        job.transition(PrintJob.Status.QUEUED, PrintJob.Status.PRINTING, null);
+        PrintJob snapshot = job.snapshot();
+        job.taskFinished();
+
+        assertThat(snapshot.getId()).isEqualTo(job.getId());
+        assertThat(snapshot.getStatus()).isEqualTo(PrintJob.Status.PRINTING);
+        assertThat(snapshot.getFinishedAt()).isNull();
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+    }
+}
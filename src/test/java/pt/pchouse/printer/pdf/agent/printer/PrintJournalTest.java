@@ -0,0 +1,270 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrintJournalTest
+{
+
+    private static final String PRINTER = "p";
+
+    @TempDir
+    Path directory;
+
+    private final PrintJobScheduler scheduler = Mockito.mock(PrintJobScheduler.class);
+
+    private final PrinterRegistry printerRegistry = Mockito.mock(PrinterRegistry.class);
+
+    private final Printer printer = Mockito.mock(Printer.class);
+
+    private final PrinterConfig config = new PrinterConfig();
+
+    private final List<JobStatusListener> listeners = new ArrayList<>();
+
+    private final List<PrintJob> replayed = new ArrayList<>();
+
+    private final List<PrintJournal> journals = new ArrayList<>();
+
+    private static byte[] pdf(char content, int size) {
+        byte[] pdf = new byte[size];
+        Arrays.fill(pdf, (byte) content);
+        return pdf;
+    }
+
+    private static byte[] bytes(PdfSource pdf) throws IOException {
+        try (InputStream stream = pdf.openStream()) {
+            return stream.readAllBytes();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Mockito.when(printerRegistry.get(PRINTER)).thenReturn(config);
+        Mockito.doAnswer(invocation -> listeners.add(invocation.getArgument(0)))
+               .when(scheduler).addListener(ArgumentMatchers.any());
+        Mockito.when(scheduler.submit(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            PrintJob job = job(invocation.getArgument(1));
+            replayed.add(job);
+            return job;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        journals.forEach(PrintJournal::shutdown);
+    }
+
+    private PrintJob job(PrintTask task) {
+        return new PrintJob(PRINTER, task, job -> List.copyOf(listeners).forEach(listener -> listener.onStatusChange(job)));
+    }
+
+    private PrintJob job() {
+        return job(job -> {
+        });
+    }
+
+    private static void print(PrintJob job) throws Exception {
+        ((PrintTask) ReflectionTestUtils.getField(job, "task")).print(job);
+    }
+
+    private PrintJournal journal(int segmentSize) throws IOException {
+        listeners.clear();
+        replayed.clear();
+        PrintJournal journal = new PrintJournal();
+        ReflectionTestUtils.setField(journal, "dir", directory.toString());
+        ReflectionTestUtils.setField(journal, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(journal, "flushInterval", 10L);
+        ReflectionTestUtils.setField(journal, "sync", false);
+        ReflectionTestUtils.setField(journal, "scheduler", scheduler);
+        ReflectionTestUtils.setField(journal, "printerRegistry", printerRegistry);
+        ReflectionTestUtils.setField(journal, "printer", printer);
+        journal.init();
+        journals.add(journal);
+        return journal;
+    }
+
+    private PrintJob accept(PrintJournal journal, byte[] pdf) {
+        PrintJob job = job();
+        journal.accepted(job, new byte[0], PdfSource.of(pdf));
+        return job;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    /**
+     * @return The pdf of each replayed job, printed by its task
+     */
+    private List<byte[]> replayedPdfs() throws Exception {
+        List<byte[]> pdfs = new ArrayList<>();
+        for (PrintJob job : replayed) {
+            Mockito.clearInvocations(printer);
+            print(job);
+            ArgumentCaptor<PdfSource> pdf = ArgumentCaptor.forClass(PdfSource.class);
+            Mockito.verify(printer).printPdf(
+                    ArgumentMatchers.same(config), pdf.capture(), ArgumentMatchers.any(), ArgumentMatchers.any()
+            );
+            pdfs.add(bytes(pdf.getValue()));
+        }
+        return pdfs;
+    }
+
+    @Test
+    void testReplaysTheNotFinishedJobs() throws Exception {
+        PrintJournal journal = journal(4096);
+        PrintJob     first   = job();
+        journal.accepted(first, new byte[]{0x1D, 0x56, 0x00}, PdfSource.of(pdf('a', 100)));
+        accept(journal, pdf('b', 100));
+        first.transition(null, PrintJob.Status.SPOOLED, null);
+        journal.shutdown();
+
+        journal = journal(4096);
+
+        assertThat(replayed).hasSize(1);
+        assertThat(replayedPdfs()).containsExactly(pdf('b', 100));
+        // the not finished jobs are copied to a new segment and the old deleted
+        assertThat(segments()).hasSize(1);
+
+        replayed.get(0).transition(null, PrintJob.Status.COMPLETED, null);
+        journal.shutdown();
+        journal(4096);
+        assertThat(replayed).isEmpty();
+    }
+
+    @Test
+    void testReplaysTheAfterPrintOperationsAndTheBatchDocuments() throws Exception {
+        PrintJournal journal = journal(4096);
+        journal.accepted(job(), new byte[]{0x1D, 0x56, 0x00}, PdfSource.of(pdf('a', 10)));
+        journal.accepted(job(), List.of(
+                new PrintDocument(PdfSource.of(pdf('b', 20)), new byte[]{0x0A}),
+                new PrintDocument(PdfSource.of(pdf('c', 30)), new byte[0])
+        ));
+        journal.shutdown();
+
+        journal(4096);
+        assertThat(replayed).hasSize(2);
+
+        PrintJob single = replayed.get(0);
+        print(single);
+        Mockito.verify(printer).printPdf(
+                ArgumentMatchers.same(config),
+                ArgumentMatchers.any(),
+                ArgumentMatchers.eq(new byte[]{0x1D, 0x56, 0x00}),
+                ArgumentMatchers.any()
+        );
+
+        PrintJob batch = replayed.get(1);
+        print(batch);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PrintDocument>> documents = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(printer).printDocuments(ArgumentMatchers.same(config), documents.capture(), ArgumentMatchers.any());
+        assertThat(documents.getValue()).hasSize(2);
+        assertThat(bytes(documents.getValue().get(0).pdf())).isEqualTo(pdf('b', 20));
+        assertThat(documents.getValue().get(0).postOperations()).containsExactly(0x0A);
+        assertThat(bytes(documents.getValue().get(1).pdf())).isEqualTo(pdf('c', 30));
+        assertThat(documents.getValue().get(1).postOperations()).isEmpty();
+    }
+
+    @Test
+    void testCorruptedRecordEndsTheReplay() throws Exception {
+        PrintJournal journal = journal(4096);
+        accept(journal, pdf('a', 100));
+        accept(journal, pdf('b', 100));
+        accept(journal, pdf('c', 100));
+        journal.shutdown();
+
+        // a changed byte of the second record fails its CRC32C, the records after it are not read
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 0);
+            long second = 8 + length.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[]{'x'}), second + 8 + 60);
+        }
+
+        journal(4096);
+        assertThat(replayedPdfs()).containsExactly(pdf('a', 100));
+    }
+
+    @Test
+    void testTornTailEndsTheReplay() throws Exception {
+        PrintJournal journal = journal(4096);
+        accept(journal, pdf('a', 100));
+        accept(journal, pdf('b', 100));
+        journal.shutdown();
+
+        // the agent stopped while the second record was written
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(136 + 50);
+        }
+
+        journal(4096);
+        assertThat(replayedPdfs()).containsExactly(pdf('a', 100));
+    }
+
+    @Test
+    void testSegmentIsNotDeletedBeforeTheOlderSegments() throws Exception {
+        // 280 bytes fit two accepted records of 136 bytes and not a finished record of 25 bytes
+        PrintJournal journal = journal(280);
+        PrintJob     first   = accept(journal, pdf('a', 100));
+        accept(journal, pdf('b', 100));
+        PrintJob     third   = accept(journal, pdf('c', 100));
+        // the finished record of the first job is written in the second segment
+        first.transition(null, PrintJob.Status.COMPLETED, null);
+        accept(journal, pdf('d', 100));
+        // the second segment has no job not finished, but the first has
+        third.transition(null, PrintJob.Status.COMPLETED, null);
+
+        assertThat(segments()).hasSize(3);
+
+        journal(280);
+        assertThat(replayedPdfs()).containsExactly(pdf('b', 100), pdf('d', 100));
+    }
+
+    @Test
+    void testSegmentsAreDeletedOldestFirst() throws Exception {
+        PrintJournal journal = journal(280);
+        PrintJob     first   = accept(journal, pdf('a', 100));
+        PrintJob     second  = accept(journal, pdf('b', 100));
+        PrintJob     third   = accept(journal, pdf('c', 100));
+        first.transition(null, PrintJob.Status.COMPLETED, null);
+        PrintJob     fourth  = accept(journal, pdf('d', 100));
+        third.transition(null, PrintJob.Status.COMPLETED, null);
+        List<Path>   all     = segments();
+
+        second.transition(null, PrintJob.Status.COMPLETED, null);
+        assertThat(segments()).containsExactly(all.get(2));
+
+        fourth.transition(null, PrintJob.Status.FAILED, "Paper out");
+        // the active segment is kept
+        assertThat(segments()).containsExactly(all.get(2));
+        journal.shutdown();
+
+        journal(280);
+        assertThat(replayed).isEmpty();
+    }
+}
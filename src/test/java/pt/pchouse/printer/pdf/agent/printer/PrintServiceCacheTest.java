@@ -0,0 +1,126 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.print.PrintService;
+import javax.print.PrintServiceLookup;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PrintServiceCacheTest
+{
+
+    private final PrintServiceCache cache = new PrintServiceCache();
+
+    private MockedStatic<PrintServiceLookup> lookup;
+
+    private static PrintService printService(String name) {
+        PrintService printService = Mockito.mock(PrintService.class);
+        Mockito.when(printService.getName()).thenReturn(name);
+        return printService;
+    }
+
+    private void discover(PrintService... printServices) {
+        lookup.when(() -> PrintServiceLookup.lookupPrintServices(null, null)).thenReturn(printServices);
+    }
+
+    private void verifyLookups(int times) {
+        lookup.verify(() -> PrintServiceLookup.lookupPrintServices(null, null), Mockito.times(times));
+    }
+
+    @BeforeEach
+    void setUp() {
+        // the background discovery is not started, the lookups are in the test thread
+        ReflectionTestUtils.setField(cache, "missRefreshInterval", 60000L);
+        lookup = Mockito.mockStatic(PrintServiceLookup.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lookup.close();
+    }
+
+    @Test
+    void testGetReadsTheDiscoveredServices() throws Exception {
+        PrintService kitchen = printService("kitchen");
+        discover(kitchen, printService("bar"), printService("kitchen"));
+        cache.refresh();
+
+        assertThat(cache.get("kitchen")).isSameAs(kitchen);
+        assertThat(cache.get("kitchen")).isSameAs(kitchen);
+        assertThat(cache.isDiscovered("bar")).isTrue();
+        verifyLookups(1);
+
+        PrintServiceCache.State state = cache.getState();
+        assertThat(state.getServices()).containsExactly("kitchen", "bar");
+        assertThat(state.getHits()).isEqualTo(2);
+        assertThat(state.getRefreshes()).isEqualTo(1);
+    }
+
+    @Test
+    void testMissBeforeTheFirstDiscoveryLooksUp() throws Exception {
+        PrintService kitchen = printService("kitchen");
+        discover(kitchen);
+
+        assertThat(cache.get("kitchen")).isSameAs(kitchen);
+        verifyLookups(1);
+        assertThat(cache.getState().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void testMissLooksUpAtMostOnceInTheInterval() throws Exception {
+        ReflectionTestUtils.setField(cache, "missRefreshInterval", 100L);
+        discover(printService("kitchen"));
+        cache.refresh();
+
+        // refreshed now, the unknown printer fails without lookup
+        for (int request = 0; request < 5; request++) {
+            assertThatThrownBy(() -> cache.get("bar")).isInstanceOf(PrinterException.class);
+        }
+        verifyLookups(1);
+
+        // the printer plugged in is found by the first miss after the interval
+        PrintService bar = printService("bar");
+        discover(printService("kitchen"), bar);
+        TimeUnit.MILLISECONDS.sleep(150);
+        assertThat(cache.get("bar")).isSameAs(bar);
+        verifyLookups(2);
+        assertThat(cache.getState().getMisses()).isEqualTo(6);
+    }
+
+    @Test
+    void testInvalidateDiscoversTheServiceAgain() throws Exception {
+        PrintService stale = printService("kitchen");
+        discover(stale);
+        cache.refresh();
+
+        PrintService plugged = printService("kitchen");
+        discover(plugged);
+        assertThat(cache.invalidate("kitchen", stale)).isSameAs(plugged);
+        assertThat(cache.get("kitchen")).isSameAs(plugged);
+        verifyLookups(2);
+
+        // the printer removed is not discovered anymore
+        discover();
+        assertThat(cache.invalidate("kitchen", plugged)).isNull();
+        assertThat(cache.isDiscovered("kitchen")).isFalse();
+        assertThat(cache.getState().getInvalidations()).isEqualTo(2);
+    }
+
+    @Test
+    void testInvalidateOfAReplacedServiceKeepsTheCurrent() {
+        PrintService stale   = printService("kitchen");
+        PrintService current = printService("kitchen");
+        discover(current);
+        cache.refresh();
+
+        assertThat(cache.invalidate("kitchen", stale)).isSameAs(current);
+    }
+}
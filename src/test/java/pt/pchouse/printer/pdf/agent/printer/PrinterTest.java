@@ -0,0 +1,115 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import pt.pchouse.printer.pdf.agent.auth.Auth;
+
+import javax.print.Doc;
+import javax.print.DocFlavor;
+import javax.print.DocPrintJob;
+import javax.print.PrintService;
+import javax.print.event.PrintJobEvent;
+import javax.print.event.PrintJobListener;
+import java.awt.print.PrinterJob;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class PrinterTest
+{
+
+    @Autowired
+    private Printer printer;
+
+    @MockBean
+    private PrintServiceCache printServiceCache;
+
+    @MockBean
+    private PrinterConfig printerConfig;
+
+    @MockBean
+    private Auth auth;
+
+    // without the pageable flavor the pdf is printed with java.awt.print.PrinterJob
+    private PrintService printService;
+
+    private PrinterConfig config;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        printService = Mockito.mock(PrintService.class);
+        Mockito.when(printService.isDocFlavorSupported(DocFlavor.SERVICE_FORMATTED.PAGEABLE)).thenReturn(false);
+        Mockito.when(printServiceCache.get("fake")).thenReturn(printService);
+
+        config = Mockito.mock(PrinterConfig.class);
+        Mockito.when(config.getId()).thenReturn("fake");
+        Mockito.when(config.getName()).thenReturn("fake");
+        Mockito.when(config.getRenderMode()).thenReturn(RenderMode.PAGEABLE);
+    }
+
+    private static PdfSource pdf() throws Exception {
+        try (InputStream inputStream = PrinterTest.class.getResourceAsStream("/warmup.pdf")) {
+            assertThat(inputStream).isNotNull();
+            return PdfSource.of(inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void testPrinterJobFallbackFinishesTheSpoolJob() throws Exception {
+        PrinterJob printerJob = Mockito.mock(PrinterJob.class);
+        PrintJob   job        = new PrintJob("fake", null, printJob -> {
+        });
+        job.transition(PrintJob.Status.QUEUED, PrintJob.Status.PRINTING, null);
+
+        try (MockedStatic<PrinterJob> printerJobs = Mockito.mockStatic(PrinterJob.class);
+             PdfSource pdf = pdf()) {
+            printerJobs.when(PrinterJob::getPrinterJob).thenReturn(printerJob);
+            printer.printPdf(config, pdf, new byte[0], job::newSpoolListener);
+        }
+        job.taskFinished();
+
+        Mockito.verify(printerJob).setPrintService(printService);
+        Mockito.verify(printerJob).print();
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+        assertThat(job.getFuture()).isDone();
+    }
+
+    @Test
+    void testPrinterJobFallbackSendsThePostOperations() throws Exception {
+        PrinterJob  printerJob = Mockito.mock(PrinterJob.class);
+        DocPrintJob rawJob     = Mockito.mock(DocPrintJob.class);
+        Mockito.when(printService.createPrintJob()).thenReturn(rawJob);
+
+        // the raw job of the post operations reports its spool events
+        PrintJobListener[] listener = new PrintJobListener[1];
+        Mockito.doAnswer(invocation -> listener[0] = invocation.getArgument(0))
+                .when(rawJob).addPrintJobListener(Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            listener[0].printJobNoMoreEvents(new PrintJobEvent(rawJob, PrintJobEvent.NO_MORE_EVENTS));
+            return null;
+        }).when(rawJob).print(Mockito.any(Doc.class), Mockito.any());
+
+        PrintJob job = new PrintJob("fake", null, printJob -> {
+        });
+        job.transition(PrintJob.Status.QUEUED, PrintJob.Status.PRINTING, null);
+
+        ArgumentCaptor<Doc> doc = ArgumentCaptor.forClass(Doc.class);
+        try (MockedStatic<PrinterJob> printerJobs = Mockito.mockStatic(PrinterJob.class);
+             PdfSource pdf = pdf()) {
+            printerJobs.when(PrinterJob::getPrinterJob).thenReturn(printerJob);
+            printer.printPdf(config, pdf, new byte[]{0x1D, 0x56, 0x00}, job::newSpoolListener);
+        }
+        job.taskFinished();
+
+        Mockito.verify(rawJob).print(doc.capture(), Mockito.any());
+        assertThat((byte[]) doc.getValue().getPrintData()).containsExactly(new byte[]{0x1D, 0x56, 0x00});
+        assertThat(job.getStatus()).isEqualTo(PrintJob.Status.COMPLETED);
+    }
+}
@@ -0,0 +1,149 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RenderCacheTest
+{
+
+    private static RenderCache cache(long maxBytes) {
+        RenderCache cache = new RenderCache();
+        ReflectionTestUtils.setField(cache, "maxBytes", maxBytes);
+        return cache;
+    }
+
+    private static RenderedRaster raster(int size) {
+        return new RenderedRaster(new byte[size]);
+    }
+
+    private static PrinterConfig config(String render) {
+        PrinterConfig config = new PrinterConfig();
+        config.setRender(render);
+        config.setRenderDpi(203);
+        config.setRasterWidth(576);
+        config.setRasterThreshold(128);
+        config.setRasterCommand("GS_V_0");
+        config.setRasterTrim(true);
+        return config;
+    }
+
+    @Test
+    void testEvictsTheLeastRecentlyUsedAboveTheBytesLimit() {
+        RenderCache cache = cache(300);
+        cache.put("a", raster(100));
+        cache.put("b", raster(100));
+        cache.put("c", raster(100));
+
+        // a is now the most recently used, b is the eldest
+        assertThat(cache.get("a", RenderedRaster.class)).isNotNull();
+        cache.put("d", raster(100));
+
+        assertThat(cache.get("b", RenderedRaster.class)).isNull();
+        assertThat(cache.get("a", RenderedRaster.class)).isNotNull();
+        assertThat(cache.get("c", RenderedRaster.class)).isNotNull();
+        assertThat(cache.get("d", RenderedRaster.class)).isNotNull();
+
+        RenderCache.State state = cache.getState();
+        assertThat(state.entries()).isEqualTo(3);
+        assertThat(state.bytes()).isEqualTo(300);
+        assertThat(state.evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void testLargeOutputEvictsSeveralAndReplaceUpdatesTheBytes() {
+        RenderCache cache = cache(300);
+        cache.put("a", raster(100));
+        cache.put("b", raster(100));
+        cache.put("c", raster(250));
+
+        assertThat(cache.getState().entries()).isEqualTo(1);
+        assertThat(cache.getState().bytes()).isEqualTo(250);
+        assertThat(cache.getState().evictions()).isEqualTo(2);
+
+        cache.put("c", raster(50));
+        assertThat(cache.getState().bytes()).isEqualTo(50);
+        assertThat(cache.getState().entries()).isEqualTo(1);
+    }
+
+    @Test
+    void testOutputAboveTheLimitIsNotCached() {
+        RenderCache cache = cache(300);
+        cache.put("a", raster(100));
+        cache.put("big", raster(301));
+
+        assertThat(cache.get("big", RenderedRaster.class)).isNull();
+        assertThat(cache.get("a", RenderedRaster.class)).isNotNull();
+        assertThat(cache.getState().evictions()).isZero();
+    }
+
+    @Test
+    void testZeroLimitDisablesTheCache() {
+        assertThat(cache(0).isEnabled()).isFalse();
+        assertThat(cache(1).isEnabled()).isTrue();
+    }
+
+    @Test
+    void testCountsHitsAndMisses() {
+        RenderCache cache = cache(1000);
+        cache.put("raster", raster(10));
+        cache.put("pages", new RenderedPages(List.of(new BufferedImage(8, 8, BufferedImage.TYPE_BYTE_GRAY)), 203));
+
+        assertThat(cache.get("raster", RenderedRaster.class)).isNotNull();
+        assertThat(cache.get("pages", RenderedPages.class)).isNotNull();
+        assertThat(cache.get("missing", RenderedRaster.class)).isNull();
+        // an output of other type is a miss
+        assertThat(cache.get("pages", RenderedRaster.class)).isNull();
+
+        RenderCache.State state = cache.getState();
+        assertThat(state.hits()).isEqualTo(2);
+        assertThat(state.misses()).isEqualTo(2);
+
+        cache.clear();
+        assertThat(cache.getState().entries()).isZero();
+        assertThat(cache.getState().bytes()).isZero();
+        assertThat(cache.get("raster", RenderedRaster.class)).isNull();
+    }
+
+    @Test
+    void testKeyChangesWithTheRenderSettings() throws Exception {
+        try (PdfSource pdf = PdfSource.of(new byte[]{1, 2, 3}); PdfSource other = PdfSource.of(new byte[]{1, 2, 4})) {
+            PrinterConfig escPos = config("escpos");
+            String        key    = RenderCache.key(pdf, escPos);
+
+            assertThat(RenderCache.key(pdf, config("escpos"))).isEqualTo(key);
+            assertThat(RenderCache.key(other, escPos)).isNotEqualTo(key);
+            assertThat(RenderCache.key(pdf, config("image"))).isNotEqualTo(key);
+
+            PrinterConfig changed = config("escpos");
+            changed.setRasterWidth(384);
+            assertThat(RenderCache.key(pdf, changed)).isNotEqualTo(key);
+
+            changed = config("escpos");
+            changed.setRasterThreshold(100);
+            assertThat(RenderCache.key(pdf, changed)).isNotEqualTo(key);
+
+            changed = config("escpos");
+            changed.setRasterCommand("GS_L");
+            assertThat(RenderCache.key(pdf, changed)).isNotEqualTo(key);
+
+            changed = config("escpos");
+            changed.setRasterTrim(false);
+            assertThat(RenderCache.key(pdf, changed)).isNotEqualTo(key);
+
+            // the dpi is not used by the escpos render, it is by the image render
+            changed = config("escpos");
+            changed.setRenderDpi(300);
+            assertThat(RenderCache.key(pdf, changed)).isEqualTo(key);
+
+            PrinterConfig image = config("image");
+            changed = config("image");
+            changed.setRenderDpi(300);
+            assertThat(RenderCache.key(pdf, changed)).isNotEqualTo(RenderCache.key(pdf, image));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package pt.pchouse.printer.pdf.agent.printer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResourcePoolTest
+{
+
+    private static ResourcePool<String> pool(long maxBytes) {
+        return new ResourcePool<>()
+        {
+            @Override
+            protected long getMaxBytes() {
+                return maxBytes;
+            }
+
+            @Override
+            protected String getName() {
+                return "test";
+            }
+        };
+    }
+
+    @Test
+    void testBorrowCountsTheHitsAndMisses() {
+        ResourcePool<String> pool = pool(100);
+        assertThat(pool.borrow("a")).isNull();
+
+        pool.giveBack("a", "first", 10);
+        pool.giveBack("a", "second", 10);
+        assertThat(pool.borrow("a")).isEqualTo("first");
+        assertThat(pool.borrow("a")).isEqualTo("second");
+        // a resource is borrowed by one document at a time
+        assertThat(pool.borrow("a")).isNull();
+
+        ResourcePool.State state = pool.getState();
+        assertThat(state.hits()).isEqualTo(2);
+        assertThat(state.misses()).isEqualTo(2);
+        assertThat(state.entries()).isZero();
+        assertThat(state.bytes()).isZero();
+    }
+
+    @Test
+    void testGiveBackEvictsTheLeastRecentlyUsedAboveTheBytesLimit() {
+        ResourcePool<String> pool = pool(100);
+        pool.giveBack("a", "a", 40);
+        pool.giveBack("b", "b", 40);
+
+        // a is borrowed and given back, b is now the eldest
+        pool.giveBack("a", pool.borrow("a"), 40);
+        pool.giveBack("c", "c", 40);
+
+        ResourcePool.State state = pool.getState();
+        assertThat(state.entries()).isEqualTo(2);
+        assertThat(state.bytes()).isEqualTo(80);
+        assertThat(state.evictions()).isEqualTo(1);
+        assertThat(pool.borrow("b")).isNull();
+        assertThat(pool.borrow("a")).isEqualTo("a");
+        assertThat(pool.borrow("c")).isEqualTo("c");
+    }
+
+    @Test
+    void testGiveBackEvictsSeveralOfTheSameKey() {
+        ResourcePool<String> pool = pool(100);
+        pool.giveBack("a", "a1", 30);
+        pool.giveBack("a", "a2", 30);
+        pool.giveBack("b", "b", 30);
+        pool.giveBack("c", "c", 70);
+
+        ResourcePool.State state = pool.getState();
+        assertThat(state.evictions()).isEqualTo(2);
+        assertThat(state.bytes()).isEqualTo(100);
+        assertThat(pool.borrow("a")).isNull();
+        assertThat(pool.borrow("b")).isEqualTo("b");
+    }
+
+    @Test
+    void testResourceBiggerThanTheLimitIsNotKept() {
+        ResourcePool<String> pool = pool(100);
+        pool.giveBack("a", "a", 40);
+        pool.giveBack("big", "big", 101);
+
+        assertThat(pool.borrow("big")).isNull();
+        assertThat(pool.borrow("a")).isEqualTo("a");
+        assertThat(pool.getState().evictions()).isZero();
+
+        ResourcePool<String> disabled = pool(0);
+        assertThat(disabled.isEnabled()).isFalse();
+        disabled.giveBack("a", "a", 1);
+        assertThat(disabled.getState().entries()).isZero();
+    }
+}
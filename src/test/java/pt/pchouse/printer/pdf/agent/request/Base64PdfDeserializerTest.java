@@ -0,0 +1,87 @@
+package pt.pchouse.printer.pdf.agent.request;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pt.pchouse.printer.pdf.agent.printer.PdfSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static pt.pchouse.printer.pdf.agent.printer.PdfSources.bytes;
+
+class Base64PdfDeserializerTest
+{
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    private Path scratch;
+
+    private static InputStream json(String base64) {
+        return new ByteArrayInputStream(
+                ("{\"afterPrintOperations\":1,\"pdf\":\"" + base64 + "\"}").getBytes(StandardCharsets.US_ASCII)
+        );
+    }
+
+    private PdfSource decode(byte[] pdf) throws IOException {
+        PrintRequest request = objectMapper.readValue(json(Base64.getEncoder().encodeToString(pdf)), PrintRequest.class);
+        assertThat(request.getAfterPrintOperations()).isEqualTo(1);
+        return request.getPdf();
+    }
+
+    @BeforeEach
+    void setUp() {
+        PdfSource.setScratchDirectory(scratch);
+    }
+
+    @AfterEach
+    void tearDown() {
+        PdfSource.setScratchDirectory(null);
+    }
+
+    @Test
+    void testSmallPdfIsDecodedInMemory() throws IOException {
+        byte[] pdf = bytes(4096);
+        try (PdfSource source = decode(pdf); InputStream stream = source.openStream()) {
+            assertThat(source.isScratchFile()).isFalse();
+            assertThat(stream.readAllBytes()).isEqualTo(pdf);
+        }
+    }
+
+    @Test
+    void testLargePdfIsDecodedToScratchFile() throws IOException {
+        byte[] pdf = bytes(PdfSource.MEMORY_THRESHOLD * 3 + 7);
+        try (PdfSource source = decode(pdf); InputStream stream = source.openStream()) {
+            assertThat(source.isScratchFile()).isTrue();
+            assertThat(scratch).isDirectoryContaining("glob:**/printer-agent-*.pdf");
+            assertThat(source.size()).isEqualTo(pdf.length);
+            assertThat(stream.readAllBytes()).isEqualTo(pdf);
+        }
+        assertThat(scratch).isEmptyDirectory();
+    }
+
+    @Test
+    void testInvalidBase64DiscardsScratchFile() throws IOException {
+        String base64 = Base64.getEncoder().encodeToString(bytes(PdfSource.MEMORY_THRESHOLD * 2)) + "!!";
+
+        assertThatThrownBy(() -> objectMapper.readValue(json(base64), PrintRequest.class))
+                .isInstanceOf(IOException.class);
+        assertThat(scratch).isEmptyDirectory();
+    }
+
+    @Test
+    void testPdfNotAStringIsRejected() {
+        assertThatThrownBy(() -> objectMapper.readValue("{\"pdf\":123}", PrintRequest.class))
+                .isInstanceOf(JsonMappingException.class);
+    }
+}
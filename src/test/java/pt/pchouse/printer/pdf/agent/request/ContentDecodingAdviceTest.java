@@ -0,0 +1,159 @@
+package pt.pchouse.printer.pdf.agent.request;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import pt.pchouse.printer.pdf.agent.printer.AdmissionControl;
+import pt.pchouse.printer.pdf.agent.printer.AdmissionException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentDecodingAdviceTest
+{
+
+    private final ContentDecodingAdvice advice = new ContentDecodingAdvice();
+
+    private final AdmissionControl admissionControl = new AdmissionControl();
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflate.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(advice, "maxBytes", 1048576L);
+
+        ReflectionTestUtils.setField(admissionControl, "maxJobs", 10);
+        ReflectionTestUtils.setField(admissionControl, "maxBytes", 500000L);
+        ReflectionTestUtils.setField(admissionControl, "maxPrinterBytes", 0L);
+        ReflectionTestUtils.setField(admissionControl, "queueCapacity", 100);
+        ReflectionTestUtils.setField(admissionControl, "maxRetryAfter", 60);
+        ReflectionTestUtils.setField(admissionControl, "executor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(admissionControl, "registry", new SimpleMeterRegistry());
+        admissionControl.init();
+    }
+
+    @Test
+    void testChargesTheInflatedBytesRead() throws Exception {
+        byte[]                  json       = new byte[300000];
+        byte[]                  compressed = gzip(json);
+        AdmissionControl.Permit permit     = admissionControl.admit(null, compressed.length);
+
+        try (InputStream decoded = advice.decode("gzip", new ByteArrayInputStream(compressed), permit)) {
+            assertThat(decoded.readAllBytes()).isEqualTo(json);
+        }
+
+        // charged every 64 KiB read, the tail of the last step is not charged
+        assertThat(permit.getBytes()).isBetween(300000L - 65536, 300000L);
+    }
+
+    @Test
+    void testChargesTheChunkedBodyWithoutLength() throws Exception {
+        AdmissionControl.Permit permit = admissionControl.admit(null, -1);
+
+        try (InputStream body = advice.decode(null, new ByteArrayInputStream(new byte[200000]), permit)) {
+            assertThat(body.readAllBytes()).hasSize(200000);
+        }
+        assertThat(permit.getBytes()).isBetween(200000L - 65536, 200000L);
+
+        // the body of the Content-Length is not charged again
+        AdmissionControl.Permit sized = admissionControl.admit(null, 1000);
+        try (InputStream body = advice.decode("identity", new ByteArrayInputStream(new byte[1000]), sized)) {
+            assertThat(body.readAllBytes()).hasSize(1000);
+        }
+        assertThat(sized.getBytes()).isEqualTo(1000);
+    }
+
+    @Test
+    void testReadOverTheAdmissionLimitFails() throws Exception {
+        admissionControl.admit(null, 400000);
+        AdmissionControl.Permit permit = admissionControl.admit(null, -1);
+
+        try (InputStream body = advice.decode(null, new ByteArrayInputStream(new byte[300000]), permit)) {
+            assertThatThrownBy(body::readAllBytes)
+                    .isInstanceOf(IOException.class)
+                    .hasCauseInstanceOf(AdmissionException.class);
+        }
+        assertThat(permit.getBytes()).isLessThanOrEqualTo(100000);
+    }
+
+    @Test
+    void testCompressionBombIsRejected() throws Exception {
+        // a few KiB compressed that inflate above the 1 MiB limit
+        byte[] bomb = gzip(new byte[2 * 1048576]);
+        assertThat(bomb.length).isLessThan(4096);
+
+        try (InputStream decoded = advice.decode("gzip", new ByteArrayInputStream(bomb), null)) {
+            assertThatThrownBy(decoded::readAllBytes).isInstanceOfSatisfying(
+                    ContentDecodingException.class,
+                    e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE)
+            );
+        }
+
+        try (InputStream decoded = advice.decode("deflate", new ByteArrayInputStream(deflate(new byte[2 * 1048576], false)), null)) {
+            assertThatThrownBy(decoded::readAllBytes).isInstanceOfSatisfying(
+                    ContentDecodingException.class,
+                    e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE)
+            );
+        }
+
+        // the limit is of the inflated body, a body of the limit is decoded
+        try (InputStream decoded = advice.decode("x-gzip", new ByteArrayInputStream(gzip(new byte[1048576])), null)) {
+            assertThat(decoded.readAllBytes()).hasSize(1048576);
+        }
+    }
+
+    @Test
+    void testDeflateOfZlibAndRawFormats() throws Exception {
+        byte[] json = "{\"pdf\":\"JVBERi0xLjQ=\"}".getBytes(StandardCharsets.UTF_8);
+
+        try (InputStream decoded = advice.decode("deflate", new ByteArrayInputStream(deflate(json, false)), null)) {
+            assertThat(decoded.readAllBytes()).isEqualTo(json);
+        }
+        try (InputStream decoded = advice.decode(" Deflate ", new ByteArrayInputStream(deflate(json, true)), null)) {
+            assertThat(decoded.readAllBytes()).isEqualTo(json);
+        }
+    }
+
+    @Test
+    void testUnsupportedCodingIsRejected() throws Exception {
+        assertThatThrownBy(() -> advice.decode("br", new ByteArrayInputStream(new byte[0]), null))
+                .isInstanceOfSatisfying(
+                        ContentDecodingException.class,
+                        e -> {
+                            assertThat(e.getStatus()).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+                            assertThat(e.getMessage()).contains(ContentDecodingAdvice.ACCEPT_ENCODING);
+                        }
+                );
+
+        // the identity body without admission permit is not wrapped
+        InputStream body = new ByteArrayInputStream(new byte[0]);
+        assertThat(advice.decode(null, body, null)).isSameAs(body);
+        assertThat(advice.decode("identity", body, null)).isSameAs(body);
+    }
+}